@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.runelite.cache.ConfigType;
+import net.runelite.cache.IndexType;
+import net.runelite.cache.definitions.loaders.ItemLoader;
+import net.runelite.cache.definitions.loaders.NpcLoader;
+import net.runelite.cache.definitions.loaders.ObjectLoader;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.FSFile;
+import net.runelite.cache.fs.Index;
+import net.runelite.cache.fs.Store;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Decodes every definition of a config archive, which has already been
+ * decompressed and split into files
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DefinitionLoaderBenchmark
+{
+	private final ItemLoader itemLoader = new ItemLoader();
+	private final NpcLoader npcLoader = new NpcLoader();
+	private final ObjectLoader objectLoader = new ObjectLoader();
+
+	private List<FSFile> items;
+	private List<FSFile> npcs;
+	private List<FSFile> objects;
+
+	@Setup
+	public void setup(SyntheticCacheState state) throws IOException
+	{
+		Store store = state.getStore();
+		Index index = store.getIndex(IndexType.CONFIGS);
+
+		items = files(store, index.getArchive(ConfigType.ITEM.getId()));
+		npcs = files(store, index.getArchive(ConfigType.NPC.getId()));
+		objects = files(store, index.getArchive(ConfigType.OBJECT.getId()));
+	}
+
+	private static List<FSFile> files(Store store, Archive archive) throws IOException
+	{
+		byte[] data = store.getStorage().loadArchive(archive);
+		return archive.getFiles(data).getFiles();
+	}
+
+	@Benchmark
+	public void items(Blackhole blackhole)
+	{
+		for (FSFile file : items)
+		{
+			blackhole.consume(itemLoader.load(file.getFileId(), file.getContents()));
+		}
+	}
+
+	@Benchmark
+	public void npcs(Blackhole blackhole)
+	{
+		for (FSFile file : npcs)
+		{
+			blackhole.consume(npcLoader.load(file.getFileId(), file.getContents()));
+		}
+	}
+
+	@Benchmark
+	public void objects(Blackhole blackhole)
+	{
+		for (FSFile file : objects)
+		{
+			blackhole.consume(objectLoader.load(file.getFileId(), file.getContents()));
+		}
+	}
+}
@@ -0,0 +1,376 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import net.runelite.cache.ConfigType;
+import net.runelite.cache.IndexType;
+import net.runelite.cache.definitions.ItemDefinition;
+import net.runelite.cache.definitions.LocationsDefinition;
+import net.runelite.cache.definitions.MapDefinition;
+import net.runelite.cache.definitions.NpcDefinition;
+import net.runelite.cache.definitions.ObjectDefinition;
+import net.runelite.cache.definitions.savers.ItemSaver;
+import net.runelite.cache.definitions.savers.LocationSaver;
+import net.runelite.cache.definitions.savers.MapSaver;
+import net.runelite.cache.definitions.savers.NpcSaver;
+import net.runelite.cache.definitions.savers.ObjectSaver;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.ArchiveFiles;
+import net.runelite.cache.fs.Container;
+import net.runelite.cache.fs.FSFile;
+import net.runelite.cache.fs.Index;
+import net.runelite.cache.fs.Storage;
+import net.runelite.cache.fs.Store;
+import net.runelite.cache.fs.jagex.CompressionType;
+import net.runelite.cache.index.FileData;
+import net.runelite.cache.io.OutputStream;
+import net.runelite.cache.region.Location;
+import net.runelite.cache.region.Position;
+import net.runelite.cache.util.Djb2;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Generates a cache with the same structure as the game's, filled with
+ * random but deterministic content, so the benchmarks need no game data.
+ */
+public class SyntheticCache
+{
+	private static final Logger logger = LoggerFactory.getLogger(SyntheticCache.class);
+
+	public static final int ITEMS = 2000;
+	public static final int NPCS = 1000;
+	public static final int OBJECTS = 2000;
+	public static final int MODELS = 200;
+
+	// regions are generated in a REGIONS x REGIONS square starting here
+	public static final int REGION_BASE_X = 48;
+	public static final int REGION_BASE_Y = 48;
+	public static final int REGIONS = 6;
+
+	// models are a grid of MODEL_SIZE x MODEL_SIZE vertices
+	public static final int MODEL_SIZE = 16;
+
+	private static final int[] LAND_KEYS = {
+		0x1234567, 0x89abcdef, 0xdeadbeef, 0xcafebabe
+	};
+
+	private final Random random = new Random(42L);
+
+	/**
+	 * Generate a cache into the given directory
+	 *
+	 * @param directory
+	 * @throws IOException
+	 */
+	public static void generate(File directory) throws IOException
+	{
+		try (Store store = new Store(directory))
+		{
+			new SyntheticCache().generate(store);
+		}
+	}
+
+	/**
+	 * Get the xtea keys the locations of a region were encrypted with
+	 *
+	 * @param regionId
+	 * @return
+	 */
+	public static int[] getKeys(int regionId)
+	{
+		return LAND_KEYS;
+	}
+
+	/**
+	 * Generate a model in the older model format, as a grid of vertices
+	 * with two triangles per cell
+	 *
+	 * @param size number of vertices along each side of the grid
+	 * @param random
+	 * @return
+	 */
+	public static byte[] generateModel(int size, Random random)
+	{
+		int vertexCount = size * size;
+		int faceCount = (size - 1) * (size - 1) * 2;
+
+		OutputStream vertexFlags = new OutputStream(vertexCount);
+		OutputStream vertexX = new OutputStream();
+		OutputStream vertexY = new OutputStream();
+		OutputStream vertexZ = new OutputStream();
+		int lastX = 0, lastY = 0, lastZ = 0;
+		for (int i = 0; i < size; ++i)
+		{
+			for (int j = 0; j < size; ++j)
+			{
+				int x = i * 32;
+				int y = random.nextInt(64) - 32;
+				int z = j * 32;
+
+				vertexFlags.writeByte(1 | 2 | 4);
+				writeSignedShortSmart(vertexX, x - lastX);
+				writeSignedShortSmart(vertexY, y - lastY);
+				writeSignedShortSmart(vertexZ, z - lastZ);
+
+				lastX = x;
+				lastY = y;
+				lastZ = z;
+			}
+		}
+
+		OutputStream faceTypes = new OutputStream(faceCount);
+		OutputStream faceIndices = new OutputStream();
+		OutputStream faceColors = new OutputStream(faceCount * 2);
+		int last = 0;
+		for (int i = 0; i < size - 1; ++i)
+		{
+			for (int j = 0; j < size - 1; ++j)
+			{
+				int v = i * size + j;
+				int[][] faces = {
+					{v, v + 1, v + size},
+					{v + 1, v + size + 1, v + size}
+				};
+
+				for (int[] face : faces)
+				{
+					// each face is given explicitly as deltas from the previous vertex
+					faceTypes.writeByte(1);
+					writeSignedShortSmart(faceIndices, face[0] - last);
+					writeSignedShortSmart(faceIndices, face[1] - face[0]);
+					writeSignedShortSmart(faceIndices, face[2] - face[1]);
+					last = face[2];
+
+					faceColors.writeShort(random.nextInt(0x10000));
+				}
+			}
+		}
+
+		OutputStream out = new OutputStream();
+		out.writeBytes(vertexFlags.flip());
+		out.writeBytes(faceTypes.flip());
+		byte[] indices = faceIndices.flip();
+		out.writeBytes(indices);
+		out.writeBytes(faceColors.flip());
+		byte[] x = vertexX.flip(), y = vertexY.flip(), z = vertexZ.flip();
+		out.writeBytes(x);
+		out.writeBytes(y);
+		out.writeBytes(z);
+
+		out.writeShort(vertexCount);
+		out.writeShort(faceCount);
+		out.writeByte(0); // texture triangles
+		out.writeByte(0); // face render types
+		out.writeByte(0); // priority
+		out.writeByte(0); // face alphas
+		out.writeByte(0); // face skins
+		out.writeByte(0); // vertex skins
+		out.writeShort(x.length);
+		out.writeShort(y.length);
+		out.writeShort(z.length);
+		out.writeShort(indices.length);
+		return out.flip();
+	}
+
+	private static void writeSignedShortSmart(OutputStream out, int value)
+	{
+		if (value >= -64 && value < 64)
+		{
+			out.writeByte(value + 64);
+		}
+		else
+		{
+			out.writeShort(value + 0xC000);
+		}
+	}
+
+	private void generate(Store store) throws IOException
+	{
+		// the disk storage requires the indexes to be contiguous
+		for (int i = 0; i <= IndexType.MODELS.getNumber(); ++i)
+		{
+			store.addIndex(i);
+		}
+
+		generateConfigs(store);
+		generateModels(store);
+		generateMaps(store);
+
+		store.save();
+
+		logger.info("Generated synthetic cache with {} indexes", store.getIndexes().size());
+	}
+
+	private void generateConfigs(Store store) throws IOException
+	{
+		Index index = store.getIndex(IndexType.CONFIGS);
+
+		// archives must be added in order of id
+		ObjectSaver objectSaver = new ObjectSaver();
+		List<byte[]> objects = new ArrayList<>(OBJECTS);
+		for (int i = 0; i < OBJECTS; ++i)
+		{
+			ObjectDefinition object = new ObjectDefinition();
+			object.setId(i);
+			object.setName("Object " + i);
+			object.setObjectModels(new int[]{random.nextInt(MODELS)});
+			object.setSizeX(1 + random.nextInt(3));
+			object.setSizeY(1 + random.nextInt(3));
+			objects.add(objectSaver.save(object));
+		}
+		saveArchive(store.getStorage(), index.addArchive(ConfigType.OBJECT.getId()), objects, CompressionType.GZ, null);
+
+		NpcSaver npcSaver = new NpcSaver();
+		List<byte[]> npcs = new ArrayList<>(NPCS);
+		for (int i = 0; i < NPCS; ++i)
+		{
+			NpcDefinition npc = new NpcDefinition(i);
+			npc.name = "Npc " + i;
+			npc.models = new int[]{random.nextInt(MODELS), random.nextInt(MODELS)};
+			npc.combatLevel = random.nextInt(200);
+			npcs.add(npcSaver.save(npc));
+		}
+		saveArchive(store.getStorage(), index.addArchive(ConfigType.NPC.getId()), npcs, CompressionType.GZ, null);
+
+		ItemSaver itemSaver = new ItemSaver();
+		List<byte[]> items = new ArrayList<>(ITEMS);
+		for (int i = 0; i < ITEMS; ++i)
+		{
+			ItemDefinition item = new ItemDefinition(i);
+			item.name = "Item " + i;
+			item.inventoryModel = random.nextInt(MODELS);
+			item.cost = random.nextInt(100000);
+			item.members = random.nextBoolean();
+			item.stackable = random.nextInt(4) == 0 ? 1 : 0;
+			items.add(itemSaver.save(item));
+		}
+		saveArchive(store.getStorage(), index.addArchive(ConfigType.ITEM.getId()), items, CompressionType.GZ, null);
+	}
+
+	private void generateModels(Store store) throws IOException
+	{
+		Index index = store.getIndex(IndexType.MODELS);
+
+		for (int i = 0; i < MODELS; ++i)
+		{
+			List<byte[]> model = new ArrayList<>(1);
+			model.add(generateModel(MODEL_SIZE, random));
+			saveArchive(store.getStorage(), index.addArchive(i), model, CompressionType.GZ, null);
+		}
+	}
+
+	private void generateMaps(Store store) throws IOException
+	{
+		Index index = store.getIndex(IndexType.MAPS);
+		index.setNamed(true);
+
+		MapSaver mapSaver = new MapSaver();
+		LocationSaver locationSaver = new LocationSaver();
+		int archiveId = 0;
+		for (int rx = REGION_BASE_X; rx < REGION_BASE_X + REGIONS; ++rx)
+		{
+			for (int ry = REGION_BASE_Y; ry < REGION_BASE_Y + REGIONS; ++ry)
+			{
+				MapDefinition map = new MapDefinition();
+				map.setRegionX(rx);
+				map.setRegionY(ry);
+				MapDefinition.Tile[][][] tiles = map.getTiles();
+				for (int z = 0; z < MapDefinition.Z; ++z)
+				{
+					for (int x = 0; x < MapDefinition.X; ++x)
+					{
+						for (int y = 0; y < MapDefinition.Y; ++y)
+						{
+							MapDefinition.Tile tile = tiles[z][x][y] = new MapDefinition.Tile();
+							if (z == 0)
+							{
+								tile.height = 1 + random.nextInt(32);
+								tile.underlayId = (byte) (1 + random.nextInt(100));
+								if (random.nextInt(8) == 0)
+								{
+									tile.attrOpcode = 2;
+									tile.overlayId = (byte) (1 + random.nextInt(100));
+								}
+							}
+						}
+					}
+				}
+
+				Archive mapArchive = index.addArchive(archiveId++);
+				mapArchive.setNameHash(Djb2.hash("m" + rx + "_" + ry));
+				List<byte[]> mapData = new ArrayList<>(1);
+				mapData.add(mapSaver.save(map));
+				saveArchive(store.getStorage(), mapArchive, mapData, CompressionType.GZ, null);
+
+				LocationsDefinition locations = new LocationsDefinition();
+				locations.setRegionX(rx);
+				locations.setRegionY(ry);
+				for (int i = 0; i < 256; ++i)
+				{
+					Position position = new Position(random.nextInt(MapDefinition.X), random.nextInt(MapDefinition.Y), 0);
+					locations.getLocations().add(new Location(random.nextInt(OBJECTS), 10, random.nextInt(4), position));
+				}
+				// locations of the same object are stored in order of position
+				locations.getLocations().sort(Comparator.comparing(Location::getId)
+					.thenComparing(l -> l.getPosition().getX() << 6 | l.getPosition().getY()));
+
+				Archive landArchive = index.addArchive(archiveId++);
+				landArchive.setNameHash(Djb2.hash("l" + rx + "_" + ry));
+				List<byte[]> landData = new ArrayList<>(1);
+				landData.add(locationSaver.save(locations));
+				saveArchive(store.getStorage(), landArchive, landData, CompressionType.GZ, getKeys(rx << 8 | ry));
+			}
+		}
+	}
+
+	private static void saveArchive(Storage storage, Archive archive, List<byte[]> files, int compression, int[] keys) throws IOException
+	{
+		ArchiveFiles archiveFiles = new ArchiveFiles();
+		FileData[] fileData = new FileData[files.size()];
+		for (int i = 0; i < files.size(); ++i)
+		{
+			FSFile file = new FSFile(i);
+			file.setContents(files.get(i));
+			archiveFiles.addFile(file);
+
+			fileData[i] = new FileData();
+			fileData[i].setId(i);
+		}
+
+		archive.setFileData(fileData);
+		archive.setCompression(compression);
+
+		Container container = new Container(compression, -1);
+		container.compress(archiveFiles.saveContents(), keys);
+		storage.saveArchive(archive, container.data);
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.benchmarks;
+
+import java.io.File;
+import java.util.Random;
+import net.runelite.cache.ConfigType;
+import net.runelite.cache.IndexType;
+import net.runelite.cache.definitions.ItemDefinition;
+import net.runelite.cache.definitions.LocationsDefinition;
+import net.runelite.cache.definitions.MapDefinition;
+import net.runelite.cache.definitions.ModelDefinition;
+import net.runelite.cache.definitions.loaders.ItemLoader;
+import net.runelite.cache.definitions.loaders.LocationsLoader;
+import net.runelite.cache.definitions.loaders.MapLoader;
+import net.runelite.cache.definitions.loaders.ModelLoader;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.ArchiveFiles;
+import net.runelite.cache.fs.FSFile;
+import net.runelite.cache.fs.Index;
+import net.runelite.cache.fs.Store;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SyntheticCacheTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testGenerate() throws Exception
+	{
+		File directory = folder.newFolder();
+		SyntheticCache.generate(directory);
+
+		try (Store store = new Store(directory))
+		{
+			store.load();
+
+			Index configs = store.getIndex(IndexType.CONFIGS);
+			Archive items = configs.getArchive(ConfigType.ITEM.getId());
+			ArchiveFiles files = items.getFiles(store.getStorage().loadArchive(items));
+			assertEquals(SyntheticCache.ITEMS, files.getFiles().size());
+
+			FSFile file = files.getFiles().get(10);
+			ItemDefinition item = new ItemLoader().load(file.getFileId(), file.getContents());
+			assertEquals("Item 10", item.name);
+
+			assertNotNull(configs.getArchive(ConfigType.NPC.getId()));
+			assertNotNull(configs.getArchive(ConfigType.OBJECT.getId()));
+
+			Index models = store.getIndex(IndexType.MODELS);
+			Archive model = models.getArchive(0);
+			byte[] data = store.getStorage().loadArchiveContents(model, null);
+			ModelDefinition def = new ModelLoader().load(0, data);
+			int size = SyntheticCache.MODEL_SIZE;
+			assertEquals(size * size, def.vertexCount);
+			assertEquals((size - 1) * (size - 1) * 2, def.faceCount);
+			assertEquals(size * size - 1, def.faceVertexIndices2[def.faceCount - 1]);
+
+			Index maps = store.getIndex(IndexType.MAPS);
+			int x = SyntheticCache.REGION_BASE_X, y = SyntheticCache.REGION_BASE_Y;
+			Archive map = maps.findArchiveByName("m" + x + "_" + y);
+			Archive land = maps.findArchiveByName("l" + x + "_" + y);
+			assertNotNull(map);
+			assertNotNull(land);
+
+			MapDefinition mapDef = new MapLoader().load(x, y, store.getStorage().loadArchiveContents(map, null));
+			assertNotNull(mapDef.getTiles()[0][0][0]);
+
+			int[] keys = SyntheticCache.getKeys(x << 8 | y);
+			LocationsDefinition locDef = new LocationsLoader().load(x, y, store.getStorage().loadArchiveContents(land, keys));
+			assertEquals(256, locDef.getLocations().size());
+		}
+	}
+
+	@Test
+	public void testGenerateModel()
+	{
+		byte[] data = SyntheticCache.generateModel(4, new Random(42L));
+		ModelDefinition def = new ModelLoader().load(0, data);
+		assertEquals(16, def.vertexCount);
+		assertEquals(18, def.faceCount);
+		assertEquals(96, def.vertexPositionsX[15]);
+		assertEquals(96, def.vertexPositionsZ[15]);
+	}
+}
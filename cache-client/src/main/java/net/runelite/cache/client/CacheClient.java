@@ -25,38 +25,27 @@
 package net.runelite.cache.client;
 
 import com.google.common.base.Stopwatch;
-import io.netty.bootstrap.Bootstrap;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
-import io.netty.channel.Channel;
-import io.netty.channel.ChannelFuture;
-import io.netty.channel.ChannelInitializer;
-import io.netty.channel.ChannelOption;
-import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import java.io.IOException;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import net.runelite.cache.fs.Archive;
 import net.runelite.cache.fs.Index;
 import net.runelite.cache.fs.Storage;
 import net.runelite.cache.fs.Store;
 import net.runelite.cache.index.ArchiveData;
 import net.runelite.cache.index.IndexData;
-import net.runelite.protocol.update.decoders.HandshakeResponseDecoder;
-import net.runelite.protocol.update.encoders.ArchiveRequestEncoder;
-import net.runelite.protocol.update.encoders.EncryptionEncoder;
-import net.runelite.protocol.api.update.ArchiveRequestPacket;
 import net.runelite.protocol.api.login.HandshakeResponseType;
 import net.runelite.cache.util.Crc32;
-import net.runelite.protocol.api.handshake.UpdateHandshakePacket;
-import net.runelite.protocol.handshake.UpdateHandshakeEncoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -68,19 +57,36 @@ public class CacheClient implements AutoCloseable
 	private static final int PORT = 43594;
 
 	private static final int MAX_REQUESTS = 19; // too many and the server closes the conncetion
+	private static final int INITIAL_WINDOW = 4;
+	private static final int MAX_ATTEMPTS = 3; // attempts at downloading a file before giving up
 
 	private final Store store; // store cache will be written to
 	private final String host;
+	private final int port;
 	private final int clientRevision;
 	private DownloadWatcher watcher;
+	private int connectionCount = 1;
 
-	private ClientState state;
+	private EventLoopGroup group;
+	private CacheConnection connection; // connection the handshake is done on
+	private final List<CacheConnection> connections = new ArrayList<>();
 
-	private final EventLoopGroup group = new NioEventLoopGroup(1);
-	private Channel channel;
+	// requests waiting for a slot in the window of a connection
+	private final Queue<PendingFileRequest> queue = new PriorityQueue<>(PendingFileRequest.ORDER);
+	private long sequence;
+	private int inFlight;
 
-	private CompletableFuture<HandshakeResponseType> handshakeFuture;
-	private final Queue<PendingFileRequest> requests = new ArrayDeque<>();
+	// download statistics
+	private long startNanos = System.nanoTime();
+	private int completed;
+	private long bytes;
+	private int retries;
+	private long totalLatencyNanos;
+	private long maxLatencyNanos;
+
+	// responses are handled on the event loop of their connection, so
+	// hold this while saving them to keep the storage single threaded
+	private final Object saveLock = new Object();
 
 	public CacheClient(Store store, int clientRevision)
 	{
@@ -88,9 +94,15 @@ public class CacheClient implements AutoCloseable
 	}
 
 	public CacheClient(Store store, String host, int clientRevision)
+	{
+		this(store, host, PORT, clientRevision);
+	}
+
+	public CacheClient(Store store, String host, int port, int clientRevision)
 	{
 		this.store = store;
 		this.host = host;
+		this.port = port;
 		this.clientRevision = clientRevision;
 	}
 
@@ -102,61 +114,41 @@ public class CacheClient implements AutoCloseable
 
 	public void connect()
 	{
-		Bootstrap b = new Bootstrap();
-		b.group(group)
-			.channel(NioSocketChannel.class)
-			.option(ChannelOption.TCP_NODELAY, true)
-			.handler(new ChannelInitializer<SocketChannel>()
-			{
-				@Override
-				public void initChannel(SocketChannel ch) throws Exception
-				{
-					ChannelPipeline p = ch.pipeline();
-
-					//p.addFirst(new HttpProxyHandler(new InetSocketAddress("runelite.net", 3128)));
-					p.addLast("decoder", new HandshakeResponseDecoder());
-
-					p.addLast(
-						new CacheClientHandler(),
-						new HandshakeResponseHandler(CacheClient.this),
-						new ArchiveResponseHandler(CacheClient.this)
-					);
-
-					p.addLast(
-						new UpdateHandshakeEncoder(),
-						new EncryptionEncoder(),
-						new ArchiveRequestEncoder()
-					);
-				}
-			});
+		group = new NioEventLoopGroup(connectionCount);
+		connection = openConnection();
+	}
 
-		// Start the client.
-		ChannelFuture f = b.connect(host, PORT).syncUninterruptibly();
-		channel = f.channel();
+	private synchronized CacheConnection openConnection()
+	{
+		CacheConnection c = new CacheConnection(this, connections.size(), INITIAL_WINDOW);
+		c.connect(group, host, port);
+		connections.add(c);
+		return c;
 	}
 
 	public CompletableFuture<HandshakeResponseType> handshake()
 	{
-		UpdateHandshakePacket handshakePacket = new UpdateHandshakePacket();
-		handshakePacket.setRevision(getClientRevision());
-
-		state = ClientState.HANDSHAKING;
-
-		assert handshakeFuture == null;
-		handshakeFuture = new CompletableFuture<>();
-
-		channel.writeAndFlush(handshakePacket);
-
-		logger.info("Sent handshake with revision {}", handshakePacket.getRevision());
-
-		return handshakeFuture;
+		return connection.handshake();
 	}
 
 	@Override
 	public void close()
 	{
-		channel.close().syncUninterruptibly();
-		group.shutdownGracefully();
+		List<CacheConnection> toClose;
+		synchronized (this)
+		{
+			toClose = new ArrayList<>(connections);
+		}
+
+		for (CacheConnection c : toClose)
+		{
+			c.close();
+		}
+
+		if (group != null)
+		{
+			group.shutdownGracefully();
+		}
 	}
 
 	public int getClientRevision()
@@ -166,24 +158,34 @@ public class CacheClient implements AutoCloseable
 
 	public ClientState getState()
 	{
-		return state;
+		return connection.getState();
 	}
 
-	void setState(ClientState state)
+	public void setWatcher(DownloadWatcher watcher)
 	{
-		this.state = state;
+		this.watcher = watcher;
 	}
 
-	CompletableFuture<HandshakeResponseType> getHandshakeFuture()
+	/**
+	 * Set the number of connections to download with. Must be set
+	 * prior to connecting.
+	 *
+	 * @param connectionCount
+	 */
+	public void setConnections(int connectionCount)
 	{
-		return handshakeFuture;
+		if (connectionCount < 1)
+		{
+			throw new IllegalArgumentException("connection count must be positive");
+		}
+		this.connectionCount = connectionCount;
 	}
 
 	public List<IndexInfo> requestIndexes() throws IOException
 	{
 		logger.info("Requesting indexes");
 
-		FileResult result = requestFile(255, 255, true).join();
+		FileResult result = requestFile(255, 255, true, null).join();
 		result.decompress(null);
 
 		ByteBuf buffer = Unpooled.wrappedBuffer(result.getContents());
@@ -201,12 +203,49 @@ public class CacheClient implements AutoCloseable
 	}
 
 	public void download() throws IOException
+	{
+		download(requestIndexes());
+	}
+
+	/**
+	 * Download the given indexes, and any of their archives which are
+	 * missing or out of date in the store
+	 *
+	 * @param indexes indexes to download
+	 * @throws IOException if any of the indexes or archives could not be
+	 *                     downloaded or saved
+	 */
+	public void download(List<IndexInfo> indexes) throws IOException
 	{
 		Stopwatch stopwatch = Stopwatch.createStarted();
 
-		List<IndexInfo> indexes = requestIndexes();
+		openConnections();
+
+		synchronized (this)
+		{
+			startNanos = System.nanoTime();
+			completed = 0;
+			bytes = 0;
+			retries = 0;
+			totalLatencyNanos = 0;
+			maxLatencyNanos = 0;
+		}
+
+		// request all of the index data up front, it is small and
+		// is needed to know which archives to download
+		List<CompletableFuture<FileResult>> indexFutures = new ArrayList<>();
+		// completed once each downloaded archive has been saved
+		List<CompletableFuture<Void>> saves = new ArrayList<>();
+		List<Throwable> failures = new ArrayList<>();
 		for (IndexInfo indexInfo : indexes)
 		{
+			logger.info("Downloading index {}", indexInfo.getId());
+			indexFutures.add(requestFile(255, indexInfo.getId(), true, indexInfo.getCrc()));
+		}
+
+		for (int idx = 0; idx < indexes.size(); ++idx)
+		{
+			IndexInfo indexInfo = indexes.get(idx);
 			int i = indexInfo.getId();
 			int crc = indexInfo.getCrc();
 			int revision = indexInfo.getRevision();
@@ -240,19 +279,22 @@ public class CacheClient implements AutoCloseable
 				logger.info("Index {} is up to date", index.getId());
 			}
 
-			logger.info("Downloading index {}", i);
+			FileResult indexFileResult;
+			try
+			{
+				indexFileResult = indexFutures.get(idx).join();
+			}
+			catch (CompletionException ex)
+			{
+				logger.warn("Corrupted download for index {}", i, ex.getCause());
+				failures.add(ex.getCause());
+				continue;
+			}
 
-			FileResult indexFileResult = requestFile(255, i, true).join();
 			indexFileResult.decompress(null);
 
 			logger.info("Downloaded index {}", i);
 
-			if (indexFileResult.getCrc() != crc)
-			{
-				logger.warn("Corrupted download for index {}", i);
-				continue;
-			}
-
 			IndexData indexData = new IndexData();
 			indexData.load(indexFileResult.getContents());
 
@@ -314,141 +356,270 @@ public class CacheClient implements AutoCloseable
 				// Add files
 				archive.setFileData(ad.getFiles());
 
-				CompletableFuture<FileResult> future = requestFile(index.getId(), ad.getId(), false);
-				future.handle((fr, ex) ->
+				// read once, so every callback for this archive goes to the same watcher
+				DownloadWatcher downloadWatcher = watcher;
+				if (downloadWatcher != null)
 				{
-					byte[] data = fr.getCompressedData();
-
-					Crc32 crc32 = new Crc32();
-					crc32.update(data, 0, data.length);
-					int hash = crc32.getHash();
+					downloadWatcher.beforeDownload(archive);
+				}
 
-					if (hash != archive.getCrc())
+				CompletableFuture<FileResult> future = requestFile(index.getId(), ad.getId(), false, archive.getCrc());
+				saves.add(future.handle((fr, ex) ->
+				{
+					if (ex != null)
 					{
-						logger.warn("crc mismatch on downloaded archive {}/{}: {} != {}",
-							archive.getIndex().getId(), archive.getArchiveId(),
-							hash, archive.getCrc());
-						throw new RuntimeException("crc mismatch");
+						logger.warn("unable to download archive {}/{}",
+							archive.getIndex().getId(), archive.getArchiveId(), ex);
+						if (downloadWatcher != null)
+						{
+							downloadWatcher.downloadFailed(archive, ex);
+						}
+						throw new CompletionException(ex);
 					}
 
-					if (watcher != null)
-					{
-						watcher.downloadComplete(archive, data);
-					}
-					else
+					byte[] data = fr.getCompressedData();
+
+					synchronized (saveLock)
 					{
-						try
+						if (downloadWatcher != null)
 						{
-							Storage storage = store.getStorage();
-							storage.saveArchive(archive, data);
+							downloadWatcher.downloadComplete(archive, data);
 						}
-						catch (IOException ex1)
+						else
 						{
-							logger.warn("unable to save archive data", ex1);
+							try
+							{
+								Storage storage = store.getStorage();
+								storage.saveArchive(archive, data);
+							}
+							catch (IOException ex1)
+							{
+								logger.warn("unable to save archive data", ex1);
+								throw new CompletionException(ex1);
+							}
 						}
 					}
 					return null;
-				});
+				}));
 			}
 		}
 
-		// flush any pending requests
-		channel.flush();
+		awaitRequests();
 
-		while (!requests.isEmpty())
+		// the last responses may still be being saved after the request count drops
+		for (CompletableFuture<Void> save : saves)
 		{
-			// wait for pending requests
-			synchronized (this)
+			try
 			{
-				try
-				{
-					wait();
-				}
-				catch (InterruptedException ex)
-				{
-					logger.warn(null, ex);
-				}
+				save.join();
+			}
+			catch (CompletionException ex)
+			{
+				failures.add(ex.getCause());
 			}
 		}
 
 		stopwatch.stop();
-		logger.info("Download completed in {}", stopwatch);
+
+		if (!failures.isEmpty())
+		{
+			IOException ex = new IOException(failures.size() + " files failed to download", failures.get(0));
+			for (int i = 1; i < failures.size(); ++i)
+			{
+				ex.addSuppressed(failures.get(i));
+			}
+			throw ex;
+		}
+
+		logger.info("Download completed in {}: {}", stopwatch, getStats());
 	}
 
-	private synchronized CompletableFuture<FileResult> requestFile(int index, int fileId, boolean flush)
+	/**
+	 * Open and handshake the additional connections to download with
+	 */
+	private void openConnections()
 	{
-		if (state != ClientState.CONNECTED)
+		while (connections.size() < connectionCount)
 		{
-			throw new IllegalStateException("Can't request files until connected!");
+			CacheConnection c = openConnection();
+			HandshakeResponseType result = c.handshake().join();
+			if (result != HandshakeResponseType.RESPONSE_OK)
+			{
+				logger.warn("Unable to open connection {}: {}", c.getId(), result);
+				c.close();
+				break;
+			}
 		}
+	}
 
-		if (!flush)
+	private synchronized void awaitRequests()
+	{
+		while (!queue.isEmpty() || inFlight > 0)
 		{
-			while (requests.size() >= MAX_REQUESTS)
+			try
 			{
-				channel.flush();
-
-				try
-				{
-					wait();
-				}
-				catch (InterruptedException ex)
-				{
-					logger.warn("interrupted while waiting for requests", ex);
-				}
+				wait();
+			}
+			catch (InterruptedException ex)
+			{
+				logger.warn(null, ex);
 			}
 		}
+	}
 
-		ArchiveRequestPacket archiveRequest = new ArchiveRequestPacket();
-		archiveRequest.setPriority(false);
-		archiveRequest.setIndex(index);
-		archiveRequest.setArchive(fileId);
-
-		CompletableFuture<FileResult> future = new CompletableFuture<>();
-		PendingFileRequest pf = new PendingFileRequest(index,
-			fileId, future);
-
-		logger.trace("Sending request for {}/{}", index, fileId);
+	public synchronized DownloadStats getStats()
+	{
+		int open = 0;
+		for (CacheConnection c : connections)
+		{
+			if (!c.isClosed())
+			{
+				++open;
+			}
+		}
 
-		requests.add(pf);
+		return new DownloadStats(System.nanoTime() - startNanos, completed, bytes, retries,
+			queue.size(), inFlight, open, totalLatencyNanos, maxLatencyNanos);
+	}
 
-		if (!flush)
+	/**
+	 * Queue a request for a file
+	 *
+	 * @param index
+	 * @param fileId
+	 * @param priority whether the file should be sent before non priority files
+	 * @param crc expected crc of the file, or null to not verify it
+	 * @return
+	 */
+	private synchronized CompletableFuture<FileResult> requestFile(int index, int fileId, boolean priority, Integer crc)
+	{
+		if (connection == null || connection.getState() != ClientState.CONNECTED)
 		{
-			channel.write(archiveRequest);
+			throw new IllegalStateException("Can't request files until connected!");
 		}
-		else
+
+		CompletableFuture<FileResult> future = new CompletableFuture<>();
+		PendingFileRequest pf = new PendingFileRequest(index, fileId, future);
+		pf.setPriority(priority);
+		pf.setSequence(sequence++);
+		if (crc != null)
 		{
-			channel.writeAndFlush(archiveRequest);
+			pf.setCrc(crc);
 		}
 
+		queue.add(pf);
+		dispatch();
+
 		return future;
 	}
 
-	private PendingFileRequest findRequest(int index, int file)
+	/**
+	 * Send queued requests on connections which have free slots in their window
+	 */
+	private synchronized void dispatch()
 	{
-		for (PendingFileRequest pr : requests)
+		Set<CacheConnection> written = new HashSet<>();
+
+		while (!queue.isEmpty())
 		{
-			if (pr.getIndex() == index && pr.getArchive() == file)
+			// pick the connection with the most free slots
+			CacheConnection best = null;
+			for (CacheConnection c : connections)
 			{
-				return pr;
+				if (c.isAvailable() && (best == null || c.getFreeSlots() > best.getFreeSlots()))
+				{
+					best = c;
+				}
+			}
+
+			if (best == null)
+			{
+				break;
 			}
+
+			PendingFileRequest pr = queue.poll();
+			best.send(pr);
+			++inFlight;
+			written.add(best);
+		}
+
+		for (CacheConnection c : written)
+		{
+			c.flush();
 		}
-		return null;
 	}
 
-	protected synchronized void onFileFinish(int index, int file, byte[] compressedData)
+	void onFileFinish(CacheConnection c, int index, int file, byte[] compressedData)
 	{
-		PendingFileRequest pr = findRequest(index, file);
+		PendingFileRequest pr;
+		boolean retry = false, failed = false;
+		DownloadStats stats;
 
-		if (pr == null)
+		synchronized (this)
 		{
-			logger.warn("File download {}/{} with no pending request", index, file);
-			return;
+			pr = c.removeRequest(index, file);
+
+			if (pr == null)
+			{
+				logger.warn("File download {}/{} with no pending request", index, file);
+				return;
+			}
+
+			--inFlight;
+
+			long latency = System.nanoTime() - pr.getSentAt();
+			++completed;
+			bytes += compressedData.length;
+			totalLatencyNanos += latency;
+			maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+
+			if (pr.isVerify() && crc(compressedData) != pr.getCrc())
+			{
+				logger.warn("crc mismatch on downloaded file {}/{} on connection {}",
+					index, file, c.getId());
+
+				// back off this connection
+				c.setWindow(Math.max(1, c.getWindow() / 2));
+
+				pr.setAttempts(pr.getAttempts() + 1);
+				if (pr.getAttempts() < MAX_ATTEMPTS)
+				{
+					++retries;
+					queue.add(pr);
+					retry = true;
+				}
+				else
+				{
+					failed = true;
+				}
+			}
+			else if (c.getWindow() < MAX_REQUESTS)
+			{
+				c.setWindow(c.getWindow() + 1);
+			}
+
+			dispatch();
+			notifyAll();
+
+			stats = watcher != null ? getStats() : null;
 		}
 
-		requests.remove(pr);
+		if (stats != null)
+		{
+			watcher.progress(stats);
+		}
 
-		notify();
+		if (retry)
+		{
+			return;
+		}
+
+		if (failed)
+		{
+			pr.getFuture().completeExceptionally(new IOException("crc mismatch on " + index + "/" + file
+				+ " after " + MAX_ATTEMPTS + " attempts"));
+			return;
+		}
 
 		FileResult result = new FileResult(index, file, compressedData);
 
@@ -456,4 +627,41 @@ public class CacheClient implements AutoCloseable
 
 		pr.getFuture().complete(result);
 	}
+
+	synchronized void onConnectionLost(CacheConnection c)
+	{
+		// resend the requests which were waiting on the connection
+		List<PendingFileRequest> pending = c.drainRequests();
+		inFlight -= pending.size();
+		queue.addAll(pending);
+
+		boolean open = false;
+		for (CacheConnection other : connections)
+		{
+			open |= !other.isClosed();
+		}
+
+		if (!open)
+		{
+			IOException ex = new IOException("All connections have been lost");
+			for (PendingFileRequest pr : queue)
+			{
+				pr.getFuture().completeExceptionally(ex);
+			}
+			queue.clear();
+		}
+		else
+		{
+			dispatch();
+		}
+
+		notifyAll();
+	}
+
+	private static int crc(byte[] data)
+	{
+		Crc32 crc32 = new Crc32();
+		crc32.update(data, 0, data.length);
+		return crc32.getHash();
+	}
 }
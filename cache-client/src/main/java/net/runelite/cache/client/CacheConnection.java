@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.client;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import net.runelite.protocol.api.handshake.UpdateHandshakePacket;
+import net.runelite.protocol.api.login.HandshakeResponseType;
+import net.runelite.protocol.api.update.ArchiveRequestPacket;
+import net.runelite.protocol.handshake.UpdateHandshakeEncoder;
+import net.runelite.protocol.update.decoders.HandshakeResponseDecoder;
+import net.runelite.protocol.update.encoders.ArchiveRequestEncoder;
+import net.runelite.protocol.update.encoders.EncryptionEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A single connection to the update server. Requests are scheduled onto
+ * connections by the {@link CacheClient}, which holds its lock while
+ * calling into the connection.
+ */
+public class CacheConnection
+{
+	private static final Logger logger = LoggerFactory.getLogger(CacheConnection.class);
+
+	private final CacheClient client;
+	private final int id;
+
+	private Channel channel;
+	private volatile ClientState state;
+	private volatile boolean closed;
+
+	private CompletableFuture<HandshakeResponseType> handshakeFuture;
+
+	// requests sent on this connection which haven't been responded to
+	private final List<PendingFileRequest> requests = new ArrayList<>();
+	private int window;
+
+	CacheConnection(CacheClient client, int id, int window)
+	{
+		this.client = client;
+		this.id = id;
+		this.window = window;
+	}
+
+	void connect(EventLoopGroup group, String host, int port)
+	{
+		Bootstrap b = new Bootstrap();
+		b.group(group)
+			.channel(NioSocketChannel.class)
+			.option(ChannelOption.TCP_NODELAY, true)
+			.handler(new ChannelInitializer<SocketChannel>()
+			{
+				@Override
+				public void initChannel(SocketChannel ch) throws Exception
+				{
+					ChannelPipeline p = ch.pipeline();
+
+					//p.addFirst(new HttpProxyHandler(new InetSocketAddress("runelite.net", 3128)));
+					p.addLast("decoder", new HandshakeResponseDecoder());
+
+					p.addLast(
+						new CacheClientHandler(CacheConnection.this),
+						new HandshakeResponseHandler(CacheConnection.this),
+						new ArchiveResponseHandler(CacheConnection.this)
+					);
+
+					p.addLast(
+						new UpdateHandshakeEncoder(),
+						new EncryptionEncoder(),
+						new ArchiveRequestEncoder()
+					);
+				}
+			});
+
+		// Start the client.
+		ChannelFuture f = b.connect(host, port).syncUninterruptibly();
+		channel = f.channel();
+	}
+
+	CompletableFuture<HandshakeResponseType> handshake()
+	{
+		UpdateHandshakePacket handshakePacket = new UpdateHandshakePacket();
+		handshakePacket.setRevision(client.getClientRevision());
+
+		state = ClientState.HANDSHAKING;
+
+		assert handshakeFuture == null;
+		handshakeFuture = new CompletableFuture<>();
+
+		channel.writeAndFlush(handshakePacket);
+
+		logger.info("Sent handshake with revision {} on connection {}", handshakePacket.getRevision(), id);
+
+		return handshakeFuture;
+	}
+
+	void close()
+	{
+		closed = true;
+		channel.close().syncUninterruptibly();
+	}
+
+	int getId()
+	{
+		return id;
+	}
+
+	ClientState getState()
+	{
+		return state;
+	}
+
+	void setState(ClientState state)
+	{
+		this.state = state;
+	}
+
+	CompletableFuture<HandshakeResponseType> getHandshakeFuture()
+	{
+		return handshakeFuture;
+	}
+
+	boolean isClosed()
+	{
+		return closed;
+	}
+
+	boolean isAvailable()
+	{
+		return !closed && state == ClientState.CONNECTED && requests.size() < window;
+	}
+
+	int getFreeSlots()
+	{
+		return window - requests.size();
+	}
+
+	int getWindow()
+	{
+		return window;
+	}
+
+	void setWindow(int window)
+	{
+		this.window = window;
+	}
+
+	int getInFlight()
+	{
+		return requests.size();
+	}
+
+	void send(PendingFileRequest request)
+	{
+		ArchiveRequestPacket archiveRequest = new ArchiveRequestPacket();
+		archiveRequest.setPriority(request.isPriority());
+		archiveRequest.setIndex(request.getIndex());
+		archiveRequest.setArchive(request.getArchive());
+
+		logger.trace("Sending request for {}/{} on connection {}", request.getIndex(), request.getArchive(), id);
+
+		request.setSentAt(System.nanoTime());
+		requests.add(request);
+		channel.write(archiveRequest);
+	}
+
+	void flush()
+	{
+		channel.flush();
+	}
+
+	PendingFileRequest removeRequest(int index, int file)
+	{
+		for (Iterator<PendingFileRequest> it = requests.iterator(); it.hasNext(); )
+		{
+			PendingFileRequest pr = it.next();
+			if (pr.getIndex() == index && pr.getArchive() == file)
+			{
+				it.remove();
+				return pr;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Remove all requests which are waiting on this connection
+	 */
+	List<PendingFileRequest> drainRequests()
+	{
+		List<PendingFileRequest> pending = new ArrayList<>(requests);
+		requests.clear();
+		return pending;
+	}
+
+	void onFileFinish(int index, int file, byte[] compressedData)
+	{
+		client.onFileFinish(this, index, file, compressedData);
+	}
+
+	void onInactive()
+	{
+		if (!closed)
+		{
+			logger.warn("Connection {} has gone inactive", id);
+			closed = true;
+			client.onConnectionLost(this);
+		}
+	}
+}
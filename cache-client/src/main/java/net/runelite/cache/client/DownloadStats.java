@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.client;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Snapshot of the progress of a download
+ */
+public class DownloadStats
+{
+	private final long elapsedNanos;
+	private final int completed;
+	private final long bytes;
+	private final int retries;
+	private final int queued;
+	private final int inFlight;
+	private final int connections;
+	private final long totalLatencyNanos;
+	private final long maxLatencyNanos;
+
+	public DownloadStats(long elapsedNanos, int completed, long bytes, int retries, int queued, int inFlight,
+		int connections, long totalLatencyNanos, long maxLatencyNanos)
+	{
+		this.elapsedNanos = elapsedNanos;
+		this.completed = completed;
+		this.bytes = bytes;
+		this.retries = retries;
+		this.queued = queued;
+		this.inFlight = inFlight;
+		this.connections = connections;
+		this.totalLatencyNanos = totalLatencyNanos;
+		this.maxLatencyNanos = maxLatencyNanos;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "DownloadStats{" + "completed=" + completed + ", bytes=" + bytes + ", retries=" + retries
+			+ ", queued=" + queued + ", inFlight=" + inFlight + ", connections=" + connections
+			+ ", throughput=" + (long) getThroughput() + "B/s"
+			+ ", averageLatency=" + getAverageLatency(TimeUnit.MILLISECONDS) + "ms"
+			+ ", maxLatency=" + getMaxLatency(TimeUnit.MILLISECONDS) + "ms}";
+	}
+
+	public long getElapsed(TimeUnit unit)
+	{
+		return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @return number of responses received
+	 */
+	public int getCompleted()
+	{
+		return completed;
+	}
+
+	/**
+	 * @return number of bytes received
+	 */
+	public long getBytes()
+	{
+		return bytes;
+	}
+
+	/**
+	 * @return number of requests which have been resent due to corrupt responses
+	 */
+	public int getRetries()
+	{
+		return retries;
+	}
+
+	/**
+	 * @return number of requests waiting to be sent
+	 */
+	public int getQueued()
+	{
+		return queued;
+	}
+
+	/**
+	 * @return number of requests sent and waiting for a response
+	 */
+	public int getInFlight()
+	{
+		return inFlight;
+	}
+
+	public int getConnections()
+	{
+		return connections;
+	}
+
+	/**
+	 * @return bytes received per second
+	 */
+	public double getThroughput()
+	{
+		return elapsedNanos > 0 ? bytes * 1e9 / elapsedNanos : 0;
+	}
+
+	public long getAverageLatency(TimeUnit unit)
+	{
+		return completed > 0 ? unit.convert(totalLatencyNanos / completed, TimeUnit.NANOSECONDS) : 0;
+	}
+
+	public long getMaxLatency(TimeUnit unit)
+	{
+		return unit.convert(maxLatencyNanos, TimeUnit.NANOSECONDS);
+	}
+}
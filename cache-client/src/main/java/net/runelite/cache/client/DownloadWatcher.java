@@ -29,5 +29,44 @@ import net.runelite.cache.fs.Archive;
 @FunctionalInterface
 public interface DownloadWatcher
 {
+	/**
+	 * Called on the network thread when an archive has been downloaded. This
+	 * must not block, or it stalls the connections.
+	 *
+	 * @param archive archive
+	 * @param data compressed archive data
+	 */
 	void downloadComplete(Archive archive, byte[] data);
+
+	/**
+	 * Called on the thread running {@link CacheClient#download(java.util.List)}
+	 * before each archive is requested. Blocking here throttles the download
+	 * without stalling the connections, eg. until earlier archives have been
+	 * handed off.
+	 *
+	 * @param archive archive about to be requested
+	 */
+	default void beforeDownload(Archive archive)
+	{
+	}
+
+	/**
+	 * Called instead of {@link #downloadComplete(Archive, byte[])} when an
+	 * archive could not be downloaded
+	 *
+	 * @param archive archive
+	 * @param cause reason the download failed
+	 */
+	default void downloadFailed(Archive archive, Throwable cause)
+	{
+	}
+
+	/**
+	 * Called each time a response is received from the server
+	 *
+	 * @param stats statistics of the download so far
+	 */
+	default void progress(DownloadStats stats)
+	{
+	}
 }
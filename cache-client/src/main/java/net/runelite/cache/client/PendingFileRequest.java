@@ -24,14 +24,30 @@
  */
 package net.runelite.cache.client;
 
+import java.util.Comparator;
 import java.util.concurrent.CompletableFuture;
 
 public class PendingFileRequest
 {
+	/**
+	 * Order in which queued requests are sent, priority requests first
+	 * and otherwise in the order they were made
+	 */
+	static final Comparator<PendingFileRequest> ORDER = Comparator
+		.comparing(PendingFileRequest::isPriority).reversed()
+		.thenComparingLong(PendingFileRequest::getSequence);
+
 	private final int index;
 	private final int archive;
 	private final CompletableFuture<FileResult> future;
 
+	private boolean priority;
+	private long sequence;
+	private boolean verify;
+	private int crc;
+	private int attempts;
+	private long sentAt;
+
 	public PendingFileRequest(int index, int archive, CompletableFuture<FileResult> future)
 	{
 		this.index = index;
@@ -53,4 +69,63 @@ public class PendingFileRequest
 	{
 		return future;
 	}
+
+	public boolean isPriority()
+	{
+		return priority;
+	}
+
+	public void setPriority(boolean priority)
+	{
+		this.priority = priority;
+	}
+
+	public long getSequence()
+	{
+		return sequence;
+	}
+
+	public void setSequence(long sequence)
+	{
+		this.sequence = sequence;
+	}
+
+	/**
+	 * @return whether the response should be checked against the expected crc
+	 */
+	public boolean isVerify()
+	{
+		return verify;
+	}
+
+	public int getCrc()
+	{
+		return crc;
+	}
+
+	public void setCrc(int crc)
+	{
+		this.verify = true;
+		this.crc = crc;
+	}
+
+	public int getAttempts()
+	{
+		return attempts;
+	}
+
+	public void setAttempts(int attempts)
+	{
+		this.attempts = attempts;
+	}
+
+	public long getSentAt()
+	{
+		return sentAt;
+	}
+
+	public void setSentAt(long sentAt)
+	{
+		this.sentAt = sentAt;
+	}
 }
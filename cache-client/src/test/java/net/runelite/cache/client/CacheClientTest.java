@@ -25,14 +25,25 @@
 package net.runelite.cache.client;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.Random;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
 import net.runelite.cache.CacheProperties;
+import net.runelite.cache.StoreLocation;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.Container;
+import net.runelite.cache.fs.Index;
 import net.runelite.cache.fs.Store;
+import net.runelite.cache.fs.jagex.CompressionType;
+import net.runelite.cache.index.FileData;
 import net.runelite.protocol.api.login.HandshakeResponseType;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Ignore;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.impl.SimpleLogger;
@@ -41,6 +52,11 @@ public class CacheClientTest
 {
 	private static final Logger logger = LoggerFactory.getLogger(CacheClientTest.class);
 
+	private static final int REVISION = 177;
+
+	@Rule
+	public TemporaryFolder folder = StoreLocation.getTemporaryFolder();
+
 	@Before
 	public void before()
 	{
@@ -71,4 +87,149 @@ public class CacheClientTest
 			store.save();
 		}
 	}
+
+	@Test
+	public void testDownloadLocal() throws Exception
+	{
+		File serverRoot = folder.newFolder(), clientRoot = folder.newFolder();
+
+		try (Store store = new Store(serverRoot))
+		{
+			Random random = new Random(42L);
+			addArchives(store, store.addIndex(0), 100, random);
+			addArchives(store, store.addIndex(1), 5, random);
+			store.save();
+		}
+
+		try (Store serverStore = new Store(serverRoot);
+			Store clientStore = new Store(clientRoot))
+		{
+			serverStore.load();
+
+			try (UpdateServer server = new UpdateServer(serverStore, REVISION))
+			{
+				server.corruptOnce(0, 3);
+				int port = server.start();
+
+				AtomicReference<DownloadStats> stats = new AtomicReference<>();
+
+				CacheClient client = new CacheClient(clientStore, "localhost", port, REVISION);
+				client.setWatcher(new DownloadWatcher()
+				{
+					@Override
+					public void downloadComplete(Archive archive, byte[] data)
+					{
+						try
+						{
+							clientStore.getStorage().saveArchive(archive, data);
+						}
+						catch (IOException ex)
+						{
+							throw new RuntimeException(ex);
+						}
+					}
+
+					@Override
+					public void progress(DownloadStats s)
+					{
+						stats.set(s);
+					}
+				});
+				client.setConnections(3);
+				client.connect();
+
+				Assert.assertEquals(HandshakeResponseType.RESPONSE_OK, client.handshake().join());
+
+				client.download();
+				client.close();
+
+				Assert.assertEquals(3, server.getConnections());
+				Assert.assertEquals(1, stats.get().getRetries());
+				Assert.assertEquals(0, stats.get().getQueued());
+				// 255/255, 2 indexes, 105 archives and the retry
+				Assert.assertEquals(1 + 2 + 105 + 1, server.getRequests());
+			}
+
+			clientStore.save();
+
+			for (Index index : serverStore.getIndexes())
+			{
+				Index index2 = clientStore.findIndex(index.getId());
+				Assert.assertEquals(index.getCrc(), index2.getCrc());
+
+				for (Archive archive : index.getArchives())
+				{
+					Archive archive2 = index2.getArchive(archive.getArchiveId());
+					Assert.assertEquals(archive.getCrc(), archive2.getCrc());
+					Assert.assertArrayEquals(serverStore.getStorage().loadArchive(archive),
+						clientStore.getStorage().loadArchive(archive2));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testDownloadFailure() throws Exception
+	{
+		File serverRoot = folder.newFolder(), clientRoot = folder.newFolder();
+
+		try (Store store = new Store(serverRoot))
+		{
+			addArchives(store, store.addIndex(0), 10, new Random(42L));
+			store.save();
+		}
+
+		try (Store serverStore = new Store(serverRoot);
+			Store clientStore = new Store(clientRoot))
+		{
+			serverStore.load();
+
+			try (UpdateServer server = new UpdateServer(serverStore, REVISION))
+			{
+				// corrupt more times than the client retries
+				server.corrupt(0, 3, 3);
+				int port = server.start();
+
+				CacheClient client = new CacheClient(clientStore, "localhost", port, REVISION);
+				client.connect();
+
+				Assert.assertEquals(HandshakeResponseType.RESPONSE_OK, client.handshake().join());
+
+				try
+				{
+					client.download();
+					Assert.fail("download should fail");
+				}
+				catch (IOException ex)
+				{
+					Assert.assertEquals("1 files failed to download", ex.getMessage());
+				}
+				finally
+				{
+					client.close();
+				}
+			}
+		}
+	}
+
+	private static void addArchives(Store store, Index index, int count, Random random) throws IOException
+	{
+		for (int i = 0; i < count; ++i)
+		{
+			Archive archive = index.addArchive(i);
+			archive.setNameHash(random.nextInt());
+
+			FileData file = new FileData();
+			file.setId(0);
+			archive.setFileData(new FileData[]{file});
+
+			// some archives span several response chunks
+			byte[] contents = new byte[1 + random.nextInt(2048)];
+			random.nextBytes(contents);
+
+			Container container = new Container(CompressionType.NONE, -1);
+			container.compress(contents, null);
+			store.getStorage().saveArchive(archive, container.data);
+		}
+	}
 }
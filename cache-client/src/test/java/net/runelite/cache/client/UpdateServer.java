@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.client;
+
+import com.google.common.primitives.Ints;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.Container;
+import net.runelite.cache.fs.Index;
+import net.runelite.cache.fs.Store;
+import net.runelite.cache.fs.jagex.CompressionType;
+import net.runelite.cache.util.Crc32;
+import net.runelite.protocol.api.handshake.HandshakeResponsePacket;
+import net.runelite.protocol.api.handshake.UpdateHandshakePacket;
+import net.runelite.protocol.api.login.HandshakeResponseType;
+import net.runelite.protocol.api.update.ArchiveRequestPacket;
+import net.runelite.protocol.api.update.ArchiveResponsePacket;
+import net.runelite.protocol.handshake.HandshakeDecoder;
+import net.runelite.protocol.handshake.HandshakeResponseEncoder;
+import net.runelite.protocol.update.decoders.ArchiveRequestDecoder;
+import net.runelite.protocol.update.decoders.EncryptionDecoder;
+import net.runelite.protocol.update.encoders.ArchiveResponseEncoder;
+
+/**
+ * Minimal update server serving the contents of a store, for testing
+ */
+class UpdateServer implements AutoCloseable
+{
+	private final int revision;
+	private final Map<Long, byte[]> files = new HashMap<>();
+	private final Map<Long, Integer> corrupt = new HashMap<>();
+
+	private final EventLoopGroup group = new NioEventLoopGroup(1);
+	private Channel channel;
+
+	private final AtomicInteger connections = new AtomicInteger();
+	private final AtomicInteger requests = new AtomicInteger();
+
+	UpdateServer(Store store, int revision) throws IOException
+	{
+		this.revision = revision;
+
+		ByteBuf indexes = Unpooled.buffer();
+		for (Index index : store.getIndexes())
+		{
+			for (Archive archive : index.getArchives())
+			{
+				byte[] data = store.getStorage().loadArchive(archive);
+				files.put(key(index.getId(), archive.getArchiveId()), trim(data));
+			}
+
+			Container container = new Container(index.getCompression(), -1);
+			container.compress(index.toIndexData().writeIndexData(), null);
+			files.put(key(255, index.getId()), container.data);
+
+			indexes.writeInt(crc(container.data));
+			indexes.writeInt(index.getRevision());
+		}
+
+		byte[] table = new byte[indexes.readableBytes()];
+		indexes.readBytes(table);
+
+		Container container = new Container(CompressionType.NONE, -1);
+		container.compress(table, null);
+		files.put(key(255, 255), container.data);
+	}
+
+	/**
+	 * Start the server on a free port
+	 *
+	 * @return the port
+	 */
+	int start()
+	{
+		ServerBootstrap b = new ServerBootstrap();
+		b.group(group)
+			.channel(NioServerSocketChannel.class)
+			.childHandler(new ChannelInitializer<SocketChannel>()
+			{
+				@Override
+				protected void initChannel(SocketChannel ch) throws Exception
+				{
+					connections.incrementAndGet();
+
+					ChannelPipeline p = ch.pipeline();
+					p.addLast("decoder", new HandshakeDecoder());
+					p.addLast(new HandshakeResponseEncoder(), new ArchiveResponseEncoder());
+					p.addLast(new ServerHandler());
+				}
+			});
+
+		channel = b.bind("localhost", 0).syncUninterruptibly().channel();
+		return ((InetSocketAddress) channel.localAddress()).getPort();
+	}
+
+	@Override
+	public void close()
+	{
+		channel.close().syncUninterruptibly();
+		group.shutdownGracefully();
+	}
+
+	/**
+	 * Send a corrupt copy of the file the next time it is requested
+	 */
+	synchronized void corruptOnce(int index, int archive)
+	{
+		corrupt(index, archive, 1);
+	}
+
+	/**
+	 * Send a corrupt copy of the file the next {@code times} times it is requested
+	 */
+	synchronized void corrupt(int index, int archive, int times)
+	{
+		corrupt.put(key(index, archive), times);
+	}
+
+	int getConnections()
+	{
+		return connections.get();
+	}
+
+	int getRequests()
+	{
+		return requests.get();
+	}
+
+	private synchronized byte[] getFile(int index, int archive)
+	{
+		long key = key(index, archive);
+		byte[] data = files.get(key);
+		Integer times = corrupt.get(key);
+		if (data != null && times != null)
+		{
+			if (times > 1)
+			{
+				corrupt.put(key, times - 1);
+			}
+			else
+			{
+				corrupt.remove(key);
+			}
+
+			data = Arrays.copyOf(data, data.length);
+			data[data.length - 1] ^= 0xff;
+		}
+		return data;
+	}
+
+	private class ServerHandler extends SimpleChannelInboundHandler<Object>
+	{
+		@Override
+		protected void channelRead0(ChannelHandlerContext ctx, Object msg) throws Exception
+		{
+			if (msg instanceof UpdateHandshakePacket)
+			{
+				UpdateHandshakePacket handshake = (UpdateHandshakePacket) msg;
+
+				HandshakeResponsePacket response = new HandshakeResponsePacket();
+				response.setResponse(handshake.getRevision() == revision
+					? HandshakeResponseType.RESPONSE_OK
+					: HandshakeResponseType.RESPONSE_OUTDATED);
+				ctx.writeAndFlush(response);
+
+				// requests are passed on to the encryption decoder if they aren't archive requests
+				ChannelPipeline p = ctx.pipeline();
+				p.replace("decoder", "decoder", new ArchiveRequestDecoder());
+				p.addAfter("decoder", "encryption", new EncryptionDecoder());
+			}
+			else if (msg instanceof ArchiveRequestPacket)
+			{
+				ArchiveRequestPacket request = (ArchiveRequestPacket) msg;
+				requests.incrementAndGet();
+
+				byte[] data = getFile(request.getIndex(), request.getArchive());
+				if (data == null)
+				{
+					ctx.close();
+					return;
+				}
+
+				ArchiveResponsePacket response = new ArchiveResponsePacket();
+				response.setIndex(request.getIndex());
+				response.setArchive(request.getArchive());
+				response.setData(data);
+				ctx.writeAndFlush(response);
+			}
+		}
+	}
+
+	private static long key(int index, int archive)
+	{
+		return (long) index << 32 | archive;
+	}
+
+	/**
+	 * Remove the revision appended to archive data, which isn't sent
+	 */
+	private static byte[] trim(byte[] data)
+	{
+		int compression = data[0];
+		int compressedSize = Ints.fromBytes(data[1], data[2], data[3], data[4]);
+		int length = 1 // compression type
+			+ 4 // compressed size
+			+ compressedSize
+			+ (compression != CompressionType.NONE ? 4 : 0);
+		return Arrays.copyOf(data, length);
+	}
+
+	private static int crc(byte[] data)
+	{
+		Crc32 crc32 = new Crc32();
+		crc32.update(data, 0, data.length);
+		return crc32.getHash();
+	}
+}
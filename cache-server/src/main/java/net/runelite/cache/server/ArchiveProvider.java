@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.server;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.Container;
+import net.runelite.cache.fs.Index;
+import net.runelite.cache.fs.Storage;
+import net.runelite.cache.fs.Store;
+import net.runelite.cache.fs.jagex.CompressionType;
+import net.runelite.cache.fs.jagex.MappedDiskStorage;
+import net.runelite.cache.util.Crc32;
+
+/**
+ * Provides the files served by the update server from a store. The
+ * reference tables in index 255 are built once up front, archives are
+ * loaded from the store's storage on request.
+ */
+public class ArchiveProvider
+{
+	private final Store store;
+	private final Storage storage;
+
+	private final byte[] checksumTable;
+	private final Map<Integer, byte[]> referenceTables = new HashMap<>();
+
+	public ArchiveProvider(Store store) throws IOException
+	{
+		this.store = store;
+		this.storage = store.getStorage();
+
+		int count = 0;
+		for (Index index : store.getIndexes())
+		{
+			count = Math.max(count, index.getId() + 1);
+		}
+
+		// the checksum table is indexed by position, so indexes missing
+		// from the store are served as empty
+		ByteBuffer table = ByteBuffer.allocate(count * 8);
+		for (int i = 0; i < count; ++i)
+		{
+			Index index = store.findIndex(i);
+			if (index == null)
+			{
+				index = new Index(i);
+			}
+
+			Container container = new Container(index.getCompression(), -1); // index data revision is always -1
+			container.compress(index.toIndexData().writeIndexData(), null);
+			byte[] data = container.data;
+			referenceTables.put(i, data);
+
+			Crc32 crc = new Crc32();
+			crc.update(data, 0, data.length);
+
+			table.putInt(crc.getHash());
+			table.putInt(index.getRevision());
+		}
+
+		Container container = new Container(CompressionType.NONE, -1);
+		container.compress(table.array(), null);
+		checksumTable = container.data;
+	}
+
+	/**
+	 * Load a file. Archives of a store backed by {@link MappedDiskStorage}
+	 * are returned as slices of the mapping, so they are sent without being
+	 * copied.
+	 *
+	 * @param index
+	 * @param archiveId
+	 * @return the file, or null if it doesn't exist
+	 * @throws IOException
+	 */
+	public ByteBuf load(int index, int archiveId) throws IOException
+	{
+		if (index == 255)
+		{
+			byte[] data = archiveId == 255 ? checksumTable : referenceTables.get(archiveId);
+			return data != null ? Unpooled.wrappedBuffer(data) : null;
+		}
+
+		Index idx = store.findIndex(index);
+		if (idx == null)
+		{
+			return null;
+		}
+
+		Archive archive = idx.getArchive(archiveId);
+		if (archive == null)
+		{
+			return null;
+		}
+
+		ByteBuf data;
+		if (storage instanceof MappedDiskStorage)
+		{
+			data = ((MappedDiskStorage) storage).loadArchiveSlice(archive);
+			if (data == null)
+			{
+				return null;
+			}
+		}
+		else
+		{
+			byte[] bytes = storage.loadArchive(archive);
+			if (bytes == null)
+			{
+				return null;
+			}
+			data = Unpooled.wrappedBuffer(bytes);
+		}
+
+		// the revision appended to stored archives isn't sent
+		return data.slice(data.readerIndex(), length(data));
+	}
+
+	private static int length(ByteBuf data)
+	{
+		int compression = data.getByte(data.readerIndex());
+		int compressedSize = data.getInt(data.readerIndex() + 1);
+		return 1 // compression type
+			+ 4 // compressed size
+			+ compressedSize
+			+ (compression != CompressionType.NONE ? 4 : 0);
+	}
+}
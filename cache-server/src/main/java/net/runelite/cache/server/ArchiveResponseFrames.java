@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.server;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+
+/**
+ * Builds archive responses as a composite of slices of the archive
+ * data, rather than copying it like
+ * {@link net.runelite.protocol.update.encoders.ArchiveResponseEncoder}.
+ */
+class ArchiveResponseFrames
+{
+	private static final int CHUNK_SIZE = 512;
+
+	private static final ByteBuf SEPARATOR = Unpooled.unreleasableBuffer(Unpooled.wrappedBuffer(new byte[]
+	{
+		(byte) 0xff
+	}));
+
+	/**
+	 * Frame an archive response. Takes ownership of data.
+	 *
+	 * @param alloc
+	 * @param index
+	 * @param archive
+	 * @param data archive data
+	 * @return the response
+	 */
+	static ByteBuf frame(ByteBufAllocator alloc, int index, int archive, ByteBuf data)
+	{
+		int chunks = 1 + Math.max(0, (data.readableBytes() - (CHUNK_SIZE - 3) + CHUNK_SIZE - 2) / (CHUNK_SIZE - 1));
+		CompositeByteBuf buf = alloc.compositeBuffer(1 + chunks * 2);
+
+		// archive file header
+		// 1 byte index
+		// 2 byte archive
+		ByteBuf header = alloc.buffer(3);
+		header.writeByte(index);
+		header.writeShort(archive);
+		buf.addComponent(header);
+
+		// - 3 for the header
+		int chunkSize = Math.min(data.readableBytes(), CHUNK_SIZE - 3);
+		buf.addComponent(data.readSlice(chunkSize).retain());
+
+		while (data.isReadable())
+		{
+			buf.addComponent(SEPARATOR.duplicate());
+
+			chunkSize = Math.min(data.readableBytes(), CHUNK_SIZE - 1);
+			buf.addComponent(data.readSlice(chunkSize).retain());
+		}
+
+		data.release();
+
+		buf.writerIndex(buf.capacity());
+		return buf;
+	}
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.server;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicLong;
+import net.runelite.cache.fs.Storage;
+import net.runelite.cache.fs.Store;
+import net.runelite.cache.fs.flat.FlatStorage;
+import net.runelite.cache.fs.jagex.MappedDiskStorage;
+import net.runelite.protocol.handshake.HandshakeDecoder;
+import net.runelite.protocol.handshake.HandshakeResponseEncoder;
+import net.runelite.protocol.update.encoders.ArchiveResponseEncoder;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Update protocol server serving the archives of a store
+ */
+public class CacheServer implements AutoCloseable
+{
+	private static final Logger logger = LoggerFactory.getLogger(CacheServer.class);
+
+	private static final int PORT = 43594;
+
+	static final String DECODER = "decoder";
+	static final String HANDSHAKE_ENCODER = "handshakeEncoder";
+
+	private final int revision;
+	private final ArchiveProvider archiveProvider;
+
+	private final EventLoopGroup bossGroup = new NioEventLoopGroup(1);
+	private final EventLoopGroup workerGroup = new NioEventLoopGroup();
+	private Channel channel;
+
+	private final AtomicLong responses = new AtomicLong();
+	private final AtomicLong bytes = new AtomicLong();
+
+	public CacheServer(Store store, int revision) throws IOException
+	{
+		this.revision = revision;
+		this.archiveProvider = new ArchiveProvider(store);
+	}
+
+	/**
+	 * Start listening
+	 *
+	 * @param address address to bind to
+	 * @return the address bound to
+	 */
+	public InetSocketAddress bind(InetSocketAddress address)
+	{
+		ServerBootstrap b = new ServerBootstrap();
+		b.group(bossGroup, workerGroup)
+			.channel(NioServerSocketChannel.class)
+			.childOption(ChannelOption.TCP_NODELAY, true)
+			.childHandler(new ChannelInitializer<SocketChannel>()
+			{
+				@Override
+				protected void initChannel(SocketChannel ch) throws Exception
+				{
+					ChannelPipeline p = ch.pipeline();
+					p.addLast(DECODER, new HandshakeDecoder());
+					p.addLast(HANDSHAKE_ENCODER, new HandshakeResponseEncoder());
+					p.addLast("archiveEncoder", new ArchiveResponseEncoder());
+					p.addLast("handler", new CacheServerHandler(CacheServer.this));
+				}
+			});
+
+		channel = b.bind(address).syncUninterruptibly().channel();
+
+		InetSocketAddress bound = (InetSocketAddress) channel.localAddress();
+		logger.info("Listening on {}", bound);
+		return bound;
+	}
+
+	@Override
+	public void close()
+	{
+		if (channel != null)
+		{
+			channel.close().syncUninterruptibly();
+		}
+		bossGroup.shutdownGracefully();
+		workerGroup.shutdownGracefully();
+	}
+
+	public int getRevision()
+	{
+		return revision;
+	}
+
+	ArchiveProvider getArchiveProvider()
+	{
+		return archiveProvider;
+	}
+
+	void onResponse(int size)
+	{
+		responses.incrementAndGet();
+		bytes.addAndGet(size);
+	}
+
+	/**
+	 * @return number of files sent
+	 */
+	public long getResponses()
+	{
+		return responses.get();
+	}
+
+	/**
+	 * @return number of bytes of file data sent
+	 */
+	public long getBytes()
+	{
+		return bytes.get();
+	}
+
+	public static void main(String[] args) throws IOException
+	{
+		Options options = new Options();
+
+		options.addOption("c", "cache", true, "cache base");
+		options.addOption(null, "flat", false, "cache is in the flat format");
+		options.addOption("r", "revision", true, "client revision to accept");
+		options.addOption("p", "port", true, "port to listen on");
+
+		CommandLineParser parser = new DefaultParser();
+		CommandLine cmd;
+		try
+		{
+			cmd = parser.parse(options, args);
+		}
+		catch (ParseException ex)
+		{
+			System.err.println("Error parsing command line options: " + ex.getMessage());
+			System.exit(-1);
+			return;
+		}
+
+		String cache = cmd.getOptionValue("cache");
+		String revision = cmd.getOptionValue("revision");
+
+		if (cache == null || revision == null)
+		{
+			System.err.println("Cache and revision must be specified");
+			System.exit(-1);
+			return;
+		}
+
+		int port = Integer.parseInt(cmd.getOptionValue("port", Integer.toString(PORT)));
+
+		File base = new File(cache);
+		Storage storage = cmd.hasOption("flat") ? new FlatStorage(base) : new MappedDiskStorage(base);
+
+		Store store = new Store(storage);
+		store.load();
+
+		CacheServer server = new CacheServer(store, Integer.parseInt(revision));
+		server.bind(new InetSocketAddress(port));
+
+		Runtime.getRuntime().addShutdownHook(new Thread(() ->
+		{
+			server.close();
+			try
+			{
+				store.close();
+			}
+			catch (IOException ex)
+			{
+				logger.warn("error closing store", ex);
+			}
+		}));
+	}
+}
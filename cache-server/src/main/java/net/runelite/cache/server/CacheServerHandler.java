@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.server;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.SimpleChannelInboundHandler;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import net.runelite.protocol.api.handshake.HandshakeResponsePacket;
+import net.runelite.protocol.api.handshake.LoginHandshakePacket;
+import net.runelite.protocol.api.handshake.UpdateHandshakePacket;
+import net.runelite.protocol.api.login.HandshakeResponseType;
+import net.runelite.protocol.api.update.ArchiveRequestPacket;
+import net.runelite.protocol.api.update.EncryptionPacket;
+import net.runelite.protocol.update.decoders.ArchiveRequestDecoder;
+import net.runelite.protocol.update.decoders.EncryptionDecoder;
+import net.runelite.protocol.update.decoders.LoggedInDecoder;
+import net.runelite.protocol.update.decoders.LoggedOutDecoder;
+import net.runelite.protocol.update.encoders.XorEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Handles a single client connection. Requests are queued and written
+ * while the channel is writable, with urgent requests ahead of prefetch
+ * requests.
+ */
+class CacheServerHandler extends SimpleChannelInboundHandler<Object>
+{
+	private static final Logger logger = LoggerFactory.getLogger(CacheServerHandler.class);
+
+	private final CacheServer server;
+
+	private final Queue<ArchiveRequestPacket> urgent = new ArrayDeque<>();
+	private final Queue<ArchiveRequestPacket> prefetch = new ArrayDeque<>();
+
+	CacheServerHandler(CacheServer server)
+	{
+		this.server = server;
+	}
+
+	@Override
+	protected void channelRead0(ChannelHandlerContext ctx, Object msg) throws Exception
+	{
+		if (msg instanceof UpdateHandshakePacket)
+		{
+			handshake(ctx, (UpdateHandshakePacket) msg);
+		}
+		else if (msg instanceof LoginHandshakePacket)
+		{
+			logger.debug("Login handshake from {}", ctx.channel().remoteAddress());
+			ctx.close();
+		}
+		else if (msg instanceof EncryptionPacket)
+		{
+			byte key = ((EncryptionPacket) msg).getKey();
+			if (key != 0)
+			{
+				XorEncoder xorEncoder = new XorEncoder();
+				xorEncoder.setKey(key);
+				ctx.pipeline().addBefore(CacheServer.HANDSHAKE_ENCODER, "xorEncoder", xorEncoder);
+			}
+		}
+		else if (msg instanceof ArchiveRequestPacket)
+		{
+			ArchiveRequestPacket request = (ArchiveRequestPacket) msg;
+			(request.isPriority() ? urgent : prefetch).add(request);
+			drain(ctx);
+		}
+	}
+
+	@Override
+	public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception
+	{
+		if (ctx.channel().isWritable())
+		{
+			drain(ctx);
+		}
+		super.channelWritabilityChanged(ctx);
+	}
+
+	@Override
+	public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause)
+	{
+		logger.warn("Closing connection from {}", ctx.channel().remoteAddress(), cause);
+		ctx.close();
+	}
+
+	private void handshake(ChannelHandlerContext ctx, UpdateHandshakePacket handshake)
+	{
+		HandshakeResponsePacket response = new HandshakeResponsePacket();
+
+		if (handshake.getRevision() != server.getRevision())
+		{
+			logger.debug("Client revision {} does not match {}", handshake.getRevision(), server.getRevision());
+			response.setResponse(HandshakeResponseType.RESPONSE_OUTDATED);
+			ctx.writeAndFlush(response);
+			ctx.close();
+			return;
+		}
+
+		response.setResponse(HandshakeResponseType.RESPONSE_OK);
+		ctx.writeAndFlush(response);
+
+		// each decoder passes on what it doesn't recognize to the next
+		ChannelPipeline p = ctx.pipeline();
+		p.replace(CacheServer.DECODER, CacheServer.DECODER, new ArchiveRequestDecoder());
+		p.addAfter(CacheServer.DECODER, "encryptionDecoder", new EncryptionDecoder());
+		p.addAfter("encryptionDecoder", "loggedInDecoder", new LoggedInDecoder());
+		p.addAfter("loggedInDecoder", "loggedOutDecoder", new LoggedOutDecoder());
+	}
+
+	private void drain(ChannelHandlerContext ctx) throws IOException
+	{
+		boolean written = false;
+
+		while (ctx.channel().isWritable())
+		{
+			ArchiveRequestPacket request = urgent.poll();
+			if (request == null)
+			{
+				request = prefetch.poll();
+				if (request == null)
+				{
+					break;
+				}
+			}
+
+			ByteBuf data = server.getArchiveProvider().load(request.getIndex(), request.getArchive());
+			if (data == null)
+			{
+				logger.debug("Request for missing file {}/{} from {}", request.getIndex(), request.getArchive(),
+					ctx.channel().remoteAddress());
+				ctx.close();
+				return;
+			}
+
+			server.onResponse(data.readableBytes());
+
+			ctx.write(ArchiveResponseFrames.frame(ctx.alloc(), request.getIndex(), request.getArchive(), data));
+
+			written = true;
+		}
+
+		if (written)
+		{
+			ctx.flush();
+		}
+	}
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.server;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import net.runelite.cache.StoreLocation;
+import net.runelite.cache.client.CacheClient;
+import net.runelite.cache.client.DownloadStats;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.Container;
+import net.runelite.cache.fs.Index;
+import net.runelite.cache.fs.Store;
+import net.runelite.cache.fs.jagex.CompressionType;
+import net.runelite.cache.fs.jagex.MappedDiskStorage;
+import net.runelite.cache.index.FileData;
+import net.runelite.protocol.api.login.HandshakeResponseType;
+import net.runelite.protocol.api.update.ArchiveResponsePacket;
+import net.runelite.protocol.update.decoders.ArchiveResponseDecoder;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class CacheServerTest
+{
+	private static final Logger logger = LoggerFactory.getLogger(CacheServerTest.class);
+
+	private static final int REVISION = 177;
+
+	@Rule
+	public TemporaryFolder folder = StoreLocation.getTemporaryFolder();
+
+	@Test
+	public void testFrame() throws Exception
+	{
+		Random random = new Random(42L);
+
+		for (int size : new int[]{5, 509, 510, 1020, 1021, 100_000})
+		{
+			byte[] data = new byte[size];
+			random.nextBytes(data);
+			// compression none and compressed size, which the decoder uses to find the length
+			data[0] = CompressionType.NONE;
+			Unpooled.wrappedBuffer(data).setInt(1, size - 5);
+
+			assertFrame(data, Unpooled.wrappedBuffer(data));
+
+			// archives from a mapped store are split at sector boundaries
+			CompositeByteBuf composite = Unpooled.compositeBuffer(size / 512 + 1);
+			for (int i = 0; i < size; i += 512)
+			{
+				composite.addComponent(Unpooled.wrappedBuffer(data, i, Math.min(512, size - i)));
+			}
+			composite.writerIndex(composite.capacity());
+			assertFrame(data, composite);
+		}
+	}
+
+	@Test
+	public void testDownload() throws Exception
+	{
+		File serverRoot = folder.newFolder(), clientRoot = folder.newFolder();
+
+		try (Store store = new Store(serverRoot))
+		{
+			Random random = new Random(42L);
+			addArchives(store, store.addIndex(0), 200, random);
+			addArchives(store, store.addIndex(1), 20, random);
+			store.save();
+		}
+
+		try (Store serverStore = new Store(new MappedDiskStorage(serverRoot));
+			Store clientStore = new Store(clientRoot))
+		{
+			serverStore.load();
+
+			try (CacheServer server = new CacheServer(serverStore, REVISION))
+			{
+				InetSocketAddress address = server.bind(new InetSocketAddress("localhost", 0));
+
+				CacheClient client = new CacheClient(clientStore, "localhost", address.getPort(), REVISION);
+				client.setConnections(2);
+				client.connect();
+
+				assertEquals(HandshakeResponseType.RESPONSE_OK, client.handshake().join());
+
+				client.download();
+
+				DownloadStats stats = client.getStats();
+				client.close();
+
+				logger.info("Client: {}", stats);
+				logger.info("Server: {} files, {} bytes", server.getResponses(), server.getBytes());
+
+				// the reference tables of indexes 0 and 1 and their archives
+				assertEquals(2 + 220, stats.getCompleted());
+			}
+
+			clientStore.save();
+
+			for (Index index : serverStore.getIndexes())
+			{
+				Index index2 = clientStore.findIndex(index.getId());
+				assertEquals(index.getCrc(), index2.getCrc());
+
+				for (Archive archive : index.getArchives())
+				{
+					Archive archive2 = index2.getArchive(archive.getArchiveId());
+					assertEquals(archive.getCrc(), archive2.getCrc());
+					assertArrayEquals(serverStore.getStorage().loadArchive(archive),
+						clientStore.getStorage().loadArchive(archive2));
+				}
+			}
+		}
+	}
+
+	private static void assertFrame(byte[] data, ByteBuf buf) throws Exception
+	{
+		ByteBuf frame = ArchiveResponseFrames.frame(UnpooledByteBufAllocator.DEFAULT, 2, 1234, buf);
+
+		List<Object> out = new ArrayList<>();
+		new ArchiveResponseDecoder().decode(null, frame, out);
+		frame.release();
+
+		assertEquals(1, out.size());
+		ArchiveResponsePacket response = (ArchiveResponsePacket) out.get(0);
+		assertEquals(2, response.getIndex());
+		assertEquals(1234, response.getArchive());
+		assertArrayEquals(data, response.getData());
+	}
+
+	private static void addArchives(Store store, Index index, int count, Random random) throws IOException
+	{
+		for (int i = 0; i < count; ++i)
+		{
+			Archive archive = index.addArchive(i);
+			archive.setNameHash(random.nextInt());
+
+			FileData file = new FileData();
+			file.setId(0);
+			archive.setFileData(new FileData[]{file});
+
+			// mix of archives which fit in a sector and larger ones spanning many sectors
+			byte[] contents = new byte[1 + random.nextInt(i % 10 == 0 ? 65536 : 400)];
+			random.nextBytes(contents);
+
+			Container container = new Container(CompressionType.NONE, -1);
+			container.compress(contents, null);
+			store.getStorage().saveArchive(archive, container.data);
+		}
+	}
+}
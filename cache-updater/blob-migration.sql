@@ -0,0 +1,21 @@
+--
+-- Adds blob reference counting to an existing cache database.
+-- Run once, while the cache updater is not running.
+--
+
+CREATE TABLE IF NOT EXISTS `blob` (
+  `hash` binary(32) NOT NULL,
+  `refs` int(11) NOT NULL,
+  PRIMARY KEY (`hash`)
+) ENGINE=InnoDB DEFAULT CHARSET=latin1;
+
+-- count the references of the archives created before the table existed
+INSERT INTO `blob` (`hash`, `refs`)
+  SELECT `hash`, COUNT(*) FROM `archive` GROUP BY `hash`
+  ON DUPLICATE KEY UPDATE `refs` = VALUES(`refs`);
+
+DROP TRIGGER IF EXISTS `archive_blob_unref`;
+DELIMITER ;;
+CREATE TRIGGER `archive_blob_unref` AFTER DELETE ON `archive` FOR EACH ROW
+  UPDATE `blob` SET `refs` = `refs` - 1 WHERE `hash` = OLD.`hash` ;;
+DELIMITER ;
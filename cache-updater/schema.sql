@@ -34,6 +34,29 @@ CREATE TABLE `archive` (
 ) ENGINE=InnoDB DEFAULT CHARSET=latin1;
 /*!40101 SET character_set_client = @saved_cs_client */;
 
+--
+-- Table structure for table `blob`
+--
+
+DROP TABLE IF EXISTS `blob`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `blob` (
+  `hash` binary(32) NOT NULL,
+  `refs` int(11) NOT NULL,
+  PRIMARY KEY (`hash`)
+) ENGINE=InnoDB DEFAULT CHARSET=latin1;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
+--
+-- Trigger releasing the blob reference of deleted archives
+--
+
+DELIMITER ;;
+CREATE TRIGGER `archive_blob_unref` AFTER DELETE ON `archive` FOR EACH ROW
+  UPDATE `blob` SET `refs` = `refs` - 1 WHERE `hash` = OLD.`hash` ;;
+DELIMITER ;
+
 --
 -- Table structure for table `cache`
 --
@@ -28,6 +28,7 @@ import java.time.Instant;
 import java.util.List;
 import net.runelite.cache.updater.beans.ArchiveEntry;
 import net.runelite.cache.updater.beans.CacheEntry;
+import net.runelite.cache.updater.beans.FileEntry;
 import net.runelite.cache.updater.beans.IndexEntry;
 import org.sql2o.Connection;
 import org.sql2o.Query;
@@ -36,9 +37,7 @@ import org.sql2o.ResultSetIterable;
 class CacheDAO
 {
 	// cache prepared statements for high volume queries
-	private Query associateArchive;
-	private Query findArchive, insertArchive;
-	private Query associateFile;
+	private Query findArchive;
 
 	public CacheEntry findMostRecent(Connection con)
 	{
@@ -96,16 +95,34 @@ class CacheDAO
 		return entry;
 	}
 
-	public void associateArchiveToIndex(Connection con, ArchiveEntry archive, IndexEntry index)
+	/**
+	 * Associate all archives of an index of a previous cache to an index
+	 * of a new cache
+	 */
+	public void copyIndexArchives(Connection con, IndexEntry from, IndexEntry to)
 	{
-		if (associateArchive == null)
+		con.createQuery("insert into index_archive (`index`, archive) select :to, archive from index_archive where `index` = :from")
+			.addParameter("to", to.getId())
+			.addParameter("from", from.getId())
+			.executeUpdate();
+	}
+
+	public void associateArchivesToIndex(Connection con, List<ArchiveEntry> archives, IndexEntry index)
+	{
+		if (archives.isEmpty())
 		{
-			associateArchive = con.createQuery("insert into index_archive (`index`, archive) values (:index, :archive)");
+			return;
 		}
-		associateArchive
-			.addParameter("index", index.getId())
-			.addParameter("archive", archive.getId())
-			.executeUpdate();
+
+		Query query = con.createQuery("insert into index_archive (`index`, archive) values (:index, :archive)");
+		for (ArchiveEntry archive : archives)
+		{
+			query
+				.addParameter("index", index.getId())
+				.addParameter("archive", archive.getId())
+				.addToBatch();
+		}
+		query.executeBatch();
 	}
 
 	public ArchiveEntry findArchive(Connection con, IndexEntry index,
@@ -134,44 +151,82 @@ class CacheDAO
 		return entry;
 	}
 
-	public ArchiveEntry createArchive(Connection con, IndexEntry index,
-		int archiveId, int nameHash, int crc, int revision, byte[] hash)
+	/**
+	 * Insert archives, setting the id of each entry to its generated key
+	 */
+	public void createArchives(Connection con, List<ArchiveEntry> archives)
 	{
-		if (insertArchive == null)
+		if (archives.isEmpty())
 		{
-			insertArchive = con.createQuery("insert into archive (archiveId, nameHash, crc, revision, hash) values "
-				+ "(:archiveId, :nameHash, :crc, :revision, :hash)");
+			return;
 		}
 
-		int id = insertArchive
-			.addParameter("archiveId", archiveId)
-			.addParameter("nameHash", nameHash)
-			.addParameter("crc", crc)
-			.addParameter("revision", revision)
-			.addParameter("hash", hash)
-			.executeUpdate()
-			.getKey(int.class);
+		Query query = con.createQuery("insert into archive (archiveId, nameHash, crc, revision, hash) values "
+			+ "(:archiveId, :nameHash, :crc, :revision, :hash)", true);
+		for (ArchiveEntry archive : archives)
+		{
+			query
+				.addParameter("archiveId", archive.getArchiveId())
+				.addParameter("nameHash", archive.getNameHash())
+				.addParameter("crc", archive.getCrc())
+				.addParameter("revision", archive.getRevision())
+				.addParameter("hash", archive.getHash())
+				.addToBatch();
+		}
 
-		ArchiveEntry entry = new ArchiveEntry();
-		entry.setId(id);
-		entry.setArchiveId(archiveId);
-		entry.setNameHash(nameHash);
-		entry.setCrc(crc);
-		entry.setRevision(revision);
-		entry.setHash(hash);
-		return entry;
+		List<Integer> keys = query.executeBatch()
+			.getKeys(Integer.class);
+		if (keys.size() != archives.size())
+		{
+			throw new IllegalStateException("expected " + archives.size() + " generated keys, got " + keys.size());
+		}
+
+		for (int i = 0; i < archives.size(); ++i)
+		{
+			archives.get(i).setId(keys.get(i));
+		}
 	}
 
-	public void associateFileToArchive(Connection con, ArchiveEntry archive, int fileId, int nameHash)
+	/**
+	 * Count a reference to the blob of each archive. Each archive row
+	 * holds one reference, which the archive_blob_unref trigger releases
+	 * when the row is deleted. Databases created before the blob table
+	 * must be migrated with blob-migration.sql for the counts to be complete.
+	 */
+	public void addBlobReferences(Connection con, List<ArchiveEntry> archives)
 	{
-		if (associateFile == null)
+		if (archives.isEmpty())
 		{
-			associateFile = con.createQuery("insert into file (archive, fileId, nameHash) values (:archive, :fileId, :nameHash)");
+			return;
 		}
-		associateFile
-			.addParameter("archive", archive.getId())
-			.addParameter("fileId", fileId)
-			.addParameter("nameHash", nameHash)
-			.executeUpdate();
+
+		Query query = con.createQuery("insert into `blob` (hash, refs) values (:hash, 1) "
+			+ "on duplicate key update refs = refs + 1");
+		for (ArchiveEntry archive : archives)
+		{
+			query
+				.addParameter("hash", archive.getHash())
+				.addToBatch();
+		}
+		query.executeBatch();
+	}
+
+	public void associateFilesToArchives(Connection con, List<FileEntry> files)
+	{
+		if (files.isEmpty())
+		{
+			return;
+		}
+
+		Query query = con.createQuery("insert into file (archive, fileId, nameHash) values (:archive, :fileId, :nameHash)");
+		for (FileEntry file : files)
+		{
+			query
+				.addParameter("archive", file.getArchiveId())
+				.addParameter("fileId", file.getFileId())
+				.addParameter("nameHash", file.getNameHash())
+				.addToBatch();
+		}
+		query.executeBatch();
 	}
 }
@@ -25,7 +25,11 @@
 package net.runelite.cache.updater;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import net.runelite.cache.fs.Archive;
 import net.runelite.cache.fs.Index;
 import net.runelite.cache.fs.Storage;
@@ -33,16 +37,26 @@ import net.runelite.cache.fs.Store;
 import net.runelite.cache.index.FileData;
 import net.runelite.cache.updater.beans.ArchiveEntry;
 import net.runelite.cache.updater.beans.CacheEntry;
+import net.runelite.cache.updater.beans.FileEntry;
 import net.runelite.cache.updater.beans.IndexEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.sql2o.Connection;
 import org.sql2o.ResultSetIterable;
 
 public class CacheStorage implements Storage
 {
+	private static final Logger logger = LoggerFactory.getLogger(CacheStorage.class);
+
 	private CacheEntry cacheEntry;
 	private final CacheDAO cacheDao;
 	private final Connection con;
 
+	// entries of the cache the store was loaded from, used to
+	// only write what has changed since then on save
+	private final Map<Integer, IndexEntry> loadedIndexes = new HashMap<>();
+	private final Map<Archive, ArchiveEntry> loadedArchives = new IdentityHashMap<>();
+
 	public CacheStorage(CacheEntry cacheEntry, CacheDAO cacheDao, Connection con)
 	{
 		this.cacheEntry = cacheEntry;
@@ -79,6 +93,7 @@ public class CacheStorage implements Storage
 			Index index = store.addIndex(indexEntry.getIndexId());
 			index.setCrc(indexEntry.getCrc());
 			index.setRevision(indexEntry.getRevision());
+			loadedIndexes.put(indexEntry.getIndexId(), indexEntry);
 
 			try (ResultSetIterable<ArchiveEntry> archives = cacheDao.findArchivesForIndex(con, indexEntry))
 			{
@@ -94,6 +109,7 @@ public class CacheStorage implements Storage
 					archive.setCrc(archiveEntry.getCrc());
 					archive.setRevision(archiveEntry.getRevision());
 					archive.setHash(archiveEntry.getHash());
+					loadedArchives.put(archive, archiveEntry);
 
 					// File data is not necessary for cache updating
 				}
@@ -108,27 +124,76 @@ public class CacheStorage implements Storage
 		{
 			IndexEntry entry = cacheDao.createIndex(con, cacheEntry, index.getId(), index.getCrc(), index.getRevision());
 
+			IndexEntry loaded = loadedIndexes.get(index.getId());
+			if (loaded != null && loaded.getCrc() == index.getCrc() && loaded.getRevision() == index.getRevision())
+			{
+				// index is unchanged, so reuse the archives of the previous cache
+				cacheDao.copyIndexArchives(con, loaded, entry);
+				logger.debug("Index {} is unchanged", index.getId());
+				continue;
+			}
+
+			List<ArchiveEntry> archives = new ArrayList<>(index.getArchives().size());
+			List<ArchiveEntry> created = new ArrayList<>();
+			List<Archive> createdArchives = new ArrayList<>();
+
 			for (Archive archive : index.getArchives())
 			{
-				ArchiveEntry archiveEntry = cacheDao.findArchive(con, entry, archive.getArchiveId(),
-					archive.getNameHash(), archive.getCrc(), archive.getRevision());
-				if (archiveEntry == null)
+				ArchiveEntry archiveEntry = loadedArchives.get(archive);
+				if (archiveEntry == null || isChanged(archiveEntry, archive))
 				{
-					byte[] hash = archive.getHash();
-					archiveEntry = cacheDao.createArchive(con, entry, archive.getArchiveId(),
-						archive.getNameHash(), archive.getCrc(), archive.getRevision(), hash);
+					// the archive may still exist from an older cache
+					archiveEntry = cacheDao.findArchive(con, entry, archive.getArchiveId(),
+						archive.getNameHash(), archive.getCrc(), archive.getRevision());
+				}
 
-					for (FileData file : archive.getFileData())
-					{
-						cacheDao.associateFileToArchive(con, archiveEntry, file.getId(), file.getNameHash());
-					}
+				if (archiveEntry == null)
+				{
+					archiveEntry = new ArchiveEntry();
+					archiveEntry.setArchiveId(archive.getArchiveId());
+					archiveEntry.setNameHash(archive.getNameHash());
+					archiveEntry.setCrc(archive.getCrc());
+					archiveEntry.setRevision(archive.getRevision());
+					archiveEntry.setHash(archive.getHash());
+
+					created.add(archiveEntry);
+					createdArchives.add(archive);
 				}
 
-				cacheDao.associateArchiveToIndex(con, archiveEntry, entry);
+				archives.add(archiveEntry);
 			}
+
+			cacheDao.createArchives(con, created);
+			cacheDao.addBlobReferences(con, created);
+
+			List<FileEntry> files = new ArrayList<>();
+			for (int i = 0; i < created.size(); ++i)
+			{
+				ArchiveEntry archiveEntry = created.get(i);
+				for (FileData file : createdArchives.get(i).getFileData())
+				{
+					FileEntry fileEntry = new FileEntry();
+					fileEntry.setArchiveId(archiveEntry.getId());
+					fileEntry.setFileId(file.getId());
+					fileEntry.setNameHash(file.getNameHash());
+					files.add(fileEntry);
+				}
+			}
+
+			cacheDao.associateFilesToArchives(con, files);
+			cacheDao.associateArchivesToIndex(con, archives, entry);
+
+			logger.info("Index {}: {} archives, {} new, {} files", index.getId(), archives.size(), created.size(), files.size());
 		}
 	}
 
+	private static boolean isChanged(ArchiveEntry entry, Archive archive)
+	{
+		return entry.getNameHash() != archive.getNameHash()
+			|| entry.getCrc() != archive.getCrc()
+			|| entry.getRevision() != archive.getRevision();
+	}
+
 	@Override
 	public byte[] loadArchive(Archive archive) throws IOException
 	{
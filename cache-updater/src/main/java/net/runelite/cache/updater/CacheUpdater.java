@@ -29,11 +29,22 @@ import io.minio.errors.InvalidEndpointException;
 import io.minio.errors.InvalidPortException;
 import java.io.IOException;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import net.runelite.cache.client.CacheClient;
+import net.runelite.cache.client.DownloadWatcher;
 import net.runelite.cache.client.IndexInfo;
 import net.runelite.cache.fs.Archive;
 import net.runelite.cache.fs.Store;
@@ -63,6 +74,23 @@ public class CacheUpdater implements CommandLineRunner
 	@Value("${minio.bucket}")
 	private String minioBucket;
 
+	/**
+	 * Only download indexes which have changed since the most recent cache
+	 */
+	@Value("${cache.delta:true}")
+	private boolean delta;
+
+	@Value("${minio.upload.threads:8}")
+	private int uploadThreads;
+
+	/**
+	 * Maximum number of archives waiting to be uploaded. No more archives are
+	 * requested while this many are waiting, which bounds the memory held by
+	 * pending data.
+	 */
+	@Value("${minio.upload.queue:1024}")
+	private int uploadQueue;
+
 	@Autowired
 	public CacheUpdater(
 		@Qualifier("Runelite Cache SQL2O") Sql2o sql2o,
@@ -92,44 +120,106 @@ public class CacheUpdater implements CommandLineRunner
 			Store store = new Store(storage);
 			store.load();
 
-			ExecutorService executor = Executors.newSingleThreadExecutor();
+			// uploads are handed off from the network threads without blocking them.
+			// Instead the download waits before requesting an archive while
+			// uploadQueue archives are waiting to be uploaded, which bounds the
+			// memory held by pending data.
+			ExecutorService executor = Executors.newFixedThreadPool(uploadThreads);
+			Semaphore pending = new Semaphore(uploadThreads + uploadQueue);
+			List<Future<?>> uploads = Collections.synchronizedList(new ArrayList<>());
+			Set<String> uploaded = ConcurrentHashMap.newKeySet();
 
-			CacheClient client = new CacheClient(store, rsVersion,
-				(Archive archive, byte[] data) -> executor.submit(new CacheUploader(minioClient, minioBucket, archive, data)));
+			try
+			{
+				CacheClient client = new CacheClient(store, rsVersion, new DownloadWatcher()
+				{
+					@Override
+					public void beforeDownload(Archive archive)
+					{
+						pending.acquireUninterruptibly();
+					}
 
-			client.connect();
-			HandshakeResponseType result = client.handshake().join();
+					@Override
+					public void downloadFailed(Archive archive, Throwable cause)
+					{
+						pending.release();
+					}
 
-			if (result != HandshakeResponseType.RESPONSE_OK)
-			{
-				logger.warn("Out of date!");
-				return;
-			}
+					@Override
+					public void downloadComplete(Archive archive, byte[] data)
+					{
+						CacheUploader uploader = new CacheUploader(minioClient, minioBucket, uploaded, archive, data);
+						try
+						{
+							uploads.add(executor.submit(() ->
+							{
+								try
+								{
+									uploader.run();
+								}
+								finally
+								{
+									pending.release();
+								}
+							}));
+						}
+						catch (RejectedExecutionException ex)
+						{
+							pending.release();
+							throw ex;
+						}
+					}
+				});
+
+				client.connect();
+				HandshakeResponseType result = client.handshake().join();
 
-			List<IndexInfo> indexes = client.requestIndexes();
-			List<IndexEntry> entries = cacheDao.findIndexesForCache(con, cache);
+				if (result != HandshakeResponseType.RESPONSE_OK)
+				{
+					logger.warn("Out of date!");
+					return;
+				}
 
-			if (!checkOutOfDate(indexes, entries))
+				List<IndexInfo> indexes = client.requestIndexes();
+				List<IndexEntry> entries = cacheDao.findIndexesForCache(con, cache);
+
+				if (!checkOutOfDate(indexes, entries))
+				{
+					logger.info("All up to date.");
+					return;
+				}
+
+				client.download(delta ? changedIndexes(indexes, entries) : indexes);
+			}
+			finally
 			{
-				logger.info("All up to date.");
-				return;
+				// ensure objects are added to the store before they become
+				// visible in the database. This also sets the hashes of the
+				// downloaded archives, which are saved with them.
+				executor.shutdown();
+				while (!executor.awaitTermination(1, TimeUnit.SECONDS))
+				{
+					logger.debug("Waiting for termination of executor...");
+				}
 			}
 
-			client.download();
+			for (Future<?> upload : uploads)
+			{
+				try
+				{
+					upload.get();
+				}
+				catch (ExecutionException ex)
+				{
+					throw new IOException("unable to upload archive", ex.getCause());
+				}
+			}
 
 			CacheEntry newCache = created ? cache : cacheDao.createCache(con, rsVersion, Instant.now());
 
 			storage.setCacheEntry(newCache);
 			store.save();
 
-			// ensure objects are added to the store before they become
-			// visible in the database
-			executor.shutdown();
-			while (!executor.awaitTermination(1, TimeUnit.SECONDS))
-			{
-				logger.debug("Waiting for termination of executor...");
-			}
-
 			// commit database
 			con.commit();
 		}
@@ -158,6 +248,28 @@ public class CacheUpdater implements CommandLineRunner
 		return false;
 	}
 
+	private List<IndexInfo> changedIndexes(List<IndexInfo> indexes, List<IndexEntry> dbIndexes)
+	{
+		Map<Integer, IndexEntry> byId = new HashMap<>();
+		for (IndexEntry ie : dbIndexes)
+		{
+			byId.put(ie.getIndexId(), ie);
+		}
+
+		List<IndexInfo> changed = new ArrayList<>();
+		for (IndexInfo ii : indexes)
+		{
+			IndexEntry ie = byId.get(ii.getId());
+			if (ie == null || ii.getRevision() != ie.getRevision() || ii.getCrc() != ie.getCrc())
+			{
+				changed.add(ii);
+			}
+		}
+
+		logger.info("{} of {} indexes have changed", changed.size(), indexes.size());
+		return changed;
+	}
+
 	@Override
 	public void run(String... args) throws Exception
 	{
@@ -35,27 +35,34 @@ import io.minio.errors.InvalidBucketNameException;
 import io.minio.errors.NoResponseException;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
+import java.util.Set;
 import net.runelite.cache.fs.Archive;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import net.runelite.cache.fs.Container;
 import org.xmlpull.v1.XmlPullParserException;
 
+/**
+ * Uploads archive data to the blob store. Blobs are keyed by the sha256
+ * of the compressed data without its revision trailer, so archives which
+ * only differ in revision share a blob.
+ */
 public class CacheUploader implements Runnable
 {
-	private static final Logger logger = LoggerFactory.getLogger(CacheUploader.class);
-
 	private final MinioClient minioClient;
 	private final String minioBucket;
+	private final Set<String> uploaded;
 	private final Archive archive;
 	private final byte[] data;
 
-	public CacheUploader(MinioClient minioClient, String minioBucket, Archive archive, byte[] data)
+	/**
+	 * @param uploaded paths known to exist in the bucket, shared by all uploaders
+	 */
+	public CacheUploader(MinioClient minioClient, String minioBucket, Set<String> uploaded, Archive archive, byte[] data)
 	{
 		this.minioClient = minioClient;
 		this.minioBucket = minioBucket;
+		this.uploaded = uploaded;
 		this.archive = archive;
 		this.data = data;
 	}
@@ -63,7 +70,8 @@ public class CacheUploader implements Runnable
 	@Override
 	public void run()
 	{
-		byte[] hash = Hashing.sha256().hashBytes(data).asBytes();
+		int length = Container.payloadLength(data);
+		byte[] hash = Hashing.sha256().hashBytes(data, 0, length).asBytes();
 		String hashStr = BaseEncoding.base16().encode(hash);
 
 		archive.setHash(hash);
@@ -74,10 +82,16 @@ public class CacheUploader implements Runnable
 			.append(hashStr.substring(2))
 			.toString();
 
+		if (!uploaded.add(path))
+		{
+			return; // uploaded or being uploaded by another archive
+		}
+
 		try
 		{
-			try (InputStream in = minioClient.getObject(minioBucket, path))
+			try
 			{
+				minioClient.statObject(minioBucket, path);
 				return; // already exists
 			}
 			catch (ErrorResponseException ex)
@@ -85,11 +99,13 @@ public class CacheUploader implements Runnable
 				// doesn't exist
 			}
 
-			minioClient.putObject(minioBucket, path, new ByteArrayInputStream(data), data.length, "binary/octet-stream");
+			minioClient.putObject(minioBucket, path, new ByteArrayInputStream(data, 0, length), length, "binary/octet-stream");
 		}
 		catch (ErrorResponseException | InsufficientDataException | InternalException | InvalidArgumentException | InvalidBucketNameException | NoResponseException | IOException | InvalidKeyException | NoSuchAlgorithmException | XmlPullParserException ex)
 		{
-			logger.warn("unable to upload data to store", ex);
+			uploaded.remove(path);
+			// the archive must not be saved with the hash of a missing blob
+			throw new RuntimeException("unable to upload " + path + " to store", ex);
 		}
 	}
 
@@ -24,10 +24,14 @@
  */
 package net.runelite.cache;
 
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.image.BufferedImage;
+import java.io.File;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
@@ -64,6 +68,10 @@ public class MapImageDumper
 	private static final int MAPICON_MAX_WIDTH = 5; // scale minimap icons down to this size so they fit..
 	private static final int MAPICON_MAX_HEIGHT = 6;
 	private static final int BLEND = 5; // number of surrounding tiles for ground blending
+	private static final int TERRAIN_VERSION = 1; // bump when terrain rendering changes, to invalidate cached tiles
+
+	private static final int TILE_WIDTH = Region.X * MAP_SCALE;
+	private static final int TILE_HEIGHT = Region.Y * MAP_SCALE;
 
 	private static int[] colorPalette = new ColorPalette(0.9d, 0, 512).getColorPalette();
 
@@ -93,6 +101,18 @@ public class MapImageDumper
 	@Setter
 	private boolean outlineRegions;
 
+	/**
+	 * Directory to cache rendered terrain in. If set, only terrain of
+	 * regions whose map archives (or those of their neighbors) have changed
+	 * since the last render is redrawn.
+	 */
+	@Getter
+	@Setter
+	private File tileCacheDirectory;
+
+	private MapTileCache tileCache;
+	private int terrainConfigHash;
+
 	public MapImageDumper(Store store)
 	{
 		this.store = store;
@@ -115,6 +135,15 @@ public class MapImageDumper
 		areas.load();
 		sprites.load();
 		loadSprites();
+
+		Index configs = store.getIndex(IndexType.CONFIGS);
+		Index textures = store.getIndex(IndexType.TEXTURES);
+		terrainConfigHash = Hashing.crc32().newHasher()
+			.putInt(TERRAIN_VERSION)
+			.putInt(configs.getArchive(ConfigType.UNDERLAY.getId()).getCrc())
+			.putInt(configs.getArchive(ConfigType.OVERLAY.getId()).getCrc())
+			.putInt(textures.getArchive(0).getCrc())
+			.hash().asInt();
 	}
 
 	public BufferedImage drawMap(int z)
@@ -137,10 +166,18 @@ public class MapImageDumper
 
 		BufferedImage image = new BufferedImage(pixelsX, pixelsY, BufferedImage.TYPE_INT_RGB);
 
+		tileCache = tileCacheDirectory != null ? new MapTileCache(tileCacheDirectory) : null;
+
 		drawMap(image, z);
 		drawObjects(image, z);
 		drawMapIcons(image, z);
 
+		if (tileCache != null)
+		{
+			logger.info("Reused {} cached terrain tiles, rendered {}", tileCache.getHits(), tileCache.getMisses());
+			tileCache = null;
+		}
+
 		return image;
 	}
 
@@ -160,16 +197,104 @@ public class MapImageDumper
 
 	private void drawMap(BufferedImage image, int drawBaseX, int drawBaseY, int z, Region region)
 	{
-		int[][] map = new int[Region.X * MAP_SCALE][Region.Y * MAP_SCALE];
+		int[] raster = renderTerrain(region, z);
+		image.setRGB(drawBaseX * MAP_SCALE, drawBaseY * MAP_SCALE, TILE_WIDTH, TILE_HEIGHT, raster, 0, TILE_WIDTH);
+	}
+
+	private void drawMap(BufferedImage image, int z)
+	{
+		int lowestX = regionLoader.getLowestX().getBaseX();
+		int highestY = regionLoader.getHighestY().getBaseY();
+
+		// the terrain of each region only depends on the region and its neighbors, and is drawn
+		// only within the region, so regions can be rendered independently of each other
+		regionLoader.getRegions().parallelStream().forEach(region ->
+		{
+			int baseX = region.getBaseX();
+			int baseY = region.getBaseY();
+
+			// to pixel X
+			int drawBaseX = baseX - lowestX;
+
+			// to pixel Y. top most y is 0, but the top most
+			// region has the greatest y, so invert
+			int drawBaseY = highestY - baseY;
+
+			int[] raster = loadTerrain(region, z);
+
+			synchronized (image)
+			{
+				image.setRGB(drawBaseX * MAP_SCALE, drawBaseY * MAP_SCALE, TILE_WIDTH, TILE_HEIGHT, raster, 0, TILE_WIDTH);
+			}
+		});
+	}
+
+	private int[] loadTerrain(Region region, int z)
+	{
+		if (tileCache == null)
+		{
+			return renderTerrain(region, z);
+		}
+
+		HashCode fingerprint = terrainFingerprint(region, z);
+		int[] raster = tileCache.load(z, region.getRegionID(), fingerprint, TILE_WIDTH * TILE_HEIGHT);
+		if (raster == null)
+		{
+			raster = renderTerrain(region, z);
+			tileCache.save(z, region.getRegionID(), fingerprint, raster);
+		}
+		return raster;
+	}
+
+	/**
+	 * Compute a fingerprint of everything the terrain of a region is rendered from,
+	 * which is the map archives of the region and its neighbors, and the floor configs
+	 */
+	private HashCode terrainFingerprint(Region region, int z)
+	{
+		Index maps = store.getIndex(IndexType.MAPS);
+
+		Hasher hasher = Hashing.sha256().newHasher()
+			.putInt(terrainConfigHash)
+			.putInt(z);
+
+		for (int dx = -1; dx <= 1; ++dx)
+		{
+			for (int dy = -1; dy <= 1; ++dy)
+			{
+				int x = region.getRegionX() + dx;
+				int y = region.getRegionY() + dy;
+
+				Archive map = maps.findArchiveByName("m" + x + "_" + y);
+				boolean loaded = regionLoader.findRegionForWorldCoordinates(x << 6, y << 6) != null;
+				hasher.putInt(map != null && loaded ? map.getCrc() : 0);
+			}
+		}
+
+		return hasher.hash();
+	}
+
+	/**
+	 * Render the terrain of a region
+	 *
+	 * @param region
+	 * @param z
+	 * @return the rgb raster of the region, with the top most row first
+	 */
+	private int[] renderTerrain(Region region, int z)
+	{
+		int[][] map = new int[TILE_WIDTH][TILE_HEIGHT];
 		drawMap(map, region, z);
 
 		int[][] above = null;
 		if (z < 3)
 		{
-			above = new int[Region.X * MAP_SCALE][Region.Y * MAP_SCALE];
+			above = new int[TILE_WIDTH][TILE_HEIGHT];
 			drawMap(above, region, z + 1);
 		}
 
+		int[] raster = new int[TILE_WIDTH * TILE_HEIGHT];
+
 		for (int x = 0; x < Region.X; ++x)
 		{
 			for (int y = 0; y < Region.Y; ++y)
@@ -179,44 +304,26 @@ public class MapImageDumper
 				int tileSetting = region.getTileSetting(z, x, Region.Y - y - 1);
 				if (!isBridge && ((tileSetting & 24) == 0))
 				{
-					drawTile(image, map, drawBaseX, drawBaseY, x, y);
+					drawTile(raster, map, x, y);
 				}
 
 				if (z < 3 && isBridge) // client also has a check for &8 != 0 here
 				{
-					drawTile(image, above, drawBaseX, drawBaseY, x, y);
+					drawTile(raster, above, x, y);
 				}
 			}
 		}
-	}
-
-	private void drawMap(BufferedImage image, int z)
-	{
-		for (Region region : regionLoader.getRegions())
-		{
-			int baseX = region.getBaseX();
-			int baseY = region.getBaseY();
 
-			// to pixel X
-			int drawBaseX = baseX - regionLoader.getLowestX().getBaseX();
-
-			// to pixel Y. top most y is 0, but the top most
-			// region has the greatest y, so invert
-			int drawBaseY = regionLoader.getHighestY().getBaseY() - baseY;
-
-			drawMap(image, drawBaseX, drawBaseY, z, region);
-		}
+		return raster;
 	}
 
-	private void drawTile(BufferedImage to, int[][] pixels, int drawBaseX, int drawBaseY, int x, int y)
+	private static void drawTile(int[] to, int[][] pixels, int x, int y)
 	{
 		for (int i = 0; i < MAP_SCALE; ++i)
 		{
 			for (int j = 0; j < MAP_SCALE; ++j)
 			{
-				to.setRGB(drawBaseX * MAP_SCALE + x * MAP_SCALE + i,
-					drawBaseY * MAP_SCALE + y * MAP_SCALE + j,
-					pixels[x * MAP_SCALE + i][y * MAP_SCALE + j]);
+				to[(y * MAP_SCALE + j) * TILE_WIDTH + x * MAP_SCALE + i] = pixels[x * MAP_SCALE + i][y * MAP_SCALE + j];
 			}
 		}
 	}
@@ -909,8 +1016,8 @@ public class MapImageDumper
 		Index index = store.getIndex(IndexType.CONFIGS);
 		Archive archive = index.getArchive(ConfigType.UNDERLAY.getId());
 
-		byte[] archiveData = storage.loadArchive(archive);
-		ArchiveFiles files = archive.getFiles(archiveData);
+		byte[] archiveData = storage.loadArchiveContents(archive, null);
+		ArchiveFiles files = archive.loadFiles(archiveData);
 
 		for (FSFile file : files.getFiles())
 		{
@@ -932,8 +1039,8 @@ public class MapImageDumper
 		Index index = store.getIndex(IndexType.CONFIGS);
 		Archive archive = index.getArchive(ConfigType.OVERLAY.getId());
 
-		byte[] archiveData = storage.loadArchive(archive);
-		ArchiveFiles files = archive.getFiles(archiveData);
+		byte[] archiveData = storage.loadArchiveContents(archive, null);
+		ArchiveFiles files = archive.loadFiles(archiveData);
 
 		for (FSFile file : files.getFiles())
 		{
@@ -957,7 +1064,7 @@ public class MapImageDumper
 
 		for (Archive a : index.getArchives())
 		{
-			byte[] contents = a.decompress(storage.loadArchive(a));
+			byte[] contents = storage.loadArchiveContents(a, null);
 
 			SpriteLoader loader = new SpriteLoader();
 			SpriteDefinition[] sprites = loader.load(a.getArchiveId(), contents);
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache;
+
+import com.google.common.hash.HashCode;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * On disk cache of rendered map tile rasters. Each tile is stored with a
+ * fingerprint of the inputs it was rendered from, and is only reused if the
+ * fingerprint is unchanged.
+ */
+public class MapTileCache
+{
+	private static final Logger logger = LoggerFactory.getLogger(MapTileCache.class);
+
+	private final File directory;
+
+	private final AtomicInteger hits = new AtomicInteger();
+	private final AtomicInteger misses = new AtomicInteger();
+
+	public MapTileCache(File directory)
+	{
+		this.directory = directory;
+		directory.mkdirs();
+	}
+
+	/**
+	 * Load a tile
+	 *
+	 * @param z plane
+	 * @param regionId
+	 * @param fingerprint fingerprint of the tile's inputs
+	 * @param length expected length of the raster
+	 * @return the raster, or null if the tile is not cached or is out of date
+	 */
+	public int[] load(int z, int regionId, HashCode fingerprint, int length)
+	{
+		File file = tileFile(z, regionId);
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+		{
+			byte[] hash = new byte[fingerprint.bits() / 8];
+			in.readFully(hash);
+
+			if (!Arrays.equals(hash, fingerprint.asBytes()))
+			{
+				misses.incrementAndGet();
+				return null;
+			}
+
+			int[] raster = new int[length];
+			try (DataInputStream data = new DataInputStream(new BufferedInputStream(new InflaterInputStream(in))))
+			{
+				for (int i = 0; i < length; ++i)
+				{
+					raster[i] = data.readInt();
+				}
+			}
+
+			hits.incrementAndGet();
+			return raster;
+		}
+		catch (FileNotFoundException ex)
+		{
+			misses.incrementAndGet();
+			return null;
+		}
+		catch (IOException ex)
+		{
+			logger.warn("unable to read map tile {}", file, ex);
+			misses.incrementAndGet();
+			return null;
+		}
+	}
+
+	public void save(int z, int regionId, HashCode fingerprint, int[] raster)
+	{
+		File file = tileFile(z, regionId);
+		File tmp = new File(directory, file.getName() + ".tmp");
+
+		try
+		{
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp))))
+			{
+				out.write(fingerprint.asBytes());
+
+				DataOutputStream data = new DataOutputStream(new BufferedOutputStream(new DeflaterOutputStream(out)));
+				for (int rgb : raster)
+				{
+					data.writeInt(rgb);
+				}
+				data.close();
+			}
+
+			// only replace the tile once it is completely written
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (IOException ex)
+		{
+			logger.warn("unable to write map tile {}", file, ex);
+			tmp.delete();
+		}
+	}
+
+	public int getHits()
+	{
+		return hits.get();
+	}
+
+	public int getMisses()
+	{
+		return misses.get();
+	}
+
+	private File tileFile(int z, int regionId)
+	{
+		return new File(directory, z + "-" + regionId + ".tile");
+	}
+}
@@ -0,0 +1,443 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToIntFunction;
+import net.runelite.cache.definitions.loaders.AreaLoader;
+import net.runelite.cache.definitions.loaders.EnumLoader;
+import net.runelite.cache.definitions.loaders.InventoryLoader;
+import net.runelite.cache.definitions.loaders.ItemLoader;
+import net.runelite.cache.definitions.loaders.KitLoader;
+import net.runelite.cache.definitions.loaders.NpcLoader;
+import net.runelite.cache.definitions.loaders.ObjectLoader;
+import net.runelite.cache.definitions.loaders.OverlayLoader;
+import net.runelite.cache.definitions.loaders.SequenceLoader;
+import net.runelite.cache.definitions.loaders.SpotAnimLoader;
+import net.runelite.cache.definitions.loaders.StructLoader;
+import net.runelite.cache.definitions.loaders.UnderlayLoader;
+import net.runelite.cache.definitions.loaders.VarbitLoader;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.ArchiveFiles;
+import net.runelite.cache.fs.FSFile;
+import net.runelite.cache.fs.Index;
+import net.runelite.cache.fs.Store;
+import net.runelite.cache.index.FileData;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reports the differences between two stores as a stream of JSON objects,
+ * one per line. Indexes and archives are walked side by side using only
+ * the index data; archives are only read and decompressed when their crc
+ * or revision differ. Changed config files are decoded and compared field
+ * by field.
+ */
+public class StoreDiff
+{
+	private static final Logger logger = LoggerFactory.getLogger(StoreDiff.class);
+
+	private static final Map<Integer, ConfigDecoder> CONFIG_DECODERS = ImmutableMap.<Integer, ConfigDecoder>builder()
+		.put(ConfigType.UNDERLAY.getId(), (id, b) -> new UnderlayLoader().load(id, b))
+		.put(ConfigType.IDENTKIT.getId(), (id, b) -> new KitLoader().load(id, b))
+		.put(ConfigType.OVERLAY.getId(), (id, b) -> new OverlayLoader().load(id, b))
+		.put(ConfigType.INV.getId(), (id, b) -> new InventoryLoader().load(id, b))
+		.put(ConfigType.OBJECT.getId(), (id, b) -> new ObjectLoader().load(id, b))
+		.put(ConfigType.ENUM.getId(), (id, b) -> new EnumLoader().load(id, b))
+		.put(ConfigType.NPC.getId(), (id, b) -> new NpcLoader().load(id, b))
+		.put(ConfigType.ITEM.getId(), (id, b) -> new ItemLoader().load(id, b))
+		.put(ConfigType.SEQUENCE.getId(), (id, b) -> new SequenceLoader().load(id, b))
+		.put(ConfigType.SPOTANIM.getId(), (id, b) -> new SpotAnimLoader().load(id, b))
+		.put(ConfigType.VARBIT.getId(), (id, b) -> new VarbitLoader().load(id, b))
+		.put(ConfigType.STRUCT.getId(), (id, b) -> new StructLoader().load(id, b))
+		.put(ConfigType.AREA.getId(), (id, b) -> new AreaLoader().load(b, id))
+		.build();
+
+	private static final Map<Class<?>, Field[]> FIELDS = new ConcurrentHashMap<>();
+
+	@FunctionalInterface
+	interface ConfigDecoder
+	{
+		Object decode(int id, byte[] b);
+	}
+
+	private final Store from;
+	private final Store to;
+	private final Gson gson = new GsonBuilder()
+		.serializeSpecialFloatingPointValues()
+		.create();
+
+	private Writer out;
+	private int changes;
+
+	public StoreDiff(Store from, Store to)
+	{
+		this.from = from;
+		this.to = to;
+	}
+
+	public static void main(String[] args) throws IOException
+	{
+		Options options = new Options();
+
+		options.addOption("a", "from", true, "cache base to diff from");
+		options.addOption("b", "to", true, "cache base to diff to");
+		options.addOption("o", "output", true, "file to write the diff to, defaults to stdout");
+
+		CommandLineParser parser = new DefaultParser();
+		CommandLine cmd;
+		try
+		{
+			cmd = parser.parse(options, args);
+		}
+		catch (ParseException ex)
+		{
+			System.err.println("Error parsing command line options: " + ex.getMessage());
+			System.exit(-1);
+			return;
+		}
+
+		String fromCache = cmd.getOptionValue("from");
+		String toCache = cmd.getOptionValue("to");
+		if (fromCache == null || toCache == null)
+		{
+			System.err.println("Both caches must be specified");
+			System.exit(-1);
+			return;
+		}
+
+		String output = cmd.getOptionValue("output");
+
+		try (Store from = new Store(new File(fromCache));
+			Store to = new Store(new File(toCache)))
+		{
+			from.load();
+			to.load();
+
+			StoreDiff storeDiff = new StoreDiff(from, to);
+			int changes;
+			if (output != null)
+			{
+				try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(output), StandardCharsets.UTF_8)))
+				{
+					changes = storeDiff.diff(out);
+				}
+			}
+			else
+			{
+				// System.out is flushed, but must not be closed
+				Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+				changes = storeDiff.diff(out);
+				out.flush();
+			}
+			logger.info("Found {} changes", changes);
+		}
+	}
+
+	/**
+	 * Write the differences between the two stores to {@code out}
+	 *
+	 * @param out writer to stream the JSON lines to
+	 * @return the number of lines written
+	 * @throws IOException
+	 */
+	public int diff(Writer out) throws IOException
+	{
+		this.out = out;
+		this.changes = 0;
+
+		List<Index> fromIndexes = sorted(from.getIndexes(), Index::getId);
+		List<Index> toIndexes = sorted(to.getIndexes(), Index::getId);
+
+		int i = 0, j = 0;
+		while (i < fromIndexes.size() || j < toIndexes.size())
+		{
+			Index a = i < fromIndexes.size() ? fromIndexes.get(i) : null;
+			Index b = j < toIndexes.size() ? toIndexes.get(j) : null;
+
+			if (b == null || (a != null && a.getId() < b.getId()))
+			{
+				write(index("removed", a));
+				++i;
+			}
+			else if (a == null || b.getId() < a.getId())
+			{
+				write(index("added", b));
+				++j;
+			}
+			else
+			{
+				diffIndex(a, b);
+				++i;
+				++j;
+			}
+		}
+
+		out.flush();
+		return changes;
+	}
+
+	private void diffIndex(Index a, Index b) throws IOException
+	{
+		List<Archive> fromArchives = sorted(a.getArchives(), Archive::getArchiveId);
+		List<Archive> toArchives = sorted(b.getArchives(), Archive::getArchiveId);
+
+		int i = 0, j = 0;
+		while (i < fromArchives.size() || j < toArchives.size())
+		{
+			Archive x = i < fromArchives.size() ? fromArchives.get(i) : null;
+			Archive y = j < toArchives.size() ? toArchives.get(j) : null;
+
+			if (y == null || (x != null && x.getArchiveId() < y.getArchiveId()))
+			{
+				write(archive("removed", x));
+				++i;
+			}
+			else if (x == null || y.getArchiveId() < x.getArchiveId())
+			{
+				write(archive("added", y));
+				++j;
+			}
+			else
+			{
+				diffArchive(x, y);
+				++i;
+				++j;
+			}
+		}
+	}
+
+	private void diffArchive(Archive a, Archive b) throws IOException
+	{
+		if (a.getCrc() == b.getCrc() && a.getRevision() == b.getRevision() && a.getNameHash() == b.getNameHash())
+		{
+			return;
+		}
+
+		JsonObject change = archive("changed", b);
+		change.addProperty("fromCrc", a.getCrc());
+		change.addProperty("fromRevision", a.getRevision());
+		write(change);
+
+		if (a.getCrc() == b.getCrc())
+		{
+			// only the revision or name changed, the contents are the same
+			return;
+		}
+
+		ArchiveFiles fromFiles = loadFiles(from, a);
+		ArchiveFiles toFiles = loadFiles(to, b);
+
+		List<FileData> fromData = sorted(Arrays.asList(a.getFileData()), FileData::getId);
+		List<FileData> toData = sorted(Arrays.asList(b.getFileData()), FileData::getId);
+
+		int i = 0, j = 0;
+		while (i < fromData.size() || j < toData.size())
+		{
+			FileData x = i < fromData.size() ? fromData.get(i) : null;
+			FileData y = j < toData.size() ? toData.get(j) : null;
+
+			if (y == null || (x != null && x.getId() < y.getId()))
+			{
+				write(file("removed", a, x.getId()));
+				++i;
+			}
+			else if (x == null || y.getId() < x.getId())
+			{
+				write(file("added", b, y.getId()));
+				++j;
+			}
+			else
+			{
+				if (fromFiles != null && toFiles != null)
+				{
+					diffFile(b, x.getNameHash(), fromFiles.findFile(x.getId()), toFiles.findFile(y.getId()));
+				}
+				++i;
+				++j;
+			}
+		}
+	}
+
+	private void diffFile(Archive archive, int fromNameHash, FSFile a, FSFile b) throws IOException
+	{
+		if (fromNameHash == b.getNameHash() && Arrays.equals(a.getContents(), b.getContents()))
+		{
+			return;
+		}
+
+		int fileId = b.getFileId();
+		write(file("changed", archive, fileId));
+
+		ConfigDecoder decoder = archive.getIndex().getId() == IndexType.CONFIGS.getNumber()
+			? CONFIG_DECODERS.get(archive.getArchiveId())
+			: null;
+		if (decoder == null)
+		{
+			return;
+		}
+
+		Object fromDef, toDef;
+		try
+		{
+			fromDef = decoder.decode(fileId, a.getContents());
+			toDef = decoder.decode(fileId, b.getContents());
+		}
+		catch (RuntimeException ex)
+		{
+			logger.warn("unable to decode config {}/{}", archive.getArchiveId(), fileId, ex);
+			return;
+		}
+
+		for (Field field : fields(toDef.getClass()))
+		{
+			Object x, y;
+			try
+			{
+				x = field.get(fromDef);
+				y = field.get(toDef);
+			}
+			catch (IllegalAccessException ex)
+			{
+				throw new AssertionError(ex);
+			}
+
+			if (Objects.deepEquals(x, y))
+			{
+				continue;
+			}
+
+			JsonObject change = file("changed", archive, fileId);
+			change.addProperty("type", "field");
+			change.addProperty("field", field.getName());
+			change.add("from", gson.toJsonTree(x));
+			change.add("to", gson.toJsonTree(y));
+			write(change);
+		}
+	}
+
+	/**
+	 * Load the files of an archive, or null if it can't be read or decompressed,
+	 * for example because it is encrypted
+	 */
+	private static ArchiveFiles loadFiles(Store store, Archive archive)
+	{
+		try
+		{
+			byte[] data = store.getStorage().loadArchive(archive);
+			if (data == null)
+			{
+				return null;
+			}
+
+			byte[] decompressed = archive.decompress(data);
+			return decompressed != null ? archive.loadFiles(decompressed) : null;
+		}
+		catch (IOException | RuntimeException ex)
+		{
+			logger.debug("unable to load archive {}/{}", archive.getIndex().getId(), archive.getArchiveId(), ex);
+			return null;
+		}
+	}
+
+	private static Field[] fields(Class<?> clazz)
+	{
+		return FIELDS.computeIfAbsent(clazz, c -> Arrays.stream(c.getDeclaredFields())
+			.filter(f -> !Modifier.isStatic(f.getModifiers()) && !Modifier.isTransient(f.getModifiers()))
+			.peek(f -> f.setAccessible(true))
+			.toArray(Field[]::new));
+	}
+
+	private static <T> List<T> sorted(List<T> list, ToIntFunction<T> id)
+	{
+		List<T> copy = new ArrayList<>(list);
+		copy.sort(Comparator.comparingInt(id));
+		return copy;
+	}
+
+	private static JsonObject index(String change, Index index)
+	{
+		JsonObject obj = new JsonObject();
+		obj.addProperty("type", "index");
+		obj.addProperty("change", change);
+		obj.addProperty("index", index.getId());
+		obj.addProperty("revision", index.getRevision());
+		return obj;
+	}
+
+	private static JsonObject archive(String change, Archive archive)
+	{
+		JsonObject obj = new JsonObject();
+		obj.addProperty("type", "archive");
+		obj.addProperty("change", change);
+		obj.addProperty("index", archive.getIndex().getId());
+		obj.addProperty("archive", archive.getArchiveId());
+		obj.addProperty("crc", archive.getCrc());
+		obj.addProperty("revision", archive.getRevision());
+		return obj;
+	}
+
+	private static JsonObject file(String change, Archive archive, int fileId)
+	{
+		JsonObject obj = new JsonObject();
+		obj.addProperty("type", "file");
+		obj.addProperty("change", change);
+		obj.addProperty("index", archive.getIndex().getId());
+		obj.addProperty("archive", archive.getArchiveId());
+		obj.addProperty("file", fileId);
+		return obj;
+	}
+
+	private void write(JsonObject obj) throws IOException
+	{
+		gson.toJson(obj, out);
+		out.write('\n');
+		++changes;
+	}
+}
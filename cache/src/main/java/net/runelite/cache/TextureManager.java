@@ -53,8 +53,8 @@ public class TextureManager implements TextureProvider
 		Index index = store.getIndex(IndexType.TEXTURES);
 		Archive archive = index.getArchive(0);
 
-		byte[] archiveData = storage.loadArchive(archive);
-		ArchiveFiles files = archive.getFiles(archiveData);
+		byte[] archiveData = storage.loadArchiveContents(archive, null);
+		ArchiveFiles files = archive.loadFiles(archiveData);
 
 		TextureLoader loader = new TextureLoader();
 
@@ -145,7 +145,17 @@ public class Archive
 	public ArchiveFiles getFiles(byte[] data, int[] keys) throws IOException
 	{
 		byte[] decompressedData = decompress(data, keys);
+		return loadFiles(decompressedData);
+	}
 
+	/**
+	 * Split the already decompressed contents of this archive into its files
+	 *
+	 * @param decompressedData
+	 * @return
+	 */
+	public ArchiveFiles loadFiles(byte[] decompressedData)
+	{
 		ArchiveFiles files = new ArchiveFiles();
 		for (FileData fileEntry : fileData)
 		{
@@ -169,7 +179,11 @@ public class Archive
 
 	public void setNameHash(int nameHash)
 	{
-		this.nameHash = nameHash;
+		if (this.nameHash != nameHash)
+		{
+			this.nameHash = nameHash;
+			index.invalidateNames();
+		}
 	}
 
 	public int getCrc()
@@ -27,12 +27,11 @@ package net.runelite.cache.fs;
 import com.google.common.base.Preconditions;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 import net.runelite.cache.io.InputStream;
 import net.runelite.cache.io.OutputStream;
+import net.runelite.cache.util.IntHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -41,7 +40,7 @@ public class ArchiveFiles
 	private static final Logger logger = LoggerFactory.getLogger(ArchiveFiles.class);
 
 	private final List<FSFile> files = new ArrayList<>();
-	private final Map<Integer, FSFile> fileMap = new HashMap<>();
+	private final IntHashMap<FSFile> fileMap = new IntHashMap<>();
 
 	@Override
 	public int hashCode()
@@ -74,13 +73,12 @@ public class ArchiveFiles
 	{
 		Preconditions.checkArgument(file.getFileId() != -1);
 
-		if (fileMap.containsKey(file.getFileId()))
+		if (fileMap.putIfAbsent(file.getFileId(), file) != null)
 		{
 			throw new IllegalStateException("duplicate file ids");
 		}
 
 		files.add(file);
-		fileMap.put(file.getFileId(), file);
 	}
 
 	public List<FSFile> getFiles()
@@ -0,0 +1,347 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.fs;
+
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Storage which keeps a bounded LRU cache of decompressed archive contents
+ * in front of another storage. Entries are keyed by index, archive and crc,
+ * so an archive which is changed is never served stale, and are only
+ * served for the same xtea keys they were decrypted with.
+ * <p>
+ * A cache hit has the same effect on the archive as decompressing it: the
+ * compression type, and the revision if the container corrected it, are
+ * remembered with the contents and applied again.
+ * <p>
+ * Contents returned from {@link #loadArchiveContents(Archive, int[])} are
+ * shared with the cache and must not be modified.
+ */
+public class CachingStorage implements Storage
+{
+	private static final Logger logger = LoggerFactory.getLogger(CachingStorage.class);
+
+	private static final class Key
+	{
+		private final int index;
+		private final int archive;
+		private final int crc;
+
+		private Key(int index, int archive, int crc)
+		{
+			this.index = index;
+			this.archive = archive;
+			this.crc = crc;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			int hash = 7;
+			hash = 31 * hash + this.index;
+			hash = 31 * hash + this.archive;
+			hash = 31 * hash + this.crc;
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof Key))
+			{
+				return false;
+			}
+			final Key other = (Key) obj;
+			return index == other.index && archive == other.archive && crc == other.crc;
+		}
+	}
+
+	private static final class Entry
+	{
+		private final byte[] contents;
+		private final int[] keys;
+		private final int compression;
+		// revision the container set on the archive, or -1 if it was left alone
+		private final int revision;
+
+		private Entry(byte[] contents, int[] keys, int compression, int revision)
+		{
+			this.contents = contents;
+			this.keys = keys == null ? null : keys.clone();
+			this.compression = compression;
+			this.revision = revision;
+		}
+
+		private byte[] apply(Archive archive)
+		{
+			archive.setCompression(compression);
+			if (revision != -1)
+			{
+				archive.setRevision(revision);
+			}
+			return contents;
+		}
+	}
+
+	private static final class SpilloverReference extends SoftReference<Entry>
+	{
+		private final Key key;
+
+		private SpilloverReference(Key key, Entry entry, ReferenceQueue<Entry> queue)
+		{
+			super(entry, queue);
+			this.key = key;
+		}
+	}
+
+	private final Storage storage;
+	private final long maxSize;
+	private final boolean softSpillover;
+
+	private final LinkedHashMap<Key, Entry> cache = new LinkedHashMap<>(16, 0.75f, true);
+	private final Map<Key, SpilloverReference> spillover = new HashMap<>();
+	private final ReferenceQueue<Entry> cleared = new ReferenceQueue<>();
+	private long size;
+
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * @param storage storage to load archives from
+	 * @param maxSize maximum size in bytes of decompressed contents to keep
+	 * @param softSpillover whether evicted contents should be kept softly
+	 * reachable, to be reused if the garbage collector has not yet
+	 * reclaimed them
+	 */
+	public CachingStorage(Storage storage, long maxSize, boolean softSpillover)
+	{
+		this.storage = storage;
+		this.maxSize = maxSize;
+		this.softSpillover = softSpillover;
+	}
+	public Storage getStorage()
+	{
+		return storage;
+	}
+
+	@Override
+	public void init(Store store) throws IOException
+	{
+		storage.init(store);
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		invalidateAll();
+		storage.close();
+	}
+
+	@Override
+	public void load(Store store) throws IOException
+	{
+		storage.load(store);
+	}
+
+	@Override
+	public void load(Store store, Executor executor) throws IOException
+	{
+		storage.load(store, executor);
+	}
+
+	@Override
+	public void save(Store store) throws IOException
+	{
+		storage.save(store);
+	}
+
+	@Override
+	public byte[] loadArchive(Archive archive) throws IOException
+	{
+		return storage.loadArchive(archive);
+	}
+
+	@Override
+	public byte[] loadArchiveContents(Archive archive, int[] keys) throws IOException
+	{
+		Key key = new Key(archive.getIndex().getId(), archive.getArchiveId(), archive.getCrc());
+
+		synchronized (this)
+		{
+			Entry entry = cache.get(key);
+			if (entry != null && Arrays.equals(entry.keys, keys))
+			{
+				++hits;
+				return entry.apply(archive);
+			}
+
+			SpilloverReference ref = spillover.get(key);
+			entry = ref != null ? ref.get() : null;
+			if (entry != null && Arrays.equals(entry.keys, keys))
+			{
+				++hits;
+				spillover.remove(key);
+				put(key, entry);
+				return entry.apply(archive);
+			}
+
+			++misses;
+		}
+
+		// decompress outside of the lock so other archives can be loaded concurrently
+		int revision = archive.getRevision();
+		byte[] contents = storage.loadArchiveContents(archive, keys);
+		if (contents == null)
+		{
+			return null;
+		}
+
+		Entry entry = new Entry(contents, keys, archive.getCompression(),
+			archive.getRevision() != revision ? archive.getRevision() : -1);
+		synchronized (this)
+		{
+			put(key, entry);
+		}
+		return contents;
+	}
+
+	@Override
+	public void saveArchive(Archive archive, byte[] data) throws IOException
+	{
+		int crc = archive.getCrc();
+		storage.saveArchive(archive, data);
+		invalidate(archive.getIndex().getId(), archive.getArchiveId(), crc);
+	}
+
+	private void put(Key key, Entry entry)
+	{
+		if (entry.contents.length > maxSize)
+		{
+			return;
+		}
+
+		Entry prev = cache.put(key, entry);
+		if (prev != null)
+		{
+			size -= prev.contents.length;
+		}
+		size += entry.contents.length;
+
+		if (size <= maxSize)
+		{
+			return;
+		}
+
+		if (softSpillover)
+		{
+			pruneSpillover();
+		}
+
+		Iterator<Map.Entry<Key, Entry>> it = cache.entrySet().iterator();
+		while (size > maxSize && it.hasNext())
+		{
+			Map.Entry<Key, Entry> eldest = it.next();
+			it.remove();
+			size -= eldest.getValue().contents.length;
+			++evictions;
+
+			if (softSpillover)
+			{
+				spillover.put(eldest.getKey(), new SpilloverReference(eldest.getKey(), eldest.getValue(), cleared));
+			}
+		}
+	}
+
+	/**
+	 * Remove the spillover entries whose contents have been reclaimed
+	 */
+	private void pruneSpillover()
+	{
+		Reference<? extends Entry> ref;
+		while ((ref = cleared.poll()) != null)
+		{
+			SpilloverReference spilled = (SpilloverReference) ref;
+			// the key may have been spilled again since
+			spillover.remove(spilled.key, spilled);
+		}
+	}
+
+	private synchronized void invalidate(int index, int archive, int crc)
+	{
+		Key key = new Key(index, archive, crc);
+		Entry prev = cache.remove(key);
+		if (prev != null)
+		{
+			size -= prev.contents.length;
+		}
+		spillover.remove(key);
+	}
+
+	public synchronized void invalidateAll()
+	{
+		cache.clear();
+		spillover.clear();
+		size = 0;
+	}
+
+	public synchronized long getSize()
+	{
+		return size;
+	}
+
+	public synchronized long getHits()
+	{
+		return hits;
+	}
+
+	public synchronized long getMisses()
+	{
+		return misses;
+	}
+
+	public synchronized long getEvictions()
+	{
+		return evictions;
+	}
+
+	@Override
+	public synchronized String toString()
+	{
+		return "CachingStorage{" + "size=" + size + ", maxSize=" + maxSize + ", entries=" + cache.size()
+			+ ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + '}';
+	}
+}
@@ -90,6 +90,21 @@ public class Container
 		this.data = stream.flip();
 	}
 
+	/**
+	 * Length of compressed container data, excluding the revision
+	 * appended to it, if there is one
+	 */
+	public static int payloadLength(byte[] b)
+	{
+		byte compression = b[0];
+		int compressedSize = Ints.fromBytes(b[1], b[2], b[3], b[4]);
+
+		return 1 // compression type
+			+ 4 // compressed size
+			+ compressedSize
+			+ (compression != CompressionType.NONE ? 4 : 0);
+	}
+
 	public static Container decompress(byte[] b, int[] keys) throws IOException
 	{
 		InputStream stream = new InputStream(b);
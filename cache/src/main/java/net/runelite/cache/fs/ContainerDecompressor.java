@@ -0,0 +1,386 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.fs;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import net.runelite.cache.fs.jagex.CompressionType;
+import net.runelite.cache.util.Crc32;
+import net.runelite.cache.util.Xtea;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+
+/**
+ * Decompresses containers held in byte buffers without copying the
+ * compressed payload. Encrypted payloads are decrypted in place, and
+ * decompressed data is written to an output buffer which is reused between
+ * calls, so an instance must not be shared between threads. Use
+ * {@link #get()} for an instance confined to the current thread.
+ */
+public class ContainerDecompressor
+{
+	private static final ThreadLocal<ContainerDecompressor> DECOMPRESSOR = ThreadLocal.withInitial(ContainerDecompressor::new);
+
+	private static final byte[] BZIP_HEADER = new byte[]
+	{
+		'B', 'Z', 'h', '1'
+	};
+
+	// sanity limit on the decompressed length read from container headers,
+	// so a corrupt header can't cause a huge allocation. The compressed length
+	// is bounded by the data actually present.
+	private static final int MAX_DECOMPRESSED_LENGTH = 32 * 1024 * 1024;
+
+	private static final int GZIP_MAGIC = 0x1f8b;
+	private static final int FHCRC = 2;
+	private static final int FEXTRA = 4;
+	private static final int FNAME = 8;
+	private static final int FCOMMENT = 16;
+
+	private final Crc32 crc32 = new Crc32();
+	private final Inflater inflater = new Inflater(true);
+
+	private byte[] output = new byte[0];
+	private byte[] scratch = new byte[0];
+
+	private int compression;
+	private int revision;
+	private int crc;
+	private ByteBuffer payload;
+
+	public static ContainerDecompressor get()
+	{
+		return DECOMPRESSOR.get();
+	}
+
+	/**
+	 * Decompress the container in the remaining bytes of the buffer. The
+	 * position of the buffer is not changed, but if keys are given and
+	 * the buffer is writable its contents are decrypted in place.
+	 * <p>
+	 * The returned buffer is only valid until the next call to this
+	 * decompressor. For uncompressed containers it is a slice of the
+	 * input buffer.
+	 *
+	 * @param buffer container data
+	 * @param keys xtea keys, or null
+	 * @return the decompressed data
+	 * @throws IOException
+	 */
+	public ByteBuffer decompress(ByteBuffer buffer, int[] keys) throws IOException
+	{
+		readContainer(buffer, keys);
+
+		if (compression == CompressionType.NONE)
+		{
+			return payload;
+		}
+
+		int decompressedLength = payload.getInt();
+		if (decompressedLength < 0 || decompressedLength > MAX_DECOMPRESSED_LENGTH)
+		{
+			throw new IOException("Invalid decompressed length " + decompressedLength);
+		}
+
+		if (output.length < decompressedLength)
+		{
+			output = new byte[decompressedLength];
+		}
+
+		switch (compression)
+		{
+			case CompressionType.BZ2:
+				try (InputStream is = new BZip2CompressorInputStream(bzipStream(payload)))
+				{
+					readFully(is, output, decompressedLength);
+				}
+				break;
+			case CompressionType.GZ:
+				inflate(payload, decompressedLength);
+				break;
+			default:
+				throw new RuntimeException("Unknown decompression type");
+		}
+
+		return ByteBuffer.wrap(output, 0, decompressedLength);
+	}
+
+	/**
+	 * Open a stream of the decompressed contents of the container in the
+	 * remaining bytes of the buffer. Unlike {@link #decompress(ByteBuffer, int[])}
+	 * the data is never held in full, so this is suitable for large
+	 * containers. The returned stream remains valid after further calls
+	 * to this decompressor.
+	 *
+	 * @param buffer container data
+	 * @param keys xtea keys, or null
+	 * @return
+	 * @throws IOException
+	 */
+	public InputStream stream(ByteBuffer buffer, int[] keys) throws IOException
+	{
+		readContainer(buffer, keys);
+
+		ByteBuffer data = payload;
+		if (data.hasArray() && data.array() == scratch)
+		{
+			// the payload was decrypted into the scratch buffer, which is reused
+			data = ByteBuffer.allocate(data.remaining()).put(data);
+			data.flip();
+		}
+
+		switch (compression)
+		{
+			case CompressionType.NONE:
+				return new ByteBufferInputStream(data);
+			case CompressionType.BZ2:
+				data.getInt(); // decompressed length
+				return new BZip2CompressorInputStream(bzipStream(data));
+			case CompressionType.GZ:
+				data.getInt(); // decompressed length
+				return new GZIPInputStream(new ByteBufferInputStream(data));
+			default:
+				throw new RuntimeException("Unknown decompression type");
+		}
+	}
+
+	public int getCompression()
+	{
+		return compression;
+	}
+
+	public int getRevision()
+	{
+		return revision;
+	}
+
+	public int getCrc()
+	{
+		return crc;
+	}
+
+	private void readContainer(ByteBuffer buffer, int[] keys) throws IOException
+	{
+		ByteBuffer in = buffer.duplicate();
+		if (in.remaining() < 5)
+		{
+			throw new IOException("Container too short");
+		}
+
+		compression = in.get() & 0xFF;
+		int compressedLength = in.getInt();
+		int payloadLength = compressedLength + (compression != CompressionType.NONE ? 4 : 0);
+		if (compressedLength < 0 || payloadLength > in.remaining())
+		{
+			throw new IOException("Invalid compressed length " + compressedLength);
+		}
+
+		ByteBuffer crcView = buffer.duplicate();
+		crcView.limit(crcView.position() + 5 + payloadLength); // compression + length + payload
+		crc32.reset();
+		crc32.update(crcView);
+		crc = crc32.getHash();
+
+		payload = in.slice();
+		payload.limit(payloadLength);
+
+		in.position(in.position() + payloadLength);
+		revision = -1;
+		if (in.remaining() >= 2)
+		{
+			revision = in.getShort() & 0xFFFF;
+		}
+
+		if (keys != null)
+		{
+			if (payload.isReadOnly())
+			{
+				if (scratch.length < payloadLength)
+				{
+					scratch = new byte[payloadLength];
+				}
+				payload.get(scratch, 0, payloadLength);
+				payload = ByteBuffer.wrap(scratch, 0, payloadLength);
+			}
+
+			new Xtea(keys).decrypt(payload);
+		}
+	}
+
+	private void inflate(ByteBuffer data, int decompressedLength) throws IOException
+	{
+		if (data.remaining() < 10 || (data.getShort() & 0xFFFF) != GZIP_MAGIC || data.get() != 8)
+		{
+			throw new IOException("Not in GZIP format");
+		}
+
+		try
+		{
+			int flags = data.get() & 0xFF;
+			data.position(data.position() + 6); // mtime, xfl, os
+
+			if ((flags & FEXTRA) != 0)
+			{
+				int len = (data.get() & 0xFF) | ((data.get() & 0xFF) << 8);
+				data.position(data.position() + len);
+			}
+			if ((flags & FNAME) != 0)
+			{
+				skipString(data);
+			}
+			if ((flags & FCOMMENT) != 0)
+			{
+				skipString(data);
+			}
+			if ((flags & FHCRC) != 0)
+			{
+				data.getShort();
+			}
+		}
+		catch (BufferUnderflowException | IllegalArgumentException ex)
+		{
+			throw new EOFException("Truncated GZIP header");
+		}
+
+		byte[] input;
+		int offset;
+		int len = data.remaining();
+		if (data.hasArray())
+		{
+			input = data.array();
+			offset = data.arrayOffset() + data.position();
+		}
+		else
+		{
+			if (scratch.length < len)
+			{
+				scratch = new byte[len];
+			}
+			data.get(scratch, 0, len);
+			input = scratch;
+			offset = 0;
+		}
+
+		inflater.reset();
+		inflater.setInput(input, offset, len);
+		try
+		{
+			int read = 0;
+			while (read < decompressedLength && !inflater.finished())
+			{
+				int i = inflater.inflate(output, read, decompressedLength - read);
+				if (i == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+				{
+					throw new EOFException("Unexpected end of GZIP stream");
+				}
+				read += i;
+			}
+
+			if (read != decompressedLength)
+			{
+				throw new EOFException("Expected " + decompressedLength + " bytes, got " + read);
+			}
+		}
+		catch (DataFormatException ex)
+		{
+			throw new IOException(ex);
+		}
+	}
+
+	private static void skipString(ByteBuffer data)
+	{
+		byte b;
+		do
+		{
+			b = data.get();
+		}
+		while (b != 0);
+	}
+
+	private static InputStream bzipStream(ByteBuffer data)
+	{
+		return new SequenceInputStream(new ByteArrayInputStream(BZIP_HEADER), new ByteBufferInputStream(data));
+	}
+
+	private static void readFully(InputStream is, byte[] out, int len) throws IOException
+	{
+		int read = 0;
+		while (read < len)
+		{
+			int i = is.read(out, read, len - read);
+			if (i == -1)
+			{
+				throw new EOFException("Expected " + len + " bytes, got " + read);
+			}
+			read += i;
+		}
+	}
+
+	private static class ByteBufferInputStream extends InputStream
+	{
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream(ByteBuffer buffer)
+		{
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read()
+		{
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len)
+		{
+			if (len == 0)
+			{
+				return 0;
+			}
+			if (!buffer.hasRemaining())
+			{
+				return -1;
+			}
+
+			len = Math.min(len, buffer.remaining());
+			buffer.get(b, off, len);
+			return len;
+		}
+
+		@Override
+		public int available()
+		{
+			return buffer.remaining();
+		}
+	}
+}
@@ -31,6 +31,7 @@ import net.runelite.cache.index.ArchiveData;
 import net.runelite.cache.index.FileData;
 import net.runelite.cache.index.IndexData;
 import net.runelite.cache.util.Djb2;
+import net.runelite.cache.util.IntHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -47,6 +48,12 @@ public class Index
 	private int compression; // compression method of this index's data in 255
 
 	private final List<Archive> archives = new ArrayList<>();
+	// first archive in the list with each id and name hash
+	private final IntHashMap<Archive> archivesById = new IntHashMap<>();
+	private final IntHashMap<Archive> archivesByName = new IntHashMap<>();
+	// name hashes are usually set after the archive is added, so the
+	// name map is rebuilt on the next lookup after a change
+	private volatile boolean namesInvalid;
 
 	public Index(int id)
 	{
@@ -154,32 +161,79 @@ public class Index
 	{
 		Archive archive = new Archive(this, id);
 		this.archives.add(archive);
+		archivesById.putIfAbsent(id, archive);
+		if (!namesInvalid)
+		{
+			archivesByName.putIfAbsent(archive.getNameHash(), archive);
+		}
 		return archive;
 	}
 
-	public Archive getArchive(int id)
+	public void removeArchive(Archive archive)
 	{
-		for (Archive a : archives)
+		assert archive.getIndex() == this;
+
+		if (!archives.remove(archive))
+		{
+			return;
+		}
+
+		int id = archive.getArchiveId();
+		if (archivesById.get(id) == archive)
 		{
-			if (a.getArchiveId() == id)
+			archivesById.remove(id);
+			for (Archive a : archives)
 			{
-				return a;
+				if (a.getArchiveId() == id)
+				{
+					archivesById.put(id, a);
+					break;
+				}
 			}
 		}
-		return null;
+
+		if (archivesByName.get(archive.getNameHash()) == archive)
+		{
+			namesInvalid = true;
+		}
+	}
+
+	public Archive getArchive(int id)
+	{
+		return archivesById.get(id);
 	}
 
 	public Archive findArchiveByName(String name)
 	{
 		int hash = Djb2.hash(name);
-		for (Archive a : archives)
+		if (namesInvalid)
 		{
-			if (a.getNameHash() == hash)
-			{
-				return a;
-			}
+			rebuildNames();
+		}
+		return archivesByName.get(hash);
+	}
+
+	/**
+	 * Called when the name hash of one of this index's archives changes
+	 */
+	void invalidateNames()
+	{
+		namesInvalid = true;
+	}
+
+	private synchronized void rebuildNames()
+	{
+		if (!namesInvalid)
+		{
+			return;
+		}
+
+		archivesByName.clear();
+		for (Archive archive : archives)
+		{
+			archivesByName.putIfAbsent(archive.getNameHash(), archive);
 		}
-		return null;
+		namesInvalid = false;
 	}
 
 	public IndexData toIndexData()
@@ -25,6 +25,7 @@
 package net.runelite.cache.fs;
 
 import java.io.IOException;
+import java.util.concurrent.Executor;
 
 public interface Storage extends AutoCloseable
 {
@@ -35,9 +36,37 @@ public interface Storage extends AutoCloseable
 
 	void load(Store store) throws IOException;
 
+	/**
+	 * Load the store, decoding the indexes on the given executor. Storages
+	 * which can't be read from concurrently load sequentially. Archive
+	 * contents are not loaded.
+	 */
+	default void load(Store store, Executor executor) throws IOException
+	{
+		load(store);
+	}
+
 	void save(Store store) throws IOException;
 
+	/**
+	 * Load the compressed data of an archive. Implementations which
+	 * override {@link #load(Store, Executor)} must also allow this to be
+	 * called concurrently.
+	 */
 	byte[] loadArchive(Archive archive) throws IOException;
 
+	/**
+	 * Load and decompress the contents of an archive
+	 *
+	 * @param archive
+	 * @param keys xtea keys, or null if the archive is not encrypted
+	 * @return
+	 * @throws IOException
+	 */
+	default byte[] loadArchiveContents(Archive archive, int[] keys) throws IOException
+	{
+		return archive.decompress(loadArchive(archive), keys);
+	}
+
 	void saveArchive(Archive archive, byte[] data) throws IOException;
 }
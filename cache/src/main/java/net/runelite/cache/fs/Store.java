@@ -31,6 +31,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Executor;
 import net.runelite.cache.IndexType;
 import net.runelite.cache.fs.jagex.DiskStorage;
 import org.slf4j.Logger;
@@ -121,6 +122,23 @@ public final class Store implements Closeable
 		storage.load(this);
 	}
 
+	/**
+	 * Load the store, decoding the indexes in parallel on the given
+	 * executor, eg. {@link java.util.concurrent.ForkJoinPool#commonPool()}.
+	 * <p>
+	 * Only the index tables are decoded here. Archive containers are still
+	 * decompressed on demand, by whoever loads them; as
+	 * {@link Storage#loadArchive(Archive)} may be called concurrently, callers
+	 * which need many archives can fan those loads out themselves.
+	 *
+	 * @param executor
+	 * @throws IOException
+	 */
+	public void load(Executor executor) throws IOException
+	{
+		storage.load(this, executor);
+	}
+
 	public void save() throws IOException
 	{
 		storage.save(this);
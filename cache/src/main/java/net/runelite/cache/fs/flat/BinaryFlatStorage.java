@@ -0,0 +1,469 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.fs.flat;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.Index;
+import net.runelite.cache.fs.Storage;
+import net.runelite.cache.fs.Store;
+import net.runelite.cache.index.FileData;
+
+/**
+ * Binary counterpart of {@link FlatStorage}, with one file per index.
+ * Each file has a fixed width table of the index's archives followed by
+ * the archive contents laid out contiguously, so loading the store only
+ * reads the tables and each archive can be read with a single positional
+ * read, or as a slice of a mapping of the file.
+ * <p>
+ * The layout of a file is:
+ * <pre>
+ * header:   magic, version, protocol, revision, compression, crc, named,
+ *           archive count, offset of the contents
+ * archives: id, name hash, revision, crc, compression, hash length
+ *           (0xff if none), hash (padded to 32 bytes), file count, offset of the files,
+ *           contents length (-1 if none), offset of the contents
+ * files:    id, name hash
+ * contents
+ * </pre>
+ */
+public class BinaryFlatStorage implements Storage
+{
+	static final String EXTENSION = ".flatcache.bin";
+
+	private static final int MAGIC = 0x464C4348; // FLCH
+	private static final int VERSION = 1;
+
+	private static final int HEADER_SIZE = 4 + 4 + 4 + 4 + 4 + 4 + 1 + 4 + 8;
+	private static final int HASH_SIZE = 32;
+	private static final int NO_HASH = 0xFF;
+	private static final int ARCHIVE_SIZE = 4 + 4 + 4 + 4 + 4 + 1 + HASH_SIZE + 4 + 8 + 4 + 8;
+	private static final int FILE_SIZE = 4 + 4;
+
+	private final File directory;
+
+	private final Map<Integer, FileChannel> channels = new HashMap<>();
+	private final Map<Integer, MappedByteBuffer> mappings = new HashMap<>();
+	// offset and length of the contents of each archive, by index and archive
+	private final Map<Integer, Map<Integer, long[]>> locations = new HashMap<>();
+	// contents saved since the store was last saved
+	private final Map<Long, byte[]> pending = new HashMap<>();
+
+	public BinaryFlatStorage(File directory)
+	{
+		this.directory = directory;
+	}
+
+	@Override
+	public void init(Store store) throws IOException
+	{
+		String[] files = directory.list((dir, name) -> name.endsWith(EXTENSION));
+		if (files == null)
+		{
+			throw new IOException("unable to list " + directory);
+		}
+
+		for (String file : files)
+		{
+			int id = Integer.parseInt(file.substring(0, file.length() - EXTENSION.length()));
+			store.addIndex(id);
+		}
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		for (FileChannel channel : channels.values())
+		{
+			channel.close();
+		}
+		channels.clear();
+		mappings.clear();
+		locations.clear();
+	}
+
+	@Override
+	public void load(Store store) throws IOException
+	{
+		for (Index index : store.getIndexes())
+		{
+			FileChannel channel = open(index.getId());
+			readIndex(channel, index, true);
+		}
+	}
+
+	@Override
+	public void save(Store store) throws IOException
+	{
+		store.getIndexes().sort(Comparator.comparing(Index::getId));
+		for (Index index : store.getIndexes())
+		{
+			File file = file(index.getId());
+			File tmp = new File(directory, index.getId() + EXTENSION + ".tmp");
+
+			try (FileChannel out = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+			{
+				writeIndex(out, store.getStorage(), index);
+			}
+
+			// the old file may still be being read from up until here
+			FileChannel old = channels.remove(index.getId());
+			if (old != null)
+			{
+				old.close();
+			}
+			mappings.remove(index.getId());
+
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+			readIndex(open(index.getId()), index, false);
+		}
+
+		pending.clear();
+	}
+
+	@Override
+	public byte[] loadArchive(Archive archive) throws IOException
+	{
+		long key = key(archive.getIndex().getId(), archive.getArchiveId());
+
+		byte[] data = pending.get(key);
+		if (data != null)
+		{
+			return data;
+		}
+
+		long[] location = location(archive);
+		if (location == null)
+		{
+			return null;
+		}
+
+		FileChannel channel = channels.get(archive.getIndex().getId());
+		ByteBuffer buffer = ByteBuffer.allocate((int) location[1]);
+		readFully(channel, buffer, location[0]);
+		return buffer.array();
+	}
+
+	/**
+	 * Load the contents of an archive as a read only slice of a mapping of
+	 * its index's file
+	 *
+	 * @param archive
+	 * @return the contents, or null if the archive has no contents
+	 * @throws IOException
+	 */
+	public ByteBuffer loadArchiveSlice(Archive archive) throws IOException
+	{
+		long key = key(archive.getIndex().getId(), archive.getArchiveId());
+
+		byte[] data = pending.get(key);
+		if (data != null)
+		{
+			return ByteBuffer.wrap(data).asReadOnlyBuffer();
+		}
+
+		long[] location = location(archive);
+		if (location == null)
+		{
+			return null;
+		}
+
+		MappedByteBuffer mapping = map(archive.getIndex().getId());
+		ByteBuffer slice = mapping.duplicate();
+		slice.position((int) location[0]);
+		slice.limit((int) (location[0] + location[1]));
+		return slice.slice().asReadOnlyBuffer();
+	}
+
+	@Override
+	public void saveArchive(Archive archive, byte[] data) throws IOException
+	{
+		pending.put(key(archive.getIndex().getId(), archive.getArchiveId()), data);
+	}
+
+	private File file(int indexId)
+	{
+		return new File(directory, indexId + EXTENSION);
+	}
+
+	private long[] location(Archive archive)
+	{
+		Map<Integer, long[]> indexLocations = locations.get(archive.getIndex().getId());
+		return indexLocations != null ? indexLocations.get(archive.getArchiveId()) : null;
+	}
+
+	private FileChannel open(int indexId) throws IOException
+	{
+		FileChannel channel = FileChannel.open(file(indexId).toPath(), StandardOpenOption.READ);
+		FileChannel old = channels.put(indexId, channel);
+		if (old != null)
+		{
+			// the store was loaded again
+			old.close();
+		}
+		mappings.remove(indexId);
+		return channel;
+	}
+
+	private MappedByteBuffer map(int indexId) throws IOException
+	{
+		MappedByteBuffer mapping = mappings.get(indexId);
+		if (mapping == null)
+		{
+			FileChannel channel = channels.get(indexId);
+			mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			mappings.put(indexId, mapping);
+		}
+		return mapping;
+	}
+
+	/**
+	 * Read the header, archive table and files of an index
+	 *
+	 * @param channel
+	 * @param index
+	 * @param populate whether to add the archives to the index, or only
+	 * read where their contents are
+	 * @throws IOException
+	 */
+	private void readIndex(FileChannel channel, Index index, boolean populate) throws IOException
+	{
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		readFully(channel, header, 0);
+		header.flip();
+
+		if (header.getInt() != MAGIC)
+		{
+			throw new IOException("index " + index.getId() + " is not a binary flat cache");
+		}
+
+		int version = header.getInt();
+		if (version != VERSION)
+		{
+			throw new IOException("index " + index.getId() + " has unsupported version " + version);
+		}
+
+		int protocol = header.getInt();
+		int revision = header.getInt();
+		int compression = header.getInt();
+		int crc = header.getInt();
+		boolean named = header.get() != 0;
+		int archiveCount = header.getInt();
+		long contentsOffset = header.getLong();
+
+		if (populate)
+		{
+			index.setProtocol(protocol);
+			index.setRevision(revision);
+			index.setCompression(compression);
+			index.setCrc(crc);
+			index.setNamed(named);
+		}
+
+		// everything up to the contents is read in one go
+		ByteBuffer buf = ByteBuffer.allocate((int) (contentsOffset - HEADER_SIZE));
+		readFully(channel, buf, HEADER_SIZE);
+
+		// replaces the locations of a previous load or save, including those
+		// of archives which have since been removed
+		Map<Integer, long[]> indexLocations = new HashMap<>(archiveCount);
+		locations.put(index.getId(), indexLocations);
+
+		for (int i = 0; i < archiveCount; ++i)
+		{
+			buf.position(i * ARCHIVE_SIZE);
+
+			int archiveId = buf.getInt();
+			int nameHash = buf.getInt();
+			int archiveRevision = buf.getInt();
+			int archiveCrc = buf.getInt();
+			int archiveCompression = buf.getInt();
+			int hashLength = buf.get() & 0xFF;
+			byte[] hash = null;
+			if (hashLength != NO_HASH)
+			{
+				hash = new byte[hashLength];
+				buf.get(hash);
+			}
+			buf.position(i * ARCHIVE_SIZE + ARCHIVE_SIZE - 4 - 8 - 4 - 8);
+			int fileCount = buf.getInt();
+			long filesOffset = buf.getLong();
+			int contentsLength = buf.getInt();
+			long archiveContentsOffset = buf.getLong();
+
+			if (contentsLength != -1)
+			{
+				indexLocations.put(archiveId, new long[]{archiveContentsOffset, contentsLength});
+			}
+
+			if (!populate)
+			{
+				continue;
+			}
+
+			Archive archive = index.addArchive(archiveId);
+			archive.setNameHash(nameHash);
+			archive.setRevision(archiveRevision);
+			archive.setCrc(archiveCrc);
+			archive.setCompression(archiveCompression);
+			archive.setHash(hash);
+
+			FileData[] files = new FileData[fileCount];
+			buf.position((int) (filesOffset - HEADER_SIZE));
+			for (int j = 0; j < fileCount; ++j)
+			{
+				FileData fd = files[j] = new FileData();
+				fd.setId(buf.getInt());
+				fd.setNameHash(buf.getInt());
+			}
+			archive.setFileData(files);
+		}
+	}
+
+	private static void writeIndex(FileChannel out, Storage storage, Index index) throws IOException
+	{
+		index.getArchives().sort(Comparator.comparing(Archive::getArchiveId));
+
+		int archiveCount = index.getArchives().size();
+		int fileCount = 0;
+		for (Archive archive : index.getArchives())
+		{
+			if (archive.getFileData() != null)
+			{
+				fileCount += archive.getFileData().length;
+			}
+		}
+
+		long filesOffset = HEADER_SIZE + (long) archiveCount * ARCHIVE_SIZE;
+		long contentsOffset = filesOffset + (long) fileCount * FILE_SIZE;
+
+		ByteBuffer table = ByteBuffer.allocate((int) contentsOffset);
+		table.putInt(MAGIC);
+		table.putInt(VERSION);
+		table.putInt(index.getProtocol());
+		table.putInt(index.getRevision());
+		table.putInt(index.getCompression());
+		table.putInt(index.getCrc());
+		table.put((byte) (index.isNamed() ? 1 : 0));
+		table.putInt(archiveCount);
+		table.putLong(contentsOffset);
+
+		// contents are streamed out after the table, while the table is built
+		out.position(contentsOffset);
+		DataOutputStream contents = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(out)));
+		long position = contentsOffset;
+
+		int archivePosition = HEADER_SIZE;
+		long filePosition = filesOffset;
+		for (Archive archive : index.getArchives())
+		{
+			byte[] hash = archive.getHash();
+			if (hash != null && hash.length > HASH_SIZE)
+			{
+				throw new IOException("unsupported hash length " + hash.length + " for archive "
+					+ index.getId() + "/" + archive.getArchiveId());
+			}
+
+			FileData[] files = archive.getFileData();
+			int count = files != null ? files.length : 0;
+
+			byte[] data = storage.loadArchive(archive);
+
+			table.position(archivePosition);
+			table.putInt(archive.getArchiveId());
+			table.putInt(archive.getNameHash());
+			table.putInt(archive.getRevision());
+			table.putInt(archive.getCrc());
+			table.putInt(archive.getCompression());
+			table.put((byte) (hash != null ? hash.length : NO_HASH));
+			if (hash != null)
+			{
+				table.put(hash);
+			}
+			table.position(archivePosition + ARCHIVE_SIZE - 4 - 8 - 4 - 8);
+			table.putInt(count);
+			table.putLong(filePosition);
+			table.putInt(data != null ? data.length : -1);
+			table.putLong(data != null ? position : 0);
+			archivePosition += ARCHIVE_SIZE;
+
+			table.position((int) filePosition);
+			for (int i = 0; i < count; ++i)
+			{
+				table.putInt(files[i].getId());
+				table.putInt(files[i].getNameHash());
+			}
+			filePosition += (long) count * FILE_SIZE;
+
+			if (data != null)
+			{
+				contents.write(data);
+				position += data.length;
+			}
+		}
+
+		contents.flush();
+
+		table.clear();
+		while (table.hasRemaining())
+		{
+			out.write(table, table.position());
+		}
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+	{
+		while (buffer.hasRemaining())
+		{
+			int read = channel.read(buffer, position);
+			if (read == -1)
+			{
+				throw new EOFException();
+			}
+			position += read;
+		}
+	}
+
+	private static long key(int index, int archive)
+	{
+		return (long) index << 32 | archive;
+	}
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.fs.flat;
+
+import java.io.File;
+import java.io.IOException;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.Index;
+import net.runelite.cache.fs.Storage;
+import net.runelite.cache.fs.Store;
+import net.runelite.cache.fs.jagex.DiskStorage;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Converts a store between the disk, flat and binary flat storage formats
+ */
+public class FlatStorageConverter
+{
+	private static final Logger logger = LoggerFactory.getLogger(FlatStorageConverter.class);
+
+	public static void main(String[] args) throws IOException
+	{
+		Options options = new Options();
+
+		options.addOption(null, "from", true, "format to convert from, one of disk, flat or binary");
+		options.addOption(null, "to", true, "format to convert to, one of disk, flat or binary");
+		options.addOption("i", "input", true, "directory to read the store from");
+		options.addOption("o", "output", true, "directory to write the store to");
+
+		CommandLineParser parser = new DefaultParser();
+		CommandLine cmd;
+		try
+		{
+			cmd = parser.parse(options, args);
+		}
+		catch (ParseException ex)
+		{
+			System.err.println("Error parsing command line options: " + ex.getMessage());
+			System.exit(-1);
+			return;
+		}
+
+		String input = cmd.getOptionValue("input");
+		String output = cmd.getOptionValue("output");
+		if (input == null || output == null)
+		{
+			System.err.println("Input and output directories must be specified");
+			System.exit(-1);
+			return;
+		}
+
+		File out = new File(output);
+		out.mkdirs();
+
+		try (Store from = new Store(storage(cmd.getOptionValue("from", "disk"), new File(input)));
+			Storage to = storage(cmd.getOptionValue("to", "binary"), out))
+		{
+			from.load();
+			convert(from, to);
+		}
+
+		logger.info("Converted {} to {}", input, output);
+	}
+
+	private static Storage storage(String format, File directory) throws IOException
+	{
+		switch (format)
+		{
+			case "disk":
+				return new DiskStorage(directory);
+			case "flat":
+				return new FlatStorage(directory);
+			case "binary":
+				return new BinaryFlatStorage(directory);
+			default:
+				throw new IllegalArgumentException("unknown format " + format);
+		}
+	}
+
+	/**
+	 * Copy a loaded store, including the contents of all of its archives,
+	 * into another storage and save it
+	 *
+	 * @param from
+	 * @param to
+	 * @throws IOException
+	 */
+	public static void convert(Store from, Storage to) throws IOException
+	{
+		Store store = new Store(to);
+
+		for (Index index : from.getIndexes())
+		{
+			Index index2 = store.findIndex(index.getId());
+			if (index2 == null)
+			{
+				index2 = store.addIndex(index.getId());
+			}
+
+			index2.setProtocol(index.getProtocol());
+			index2.setRevision(index.getRevision());
+			index2.setCompression(index.getCompression());
+			index2.setCrc(index.getCrc());
+			index2.setNamed(index.isNamed());
+
+			for (Archive archive : index.getArchives())
+			{
+				Archive archive2 = index2.addArchive(archive.getArchiveId());
+				archive2.setNameHash(archive.getNameHash());
+				archive2.setRevision(archive.getRevision());
+				archive2.setCrc(archive.getCrc());
+				archive2.setCompression(archive.getCompression());
+				archive2.setHash(archive.getHash());
+				archive2.setFileData(archive.getFileData());
+
+				byte[] data = from.getStorage().loadArchive(archive);
+				if (data != null)
+				{
+					to.saveArchive(archive2, data);
+				}
+			}
+		}
+
+		store.save();
+	}
+}
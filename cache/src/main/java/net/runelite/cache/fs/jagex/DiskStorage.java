@@ -24,12 +24,16 @@
  */
 package net.runelite.cache.fs.jagex;
 
-import com.google.common.primitives.Ints;
+import com.google.common.base.Preconditions;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import net.runelite.cache.fs.Archive;
 import net.runelite.cache.fs.Container;
 import net.runelite.cache.fs.Index;
@@ -56,7 +60,8 @@ public class DiskStorage implements Storage
 
 	public DiskStorage(File folder) throws IOException
 	{
-		this.folder = folder;
+		// a null folder would silently create the cache in the working directory
+		this.folder = Preconditions.checkNotNull(folder, "cache folder");
 
 		this.data = new DataFile(new File(folder, MAIN_FILE_CACHE_DAT));
 		this.index255 = new IndexFile(255, new File(folder, MAIN_FILE_CACHE_IDX + "255"));
@@ -85,7 +90,7 @@ public class DiskStorage implements Storage
 		}
 	}
 
-	private IndexFile getIndex(int i) throws FileNotFoundException
+	private synchronized IndexFile getIndex(int i) throws FileNotFoundException
 	{
 		for (IndexFile indexFile : indexFiles)
 		{
@@ -109,6 +114,51 @@ public class DiskStorage implements Storage
 		}
 	}
 
+	@Override
+	public void load(Store store, Executor executor) throws IOException
+	{
+		loadIndexes(store.getIndexes(), executor, this::loadIndex);
+	}
+
+	@FunctionalInterface
+	interface IndexLoader
+	{
+		void loadIndex(Index index) throws IOException;
+	}
+
+	static void loadIndexes(List<Index> indexes, Executor executor, IndexLoader loader) throws IOException
+	{
+		CompletableFuture<?>[] futures = new CompletableFuture<?>[indexes.size()];
+		for (int i = 0; i < futures.length; ++i)
+		{
+			Index index = indexes.get(i);
+			futures[i] = CompletableFuture.runAsync(() ->
+			{
+				try
+				{
+					loader.loadIndex(index);
+				}
+				catch (IOException ex)
+				{
+					throw new UncheckedIOException(ex);
+				}
+			}, executor);
+		}
+
+		try
+		{
+			CompletableFuture.allOf(futures).join();
+		}
+		catch (CompletionException ex)
+		{
+			if (ex.getCause() instanceof UncheckedIOException)
+			{
+				throw ((UncheckedIOException) ex.getCause()).getCause();
+			}
+			throw ex;
+		}
+	}
+
 	public byte[] readIndex(int indexId) throws IOException
 	{
 		IndexEntry entry = index255.read(indexId);
@@ -121,6 +171,11 @@ public class DiskStorage implements Storage
 		logger.trace("Loading index {}", index.getId());
 
 		byte[] indexData = readIndex(index.getId());
+		loadIndex(index, indexData);
+	}
+
+	static void loadIndex(Index index, byte[] indexData) throws IOException
+	{
 		Container res = Container.decompress(indexData, null);
 		byte[] data = res.data;
 
@@ -209,15 +264,8 @@ public class DiskStorage implements Storage
 		DataFileWriteResult res = data.write(index.getId(), a.getArchiveId(), archiveData);
 		indexFile.write(new IndexEntry(indexFile, a.getArchiveId(), res.sector, res.compressedLength));
 
-		byte compression = archiveData[0];
-		int compressedSize = Ints.fromBytes(archiveData[1], archiveData[2],
-			archiveData[3], archiveData[4]);
-
 		// don't crc the appended revision, if it is there
-		int length = 1 // compression type
-			+ 4 // compressed size
-			+ compressedSize
-			+ (compression != CompressionType.NONE ? 4 : 0);
+		int length = Container.payloadLength(archiveData);
 
 		Crc32 crc = new Crc32();
 		crc.update(archiveData, 0, length);
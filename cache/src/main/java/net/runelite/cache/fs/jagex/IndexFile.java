@@ -29,6 +29,8 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Objects;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,6 +44,7 @@ public class IndexFile implements Closeable
 	private final int indexFileId;
 	private final File file;
 	private final RandomAccessFile idx;
+	private final FileChannel channel;
 	private final byte[] buffer = new byte[INDEX_ENTRY_LEN];
 
 	public IndexFile(int indexFileId, File file) throws FileNotFoundException
@@ -49,6 +52,7 @@ public class IndexFile implements Closeable
 		this.indexFileId = indexFileId;
 		this.file = file;
 		this.idx = new RandomAccessFile(file, "rw");
+		this.channel = idx.getChannel();
 	}
 
 	@Override
@@ -96,7 +100,7 @@ public class IndexFile implements Closeable
 
 	public synchronized void write(IndexEntry entry) throws IOException
 	{
-		idx.seek(entry.getId() * INDEX_ENTRY_LEN);
+		idx.seek((long) entry.getId() * INDEX_ENTRY_LEN);
 
 		buffer[0] = (byte) (entry.getLength() >> 16);
 		buffer[1] = (byte) (entry.getLength() >> 8);
@@ -109,10 +113,24 @@ public class IndexFile implements Closeable
 		idx.write(buffer);
 	}
 
-	public synchronized IndexEntry read(int id) throws IOException
+	/**
+	 * Reads use a positional read on the file channel, so it is safe to
+	 * call this concurrently.
+	 */
+	public IndexEntry read(int id) throws IOException
 	{
-		idx.seek(id * INDEX_ENTRY_LEN);
-		int i = idx.read(buffer);
+		byte[] buffer = new byte[INDEX_ENTRY_LEN];
+		ByteBuffer buf = ByteBuffer.wrap(buffer);
+		long position = (long) id * INDEX_ENTRY_LEN;
+		while (buf.hasRemaining())
+		{
+			if (channel.read(buf, position + buf.position()) == -1)
+			{
+				break;
+			}
+		}
+
+		int i = buf.position();
 		if (i != INDEX_ENTRY_LEN)
 		{
 			logger.debug("short read for id {} on index {}: {}", id, indexFileId, i);
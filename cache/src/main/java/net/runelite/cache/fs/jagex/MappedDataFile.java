@@ -0,0 +1,282 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.fs.jagex;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Read only view of a data file which walks sector chains directly out of
+ * a memory mapping of the file, rather than seeking and reading each sector.
+ */
+public class MappedDataFile implements Closeable
+{
+	private static final Logger logger = LoggerFactory.getLogger(MappedDataFile.class);
+
+	private static final int SECTOR_SIZE = 520;
+
+	// a single mapping is limited to 2GB, so map in segments of whole sectors
+	private static final long SEGMENT_SIZE = (long) (Integer.MAX_VALUE / SECTOR_SIZE) * SECTOR_SIZE;
+
+	private final FileChannel channel;
+	private final MappedByteBuffer[] segments;
+	private final long length;
+
+	public MappedDataFile(File file) throws IOException
+	{
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		this.length = channel.size();
+
+		int count = (int) ((length + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+		segments = new MappedByteBuffer[count];
+		for (int i = 0; i < count; ++i)
+		{
+			long position = i * SEGMENT_SIZE;
+			segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(SEGMENT_SIZE, length - position));
+		}
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		channel.close();
+	}
+
+	/**
+	 *
+	 * @param indexId expected index of archive of contents being read
+	 * @param archiveId expected archive of contents being read
+	 * @param sector sector to start reading at
+	 * @param size size of file
+	 * @return
+	 */
+	public byte[] read(int indexId, int archiveId, int sector, int size)
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		if (!read(indexId, archiveId, sector, size, buffer))
+		{
+			return null;
+		}
+		return buffer.array();
+	}
+
+	/**
+	 * Read a file into a caller supplied buffer, starting at the buffer's
+	 * current position. On success the position is advanced by size.
+	 *
+	 * @param indexId expected index of archive of contents being read
+	 * @param archiveId expected archive of contents being read
+	 * @param sector sector to start reading at
+	 * @param size size of file
+	 * @param dest buffer to read into
+	 * @return true if the whole file was read
+	 */
+	public boolean read(int indexId, int archiveId, int sector, int size, ByteBuffer dest)
+	{
+		if (dest.remaining() < size)
+		{
+			throw new IllegalArgumentException("buffer too small, " + dest.remaining() + " < " + size);
+		}
+
+		if (sector <= 0L || length / SECTOR_SIZE < (long) sector)
+		{
+			logger.warn("bad read, dat length {}, requested sector {}", length, sector);
+			return false;
+		}
+
+		final int headerSize = archiveId > 0xFFFF ? 10 : 8;
+
+		for (int part = 0, readBytesCount = 0, nextSector;
+			size > readBytesCount;
+			sector = nextSector)
+		{
+			if (sector == 0)
+			{
+				logger.warn("Unexpected end of file");
+				return false;
+			}
+
+			int dataBlockSize = Math.min(size - readBytesCount, SECTOR_SIZE - headerSize);
+
+			ByteBuffer view = sector(sector, headerSize + dataBlockSize);
+			if (view == null)
+			{
+				logger.warn("Short read when reading file data for {}/{}", indexId, archiveId);
+				return false;
+			}
+
+			nextSector = readHeader(view, indexId, archiveId, part);
+			if (nextSector == -1)
+			{
+				return false;
+			}
+
+			view.limit(view.position() + dataBlockSize);
+			dest.put(view);
+			readBytesCount += dataBlockSize;
+
+			++part;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Read a file as read only slices of the mapping, one per sector with
+	 * the sector headers skipped, so the file can be written out without
+	 * copying it.
+	 *
+	 * @param indexId expected index of archive of contents being read
+	 * @param archiveId expected archive of contents being read
+	 * @param sector sector to start reading at
+	 * @param size size of file
+	 * @return the slices in file order, or null if the file can't be read
+	 */
+	public ByteBuffer[] readSlices(int indexId, int archiveId, int sector, int size)
+	{
+		if (sector <= 0L || length / SECTOR_SIZE < (long) sector)
+		{
+			logger.warn("bad read, dat length {}, requested sector {}", length, sector);
+			return null;
+		}
+
+		final int headerSize = archiveId > 0xFFFF ? 10 : 8;
+		final int dataSize = SECTOR_SIZE - headerSize;
+
+		ByteBuffer[] slices = new ByteBuffer[Math.max(1, (size + dataSize - 1) / dataSize)];
+
+		for (int part = 0, readBytesCount = 0, nextSector;
+			part < slices.length;
+			sector = nextSector)
+		{
+			if (sector == 0)
+			{
+				logger.warn("Unexpected end of file");
+				return null;
+			}
+
+			int dataBlockSize = Math.min(size - readBytesCount, dataSize);
+
+			ByteBuffer view = sector(sector, headerSize + dataBlockSize);
+			if (view == null)
+			{
+				logger.warn("Short read when reading file data for {}/{}", indexId, archiveId);
+				return null;
+			}
+
+			nextSector = readHeader(view, indexId, archiveId, part);
+			if (nextSector == -1)
+			{
+				return null;
+			}
+
+			view.limit(view.position() + dataBlockSize);
+			slices[part] = view.slice().asReadOnlyBuffer();
+			readBytesCount += dataBlockSize;
+
+			++part;
+		}
+
+		return slices;
+	}
+
+	/**
+	 * Get a view of the mapping positioned at the start of the given sector
+	 *
+	 * @param sector
+	 * @param len number of bytes required from the sector
+	 * @return the view, or null if the file does not contain len bytes
+	 * at the sector
+	 */
+	private ByteBuffer sector(int sector, int len)
+	{
+		long offset = (long) sector * SECTOR_SIZE;
+		if (offset + len > length)
+		{
+			return null;
+		}
+
+		ByteBuffer view = segments[(int) (offset / SEGMENT_SIZE)].duplicate();
+		int position = (int) (offset % SEGMENT_SIZE);
+		view.position(position);
+		view.limit(position + len);
+		return view;
+	}
+
+	/**
+	 * Read and verify a sector header, advancing the view past it
+	 *
+	 * @return the next sector, or -1 if the header is invalid
+	 */
+	private int readHeader(ByteBuffer view, int indexId, int archiveId, int part)
+	{
+		int currentArchive;
+		int currentPart;
+		int nextSector;
+		int currentIndex;
+		if (archiveId > 0xFFFF)
+		{
+			currentArchive = view.getInt();
+			currentPart = view.getShort() & 0xFFFF;
+			nextSector = ((view.get() & 0xFF) << 16)
+				| ((view.get() & 0xFF) << 8)
+				| (view.get() & 0xFF);
+			currentIndex = view.get() & 0xFF;
+		}
+		else
+		{
+			currentArchive = view.getShort() & 0xFFFF;
+			currentPart = view.getShort() & 0xFFFF;
+			nextSector = ((view.get() & 0xFF) << 16)
+				| ((view.get() & 0xFF) << 8)
+				| (view.get() & 0xFF);
+			currentIndex = view.get() & 0xFF;
+		}
+
+		if (archiveId != currentArchive || currentPart != part || indexId != currentIndex)
+		{
+			logger.warn("data mismatch {} != {}, {} != {}, {} != {}",
+				archiveId, currentArchive,
+				part, currentPart,
+				indexId, currentIndex);
+			return -1;
+		}
+
+		if (length / SECTOR_SIZE < (long) nextSector)
+		{
+			logger.warn("Invalid next sector");
+			return -1;
+		}
+
+		return nextSector;
+	}
+}
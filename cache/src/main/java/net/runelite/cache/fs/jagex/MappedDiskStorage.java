@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.fs.jagex;
+
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.Index;
+import net.runelite.cache.fs.Storage;
+import net.runelite.cache.fs.Store;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Read only disk storage which memory maps the data and index files
+ */
+public class MappedDiskStorage implements Storage
+{
+	private static final Logger logger = LoggerFactory.getLogger(MappedDiskStorage.class);
+
+	private static final String MAIN_FILE_CACHE_DAT = "main_file_cache.dat2";
+	private static final String MAIN_FILE_CACHE_IDX = "main_file_cache.idx";
+
+	private final MappedDataFile data;
+	private final MappedIndexFile index255;
+	private final MappedIndexFile[] indexFiles;
+
+	public MappedDiskStorage(File folder) throws IOException
+	{
+		this.data = new MappedDataFile(new File(folder, MAIN_FILE_CACHE_DAT));
+		this.index255 = new MappedIndexFile(255, new File(folder, MAIN_FILE_CACHE_IDX + "255"));
+
+		indexFiles = new MappedIndexFile[index255.getIndexCount()];
+		for (int i = 0; i < indexFiles.length; ++i)
+		{
+			indexFiles[i] = new MappedIndexFile(i, new File(folder, MAIN_FILE_CACHE_IDX + i));
+		}
+	}
+
+	@Override
+	public void init(Store store) throws IOException
+	{
+		for (int i = 0; i < indexFiles.length; ++i)
+		{
+			store.addIndex(i);
+		}
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		data.close();
+		index255.close();
+		for (MappedIndexFile indexFile : indexFiles)
+		{
+			indexFile.close();
+		}
+	}
+
+	@Override
+	public void load(Store store) throws IOException
+	{
+		for (Index index : store.getIndexes())
+		{
+			loadIndex(index);
+		}
+	}
+
+	@Override
+	public void load(Store store, Executor executor) throws IOException
+	{
+		DiskStorage.loadIndexes(store.getIndexes(), executor, this::loadIndex);
+	}
+
+	private void loadIndex(Index index) throws IOException
+	{
+		logger.trace("Loading index {}", index.getId());
+
+		byte[] indexData = readIndex(index.getId());
+		DiskStorage.loadIndex(index, indexData);
+	}
+
+	public byte[] readIndex(int indexId)
+	{
+		IndexEntry entry = index255.read(indexId);
+		if (entry == null)
+		{
+			return null;
+		}
+
+		return data.read(index255.getIndexFileId(), entry.getId(), entry.getSector(), entry.getLength());
+	}
+
+	@Override
+	public byte[] loadArchive(Archive archive) throws IOException
+	{
+		IndexEntry entry = readEntry(archive);
+		if (entry == null)
+		{
+			return null;
+		}
+
+		return data.read(archive.getIndex().getId(), entry.getId(), entry.getSector(), entry.getLength());
+	}
+
+	/**
+	 * Read the compressed data of an archive into a caller supplied buffer
+	 *
+	 * @param archive
+	 * @param dest
+	 * @return the length of the archive data, or -1 if it could not be read
+	 */
+	public int loadArchive(Archive archive, ByteBuffer dest)
+	{
+		IndexEntry entry = readEntry(archive);
+		if (entry == null)
+		{
+			return -1;
+		}
+
+		if (!data.read(archive.getIndex().getId(), entry.getId(), entry.getSector(), entry.getLength(), dest))
+		{
+			return -1;
+		}
+
+		return entry.getLength();
+	}
+
+	/**
+	 * Load the compressed data of an archive as a composite of read only
+	 * slices of the mapping, one per sector, without copying it
+	 *
+	 * @param archive
+	 * @return
+	 */
+	public CompositeByteBuf loadArchiveSlice(Archive archive)
+	{
+		IndexEntry entry = readEntry(archive);
+		if (entry == null)
+		{
+			return null;
+		}
+
+		ByteBuffer[] slices = data.readSlices(archive.getIndex().getId(), entry.getId(), entry.getSector(), entry.getLength());
+		if (slices == null)
+		{
+			return null;
+		}
+
+		// allow a component per sector so the buffer is never consolidated
+		CompositeByteBuf buf = Unpooled.compositeBuffer(slices.length);
+		for (ByteBuffer slice : slices)
+		{
+			buf.addComponent(Unpooled.wrappedBuffer(slice));
+		}
+		buf.writerIndex(buf.capacity());
+		return buf;
+	}
+
+	private IndexEntry readEntry(Archive archive)
+	{
+		Index index = archive.getIndex();
+		if (index.getId() >= indexFiles.length)
+		{
+			logger.debug("no index file for index {}", index.getId());
+			return null;
+		}
+
+		IndexEntry entry = indexFiles[index.getId()].read(archive.getArchiveId());
+		if (entry == null)
+		{
+			logger.debug("can't read archive " + archive.getArchiveId() + " from index " + index.getId());
+			return null;
+		}
+
+		logger.trace("Loading archive {} for index {} from sector {} length {}",
+			archive.getArchiveId(), index.getId(), entry.getSector(), entry.getLength());
+
+		return entry;
+	}
+
+	@Override
+	public void save(Store store) throws IOException
+	{
+		throw new UnsupportedOperationException("mapped storage is read only");
+	}
+
+	@Override
+	public void saveArchive(Archive archive, byte[] data) throws IOException
+	{
+		throw new UnsupportedOperationException("mapped storage is read only");
+	}
+}
@@ -24,6 +24,14 @@
  */
 package net.runelite.cache.item;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Software rasterizer. The lookup tables are shared and never modified,
+ * all other state is per instance, so instances may be used concurrently
+ * as long as each is confined to a single thread.
+ */
 class Graphics3D extends Rasterizer2D
 {
 	private static final double UNIT = Math.PI / 1024d; // How much of the circle each unit of SINE/COSINE is
@@ -31,8 +39,11 @@ class Graphics3D extends Rasterizer2D
 	public static final int[] SINE = new int[2048]; // sine angles for each of the 2048 units, * 65536 and stored as an int
 	public static final int[] COSINE = new int[2048]; // cosine
 
-	private static int[] field1932 = new int[512];
-	static int[] field1933 = new int[2048];
+	private static final int[] field1932 = new int[512];
+	static final int[] field1933 = new int[2048];
+
+	// palettes by brightness, shared by all instances
+	private static final Map<Double, int[]> PALETTES = new ConcurrentHashMap<>();
 
 	static
 	{
@@ -134,7 +145,7 @@ class Graphics3D extends Rasterizer2D
 
 	public final void setBrightness(double var0)
 	{
-		colorPalette = new ColorPalette(var0, 0, 512).getColorPalette();
+		colorPalette = PALETTES.computeIfAbsent(var0, brightness -> new ColorPalette(brightness, 0, 512).getColorPalette());
 	}
 
 	final void rasterGouraud(int var0, int var1, int var2, int var3, int var4, int var5, int var6, int var7, int var8)
@@ -26,6 +26,15 @@ package net.runelite.cache.item;
 
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
 import net.runelite.cache.definitions.ItemDefinition;
 import net.runelite.cache.definitions.ModelDefinition;
 import net.runelite.cache.definitions.providers.ItemProvider;
@@ -35,21 +44,130 @@ import net.runelite.cache.definitions.providers.TextureProvider;
 import net.runelite.cache.models.FaceNormal;
 import net.runelite.cache.models.VertexNormal;
 
+/**
+ * Renders item sprites the same way the client renders inventory icons.
+ * <p>
+ * Instances may be shared between threads. Each sprite is rendered with a
+ * rasterizer and model buffers borrowed from a pool, which grows to one
+ * per concurrently rendering thread. Generated textures are shared.
+ * The model provider must return a new definition on each call, as
+ * models are resized and recolored in place.
+ */
 public class ItemSpriteFactory
 {
+	private final ItemProvider itemProvider;
+	private final ModelProvider modelProvider;
+	private final RSTextureProvider textureProvider;
+	private final Queue<Context> contexts = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * Per worker rendering state
+	 */
+	private static class Context
+	{
+		private final Graphics3D graphics;
+		private final ModelBuffers buffers = new ModelBuffers();
+
+		private Context(RSTextureProvider textureProvider)
+		{
+			graphics = new Graphics3D(textureProvider);
+			graphics.setBrightness(0.6d);
+		}
+	}
+
+	public ItemSpriteFactory(ItemProvider itemProvider, ModelProvider modelProvider,
+		SpriteProvider spriteProvider, TextureProvider textureProvider)
+	{
+		this.itemProvider = itemProvider;
+		this.modelProvider = modelProvider;
+		this.textureProvider = new RSTextureProvider(textureProvider, spriteProvider);
+	}
+
 	public static final BufferedImage createSprite(ItemProvider itemProvider, ModelProvider modelProvider,
 		SpriteProvider spriteProvider, TextureProvider textureProvider,
 		int itemId, int quantity, int border, int shadowColor,
 		boolean noted) throws IOException
 	{
-		SpritePixels spritePixels = createSpritePixels(itemProvider, modelProvider, spriteProvider, textureProvider,
-			itemId, quantity, border, shadowColor, noted);
-		return spritePixels == null ? null : spritePixels.toBufferedImage();
+		ItemSpriteFactory factory = new ItemSpriteFactory(itemProvider, modelProvider, spriteProvider, textureProvider);
+		return factory.createSprite(itemId, quantity, border, shadowColor, noted);
 	}
 
-	private static final SpritePixels createSpritePixels(ItemProvider itemProvider, ModelProvider modelProvider,
-		SpriteProvider spriteProvider, TextureProvider textureProvider,
-		int itemId, int quantity, int border, int shadowColor,
+	public BufferedImage createSprite(int itemId, int quantity, int border, int shadowColor,
+		boolean noted) throws IOException
+	{
+		Context context = contexts.poll();
+		if (context == null)
+		{
+			context = new Context(textureProvider);
+		}
+
+		try
+		{
+			SpritePixels spritePixels = createSpritePixels(context, itemId, quantity, border, shadowColor, noted);
+			return spritePixels == null ? null : spritePixels.toBufferedImage();
+		}
+		finally
+		{
+			contexts.offer(context);
+		}
+	}
+
+	/**
+	 * Render sprites for many items in parallel
+	 *
+	 * @param itemIds
+	 * @param quantity
+	 * @param border
+	 * @param shadowColor
+	 * @param noted
+	 * @param executor executor to render on, with one task per item
+	 * @return the sprites by item id, in the order of the given ids,
+	 * excluding items without a sprite
+	 * @throws IOException
+	 */
+	public Map<Integer, BufferedImage> createSprites(Collection<Integer> itemIds, int quantity, int border,
+		int shadowColor, boolean noted, Executor executor) throws IOException
+	{
+		Map<Integer, CompletableFuture<BufferedImage>> futures = new LinkedHashMap<>();
+		for (int itemId : itemIds)
+		{
+			futures.put(itemId, CompletableFuture.supplyAsync(() ->
+			{
+				try
+				{
+					return createSprite(itemId, quantity, border, shadowColor, noted);
+				}
+				catch (IOException ex)
+				{
+					throw new UncheckedIOException(ex);
+				}
+			}, executor));
+		}
+
+		Map<Integer, BufferedImage> sprites = new LinkedHashMap<>();
+		try
+		{
+			for (Map.Entry<Integer, CompletableFuture<BufferedImage>> entry : futures.entrySet())
+			{
+				BufferedImage sprite = entry.getValue().join();
+				if (sprite != null)
+				{
+					sprites.put(entry.getKey(), sprite);
+				}
+			}
+		}
+		catch (CompletionException ex)
+		{
+			if (ex.getCause() instanceof UncheckedIOException)
+			{
+				throw ((UncheckedIOException) ex.getCause()).getCause();
+			}
+			throw ex;
+		}
+		return sprites;
+	}
+
+	private SpritePixels createSpritePixels(Context context, int itemId, int quantity, int border, int shadowColor,
 		boolean noted) throws IOException
 	{
 		ItemDefinition item = itemProvider.provide(itemId);
@@ -77,7 +195,7 @@ public class ItemSpriteFactory
 			item.updateNote(itemProvider.provide(item.notedTemplate), itemProvider.provide(item.notedID));
 		}
 
-		Model itemModel = getModel(modelProvider, item);
+		Model itemModel = getModel(modelProvider, item, context.buffers);
 		if (itemModel == null)
 		{
 			return null;
@@ -86,8 +204,7 @@ public class ItemSpriteFactory
 		SpritePixels auxSpritePixels = null;
 		if (item.notedTemplate != -1)
 		{
-			auxSpritePixels = createSpritePixels(itemProvider, modelProvider, spriteProvider, textureProvider,
-				item.notedID, 10, 1, 0, true);
+			auxSpritePixels = createSpritePixels(context, item.notedID, 10, 1, 0, true);
 			if (auxSpritePixels == null)
 			{
 				return null;
@@ -95,8 +212,7 @@ public class ItemSpriteFactory
 		}
 		else if (item.boughtTemplateId != -1)
 		{
-			auxSpritePixels = createSpritePixels(itemProvider, modelProvider, spriteProvider, textureProvider,
-				item.boughtId, quantity, border, shadowColor, false);
+			auxSpritePixels = createSpritePixels(context, item.boughtId, quantity, border, shadowColor, false);
 			if (auxSpritePixels == null)
 			{
 				return null;
@@ -104,19 +220,15 @@ public class ItemSpriteFactory
 		}
 		else if (item.placeholderTemplateId != -1)
 		{
-			auxSpritePixels = createSpritePixels(itemProvider, modelProvider, spriteProvider, textureProvider,
-				item.placeholderId, quantity, 0, 0, false);
+			auxSpritePixels = createSpritePixels(context, item.placeholderId, quantity, 0, 0, false);
 			if (auxSpritePixels == null)
 			{
 				return null;
 			}
 		}
 
-		RSTextureProvider rsTextureProvider = new RSTextureProvider(textureProvider, spriteProvider);
-
 		SpritePixels spritePixels = new SpritePixels(36, 32);
-		Graphics3D graphics = new Graphics3D(rsTextureProvider);
-		graphics.setBrightness(0.6d);
+		Graphics3D graphics = context.graphics;
 		graphics.setRasterBuffer(spritePixels.pixels, 36, 32);
 		graphics.reset();
 		graphics.setRasterClipping();
@@ -183,7 +295,7 @@ public class ItemSpriteFactory
 		return spritePixels;
 	}
 
-	private static Model getModel(ModelProvider modelProvider, ItemDefinition item) throws IOException
+	private static Model getModel(ModelProvider modelProvider, ItemDefinition item, ModelBuffers buffers) throws IOException
 	{
 		Model itemModel;
 		ModelDefinition inventoryModel = modelProvider.provide(item.inventoryModel);
@@ -213,17 +325,17 @@ public class ItemSpriteFactory
 			}
 		}
 
-		itemModel = light(inventoryModel, item.ambient + 64, item.contrast + 768, -50, -10, -50);
+		itemModel = light(inventoryModel, buffers, item.ambient + 64, item.contrast + 768, -50, -10, -50);
 		itemModel.isItemModel = true;
 		return itemModel;
 	}
 
-	private static Model light(ModelDefinition def, int ambient, int contrast, int x, int y, int z)
+	private static Model light(ModelDefinition def, ModelBuffers buffers, int ambient, int contrast, int x, int y, int z)
 	{
 		def.computeNormals();
 		int somethingMagnitude = (int) Math.sqrt((double) (z * z + x * x + y * y));
 		int var7 = somethingMagnitude * contrast >> 8;
-		Model litModel = new Model();
+		Model litModel = new Model(buffers);
 		litModel.field1856 = new int[def.faceCount];
 		litModel.field1854 = new int[def.faceCount];
 		litModel.field1823 = new int[def.faceCount];
@@ -24,6 +24,7 @@
  */
 package net.runelite.cache.item;
 
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import net.runelite.cache.definitions.TextureDefinition;
 import net.runelite.cache.definitions.providers.SpriteProvider;
 import net.runelite.cache.definitions.providers.TextureProvider;
@@ -32,6 +33,8 @@ public class RSTextureProvider
 {
 	private final SpriteProvider spriteProvider;
 	TextureDefinition[] textures;
+	// generated texture pixels, published to all threads rendering with this provider
+	private final AtomicReferenceArray<int[]> pixels;
 	int maxSize;
 	int size;
 	double brightness;
@@ -48,8 +51,9 @@ public class RSTextureProvider
 		this.brightness = 0.8D;
 		this.width = 128;
 
+		TextureDefinition[] textureDefinitions = textureProvider.provide();
 		int max = -1;
-		for (TextureDefinition textureDefinition : textureProvider.provide())
+		for (TextureDefinition textureDefinition : textureDefinitions)
 		{
 			if (textureDefinition.getId() > max)
 			{
@@ -58,24 +62,36 @@ public class RSTextureProvider
 		}
 
 		textures = new TextureDefinition[max + 1];
-		for (TextureDefinition textureDefinition : textureProvider.provide())
+		for (TextureDefinition textureDefinition : textureDefinitions)
 		{
 			textures[textureDefinition.getId()] = textureDefinition;
 		}
+		pixels = new AtomicReferenceArray<>(textures.length);
 	}
 
 	public int[] load(int var1)
 	{
+		int[] texturePixels = pixels.get(var1);
+		if (texturePixels != null)
+		{
+			return texturePixels;
+		}
+
 		TextureDefinition var2 = this.textures[var1];
 		if (var2 != null)
 		{
-			if (var2.pixels != null)
+			// generating a texture modifies the sprites it is made from
+			synchronized (spriteProvider)
 			{
-				return var2.pixels;
+				if (var2.pixels == null)
+				{
+					var2.method2680(this.brightness, this.width, spriteProvider);
+				}
+				texturePixels = var2.pixels;
 			}
 
-			boolean var3 = var2.method2680(this.brightness, this.width, spriteProvider);
-			return var2.pixels;
+			pixels.set(var1, texturePixels);
+			return texturePixels;
 		}
 
 		return null;
@@ -0,0 +1,404 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.models;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import net.runelite.cache.IndexType;
+import net.runelite.cache.TextureManager;
+import net.runelite.cache.definitions.ModelDefinition;
+import net.runelite.cache.definitions.loaders.ModelLoader;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.Index;
+import net.runelite.cache.fs.Store;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Exports all of the models of a store as obj and mtl files, in parallel.
+ * The crc of each exported model archive is recorded in a manifest in the
+ * output directory as soon as the model is written, so an interrupted or
+ * repeated export only redoes the models which are missing or have changed.
+ */
+public class ModelExporter
+{
+	private static final Logger logger = LoggerFactory.getLogger(ModelExporter.class);
+
+	static final String MANIFEST = "manifest.txt";
+
+	private final Store store;
+	private final TextureManager textureManager;
+	private final File directory;
+	// the loader keeps no state, so it is shared by all threads. Its only
+	// scratch is a handful of InputStream cursors per model, which each wrap
+	// the data in a new ByteBuffer, so they are not worth pooling; the
+	// arrays it allocates are the decoded model itself.
+	private final ModelLoader loader = new ModelLoader();
+	private final ThreadLocal<Context> contexts = ThreadLocal.withInitial(Context::new);
+
+	/**
+	 * Per thread output buffers, reused between models
+	 */
+	private static class Context
+	{
+		private final CharArrayBuffer obj = new CharArrayBuffer();
+		private final CharArrayBuffer mtl = new CharArrayBuffer();
+		private final PrintWriter objWriter = new PrintWriter(obj);
+		private final PrintWriter mtlWriter = new PrintWriter(mtl);
+		private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+		private ByteBuffer bytes = ByteBuffer.allocate(1 << 16);
+
+		private void write(File file, CharArrayBuffer chars) throws IOException
+		{
+			int max = (int) Math.ceil(chars.count * encoder.maxBytesPerChar());
+			if (bytes.capacity() < max)
+			{
+				bytes = ByteBuffer.allocate(Integer.highestOneBit(max) << 1);
+			}
+
+			bytes.clear();
+			encoder.reset();
+			CharBuffer in = CharBuffer.wrap(chars.buf, 0, chars.count);
+			CoderResult result = encoder.encode(in, bytes, true);
+			if (!result.isUnderflow())
+			{
+				result.throwException();
+			}
+			encoder.flush(bytes);
+			bytes.flip();
+
+			try (FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+			{
+				while (bytes.hasRemaining())
+				{
+					channel.write(bytes);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Growable char array which can be reset without being reallocated
+	 */
+	private static class CharArrayBuffer extends Writer
+	{
+		private char[] buf = new char[1 << 16];
+		private int count;
+
+		@Override
+		public void write(char[] cbuf, int off, int len)
+		{
+			if (count + len > buf.length)
+			{
+				buf = Arrays.copyOf(buf, Math.max(buf.length << 1, count + len));
+			}
+			System.arraycopy(cbuf, off, buf, count, len);
+			count += len;
+		}
+
+		@Override
+		public void write(String str, int off, int len)
+		{
+			if (count + len > buf.length)
+			{
+				buf = Arrays.copyOf(buf, Math.max(buf.length << 1, count + len));
+			}
+			str.getChars(off, off + len, buf, count);
+			count += len;
+		}
+
+		@Override
+		public void flush()
+		{
+		}
+
+		@Override
+		public void close()
+		{
+		}
+
+		private void reset()
+		{
+			count = 0;
+		}
+	}
+
+	public ModelExporter(Store store, TextureManager textureManager, File directory)
+	{
+		this.store = store;
+		this.textureManager = textureManager;
+		this.directory = directory;
+	}
+
+	public static void main(String[] args) throws IOException
+	{
+		Options options = new Options();
+
+		options.addOption("c", "cache", true, "cache base");
+		options.addOption("o", "output", true, "directory to export the models to");
+		options.addOption("t", "threads", true, "number of threads to export with");
+
+		CommandLineParser parser = new DefaultParser();
+		CommandLine cmd;
+		try
+		{
+			cmd = parser.parse(options, args);
+		}
+		catch (ParseException ex)
+		{
+			System.err.println("Error parsing command line options: " + ex.getMessage());
+			System.exit(-1);
+			return;
+		}
+
+		String cache = cmd.getOptionValue("cache");
+		String output = cmd.getOptionValue("output");
+		if (cache == null || output == null)
+		{
+			System.err.println("Cache and output directories must be specified");
+			System.exit(-1);
+			return;
+		}
+
+		int threads = Integer.parseInt(cmd.getOptionValue("threads",
+			Integer.toString(Runtime.getRuntime().availableProcessors())));
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+		try (Store store = new Store(new File(cache)))
+		{
+			store.load();
+
+			TextureManager textureManager = new TextureManager(store);
+			textureManager.load();
+
+			ModelExporter exporter = new ModelExporter(store, textureManager, new File(output));
+			int count = exporter.export(executor);
+			logger.info("Exported {} models to {}", count, output);
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Export the models which are missing from the output directory or have
+	 * changed since they were last exported
+	 *
+	 * @param executor executor to export on, with one task per model
+	 * @return the number of models exported
+	 * @throws IOException
+	 */
+	public int export(Executor executor) throws IOException
+	{
+		directory.mkdirs();
+
+		File manifestFile = new File(directory, MANIFEST);
+		Map<Integer, Integer> manifest = readManifest(manifestFile);
+
+		Index index = store.getIndex(IndexType.MODELS);
+		List<Archive> pending = new ArrayList<>();
+		for (Archive archive : index.getArchives())
+		{
+			Integer crc = manifest.get(archive.getArchiveId());
+			if (crc == null || crc != archive.getCrc()
+				|| !objFile(archive).exists() || !mtlFile(archive).exists())
+			{
+				pending.add(archive);
+			}
+		}
+
+		logger.debug("{} of {} models need to be exported", pending.size(), index.getArchives().size());
+
+		try (FileChannel journal = FileChannel.open(manifestFile.toPath(),
+			StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND))
+		{
+			CompletableFuture<?>[] futures = new CompletableFuture<?>[pending.size()];
+			for (int i = 0; i < futures.length; ++i)
+			{
+				Archive archive = pending.get(i);
+				futures[i] = CompletableFuture.runAsync(() ->
+				{
+					try
+					{
+						if (export(archive))
+						{
+							journal.write(ByteBuffer.wrap(manifestLine(archive)));
+						}
+					}
+					catch (IOException ex)
+					{
+						throw new UncheckedIOException(ex);
+					}
+				}, executor);
+			}
+
+			try
+			{
+				CompletableFuture.allOf(futures).join();
+			}
+			catch (CompletionException ex)
+			{
+				if (ex.getCause() instanceof UncheckedIOException)
+				{
+					throw ((UncheckedIOException) ex.getCause()).getCause();
+				}
+				throw ex;
+			}
+		}
+
+		writeManifest(manifestFile, index);
+		return pending.size();
+	}
+
+	private boolean export(Archive archive) throws IOException
+	{
+		byte[] data = archive.decompress(store.getStorage().loadArchive(archive));
+		if (data == null)
+		{
+			logger.warn("Unable to load model {}", archive.getArchiveId());
+			return false;
+		}
+
+		Context context = contexts.get();
+		ModelDefinition model = loader.load(archive.getArchiveId(), data);
+
+		context.obj.reset();
+		context.mtl.reset();
+
+		ObjExporter exporter = new ObjExporter(textureManager, model);
+		exporter.export(context.objWriter, context.mtlWriter);
+
+		context.write(objFile(archive), context.obj);
+		context.write(mtlFile(archive), context.mtl);
+		return true;
+	}
+
+	private File objFile(Archive archive)
+	{
+		return new File(directory, archive.getArchiveId() + ".obj");
+	}
+
+	private File mtlFile(Archive archive)
+	{
+		return new File(directory, archive.getArchiveId() + ".mtl");
+	}
+
+	private static byte[] manifestLine(Archive archive)
+	{
+		return (archive.getArchiveId() + " " + archive.getCrc() + "\n").getBytes(StandardCharsets.US_ASCII);
+	}
+
+	private static Map<Integer, Integer> readManifest(File file) throws IOException
+	{
+		Map<Integer, Integer> manifest = new HashMap<>();
+		if (!file.exists())
+		{
+			return manifest;
+		}
+
+		try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.US_ASCII))
+		{
+			String line;
+			while ((line = reader.readLine()) != null)
+			{
+				// later lines replace earlier ones, and the last line may be
+				// partial if an export was interrupted
+				String[] parts = line.split(" ");
+				if (parts.length != 2)
+				{
+					continue;
+				}
+
+				try
+				{
+					manifest.put(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+				}
+				catch (NumberFormatException ex)
+				{
+					logger.debug("Skipping bad manifest line {}", line);
+				}
+			}
+		}
+		return manifest;
+	}
+
+	/**
+	 * Rewrite the manifest with a single line for each exported model
+	 */
+	private void writeManifest(File file, Index index) throws IOException
+	{
+		Map<Integer, Integer> manifest = readManifest(file);
+
+		File tmp = new File(directory, MANIFEST + ".tmp");
+		try (FileChannel channel = FileChannel.open(tmp.toPath(),
+			StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+		{
+			for (Archive archive : index.getArchives())
+			{
+				Integer crc = manifest.get(archive.getArchiveId());
+				if (crc != null && crc == archive.getCrc())
+				{
+					ByteBuffer line = ByteBuffer.wrap(manifestLine(archive));
+					while (line.hasRemaining())
+					{
+						channel.write(line);
+					}
+				}
+			}
+		}
+
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.region;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.io.IOException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads regions on first access rather than all at once, keeping a bounded
+ * number of recently used regions. When a region is accessed its neighbours
+ * are loaded in the background, as they are usually accessed next.
+ */
+public class LazyRegionLoader
+{
+	private static final Logger logger = LoggerFactory.getLogger(LazyRegionLoader.class);
+
+	private final RegionLoader regionLoader;
+	private final Executor prefetchExecutor;
+	private final LoadingCache<Integer, Optional<Region>> regions;
+	private final Set<Integer> prefetching = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * @param regionLoader loader to load regions with
+	 * @param maximumSize maximum number of regions to keep loaded
+	 * @param prefetchExecutor executor to load neighbouring regions on, or
+	 * null to not prefetch
+	 */
+	public LazyRegionLoader(RegionLoader regionLoader, int maximumSize, Executor prefetchExecutor)
+	{
+		this.regionLoader = regionLoader;
+		this.prefetchExecutor = prefetchExecutor;
+		this.regions = CacheBuilder.newBuilder()
+			.maximumSize(maximumSize)
+			.build(new CacheLoader<Integer, Optional<Region>>()
+			{
+				@Override
+				public Optional<Region> load(Integer regionId) throws IOException
+				{
+					return Optional.ofNullable(regionLoader.loadRegionFromArchive(regionId));
+				}
+			});
+	}
+
+	/**
+	 * Get a region, loading it if it is not loaded
+	 *
+	 * @param regionId
+	 * @return the region, or null if it does not exist
+	 * @throws IOException
+	 */
+	public Region getRegion(int regionId) throws IOException
+	{
+		Region region = load(regionId);
+		if (region != null)
+		{
+			prefetchNeighbours(regionId);
+		}
+		return region;
+	}
+
+	public Region findRegionForWorldCoordinates(int x, int y) throws IOException
+	{
+		x >>>= 6;
+		y >>>= 6;
+		return getRegion((x << 8) | y);
+	}
+
+	/**
+	 * Check if a region is loaded, without loading it
+	 *
+	 * @param regionId
+	 * @return
+	 */
+	public boolean isLoaded(int regionId)
+	{
+		return regions.getIfPresent(regionId) != null;
+	}
+
+	public RegionLoader getRegionLoader()
+	{
+		return regionLoader;
+	}
+
+	private Region load(int regionId) throws IOException
+	{
+		try
+		{
+			return regions.get(regionId).orElse(null);
+		}
+		catch (ExecutionException ex)
+		{
+			if (ex.getCause() instanceof IOException)
+			{
+				throw (IOException) ex.getCause();
+			}
+			throw new RuntimeException(ex.getCause());
+		}
+		catch (UncheckedExecutionException ex)
+		{
+			Throwables.throwIfUnchecked(ex.getCause());
+			throw ex;
+		}
+	}
+
+	private void prefetchNeighbours(int regionId)
+	{
+		if (prefetchExecutor == null)
+		{
+			return;
+		}
+
+		int x = regionId >> 8;
+		int y = regionId & 0xFF;
+		for (int dx = -1; dx <= 1; ++dx)
+		{
+			for (int dy = -1; dy <= 1; ++dy)
+			{
+				int nx = x + dx;
+				int ny = y + dy;
+				if ((dx == 0 && dy == 0) || nx < 0 || ny < 0 || nx > 0xFF || ny > 0xFF)
+				{
+					continue;
+				}
+
+				int neighbour = nx << 8 | ny;
+				if (isLoaded(neighbour) || !prefetching.add(neighbour))
+				{
+					continue;
+				}
+
+				prefetchExecutor.execute(() ->
+				{
+					try
+					{
+						load(neighbour);
+					}
+					catch (IOException | RuntimeException ex)
+					{
+						logger.debug("Unable to prefetch region {}", neighbour, ex);
+					}
+					finally
+					{
+						prefetching.remove(neighbour);
+					}
+				});
+			}
+		}
+	}
+}
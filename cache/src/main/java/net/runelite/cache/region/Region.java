@@ -24,12 +24,15 @@
  */
 package net.runelite.cache.region;
 
-import java.util.ArrayList;
 import java.util.List;
 import net.runelite.cache.definitions.LocationsDefinition;
 import net.runelite.cache.definitions.MapDefinition;
 import net.runelite.cache.definitions.MapDefinition.Tile;
 
+/**
+ * A 64x64 region of the map. Its terrain is stored in a {@link WorldTerrain},
+ * either one shared with other regions or one of its own.
+ */
 public class Region
 {
 
@@ -41,75 +44,93 @@ public class Region
 	private final int baseX;
 	private final int baseY;
 
-	private final int[][][] tileHeights = new int[Z][X][Y];
-	private final byte[][][] tileSettings = new byte[Z][X][Y];
-	private final byte[][][] overlayIds = new byte[Z][X][Y];
-	private final byte[][][] overlayPaths = new byte[Z][X][Y];
-	private final byte[][][] overlayRotations = new byte[Z][X][Y];
-	private final byte[][][] underlayIds = new byte[Z][X][Y];
-
-	private final List<Location> locations = new ArrayList<>();
+	private final WorldTerrain terrain;
+	private final int slot;
+	private final int offset;
 
 	public Region(int id)
+	{
+		this(new WorldTerrain(1), id, 0);
+	}
+
+	public Region(int x, int y)
+	{
+		this(x << 8 | y);
+	}
+
+	Region(WorldTerrain terrain, int id, int slot)
 	{
 		this.regionID = id;
 		this.baseX = ((id >> 8) & 0xFF) << 6; // local coords are in bottom 6 bits (64*64)
 		this.baseY = (id & 0xFF) << 6;
+		this.terrain = terrain;
+		this.slot = slot;
+		this.offset = slot * WorldTerrain.REGION_SIZE;
 	}
 
-	public Region(int x, int y)
+	private int index(int z, int x, int y)
 	{
-		this.regionID = x << 8 | y;
-		this.baseX = x << 6;
-		this.baseY = y << 6;
+		return offset + (z << 12 | x << 6 | y);
 	}
 
 	public void loadTerrain(MapDefinition map)
 	{
-		Tile[][][] tiles = map.getTiles();
-		for (int z = 0; z < Z; z++)
+		// synchronized with the terrain growing when regions are added to it
+		synchronized (terrain)
 		{
-			for (int x = 0; x < X; x++)
+			int[] tileHeights = terrain.tileHeights;
+			byte[] tileSettings = terrain.tileSettings;
+			byte[] overlayIds = terrain.overlayIds;
+			byte[] overlayPaths = terrain.overlayPaths;
+			byte[] overlayRotations = terrain.overlayRotations;
+			byte[] underlayIds = terrain.underlayIds;
+
+			Tile[][][] tiles = map.getTiles();
+			for (int z = 0; z < Z; z++)
 			{
-				for (int y = 0; y < Y; y++)
+				for (int x = 0; x < X; x++)
 				{
-					Tile tile = tiles[z][x][y];
-
-					if (tile.height == null)
+					for (int y = 0; y < Y; y++)
 					{
-						if (z == 0)
-						{
-							tileHeights[0][x][y] = -HeightCalc.calculate(baseX + x + 0xe3b7b, baseY + y + 0x87cce) * 8;
-						}
-						else
-						{
-							tileHeights[z][x][y] = tileHeights[z - 1][x][y] - 240;
-						}
-					}
-					else
-					{
-						int height = tile.getHeight();
-						if (height == 1)
-						{
-							height = 0;
-						}
+						Tile tile = tiles[z][x][y];
+						int i = index(z, x, y);
 
-						if (z == 0)
+						if (tile.height == null)
 						{
-							tileHeights[0][x][y] = -height * 8;
+							if (z == 0)
+							{
+								tileHeights[i] = -HeightCalc.calculate(baseX + x + 0xe3b7b, baseY + y + 0x87cce) * 8;
+							}
+							else
+							{
+								tileHeights[i] = tileHeights[index(z - 1, x, y)] - 240;
+							}
 						}
 						else
 						{
-							tileHeights[z][x][y] = tileHeights[z - 1][x][y] - height * 8;
+							int height = tile.getHeight();
+							if (height == 1)
+							{
+								height = 0;
+							}
+
+							if (z == 0)
+							{
+								tileHeights[i] = -height * 8;
+							}
+							else
+							{
+								tileHeights[i] = tileHeights[index(z - 1, x, y)] - height * 8;
+							}
 						}
-					}
 
-					overlayIds[z][x][y] = tile.getOverlayId();
-					overlayPaths[z][x][y] = tile.getOverlayPath();
-					overlayRotations[z][x][y] = tile.getOverlayRotation();
+						overlayIds[i] = tile.getOverlayId();
+						overlayPaths[i] = tile.getOverlayPath();
+						overlayRotations[i] = tile.getOverlayRotation();
 
-					tileSettings[z][x][y] = tile.getSettings();
-					underlayIds[z][x][y] = tile.getUnderlayId();
+						tileSettings[i] = tile.getSettings();
+						underlayIds[i] = tile.getUnderlayId();
+					}
 				}
 			}
 		}
@@ -117,14 +138,7 @@ public class Region
 
 	public void loadLocations(LocationsDefinition locs)
 	{
-		for (Location loc : locs.getLocations())
-		{
-			Location newLoc = new Location(loc.getId(), loc.getType(), loc.getOrientation(),
-				new Position(getBaseX() + loc.getPosition().getX(),
-					getBaseY() + loc.getPosition().getY(),
-					loc.getPosition().getZ()));
-			locations.add(newLoc);
-		}
+		terrain.addLocations(slot, locs);
 	}
 
 	public int getRegionID()
@@ -144,37 +158,48 @@ public class Region
 
 	public int getTileHeight(int z, int x, int y)
 	{
-		return tileHeights[z][x][y];
+		return terrain.tileHeights[index(z, x, y)];
 	}
 
 	public byte getTileSetting(int z, int x, int y)
 	{
-		return tileSettings[z][x][y];
+		return terrain.tileSettings[index(z, x, y)];
 	}
 
 	public int getOverlayId(int z, int x, int y)
 	{
-		return overlayIds[z][x][y] & 0xFF;
+		return terrain.overlayIds[index(z, x, y)] & 0xFF;
 	}
 
 	public byte getOverlayPath(int z, int x, int y)
 	{
-		return overlayPaths[z][x][y];
+		return terrain.overlayPaths[index(z, x, y)];
 	}
 
 	public byte getOverlayRotation(int z, int x, int y)
 	{
-		return overlayRotations[z][x][y];
+		return terrain.overlayRotations[index(z, x, y)];
 	}
 
 	public int getUnderlayId(int z, int x, int y)
 	{
-		return underlayIds[z][x][y] & 0xFF;
+		return terrain.underlayIds[index(z, x, y)] & 0xFF;
 	}
 
+	/**
+	 * Get the locations of this region, in world coordinates. The list is
+	 * created from the location table on each call.
+	 *
+	 * @return
+	 */
 	public List<Location> getLocations()
 	{
-		return locations;
+		return terrain.getLocations(slot, baseX, baseY);
+	}
+
+	public int getLocationCount()
+	{
+		return terrain.getLocationCount(slot);
 	}
 
 	public int getRegionX()
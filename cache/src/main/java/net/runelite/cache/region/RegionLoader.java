@@ -26,8 +26,8 @@ package net.runelite.cache.region;
 
 import java.io.IOException;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import net.runelite.cache.IndexType;
 import net.runelite.cache.definitions.LocationsDefinition;
 import net.runelite.cache.definitions.MapDefinition;
@@ -50,32 +50,57 @@ public class RegionLoader
 	private final Store store;
 	private final Index index;
 	private final XteaKeyManager keyManager;
+	private final MapLoader mapLoader = new MapLoader();
+	private final LocationsLoader locationsLoader = new LocationsLoader();
+	// regions whose locations could not be decrypted with their keys
+	private final Set<Integer> xteaFailures = ConcurrentHashMap.newKeySet();
 
-	private final Map<Integer, Region> regions = new HashMap<>();
+	private WorldTerrain terrain = new WorldTerrain();
 	private Region lowestX = null, lowestY = null;
 	private Region highestX = null, highestY = null;
 
 	public RegionLoader(Store store)
+	{
+		this(store, loadKeys());
+	}
+
+	public RegionLoader(Store store, XteaKeyManager keyManager)
 	{
 		this.store = store;
-		index = store.getIndex(IndexType.MAPS);
-		keyManager = new XteaKeyManager();
+		this.index = store.getIndex(IndexType.MAPS);
+		this.keyManager = keyManager;
+	}
+
+	private static XteaKeyManager loadKeys()
+	{
+		XteaKeyManager keyManager = new XteaKeyManager();
 		keyManager.loadKeys();
+		return keyManager;
 	}
 
 	public void loadRegions() throws IOException
 	{
+		terrain = new WorldTerrain();
 		for (int i = 0; i < MAX_REGION; ++i)
 		{
-			Region region = this.loadRegionFromArchive(i);
-			if (region != null)
-			{
-				regions.put(i, region);
-			}
+			loadRegion(i, terrain);
 		}
 	}
 
 	public Region loadRegionFromArchive(int i) throws IOException
+	{
+		return loadRegion(i, null);
+	}
+
+	/**
+	 * Load a region
+	 *
+	 * @param i region id
+	 * @param terrain terrain to add the region to, or null to load it on its own
+	 * @return the region, or null if it does not exist
+	 * @throws IOException
+	 */
+	private Region loadRegion(int i, WorldTerrain terrain) throws IOException
 	{
 		int x = i >> 8;
 		int y = i & 0xFF;
@@ -91,25 +116,26 @@ public class RegionLoader
 			return null;
 		}
 
-		byte[] data = map.decompress(storage.loadArchive(map));
+		byte[] data = storage.loadArchiveContents(map, null);
 
-		MapDefinition mapDef = new MapLoader().load(x, y, data);
+		MapDefinition mapDef = mapLoader.load(x, y, data);
 
-		Region region = new Region(i);
+		Region region = terrain != null ? terrain.addRegion(i) : new Region(i);
 		region.loadTerrain(mapDef);
 
-		int[] keys = keyManager.getKeys(i);
+		int[] keys = xteaFailures.contains(i) ? null : keyManager.getKeys(i);
 		if (keys != null)
 		{
 			try
 			{
-				data = land.decompress(storage.loadArchive(land), keys);
-				LocationsDefinition locDef = new LocationsLoader().load(x, y, data);
+				data = storage.loadArchiveContents(land, keys);
+				LocationsDefinition locDef = locationsLoader.load(x, y, data);
 				region.loadLocations(locDef);
 			}
 			catch (IOException ex)
 			{
 				logger.debug("Can't decrypt region " + i, ex);
+				xteaFailures.add(i);
 			}
 		}
 
@@ -118,7 +144,7 @@ public class RegionLoader
 
 	public void calculateBounds()
 	{
-		for (Region region : regions.values())
+		for (Region region : terrain.getRegions())
 		{
 			if (lowestX == null || region.getBaseX() < lowestX.getBaseX())
 			{
@@ -144,14 +170,31 @@ public class RegionLoader
 
 	public Collection<Region> getRegions()
 	{
-		return regions.values();
+		return terrain.getRegions();
+	}
+
+	/**
+	 * Check if the locations of a region failed to decrypt with its keys.
+	 * Decryption of these regions is not attempted again.
+	 *
+	 * @param regionId
+	 * @return
+	 */
+	public boolean isXteaFailed(int regionId)
+	{
+		return xteaFailures.contains(regionId);
+	}
+
+	public WorldTerrain getTerrain()
+	{
+		return terrain;
 	}
 
 	public Region findRegionForWorldCoordinates(int x, int y)
 	{
 		x >>>= 6;
 		y >>>= 6;
-		return regions.get((x << 8) | y);
+		return terrain.getRegion((x << 8) | y);
 	}
 
 	public Region getLowestX()
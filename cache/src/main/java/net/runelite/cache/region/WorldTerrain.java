@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.region;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import net.runelite.cache.definitions.LocationsDefinition;
+import net.runelite.cache.util.IntHashMap;
+
+/**
+ * Terrain and locations of many regions, stored as one flat array per
+ * attribute rather than as nested arrays and location objects per region.
+ * Regions added to it are views onto the shared arrays.
+ * <p>
+ * Adding regions is synchronized, however a region should only be read
+ * by other threads once all regions have been added.
+ */
+public class WorldTerrain
+{
+	static final int REGION_SIZE = Region.Z * Region.X * Region.Y;
+
+	private final IntHashMap<Region> regionsById = new IntHashMap<>();
+	private final List<Region> regions = new ArrayList<>();
+
+	// terrain, indexed by slot * REGION_SIZE + Region#index
+	int[] tileHeights;
+	byte[] tileSettings;
+	byte[] overlayIds;
+	byte[] overlayPaths;
+	byte[] overlayRotations;
+	byte[] underlayIds;
+
+	// locations of each region are contiguous, starting at the region's offset
+	private int[] locationOffsets;
+	private int[] locationCounts;
+	private int[] locationIds;
+	private byte[] locationTypes;
+	private byte[] locationOrientations;
+	private short[] locationPositions; // z << 12 | x << 6 | y, in local coordinates
+	private int locationCount;
+
+	public WorldTerrain()
+	{
+		this(16);
+	}
+
+	/**
+	 * @param capacity number of regions to allocate space for initially
+	 */
+	public WorldTerrain(int capacity)
+	{
+		int size = capacity * REGION_SIZE;
+		tileHeights = new int[size];
+		tileSettings = new byte[size];
+		overlayIds = new byte[size];
+		overlayPaths = new byte[size];
+		overlayRotations = new byte[size];
+		underlayIds = new byte[size];
+
+		locationOffsets = new int[capacity];
+		locationCounts = new int[capacity];
+		locationIds = new int[0];
+		locationTypes = new byte[0];
+		locationOrientations = new byte[0];
+		locationPositions = new short[0];
+	}
+
+	/**
+	 * Add a region with empty terrain and no locations
+	 *
+	 * @param regionId
+	 * @return view of the new region
+	 */
+	public synchronized Region addRegion(int regionId)
+	{
+		if (regionsById.containsKey(regionId))
+		{
+			throw new IllegalArgumentException("region " + regionId + " already exists");
+		}
+
+		int slot = regions.size();
+		int capacity = locationOffsets.length;
+		if (slot == capacity)
+		{
+			capacity <<= 1;
+			int size = capacity * REGION_SIZE;
+			tileHeights = Arrays.copyOf(tileHeights, size);
+			tileSettings = Arrays.copyOf(tileSettings, size);
+			overlayIds = Arrays.copyOf(overlayIds, size);
+			overlayPaths = Arrays.copyOf(overlayPaths, size);
+			overlayRotations = Arrays.copyOf(overlayRotations, size);
+			underlayIds = Arrays.copyOf(underlayIds, size);
+			locationOffsets = Arrays.copyOf(locationOffsets, capacity);
+			locationCounts = Arrays.copyOf(locationCounts, capacity);
+		}
+
+		Region region = new Region(this, regionId, slot);
+		regions.add(region);
+		regionsById.put(regionId, region);
+		return region;
+	}
+
+	public Region getRegion(int regionId)
+	{
+		return regionsById.get(regionId);
+	}
+
+	public List<Region> getRegions()
+	{
+		return Collections.unmodifiableList(regions);
+	}
+
+	public int getRegionCount()
+	{
+		return regions.size();
+	}
+
+	synchronized void addLocations(int slot, LocationsDefinition locs)
+	{
+		List<Location> added = locs.getLocations();
+		int offset = locationOffsets[slot];
+		int count = locationCounts[slot];
+
+		if (count > 0 && offset + count != locationCount)
+		{
+			// keep the region's locations contiguous by moving them to the end
+			ensureLocationCapacity(locationCount + count + added.size());
+			System.arraycopy(locationIds, offset, locationIds, locationCount, count);
+			System.arraycopy(locationTypes, offset, locationTypes, locationCount, count);
+			System.arraycopy(locationOrientations, offset, locationOrientations, locationCount, count);
+			System.arraycopy(locationPositions, offset, locationPositions, locationCount, count);
+			offset = locationCount;
+			locationCount += count;
+		}
+		else if (count == 0)
+		{
+			offset = locationCount;
+		}
+
+		ensureLocationCapacity(locationCount + added.size());
+		for (Location loc : added)
+		{
+			Position position = loc.getPosition();
+			int i = locationCount++;
+			locationIds[i] = loc.getId();
+			locationTypes[i] = (byte) loc.getType();
+			locationOrientations[i] = (byte) loc.getOrientation();
+			locationPositions[i] = (short) (position.getZ() << 12 | position.getX() << 6 | position.getY());
+		}
+
+		locationOffsets[slot] = offset;
+		locationCounts[slot] = count + added.size();
+	}
+
+	private void ensureLocationCapacity(int capacity)
+	{
+		if (capacity <= locationIds.length)
+		{
+			return;
+		}
+
+		capacity = Math.max(capacity, locationIds.length << 1);
+		locationIds = Arrays.copyOf(locationIds, capacity);
+		locationTypes = Arrays.copyOf(locationTypes, capacity);
+		locationOrientations = Arrays.copyOf(locationOrientations, capacity);
+		locationPositions = Arrays.copyOf(locationPositions, capacity);
+	}
+
+	int getLocationCount(int slot)
+	{
+		return locationCounts[slot];
+	}
+
+	/**
+	 * Create the locations of a region, in world coordinates
+	 */
+	List<Location> getLocations(int slot, int baseX, int baseY)
+	{
+		int offset = locationOffsets[slot];
+		int count = locationCounts[slot];
+
+		List<Location> locations = new ArrayList<>(count);
+		for (int i = offset; i < offset + count; ++i)
+		{
+			int position = locationPositions[i];
+			locations.add(new Location(locationIds[i], locationTypes[i], locationOrientations[i],
+				new Position(baseX + (position >> 6 & 0x3F), baseY + (position & 0x3F), position >> 12)));
+		}
+		return locations;
+	}
+}
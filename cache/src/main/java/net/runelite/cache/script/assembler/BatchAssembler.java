@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.script.assembler;
+
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import net.runelite.cache.definitions.ScriptDefinition;
+import net.runelite.cache.script.Instruction;
+import net.runelite.cache.script.Instructions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Assembles many scripts at once. Scripts are parsed in parallel on the
+ * given executor; the generated lexer and parser keep their DFA cache in
+ * static fields, so the prediction work done for one script is shared
+ * with all of the others. Scripts whose source hash matches the previous
+ * run are not parsed again, as long as the previous run used the same
+ * manifest key (see {@link #getManifestKey(String)}).
+ */
+public class BatchAssembler
+{
+	private static final Logger logger = LoggerFactory.getLogger(BatchAssembler.class);
+
+	private static final Splitter SPLITTER = Splitter.on(' ').omitEmptyStrings();
+
+	private static final String KEY_PREFIX = "key ";
+
+	private final Instructions instructions;
+	private final Assembler assembler;
+
+	public BatchAssembler(Instructions instructions)
+	{
+		this.instructions = instructions;
+		this.assembler = new Assembler(instructions);
+	}
+
+	/**
+	 * Compute the key a manifest must have been written with for its
+	 * entries to be reused. It covers the instruction set and the given
+	 * assembler version, since a change to either can change the output
+	 * for an unchanged source.
+	 *
+	 * @param version version of the assembler, eg. the plugin version
+	 * @return manifest key
+	 */
+	public HashCode getManifestKey(String version)
+	{
+		List<Instruction> sorted = new ArrayList<>(instructions.getInstructions());
+		sorted.sort(Comparator.comparingInt(Instruction::getOpcode));
+
+		Hasher hasher = Hashing.sha256().newHasher();
+		hasher.putString(version, StandardCharsets.UTF_8);
+		for (Instruction instruction : sorted)
+		{
+			hasher.putInt(instruction.getOpcode());
+			hasher.putString(Strings.nullToEmpty(instruction.getName()), StandardCharsets.UTF_8);
+			hasher.putByte((byte) 0);
+		}
+		return hasher.hash();
+	}
+
+	/**
+	 * Assemble the given script files
+	 *
+	 * @param files script sources
+	 * @param previous results of the last run keyed by file name, used to
+	 * skip unchanged scripts
+	 * @param executor executor to assemble on
+	 * @return a result for every file, in the same order as {@code files}
+	 * @throws IOException
+	 */
+	public List<AssembledScript> assemble(List<File> files, Map<String, AssembledScript> previous, Executor executor) throws IOException
+	{
+		List<CompletableFuture<AssembledScript>> futures = new ArrayList<>(files.size());
+		for (File file : files)
+		{
+			futures.add(CompletableFuture.supplyAsync(() ->
+			{
+				try
+				{
+					return assemble(file, previous.get(file.getName()));
+				}
+				catch (IOException ex)
+				{
+					throw new UncheckedIOException(ex);
+				}
+			}, executor));
+		}
+
+		try
+		{
+			CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+		}
+		catch (CompletionException ex)
+		{
+			if (ex.getCause() instanceof UncheckedIOException)
+			{
+				throw ((UncheckedIOException) ex.getCause()).getCause();
+			}
+			Throwables.throwIfUnchecked(ex.getCause());
+			throw ex;
+		}
+
+		List<AssembledScript> results = new ArrayList<>(futures.size());
+		for (CompletableFuture<AssembledScript> future : futures)
+		{
+			results.add(future.join());
+		}
+		return results;
+	}
+
+	private AssembledScript assemble(File file, AssembledScript previous) throws IOException
+	{
+		long start = System.nanoTime();
+
+		byte[] source = Files.toByteArray(file);
+		HashCode hash = Hashing.sha256().hashBytes(source);
+
+		if (previous != null && previous.getHash().equals(hash))
+		{
+			logger.debug("{} is unchanged", file);
+			return new AssembledScript(file.getName(), hash, previous.getId(), null, System.nanoTime() - start);
+		}
+
+		ScriptDefinition script;
+		try
+		{
+			script = assembler.assemble(new ByteArrayInputStream(source));
+		}
+		catch (RuntimeException ex)
+		{
+			throw new RuntimeException("unable to assemble " + file, ex);
+		}
+
+		return new AssembledScript(file.getName(), hash, script.getId(), script, System.nanoTime() - start);
+	}
+
+	/**
+	 * Read a manifest written by {@link #writeManifest(File, HashCode, Collection)}.
+	 * A missing manifest, or one written with a different key, is treated
+	 * as empty.
+	 */
+	public static Map<String, AssembledScript> readManifest(File file, HashCode key) throws IOException
+	{
+		if (!file.exists())
+		{
+			return Collections.emptyMap();
+		}
+
+		List<String> lines = Files.readLines(file, StandardCharsets.UTF_8);
+		if (lines.isEmpty() || !lines.get(0).equals(KEY_PREFIX + key))
+		{
+			logger.info("Manifest {} was written with a different instruction set or version, ignoring it", file);
+			return Collections.emptyMap();
+		}
+
+		Map<String, AssembledScript> manifest = new HashMap<>();
+		for (String line : lines.subList(1, lines.size()))
+		{
+			List<String> parts = SPLITTER.splitToList(line);
+			if (parts.size() != 3)
+			{
+				continue;
+			}
+
+			try
+			{
+				String name = parts.get(0);
+				HashCode hash = HashCode.fromString(parts.get(1));
+				int id = Integer.parseInt(parts.get(2));
+				manifest.put(name, new AssembledScript(name, hash, id, null, 0L));
+			}
+			catch (IllegalArgumentException ex)
+			{
+				logger.warn("Ignoring malformed manifest line: {}", line);
+			}
+		}
+		return manifest;
+	}
+
+	public static void writeManifest(File file, HashCode key, Collection<AssembledScript> scripts) throws IOException
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append(KEY_PREFIX).append(key).append('\n');
+		for (AssembledScript script : scripts)
+		{
+			sb.append(script.getName()).append(' ')
+				.append(script.getHash()).append(' ')
+				.append(script.getId()).append('\n');
+		}
+		Files.createParentDirs(file);
+		Files.asCharSink(file, StandardCharsets.UTF_8).write(sb);
+	}
+}
@@ -25,6 +25,7 @@
 
 package net.runelite.cache.util;
 
+import java.nio.ByteBuffer;
 import java.util.zip.CRC32;
 
 public class Crc32
@@ -36,6 +37,22 @@ public class Crc32
 		crc32.update(data, offset, length);
 	}
 
+	/**
+	 * Update the crc with the remaining bytes of the buffer, advancing
+	 * its position to its limit.
+	 *
+	 * @param buffer
+	 */
+	public void update(ByteBuffer buffer)
+	{
+		crc32.update(buffer);
+	}
+
+	public void reset()
+	{
+		crc32.reset();
+	}
+
 	public int getHash()
 	{
 		return (int) crc32.getValue();
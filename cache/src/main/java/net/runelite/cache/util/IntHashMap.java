@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.util;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from primitive int keys to non-null values,
+ * using linear probing. Avoids boxing the keys of lookups which are done
+ * in tight loops, such as archive and file ids.
+ *
+ * @param <V> value type
+ */
+public class IntHashMap<V>
+{
+	private static final int MIN_CAPACITY = 8;
+
+	private int[] keys;
+	private Object[] values;
+	private int size;
+	private int mask;
+
+	public IntHashMap()
+	{
+		this(MIN_CAPACITY);
+	}
+
+	public IntHashMap(int expectedSize)
+	{
+		allocate(capacityFor(expectedSize));
+	}
+
+	private static int capacityFor(int size)
+	{
+		// keep the load factor at or below 1/2
+		int capacity = MIN_CAPACITY;
+		while (capacity < size * 2)
+		{
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	private void allocate(int capacity)
+	{
+		keys = new int[capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+	}
+
+	private int slot(int key)
+	{
+		int h = key * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	@SuppressWarnings("unchecked")
+	public V get(int key)
+	{
+		for (int i = slot(key); values[i] != null; i = (i + 1) & mask)
+		{
+			if (keys[i] == key)
+			{
+				return (V) values[i];
+			}
+		}
+		return null;
+	}
+
+	public boolean containsKey(int key)
+	{
+		return get(key) != null;
+	}
+
+	/**
+	 * Associate the value with the key
+	 *
+	 * @param key
+	 * @param value
+	 * @return the value previously associated with the key, or null
+	 */
+	public V put(int key, V value)
+	{
+		return put(key, value, true);
+	}
+
+	/**
+	 * Associate the value with the key, if the key has no value yet
+	 *
+	 * @param key
+	 * @param value
+	 * @return the existing value, or null if the value was added
+	 */
+	public V putIfAbsent(int key, V value)
+	{
+		return put(key, value, false);
+	}
+
+	@SuppressWarnings("unchecked")
+	private V put(int key, V value, boolean replace)
+	{
+		if (value == null)
+		{
+			throw new NullPointerException("value");
+		}
+
+		int i = slot(key);
+		for (; values[i] != null; i = (i + 1) & mask)
+		{
+			if (keys[i] == key)
+			{
+				V old = (V) values[i];
+				if (replace)
+				{
+					values[i] = value;
+				}
+				return old;
+			}
+		}
+
+		keys[i] = key;
+		values[i] = value;
+
+		if (++size * 2 > keys.length)
+		{
+			rehash(keys.length << 1);
+		}
+		return null;
+	}
+
+	/**
+	 * Remove the value associated with the key
+	 *
+	 * @param key
+	 * @return the removed value, or null
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(int key)
+	{
+		int i = slot(key);
+		for (; values[i] != null; i = (i + 1) & mask)
+		{
+			if (keys[i] == key)
+			{
+				break;
+			}
+		}
+
+		V old = (V) values[i];
+		if (old == null)
+		{
+			return null;
+		}
+
+		// shift following entries of the probe sequence back into the gap
+		for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask)
+		{
+			int home = slot(keys[j]);
+			// move the entry if its home slot is not cyclically within (i, j]
+			if (i <= j ? (home <= i || home > j) : (home <= i && home > j))
+			{
+				keys[i] = keys[j];
+				values[i] = values[j];
+				i = j;
+			}
+		}
+
+		values[i] = null;
+		--size;
+		return old;
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	public void clear()
+	{
+		Arrays.fill(values, null);
+		size = 0;
+	}
+
+	private void rehash(int capacity)
+	{
+		int[] oldKeys = keys;
+		Object[] oldValues = values;
+
+		allocate(capacity);
+
+		for (int i = 0; i < oldKeys.length; ++i)
+		{
+			if (oldValues[i] != null)
+			{
+				int j = slot(oldKeys[i]);
+				while (values[j] != null)
+				{
+					j = (j + 1) & mask;
+				}
+				keys[j] = oldKeys[i];
+				values[j] = oldValues[i];
+			}
+		}
+	}
+}
@@ -26,6 +26,7 @@ package net.runelite.cache.util;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import java.nio.ByteBuffer;
 
 public class Xtea
 {
@@ -85,4 +86,30 @@ public class Xtea
 		out.writeBytes(buf);
 		return out.array();
 	}
+
+	/**
+	 * Decrypt the remaining bytes of a buffer in place. The position of the
+	 * buffer is not changed. Trailing bytes which do not fill a block are
+	 * left as is.
+	 *
+	 * @param buf
+	 */
+	public void decrypt(ByteBuffer buf)
+	{
+		int numBlocks = buf.remaining() / 8;
+		for (int block = 0, offset = buf.position(); block < numBlocks; ++block, offset += 8)
+		{
+			int v0 = buf.getInt(offset);
+			int v1 = buf.getInt(offset + 4);
+			int sum = GOLDEN_RATIO * ROUNDS;
+			for (int i = 0; i < ROUNDS; ++i)
+			{
+				v1 -= (((v0 << 4) ^ (v0 >>> 5)) + v0) ^ (sum + key[(sum >>> 11) & 3]);
+				sum -= GOLDEN_RATIO;
+				v0 -= (((v1 << 4) ^ (v1 >>> 5)) + v1) ^ (sum + key[sum & 3]);
+			}
+			buf.putInt(offset, v0);
+			buf.putInt(offset + 4, v1);
+		}
+	}
 }
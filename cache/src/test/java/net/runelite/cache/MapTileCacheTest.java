@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import java.io.File;
+import java.io.IOException;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MapTileCacheTest
+{
+	@Rule
+	public TemporaryFolder folder = StoreLocation.getTemporaryFolder();
+
+	@Test
+	public void testLoadSave() throws IOException
+	{
+		File dir = folder.newFolder();
+		MapTileCache cache = new MapTileCache(dir);
+
+		int[] raster = new int[64 * 64];
+		for (int i = 0; i < raster.length; ++i)
+		{
+			raster[i] = i * 31;
+		}
+
+		HashCode fingerprint = Hashing.sha256().hashInt(42);
+		HashCode other = Hashing.sha256().hashInt(43);
+
+		assertNull(cache.load(0, 12850, fingerprint, raster.length));
+
+		cache.save(0, 12850, fingerprint, raster);
+		assertArrayEquals(raster, cache.load(0, 12850, fingerprint, raster.length));
+
+		// changed inputs must not reuse the tile
+		assertNull(cache.load(0, 12850, other, raster.length));
+		assertNull(cache.load(1, 12850, fingerprint, raster.length));
+
+		assertEquals(1, cache.getHits());
+		assertEquals(3, cache.getMisses());
+	}
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.ArchiveFiles;
+import net.runelite.cache.fs.Container;
+import net.runelite.cache.fs.FSFile;
+import net.runelite.cache.fs.Index;
+import net.runelite.cache.fs.Store;
+import net.runelite.cache.fs.flat.FlatStorage;
+import net.runelite.cache.fs.jagex.CompressionType;
+import net.runelite.cache.index.FileData;
+import net.runelite.cache.util.Crc32;
+import static org.junit.Assert.assertEquals;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class StoreDiffTest
+{
+	@Rule
+	public TemporaryFolder folder = StoreLocation.getTemporaryFolder();
+
+	@Test
+	public void testDiff() throws IOException
+	{
+		try (Store from = new Store(new FlatStorage(folder.newFolder()));
+			Store to = new Store(new FlatStorage(folder.newFolder())))
+		{
+			Index fromConfigs = from.addIndex(IndexType.CONFIGS.getNumber());
+			saveItems(from, fromConfigs.addArchive(ConfigType.ITEM.getId()), new int[]{0, 1}, "Foo", "Bar");
+			saveItems(from, fromConfigs.addArchive(ConfigType.NPC.getId()), new int[]{0}, "Same");
+
+			Index toConfigs = to.addIndex(IndexType.CONFIGS.getNumber());
+			saveItems(to, toConfigs.addArchive(ConfigType.ITEM.getId()), new int[]{0, 2}, "Baz", "New");
+			saveItems(to, toConfigs.addArchive(ConfigType.NPC.getId()), new int[]{0}, "Same");
+			to.addIndex(IndexType.MODELS.getNumber());
+
+			StringWriter out = new StringWriter();
+			int changes = new StoreDiff(from, to).diff(out);
+
+			List<JsonObject> lines = new ArrayList<>();
+			for (String line : out.toString().split("\n"))
+			{
+				lines.add(new JsonParser().parse(line).getAsJsonObject());
+			}
+			assertEquals(changes, lines.size());
+			assertEquals(6, changes);
+
+			assertLine(lines.get(0), "archive", "changed", ConfigType.ITEM.getId(), -1);
+			assertLine(lines.get(1), "file", "changed", ConfigType.ITEM.getId(), 0);
+			assertLine(lines.get(2), "field", "changed", ConfigType.ITEM.getId(), 0);
+			assertEquals("name", lines.get(2).get("field").getAsString());
+			assertEquals("Foo", lines.get(2).get("from").getAsString());
+			assertEquals("Baz", lines.get(2).get("to").getAsString());
+			assertLine(lines.get(3), "file", "removed", ConfigType.ITEM.getId(), 1);
+			assertLine(lines.get(4), "file", "added", ConfigType.ITEM.getId(), 2);
+
+			assertEquals("index", lines.get(5).get("type").getAsString());
+			assertEquals("added", lines.get(5).get("change").getAsString());
+			assertEquals(IndexType.MODELS.getNumber(), lines.get(5).get("index").getAsInt());
+		}
+	}
+
+	private static void assertLine(JsonObject obj, String type, String change, int archive, int file)
+	{
+		assertEquals(type, obj.get("type").getAsString());
+		assertEquals(change, obj.get("change").getAsString());
+		assertEquals(IndexType.CONFIGS.getNumber(), obj.get("index").getAsInt());
+		assertEquals(archive, obj.get("archive").getAsInt());
+		if (file != -1)
+		{
+			assertEquals(file, obj.get("file").getAsInt());
+		}
+	}
+
+	/**
+	 * Save an archive of item definitions which only have a name
+	 */
+	private static void saveItems(Store store, Archive archive, int[] ids, String... names) throws IOException
+	{
+		ArchiveFiles files = new ArchiveFiles();
+		FileData[] fileData = new FileData[ids.length];
+		for (int i = 0; i < ids.length; ++i)
+		{
+			byte[] name = names[i].getBytes(StandardCharsets.ISO_8859_1);
+			byte[] contents = new byte[name.length + 3];
+			contents[0] = 2; // name opcode
+			System.arraycopy(name, 0, contents, 1, name.length);
+
+			FSFile file = new FSFile(ids[i]);
+			file.setContents(contents);
+			files.addFile(file);
+
+			fileData[i] = new FileData();
+			fileData[i].setId(ids[i]);
+		}
+		archive.setFileData(fileData);
+
+		byte[] data = files.saveContents();
+		Container container = new Container(CompressionType.NONE, -1);
+		container.compress(data, null);
+
+		Crc32 crc = new Crc32();
+		crc.update(container.data, 0, 5 + data.length);
+		archive.setCrc(crc.getHash());
+
+		store.getStorage().saveArchive(archive, container.data);
+	}
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.fs;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import net.runelite.cache.StoreLocation;
+import net.runelite.cache.fs.jagex.CompressionType;
+import net.runelite.cache.fs.jagex.DiskStorage;
+import net.runelite.cache.index.FileData;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CachingStorageTest
+{
+	@Rule
+	public TemporaryFolder folder = StoreLocation.getTemporaryFolder();
+
+	private File createStore() throws IOException
+	{
+		File file = folder.newFolder();
+		try (Store store = new Store(new DiskStorage(file)))
+		{
+			Index index = store.addIndex(0);
+			for (int i = 0; i < 3; ++i)
+			{
+				Archive archive = index.addArchive(i);
+				archive.setFileData(new FileData[]{new FileData()});
+
+				Container container = new Container(CompressionType.GZ, -1);
+				container.compress(new byte[100], null);
+				store.getStorage().saveArchive(archive, container.data);
+			}
+			store.save();
+		}
+		return file;
+	}
+
+	@Test
+	public void testCache() throws IOException
+	{
+		File file = createStore();
+
+		CachingStorage storage = new CachingStorage(new DiskStorage(file), 1024, false);
+		try (Store store = new Store(storage))
+		{
+			store.load();
+			Archive archive = store.findIndex(0).getArchive(0);
+
+			byte[] contents = storage.loadArchiveContents(archive, null);
+			assertArrayEquals(new byte[100], contents);
+			assertEquals(0, storage.getHits());
+			assertEquals(1, storage.getMisses());
+
+			assertSame(contents, storage.loadArchiveContents(archive, null));
+			assertEquals(1, storage.getHits());
+			assertEquals(1, storage.getMisses());
+			assertEquals(100, storage.getSize());
+		}
+	}
+
+	@Test
+	public void testEviction() throws IOException
+	{
+		File file = createStore();
+
+		// room for two archives
+		CachingStorage storage = new CachingStorage(new DiskStorage(file), 250, false);
+		try (Store store = new Store(storage))
+		{
+			store.load();
+			Index index = store.findIndex(0);
+
+			storage.loadArchiveContents(index.getArchive(0), null);
+			storage.loadArchiveContents(index.getArchive(1), null);
+			// touch 0 so 1 is least recently used
+			storage.loadArchiveContents(index.getArchive(0), null);
+			storage.loadArchiveContents(index.getArchive(2), null);
+
+			assertEquals(1, storage.getEvictions());
+			assertEquals(200, storage.getSize());
+
+			storage.loadArchiveContents(index.getArchive(0), null);
+			assertEquals(2, storage.getHits());
+
+			storage.loadArchiveContents(index.getArchive(1), null);
+			assertEquals(4, storage.getMisses());
+		}
+	}
+
+	@Test
+	public void testArchiveState() throws IOException
+	{
+		File file = folder.newFolder();
+		int crc;
+		try (Store store = new Store(new DiskStorage(file)))
+		{
+			Archive archive = store.addIndex(0).addArchive(0);
+			archive.setFileData(new FileData[]{new FileData()});
+
+			Container container = new Container(CompressionType.GZ, 5);
+			container.compress(new byte[100], null);
+			store.getStorage().saveArchive(archive, container.data);
+			store.save();
+			crc = archive.getCrc();
+		}
+
+		CachingStorage storage = new CachingStorage(new DiskStorage(file), 1024, false);
+		try (Store store = new Store(storage))
+		{
+			store.load();
+			Index index = store.findIndex(0);
+			storage.loadArchiveContents(index.getArchive(0), null);
+
+			// a hit sets the same state on the archive as decompressing it
+			Archive archive = new Archive(index, 0);
+			archive.setCrc(crc);
+			storage.loadArchiveContents(archive, null);
+			assertEquals(1, storage.getHits());
+			assertEquals(CompressionType.GZ, archive.getCompression());
+			assertEquals(5, archive.getRevision());
+		}
+	}
+
+	@Test
+	public void testKeys() throws IOException
+	{
+		int[] keys = {1, 2, 3, 4};
+
+		File file = folder.newFolder();
+		try (Store store = new Store(new DiskStorage(file)))
+		{
+			Archive archive = store.addIndex(0).addArchive(0);
+			archive.setFileData(new FileData[]{new FileData()});
+
+			Container container = new Container(CompressionType.NONE, -1);
+			container.compress(new byte[100], keys);
+			store.getStorage().saveArchive(archive, container.data);
+			store.save();
+		}
+
+		CachingStorage storage = new CachingStorage(new DiskStorage(file), 1024, false);
+		try (Store store = new Store(storage))
+		{
+			store.load();
+			Archive archive = store.findIndex(0).getArchive(0);
+
+			assertArrayEquals(new byte[100], storage.loadArchiveContents(archive, keys));
+			assertArrayEquals(new byte[100], storage.loadArchiveContents(archive, keys.clone()));
+			assertEquals(1, storage.getHits());
+
+			// contents decrypted with other keys are not served for these
+			assertFalse(Arrays.equals(new byte[100], storage.loadArchiveContents(archive, null)));
+			assertEquals(2, storage.getMisses());
+		}
+	}
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.fs;
+
+import com.google.common.io.ByteStreams;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import static net.runelite.cache.fs.jagex.CompressionType.BZ2;
+import static net.runelite.cache.fs.jagex.CompressionType.GZ;
+import static net.runelite.cache.fs.jagex.CompressionType.NONE;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class ContainerDecompressorTest
+{
+	private static final int[] KEYS = new int[]
+	{
+		4, 8, 15, 16
+	};
+
+	private final Random random = new Random(42L);
+
+	private byte[] data(int len)
+	{
+		byte[] data = new byte[len];
+		for (int i = 0; i < len; ++i)
+		{
+			// compressible, but not trivially
+			data[i] = (byte) (random.nextInt(16));
+		}
+		return data;
+	}
+
+	private static byte[] toArray(ByteBuffer buffer)
+	{
+		byte[] b = new byte[buffer.remaining()];
+		buffer.duplicate().get(b);
+		return b;
+	}
+
+	@Test
+	public void testDecompress() throws IOException
+	{
+		ContainerDecompressor decompressor = new ContainerDecompressor();
+
+		for (int compression : new int[]{NONE, BZ2, GZ})
+		{
+			for (int[] keys : new int[][]{null, KEYS})
+			{
+				byte[] data = data(2048);
+
+				Container container = new Container(compression, 7);
+				container.compress(data, keys);
+				Container expected = Container.decompress(container.data.clone(), keys);
+
+				ByteBuffer result = decompressor.decompress(ByteBuffer.wrap(container.data), keys);
+				assertArrayEquals(data, toArray(result));
+				assertEquals(expected.crc, decompressor.getCrc());
+				assertEquals(7, decompressor.getRevision());
+				assertEquals(compression, decompressor.getCompression());
+			}
+		}
+	}
+
+	@Test
+	public void testDecompressReadOnly() throws IOException
+	{
+		ContainerDecompressor decompressor = new ContainerDecompressor();
+		byte[] data = data(4096);
+
+		Container container = new Container(GZ, -1);
+		container.compress(data, KEYS);
+
+		ByteBuffer direct = ByteBuffer.allocateDirect(container.data.length);
+		direct.put(container.data).flip();
+		ByteBuffer input = direct.asReadOnlyBuffer();
+
+		assertArrayEquals(data, toArray(decompressor.decompress(input, KEYS)));
+		assertEquals(-1, decompressor.getRevision());
+		// the input is left intact
+		assertArrayEquals(container.data, toArray(input));
+	}
+
+	@Test
+	public void testStream() throws IOException
+	{
+		ContainerDecompressor decompressor = new ContainerDecompressor();
+
+		for (int compression : new int[]{NONE, BZ2, GZ})
+		{
+			byte[] data = data(1 << 20);
+
+			Container container = new Container(compression, -1);
+			container.compress(data, null);
+
+			try (InputStream in = decompressor.stream(ByteBuffer.wrap(container.data), null))
+			{
+				assertArrayEquals(data, ByteStreams.toByteArray(in));
+			}
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testShortGzip() throws IOException
+	{
+		byte[] data = data(2048);
+
+		Container container = new Container(GZ, -1);
+		container.compress(data, null);
+
+		// claim more data than the stream holds
+		ByteBuffer.wrap(container.data).putInt(5, data.length + 1);
+
+		new ContainerDecompressor().decompress(ByteBuffer.wrap(container.data), null);
+	}
+
+	@Test(expected = IOException.class)
+	public void testHugeDecompressedLength() throws IOException
+	{
+		Container container = new Container(BZ2, -1);
+		container.compress(data(2048), null);
+
+		ByteBuffer.wrap(container.data).putInt(5, Integer.MAX_VALUE - 1);
+
+		new ContainerDecompressor().decompress(ByteBuffer.wrap(container.data), null);
+	}
+
+	@Test(expected = IOException.class)
+	public void testTruncatedHeader() throws IOException
+	{
+		new ContainerDecompressor().decompress(ByteBuffer.wrap(new byte[]{GZ, 0, 0}), null);
+	}
+}
@@ -27,7 +27,9 @@ package net.runelite.cache.fs;
 import java.io.IOException;
 import java.util.Random;
 import static net.runelite.cache.fs.jagex.CompressionType.GZ;
+import static net.runelite.cache.fs.jagex.CompressionType.NONE;
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import org.junit.Test;
 
 public class ContainerTest
@@ -52,4 +54,18 @@ public class ContainerTest
 		assertArrayEquals(data, container.data);
 	}
 
+	@Test
+	public void testPayloadLength() throws IOException
+	{
+		byte[] data = new byte[100];
+
+		Container container = new Container(GZ, 7);
+		container.compress(data, null);
+		assertEquals(container.data.length - 2, Container.payloadLength(container.data));
+
+		container = new Container(NONE, -1);
+		container.compress(data, null);
+		assertEquals(container.data.length, Container.payloadLength(container.data));
+	}
+
 }
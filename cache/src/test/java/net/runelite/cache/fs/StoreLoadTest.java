@@ -27,6 +27,11 @@ package net.runelite.cache.fs;
 import com.google.common.io.Files;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 import net.runelite.cache.StoreLocation;
 import org.junit.Assert;
 import org.junit.Rule;
@@ -47,6 +52,40 @@ public class StoreLoadTest
 		}
 	}
 
+	@Test
+	public void testLoadParallel() throws IOException
+	{
+		try (Store store = new Store(StoreLocation.LOCATION);
+			Store parallelStore = new Store(StoreLocation.LOCATION))
+		{
+			store.load();
+			parallelStore.load(ForkJoinPool.commonPool());
+
+			Assert.assertTrue(store.equals(parallelStore));
+
+			// archives can be loaded concurrently
+			List<Archive> archives = parallelStore.getIndexes().stream()
+				.flatMap(i -> i.getArchives().stream())
+				.collect(Collectors.toList());
+			long matching = archives.parallelStream()
+				.filter(a ->
+				{
+					try
+					{
+						Archive archive = store.findIndex(a.getIndex().getId()).getArchive(a.getArchiveId());
+						return Arrays.equals(store.getStorage().loadArchive(archive),
+							parallelStore.getStorage().loadArchive(a));
+					}
+					catch (IOException ex)
+					{
+						throw new UncheckedIOException(ex);
+					}
+				})
+				.count();
+			Assert.assertEquals(archives.size(), matching);
+		}
+	}
+
 	@Test
 	public void testSave() throws IOException
 	{
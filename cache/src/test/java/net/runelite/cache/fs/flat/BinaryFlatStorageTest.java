@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.fs.flat;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.ByteBuffer;
+import net.runelite.cache.StoreLocation;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.Container;
+import net.runelite.cache.fs.Index;
+import net.runelite.cache.fs.Store;
+import net.runelite.cache.index.FileData;
+import net.runelite.cache.util.Crc32;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BinaryFlatStorageTest
+{
+	@Rule
+	public TemporaryFolder folder = StoreLocation.getTemporaryFolder();
+
+	@Test
+	public void testRoundTrip() throws Exception
+	{
+		File flat = folder.newFolder();
+		File binary = folder.newFolder();
+		File flat2 = folder.newFolder();
+
+		byte[] data = "test".getBytes();
+		try (Store store = new Store(new FlatStorage(flat)))
+		{
+			Index index = store.addIndex(0);
+			index.setNamed(true);
+			index.setRevision(7);
+
+			for (int i = 0; i < 3; ++i)
+			{
+				Archive archive = index.addArchive(i);
+				archive.setNameHash(i * 31);
+				archive.setRevision(i);
+
+				FileData[] fileData = new FileData[i + 1];
+				for (int j = 0; j < fileData.length; ++j)
+				{
+					fileData[j] = new FileData();
+					fileData[j].setId(j);
+					fileData[j].setNameHash(j * 17);
+				}
+				archive.setFileData(fileData);
+
+				Container container = new Container(archive.getCompression(), archive.getRevision());
+				container.compress(data, null);
+				// uncompressed, so crc everything but the revision
+				Crc32 crc = new Crc32();
+				crc.update(container.data, 0, 5 + data.length);
+				archive.setCrc(crc.getHash());
+				archive.setHash(new byte[]{(byte) i, 1, 2, 3});
+				store.getStorage().saveArchive(archive, container.data);
+			}
+
+			// archive without contents
+			index.addArchive(3).setFileData(new FileData[0]);
+
+			store.save();
+		}
+
+		try (Store store = new Store(new FlatStorage(flat));
+			BinaryFlatStorage storage = new BinaryFlatStorage(binary))
+		{
+			store.load();
+			FlatStorageConverter.convert(store, storage);
+		}
+
+		try (Store store = new Store(new BinaryFlatStorage(binary));
+			FlatStorage storage = new FlatStorage(flat2))
+		{
+			store.load();
+
+			Index index = store.findIndex(0);
+			assertTrue(index.isNamed());
+			assertEquals(7, index.getRevision());
+
+			Archive archive = index.getArchive(2);
+			assertEquals(62, archive.getNameHash());
+			assertEquals(3, archive.getFileData().length);
+			assertEquals(34, archive.getFileData()[2].getNameHash());
+			assertArrayEquals(new byte[]{2, 1, 2, 3}, archive.getHash());
+			assertArrayEquals(data, archive.decompress(store.getStorage().loadArchive(archive)));
+
+			Archive empty = index.getArchive(3);
+			assertNull(empty.getHash());
+			assertNull(store.getStorage().loadArchive(empty));
+
+			FlatStorageConverter.convert(store, storage);
+		}
+
+		// converting back to the text format is lossless
+		for (File file : flat.listFiles())
+		{
+			assertArrayEquals(Files.readAllBytes(file.toPath()),
+				Files.readAllBytes(new File(flat2, file.getName()).toPath()));
+		}
+	}
+
+	@Test
+	public void testLoadArchiveSlice() throws Exception
+	{
+		File binary = folder.newFolder();
+
+		byte[] data = "slice".getBytes();
+		try (Store store = new Store(new BinaryFlatStorage(binary)))
+		{
+			Index index = store.addIndex(2);
+			Archive archive = index.addArchive(5);
+			store.getStorage().saveArchive(archive, data);
+			store.save();
+
+			// saved contents are readable from the new file
+			assertArrayEquals(data, store.getStorage().loadArchive(archive));
+		}
+
+		try (Store store = new Store(new BinaryFlatStorage(binary)))
+		{
+			store.load();
+
+			Archive archive = store.findIndex(2).getArchive(5);
+			ByteBuffer slice = ((BinaryFlatStorage) store.getStorage()).loadArchiveSlice(archive);
+			byte[] read = new byte[slice.remaining()];
+			slice.get(read);
+			assertArrayEquals(data, read);
+		}
+	}
+
+	@Test
+	public void testRemovedArchive() throws Exception
+	{
+		File binary = folder.newFolder();
+
+		try (Store store = new Store(new BinaryFlatStorage(binary)))
+		{
+			Index index = store.addIndex(2);
+			Archive kept = index.addArchive(5);
+			Archive removed = index.addArchive(6);
+			store.getStorage().saveArchive(kept, "kept".getBytes());
+			store.getStorage().saveArchive(removed, "removed".getBytes());
+			store.save();
+
+			index.removeArchive(removed);
+			store.save();
+
+			assertArrayEquals("kept".getBytes(), store.getStorage().loadArchive(kept));
+			assertNull(store.getStorage().loadArchive(removed));
+		}
+	}
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.fs.jagex;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import net.runelite.cache.StoreLocation;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.Container;
+import net.runelite.cache.fs.Index;
+import net.runelite.cache.fs.Store;
+import net.runelite.cache.index.FileData;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedDataFileTest
+{
+	@Rule
+	public TemporaryFolder folder = StoreLocation.getTemporaryFolder();
+
+	@Test
+	public void testRead() throws IOException
+	{
+		byte[] b = new byte[4096];
+		for (int i = 0; i < b.length; ++i)
+		{
+			b[i] = (byte) i;
+		}
+
+		File file = folder.newFile();
+		DataFileWriteResult res, res2;
+		try (DataFile df = new DataFile(file))
+		{
+			res = df.write(42, 3, b);
+			res2 = df.write(42, 0x1FFFF, b);
+		}
+
+		try (MappedDataFile df = new MappedDataFile(file))
+		{
+			assertArrayEquals(b, df.read(42, 3, res.sector, res.compressedLength));
+			assertArrayEquals(b, df.read(42, 0x1FFFF, res2.sector, res2.compressedLength));
+
+			ByteBuffer buffer = ByteBuffer.allocate(b.length + 1);
+			buffer.put((byte) 1);
+			assertTrue(df.read(42, 3, res.sector, res.compressedLength, buffer));
+			assertEquals(b.length + 1, buffer.position());
+
+			// wrong archive
+			assertNull(df.read(42, 4, res.sector, res.compressedLength));
+		}
+	}
+
+	@Test
+	public void testReadSlices() throws IOException
+	{
+		Container container = new Container(CompressionType.GZ, 0);
+		container.compress("test".getBytes(), null);
+		byte[] compressedData = container.data;
+
+		byte[] b = new byte[4096];
+		for (int i = 0; i < b.length; ++i)
+		{
+			b[i] = (byte) i;
+		}
+
+		File file = folder.newFile();
+		DataFileWriteResult res, res2, res3;
+		try (DataFile df = new DataFile(file))
+		{
+			res = df.write(41, 4, compressedData);
+			res2 = df.write(41, 5, b);
+			res3 = df.write(41, 0x1FFFF, b);
+		}
+
+		try (MappedDataFile df = new MappedDataFile(file))
+		{
+			ByteBuffer[] slices = df.readSlices(41, 4, res.sector, res.compressedLength);
+			assertEquals(1, slices.length);
+			byte[] data = concat(slices);
+			assertArrayEquals(compressedData, data);
+
+			Container res4 = Container.decompress(data, null);
+			assertEquals("test", new String(res4.data));
+
+			// a slice per sector, without the sector headers
+			slices = df.readSlices(41, 5, res2.sector, res2.compressedLength);
+			assertEquals((b.length + 511) / 512, slices.length);
+			assertArrayEquals(b, concat(slices));
+
+			slices = df.readSlices(41, 0x1FFFF, res3.sector, res3.compressedLength);
+			assertEquals((b.length + 509) / 510, slices.length);
+			assertArrayEquals(b, concat(slices));
+
+			// wrong archive
+			assertNull(df.readSlices(41, 6, res2.sector, res2.compressedLength));
+		}
+	}
+
+	@Test
+	public void testMappedDiskStorage() throws Exception
+	{
+		File file = folder.newFolder();
+		Archive archive;
+		try (Store store = new Store(new DiskStorage(file)))
+		{
+			Index index = store.addIndex(0);
+			archive = index.addArchive(0);
+
+			FileData[] fileData = new FileData[1];
+			archive.setFileData(fileData);
+			fileData[0] = new FileData();
+
+			Container container = new Container(archive.getCompression(), 42);
+			container.compress("test".getBytes(), null);
+			archive.setRevision(42);
+			store.getStorage().saveArchive(archive, container.data);
+
+			store.save();
+		}
+
+		MappedDiskStorage storage = new MappedDiskStorage(file);
+		try (Store store = new Store(storage))
+		{
+			store.load();
+			Archive archive2 = store.findIndex(0).getArchive(0);
+
+			byte[] data = archive2.decompress(storage.loadArchive(archive2));
+			assertArrayEquals("test".getBytes(), data);
+			assertEquals(archive.getCrc(), archive2.getCrc());
+			assertEquals(archive.getRevision(), archive2.getRevision());
+		}
+	}
+
+	private static byte[] concat(ByteBuffer[] slices)
+	{
+		int size = 0;
+		for (ByteBuffer slice : slices)
+		{
+			assertTrue(slice.isReadOnly());
+			size += slice.remaining();
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		for (ByteBuffer slice : slices)
+		{
+			buffer.put(slice);
+		}
+		return buffer.array();
+	}
+}
@@ -27,6 +27,11 @@ package net.runelite.cache.item;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import javax.imageio.ImageIO;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.cache.IndexType;
@@ -36,11 +41,18 @@ import net.runelite.cache.StoreLocation;
 import net.runelite.cache.TextureManager;
 import net.runelite.cache.definitions.ItemDefinition;
 import net.runelite.cache.definitions.ModelDefinition;
+import net.runelite.cache.definitions.TextureDefinition;
 import net.runelite.cache.definitions.loaders.ModelLoader;
+import net.runelite.cache.definitions.providers.ItemProvider;
 import net.runelite.cache.definitions.providers.ModelProvider;
+import net.runelite.cache.definitions.providers.SpriteProvider;
+import net.runelite.cache.definitions.providers.TextureProvider;
 import net.runelite.cache.fs.Archive;
 import net.runelite.cache.fs.Index;
 import net.runelite.cache.fs.Store;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import org.junit.Ignore;
 import org.junit.Rule;
 import org.junit.Test;
@@ -115,4 +127,72 @@ public class ItemSpriteFactoryTest
 
 		log.info("Dumped {} item images to {}", count, outDir);
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testCreateSprites() throws Exception
+	{
+		ModelProvider modelProvider = modelId ->
+		{
+			// an octahedron, with a different color for each face
+			ModelDefinition model = new ModelDefinition();
+			model.vertexCount = 6;
+			model.vertexPositionsX = new int[]{100, -100, 0, 0, 0, 0};
+			model.vertexPositionsY = new int[]{0, 0, 100, -100, 0, 0};
+			model.vertexPositionsZ = new int[]{0, 0, 0, 0, 100, -100};
+			model.faceCount = 8;
+			model.faceVertexIndices1 = new int[]{0, 0, 0, 0, 1, 1, 1, 1};
+			model.faceVertexIndices2 = new int[]{2, 4, 3, 5, 4, 2, 5, 3};
+			model.faceVertexIndices3 = new int[]{4, 3, 5, 2, 2, 5, 3, 4};
+			model.faceColors = new short[8];
+			for (int i = 0; i < 8; ++i)
+			{
+				model.faceColors[i] = (short) (modelId * 1000 + i * 6000);
+			}
+			return model;
+		};
+		ItemProvider itemProvider = itemId ->
+		{
+			ItemDefinition item = new ItemDefinition(itemId);
+			item.inventoryModel = itemId % 5;
+			item.zoom2d = 1000 + itemId * 10;
+			item.xan2d = itemId * 37 % 2048;
+			item.yan2d = itemId * 91 % 2048;
+			return item;
+		};
+		SpriteProvider spriteProvider = (spriteId, frameId) -> null;
+		TextureProvider textureProvider = () -> new TextureDefinition[0];
+
+		ItemSpriteFactory factory = new ItemSpriteFactory(itemProvider, modelProvider, spriteProvider, textureProvider);
+
+		List<Integer> itemIds = new ArrayList<>();
+		for (int i = 0; i < 200; ++i)
+		{
+			itemIds.add(i);
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		Map<Integer, BufferedImage> sprites;
+		try
+		{
+			sprites = factory.createSprites(itemIds, 1, 1, 3153952, false, executor);
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+
+		assertEquals(itemIds, new ArrayList<>(sprites.keySet()));
+
+		// sprites rendered in parallel match ones rendered alone
+		for (int itemId : itemIds)
+		{
+			BufferedImage expected = ItemSpriteFactory.createSprite(itemProvider, modelProvider, spriteProvider, textureProvider,
+				itemId, 1, 1, 3153952, false);
+			BufferedImage actual = sprites.get(itemId);
+			assertArrayEquals(expected.getRGB(0, 0, 36, 32, null, 0, 36), actual.getRGB(0, 0, 36, 32, null, 0, 36));
+		}
+
+		// the model is drawn in the middle of the sprite
+		assertNotEquals(0, sprites.get(0).getRGB(18, 16));
+	}
+}
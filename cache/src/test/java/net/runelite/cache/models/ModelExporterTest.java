@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.models;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import net.runelite.cache.IndexType;
+import net.runelite.cache.StoreLocation;
+import net.runelite.cache.TextureManager;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.Container;
+import net.runelite.cache.fs.Index;
+import net.runelite.cache.fs.Store;
+import net.runelite.cache.fs.jagex.CompressionType;
+import net.runelite.cache.fs.flat.FlatStorage;
+import net.runelite.cache.index.FileData;
+import net.runelite.cache.util.Crc32;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ModelExporterTest
+{
+	@Rule
+	public TemporaryFolder folder = StoreLocation.getTemporaryFolder();
+
+	private ExecutorService executor;
+
+	@Before
+	public void before()
+	{
+		executor = Executors.newFixedThreadPool(2);
+	}
+
+	@After
+	public void after()
+	{
+		executor.shutdown();
+	}
+
+	@Test
+	public void testExport() throws Exception
+	{
+		File out = folder.newFolder();
+
+		try (Store store = new Store(new FlatStorage(folder.newFolder())))
+		{
+			Index index = store.addIndex(IndexType.MODELS.getNumber());
+			saveModel(store, index.addArchive(0), 100);
+			saveModel(store, index.addArchive(1), 200);
+
+			TextureManager textureManager = new TextureManager(store);
+			ModelExporter exporter = new ModelExporter(store, textureManager, out);
+
+			assertEquals(2, exporter.export(executor));
+
+			String obj = new String(Files.readAllBytes(new File(out, "1.obj").toPath()));
+			assertTrue(obj.startsWith("mtllib 1.mtl"));
+			assertTrue(obj.contains("v 32 0 0"));
+			assertTrue(obj.contains("f 1 2 3"));
+			assertTrue(new File(out, "0.mtl").exists());
+
+			// nothing has changed
+			assertEquals(0, exporter.export(executor));
+
+			// only the changed and the deleted model are redone
+			saveModel(store, index.getArchive(1), 300);
+			assertEquals(1, exporter.export(executor));
+
+			new File(out, "0.obj").delete();
+			assertEquals(1, exporter.export(executor));
+			assertEquals(0, exporter.export(executor));
+		}
+	}
+
+	private static void saveModel(Store store, Archive archive, int color) throws IOException
+	{
+		byte[] data = triangle(color);
+
+		FileData fileData = new FileData();
+		archive.setFileData(new FileData[]{fileData});
+
+		Container container = new Container(CompressionType.NONE, -1);
+		container.compress(data, null);
+
+		Crc32 crc = new Crc32();
+		crc.update(container.data, 0, 5 + data.length);
+		archive.setCrc(crc.getHash());
+
+		store.getStorage().saveArchive(archive, container.data);
+	}
+
+	/**
+	 * A model with a single face, in the old format
+	 */
+	private static byte[] triangle(int color)
+	{
+		return new byte[]{
+			// vertex flags, faces types, face indices
+			0, 1, 1 | 4,
+			1,
+			64, 65, 65,
+			// face color
+			(byte) (color >> 8), (byte) color,
+			// vertex x and z
+			96, 32,
+			96,
+			// vertex count, face count
+			0, 3, 0, 1,
+			0, 0, 0, 0, 0, 0,
+			// length of x, y, z and face indices
+			0, 2, 0, 0, 0, 1, 0, 3
+		};
+	}
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.region;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import net.runelite.cache.IndexType;
+import net.runelite.cache.StoreLocation;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.ArchiveFiles;
+import net.runelite.cache.fs.Container;
+import net.runelite.cache.fs.FSFile;
+import net.runelite.cache.fs.Index;
+import net.runelite.cache.fs.Store;
+import net.runelite.cache.fs.jagex.CompressionType;
+import net.runelite.cache.index.FileData;
+import net.runelite.cache.util.Djb2;
+import net.runelite.cache.util.XteaKeyManager;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LazyRegionLoaderTest
+{
+	private static final int[] KEYS = {1, 2, 3, 4};
+	private static final int[] WRONG_KEYS = {4, 3, 2, 1};
+
+	private static final int REGION_A = 50 << 8 | 50;
+	private static final int REGION_B = 51 << 8 | 50;
+
+	@Rule
+	public TemporaryFolder folder = StoreLocation.getTemporaryFolder();
+
+	/**
+	 * Key manager which counts lookups, each of which is a load of a region
+	 */
+	private static class TestKeyManager extends XteaKeyManager
+	{
+		private final Map<Integer, Integer> lookups = new HashMap<>();
+
+		@Override
+		public synchronized int[] getKeys(int region)
+		{
+			lookups.merge(region, 1, Integer::sum);
+			return region == REGION_A ? WRONG_KEYS : null;
+		}
+
+		synchronized int getLookups(int region)
+		{
+			return lookups.getOrDefault(region, 0);
+		}
+	}
+
+	@Test
+	public void testLoad() throws IOException
+	{
+		try (Store store = new Store(folder.getRoot()))
+		{
+			for (int i = 0; i <= IndexType.MAPS.getNumber(); ++i)
+			{
+				store.addIndex(i);
+			}
+
+			Index index = store.getIndex(IndexType.MAPS);
+			addRegion(store, index, REGION_A);
+			addRegion(store, index, REGION_B);
+
+			TestKeyManager keyManager = new TestKeyManager();
+			RegionLoader regionLoader = new RegionLoader(store, keyManager);
+			// prefetch on the calling thread
+			LazyRegionLoader loader = new LazyRegionLoader(regionLoader, 16, Runnable::run);
+
+			Region a = loader.getRegion(REGION_A);
+			assertNotNull(a);
+			assertEquals(0, a.getLocationCount());
+			assertTrue(regionLoader.isXteaFailed(REGION_A));
+
+			// b was prefetched as a neighbour of a
+			assertTrue(loader.isLoaded(REGION_B));
+			assertEquals(1, keyManager.getLookups(REGION_B));
+			assertNotNull(loader.getRegion(REGION_B));
+			assertEquals(1, keyManager.getLookups(REGION_B));
+
+			assertSame(a, loader.findRegionForWorldCoordinates(50 * 64 + 10, 50 * 64 + 10));
+			assertNull(loader.getRegion(0));
+
+			// the failed decryption is not retried
+			regionLoader.loadRegionFromArchive(REGION_A);
+			assertEquals(1, keyManager.getLookups(REGION_A));
+			assertFalse(regionLoader.isXteaFailed(REGION_B));
+		}
+	}
+
+	private static void addRegion(Store store, Index index, int regionId) throws IOException
+	{
+		int x = regionId >> 8;
+		int y = regionId & 0xFF;
+
+		// every tile is empty
+		saveArchive(store, index, "m" + x + "_" + y, new byte[Region.Z * Region.X * Region.Y], null);
+		// no locations
+		saveArchive(store, index, "l" + x + "_" + y, new byte[]{0}, KEYS);
+	}
+
+	private static void saveArchive(Store store, Index index, String name, byte[] contents, int[] keys) throws IOException
+	{
+		Archive archive = index.addArchive(index.getArchives().size());
+		archive.setNameHash(Djb2.hash(name));
+
+		FileData fileData = new FileData();
+		archive.setFileData(new FileData[]{fileData});
+
+		ArchiveFiles files = new ArchiveFiles();
+		FSFile file = new FSFile(0);
+		file.setContents(contents);
+		files.addFile(file);
+
+		Container container = new Container(CompressionType.GZ, -1);
+		container.compress(files.saveContents(), keys);
+		store.getStorage().saveArchive(archive, container.data);
+	}
+}
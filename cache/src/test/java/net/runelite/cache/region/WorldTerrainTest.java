@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.region;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import net.runelite.cache.definitions.LocationsDefinition;
+import net.runelite.cache.definitions.MapDefinition;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import org.junit.Test;
+
+public class WorldTerrainTest
+{
+	@Test
+	public void testTerrain()
+	{
+		Random random = new Random(42L);
+		WorldTerrain terrain = new WorldTerrain(2);
+		List<Region> regions = new ArrayList<>();
+
+		for (int i = 0; i < 5; ++i)
+		{
+			int regionId = (48 + i) << 8 | 50;
+			MapDefinition map = map(random);
+
+			Region region = new Region(regionId);
+			region.loadTerrain(map);
+			regions.add(region);
+
+			terrain.addRegion(regionId).loadTerrain(map);
+		}
+
+		assertEquals(5, terrain.getRegionCount());
+		assertNull(terrain.getRegion(0));
+
+		for (Region expected : regions)
+		{
+			Region actual = terrain.getRegion(expected.getRegionID());
+			assertEquals(expected.getBaseX(), actual.getBaseX());
+			assertEquals(expected.getBaseY(), actual.getBaseY());
+
+			for (int z = 0; z < Region.Z; ++z)
+			{
+				for (int x = 0; x < Region.X; ++x)
+				{
+					for (int y = 0; y < Region.Y; ++y)
+					{
+						assertEquals(expected.getTileHeight(z, x, y), actual.getTileHeight(z, x, y));
+						assertEquals(expected.getTileSetting(z, x, y), actual.getTileSetting(z, x, y));
+						assertEquals(expected.getOverlayId(z, x, y), actual.getOverlayId(z, x, y));
+						assertEquals(expected.getOverlayPath(z, x, y), actual.getOverlayPath(z, x, y));
+						assertEquals(expected.getOverlayRotation(z, x, y), actual.getOverlayRotation(z, x, y));
+						assertEquals(expected.getUnderlayId(z, x, y), actual.getUnderlayId(z, x, y));
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testLocations()
+	{
+		WorldTerrain terrain = new WorldTerrain();
+		Region a = terrain.addRegion(50 << 8 | 50);
+		Region b = terrain.addRegion(51 << 8 | 50);
+		assertSame(a, terrain.getRegion(a.getRegionID()));
+
+		a.loadLocations(locations(new Location(1, 10, 0, new Position(0, 63, 0))));
+		b.loadLocations(locations(new Location(2, 22, 3, new Position(5, 6, 3))));
+		// moves the locations of a after those of b
+		a.loadLocations(locations(new Location(3, 4, 2, new Position(63, 0, 1))));
+
+		assertEquals(Arrays.asList(
+			new Location(1, 10, 0, new Position(3200, 3263, 0)),
+			new Location(3, 4, 2, new Position(3263, 3200, 1))
+		), a.getLocations());
+		assertEquals(2, a.getLocationCount());
+		assertEquals(Arrays.asList(
+			new Location(2, 22, 3, new Position(3269, 3206, 3))
+		), b.getLocations());
+	}
+
+	private static MapDefinition map(Random random)
+	{
+		MapDefinition map = new MapDefinition();
+		MapDefinition.Tile[][][] tiles = map.getTiles();
+		for (int z = 0; z < Region.Z; ++z)
+		{
+			for (int x = 0; x < Region.X; ++x)
+			{
+				for (int y = 0; y < Region.Y; ++y)
+				{
+					MapDefinition.Tile tile = tiles[z][x][y] = new MapDefinition.Tile();
+					tile.height = random.nextBoolean() ? null : random.nextInt(64);
+					tile.settings = (byte) random.nextInt();
+					tile.overlayId = (byte) random.nextInt();
+					tile.overlayPath = (byte) random.nextInt();
+					tile.overlayRotation = (byte) random.nextInt(4);
+					tile.underlayId = (byte) random.nextInt();
+				}
+			}
+		}
+		return map;
+	}
+
+	private static LocationsDefinition locations(Location... locations)
+	{
+		LocationsDefinition locs = new LocationsDefinition();
+		locs.getLocations().addAll(Arrays.asList(locations));
+		return locs;
+	}
+}
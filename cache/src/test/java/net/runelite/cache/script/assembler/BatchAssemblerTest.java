@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.script.assembler;
+
+import com.google.common.hash.HashCode;
+import com.google.common.io.FileWriteMode;
+import com.google.common.io.Files;
+import com.google.common.io.Resources;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import net.runelite.cache.script.Instructions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class BatchAssemblerTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private ExecutorService executor;
+	private BatchAssembler assembler;
+
+	@Before
+	public void before()
+	{
+		Instructions instructions = new Instructions();
+		instructions.init();
+
+		executor = Executors.newFixedThreadPool(2);
+		assembler = new BatchAssembler(instructions);
+	}
+
+	@After
+	public void after()
+	{
+		executor.shutdown();
+	}
+
+	private File copy(String script) throws IOException
+	{
+		File file = new File(folder.getRoot(), script);
+		Resources.asByteSource(BatchAssemblerTest.class.getResource(script)).copyTo(Files.asByteSink(file));
+		return file;
+	}
+
+	@Test
+	public void testIncremental() throws IOException
+	{
+		List<File> files = Arrays.asList(copy("91.rs2asm"), copy("681.rs2asm"));
+
+		List<AssembledScript> first = assembler.assemble(files, Collections.emptyMap(), executor);
+		assertEquals(2, first.size());
+		assertEquals(91, first.get(0).getId());
+		assertEquals(681, first.get(1).getId());
+		assertTrue(first.get(0).isChanged());
+		assertTrue(first.get(1).isChanged());
+
+		File manifestFile = new File(folder.getRoot(), "manifest.txt");
+		HashCode key = assembler.getManifestKey("1.0");
+		BatchAssembler.writeManifest(manifestFile, key, first);
+		Map<String, AssembledScript> manifest = BatchAssembler.readManifest(manifestFile, key);
+		assertEquals(2, manifest.size());
+		assertEquals(first.get(0).getHash(), manifest.get("91.rs2asm").getHash());
+
+		Files.asCharSink(files.get(1), StandardCharsets.UTF_8, FileWriteMode.APPEND).write("\n");
+
+		List<AssembledScript> second = assembler.assemble(files, manifest, executor);
+		assertFalse(second.get(0).isChanged());
+		assertEquals(91, second.get(0).getId());
+		assertTrue(second.get(1).isChanged());
+		assertNotNull(second.get(1).getScript());
+		assertEquals(681, second.get(1).getScript().getId());
+	}
+
+	@Test
+	public void testMissingManifest() throws IOException
+	{
+		assertTrue(BatchAssembler.readManifest(new File(folder.getRoot(), "missing.txt"), assembler.getManifestKey("1.0")).isEmpty());
+	}
+
+	@Test
+	public void testManifestKey() throws IOException
+	{
+		List<File> files = Collections.singletonList(copy("91.rs2asm"));
+		List<AssembledScript> scripts = assembler.assemble(files, Collections.emptyMap(), executor);
+
+		File manifestFile = new File(folder.getRoot(), "manifest.txt");
+		HashCode key = assembler.getManifestKey("1.0");
+		BatchAssembler.writeManifest(manifestFile, key, scripts);
+		assertEquals(1, BatchAssembler.readManifest(manifestFile, key).size());
+
+		// a new plugin version invalidates the manifest
+		assertTrue(BatchAssembler.readManifest(manifestFile, assembler.getManifestKey("1.1")).isEmpty());
+
+		// so does a change to the instruction set
+		Instructions instructions = new Instructions()
+		{
+			@Override
+			public void init()
+			{
+				super.init();
+				add(65000, "test_instruction");
+			}
+		};
+		instructions.init();
+		HashCode otherKey = new BatchAssembler(instructions).getManifestKey("1.0");
+		assertNotEquals(key, otherKey);
+		assertTrue(BatchAssembler.readManifest(manifestFile, otherKey).isEmpty());
+	}
+}
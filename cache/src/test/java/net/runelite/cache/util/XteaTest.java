@@ -24,7 +24,9 @@
  */
 package net.runelite.cache.util;
 
+import java.nio.ByteBuffer;
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import org.junit.Test;
 
 public class XteaTest
@@ -52,4 +54,23 @@ public class XteaTest
 
 		assertArrayEquals(data, decData);
 	}
+
+	@Test
+	public void testDecryptInPlace()
+	{
+		byte[] data = "testtesttest1".getBytes();
+		int[] key = new int[]
+		{
+			4, 8, 15, 16
+		};
+
+		Xtea xtea = new Xtea(key);
+		byte[] encData = xtea.encrypt(data, data.length);
+
+		ByteBuffer buffer = ByteBuffer.wrap(encData);
+		xtea.decrypt(buffer);
+
+		assertEquals(0, buffer.position());
+		assertArrayEquals(data, encData);
+	}
 }
@@ -112,6 +112,78 @@ public class LootTrackerClient
 		}
 	}
 
+	public Collection<LootAggregate> getAggregate() throws IOException
+	{
+		HttpUrl url = RuneLiteAPI.getApiBase().newBuilder()
+			.addPathSegment("loottracker")
+			.addPathSegment("aggregate")
+			.build();
+
+		Request request = new Request.Builder()
+			.header(RuneLiteAPI.RUNELITE_AUTH, uuid.toString())
+			.url(url)
+			.build();
+
+		try (Response response = RuneLiteAPI.CLIENT.newCall(request).execute())
+		{
+			if (!response.isSuccessful())
+			{
+				log.debug("Error looking up loot aggregate: {}", response);
+				return null;
+			}
+
+			InputStream in = response.body().byteStream();
+			return RuneLiteAPI.GSON.fromJson(new InputStreamReader(in), new TypeToken<List<LootAggregate>>()
+			{
+			}.getType());
+		}
+		catch (JsonParseException ex)
+		{
+			throw new IOException(ex);
+		}
+	}
+
+	/**
+	 * Look up a page of loot history, newest first
+	 *
+	 * @param count maximum number of records
+	 * @param before cursor from the previous page, or null for the first page
+	 * @return the page, or null if the lookup failed
+	 */
+	public LootRecordPage getHistory(int count, Integer before) throws IOException
+	{
+		HttpUrl.Builder builder = RuneLiteAPI.getApiBase().newBuilder()
+			.addPathSegment("loottracker")
+			.addPathSegment("history")
+			.addQueryParameter("count", Integer.toString(count));
+
+		if (before != null)
+		{
+			builder.addQueryParameter("before", before.toString());
+		}
+
+		Request request = new Request.Builder()
+			.header(RuneLiteAPI.RUNELITE_AUTH, uuid.toString())
+			.url(builder.build())
+			.build();
+
+		try (Response response = RuneLiteAPI.CLIENT.newCall(request).execute())
+		{
+			if (!response.isSuccessful())
+			{
+				log.debug("Error looking up loot history: {}", response);
+				return null;
+			}
+
+			InputStream in = response.body().byteStream();
+			return RuneLiteAPI.GSON.fromJson(new InputStreamReader(in), LootRecordPage.class);
+		}
+		catch (JsonParseException ex)
+		{
+			throw new IOException(ex);
+		}
+	}
+
 	public void delete(String eventId)
 	{
 		HttpUrl.Builder builder = RuneLiteAPI.getApiBase().newBuilder()
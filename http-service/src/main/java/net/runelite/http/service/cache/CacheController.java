@@ -24,35 +24,15 @@
  */
 package net.runelite.http.service.cache;
 
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
-import javax.imageio.ImageIO;
 import lombok.extern.slf4j.Slf4j;
-import net.runelite.cache.ConfigType;
-import net.runelite.cache.IndexType;
 import net.runelite.cache.definitions.ItemDefinition;
-import net.runelite.cache.definitions.ModelDefinition;
 import net.runelite.cache.definitions.NpcDefinition;
 import net.runelite.cache.definitions.ObjectDefinition;
-import net.runelite.cache.definitions.SpriteDefinition;
-import net.runelite.cache.definitions.TextureDefinition;
-import net.runelite.cache.definitions.loaders.ItemLoader;
-import net.runelite.cache.definitions.loaders.ModelLoader;
-import net.runelite.cache.definitions.loaders.NpcLoader;
-import net.runelite.cache.definitions.loaders.ObjectLoader;
-import net.runelite.cache.definitions.loaders.SpriteLoader;
-import net.runelite.cache.definitions.loaders.TextureLoader;
-import net.runelite.cache.definitions.providers.ItemProvider;
-import net.runelite.cache.definitions.providers.ModelProvider;
-import net.runelite.cache.definitions.providers.SpriteProvider;
-import net.runelite.cache.definitions.providers.TextureProvider;
-import net.runelite.cache.fs.ArchiveFiles;
-import net.runelite.cache.fs.Container;
-import net.runelite.cache.fs.FSFile;
-import net.runelite.cache.item.ItemSpriteFactory;
 import net.runelite.http.api.cache.Cache;
 import net.runelite.http.api.cache.CacheArchive;
 import net.runelite.http.api.cache.CacheIndex;
@@ -61,21 +41,28 @@ import net.runelite.http.service.cache.beans.CacheEntry;
 import net.runelite.http.service.cache.beans.IndexEntry;
 import net.runelite.http.service.util.exception.NotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 @RestController
 @RequestMapping("/cache")
 @Slf4j
 public class CacheController
 {
+	private static final int MAX_BATCH_LOOKUP = 1024;
+
 	@Autowired
 	private CacheService cacheService;
 
+	@Autowired
+	private ItemIconService itemIconService;
+
 	@GetMapping("/")
 	public List<Cache> listCaches()
 	{
@@ -178,140 +165,68 @@ public class CacheController
 		return cacheService.getArchive(archiveEntry);
 	}
 
-	private ArchiveEntry findConfig(ConfigType config)
+	private CacheDefinitions getDefinitions()
 	{
-		CacheEntry cache = cacheService.findMostRecent();
-		if (cache == null)
-		{
-			throw new NotFoundException();
-		}
-
-		IndexEntry indexEntry = cacheService.findIndexForCache(cache, IndexType.CONFIGS.getNumber());
-		if (indexEntry == null)
-		{
-			throw new NotFoundException();
-		}
-
-		ArchiveEntry archiveEntry = cacheService.findArchiveForIndex(indexEntry, config.getId());
-		if (archiveEntry == null)
+		CacheDefinitions definitions = cacheService.getDefinitions();
+		if (definitions == null)
 		{
 			throw new NotFoundException();
 		}
+		return definitions;
+	}
 
-		return archiveEntry;
+	private static int[] limit(int[] ids)
+	{
+		return ids.length > MAX_BATCH_LOOKUP ? Arrays.copyOf(ids, MAX_BATCH_LOOKUP) : ids;
 	}
 
 	@GetMapping("item/{itemId}")
 	public ItemDefinition getItem(@PathVariable int itemId) throws IOException
 	{
-		ArchiveEntry archiveEntry = findConfig(ConfigType.ITEM);
-
-		ArchiveFiles archiveFiles = cacheService.getArchiveFiles(archiveEntry);
-		if (archiveFiles == null)
+		ItemDefinition itemdef = getDefinitions().getItem(itemId);
+		if (itemdef == null)
 		{
 			throw new NotFoundException();
 		}
-
-		FSFile file = archiveFiles.findFile(itemId);
-		if (file == null)
-		{
-			throw new NotFoundException();
-		}
-
-		ItemDefinition itemdef = new ItemLoader().load(itemId, file.getContents());
 		return itemdef;
 	}
 
+	@GetMapping("items")
+	public List<ItemDefinition> getItems(@RequestParam int[] ids) throws IOException
+	{
+		return getDefinitions().getItems(limit(ids));
+	}
+
 	@GetMapping(path = "item/{itemId}/image", produces = "image/png")
 	public ResponseEntity<byte[]> getItemImage(
 		@PathVariable int itemId,
 		@RequestParam(defaultValue = "1") int quantity,
 		@RequestParam(defaultValue = "1") int border,
-		@RequestParam(defaultValue = "3153952") int shadowColor
+		@RequestParam(defaultValue = "3153952") int shadowColor,
+		WebRequest request
 	) throws IOException
 	{
-		final CacheEntry cache = cacheService.findMostRecent();
-		ItemProvider itemProvider = new ItemProvider()
-		{
-			@Override
-			public ItemDefinition provide(int itemId)
-			{
-				try
-				{
-					return getItem(itemId);
-				}
-				catch (IOException ex)
-				{
-					log.warn(null, ex);
-					return null;
-				}
-			}
-		};
-		ModelProvider modelProvider = new ModelProvider()
+		ItemIconKey key = itemIconService.findIcon(itemId, quantity, border, shadowColor);
+		if (key == null)
 		{
-			@Override
-			public ModelDefinition provide(int modelId) throws IOException
-			{
-				IndexEntry indexEntry = cacheService.findIndexForCache(cache, IndexType.MODELS.getNumber());
-				ArchiveEntry archiveEntry = cacheService.findArchiveForIndex(indexEntry, modelId);
-				byte[] archiveData = Container.decompress(cacheService.getArchive(archiveEntry), null).data;
-				return new ModelLoader().load(modelId, archiveData);
-			}
-		};
-		SpriteProvider spriteProvider = new SpriteProvider()
+			throw new NotFoundException();
+		}
+
+		if (request.checkNotModified(key.getETag()))
 		{
-			@Override
-			public SpriteDefinition provide(int spriteId, int frameId)
-			{
-				try
-				{
-					IndexEntry indexEntry = cacheService.findIndexForCache(cache, IndexType.SPRITES.getNumber());
-					ArchiveEntry archiveEntry = cacheService.findArchiveForIndex(indexEntry, spriteId);
-					byte[] archiveData = Container.decompress(cacheService.getArchive(archiveEntry), null).data;
-					SpriteDefinition[] defs = new SpriteLoader().load(spriteId, archiveData);
-					return defs[frameId];
-				}
-				catch (Exception ex)
-				{
-					log.warn(null, ex);
-					return null;
-				}
-			}
-		};
-
-		TextureProvider textureProvider2 = new TextureProvider()
+			return null;
+		}
+
+		byte[] png = itemIconService.getIcon(key);
+		if (png.length == 0)
 		{
-			@Override
-			public TextureDefinition[] provide()
-			{
-				try
-				{
-					IndexEntry indexEntry = cacheService.findIndexForCache(cache, IndexType.TEXTURES.getNumber());
-					ArchiveEntry archiveEntry = cacheService.findArchiveForIndex(indexEntry, 0);
-					ArchiveFiles archiveFiles = cacheService.getArchiveFiles(archiveEntry);
-					TextureLoader loader = new TextureLoader();
-					TextureDefinition[] defs = new TextureDefinition[archiveFiles.getFiles().size()];
-					int i = 0;
-					for (FSFile file : archiveFiles.getFiles())
-					{
-						TextureDefinition def = loader.load(file.getFileId(), file.getContents());
-						defs[i++] = def;
-					}
-					return defs;
-				}
-				catch (Exception ex)
-				{
-					log.warn(null, ex);
-					return null;
-				}
-			}
-		};
-
-		BufferedImage itemImage = ItemSpriteFactory.createSprite(itemProvider, modelProvider, spriteProvider, textureProvider2,
-			itemId, quantity, border, shadowColor, false);
-		ByteArrayOutputStream bao = new ByteArrayOutputStream();
-		ImageIO.write(itemImage, "png", bao);
-		return ResponseEntity.ok(bao.toByteArray());
+			throw new NotFoundException();
+		}
+
+		return ResponseEntity.ok()
+			.eTag(key.getETag())
+			.cacheControl(CacheControl.maxAge(30, TimeUnit.MINUTES).cachePublic())
+			.body(png);
 	}
 
 	@GetMapping("object/{objectId}")
@@ -319,44 +234,36 @@ public class CacheController
 		@PathVariable int objectId
 	) throws IOException
 	{
-		ArchiveEntry archiveEntry = findConfig(ConfigType.OBJECT);
-
-		ArchiveFiles archiveFiles = cacheService.getArchiveFiles(archiveEntry);
-		if (archiveFiles == null)
-		{
-			throw new NotFoundException();
-		}
-
-		FSFile file = archiveFiles.findFile(objectId);
-		if (file == null)
+		ObjectDefinition objectdef = getDefinitions().getObject(objectId);
+		if (objectdef == null)
 		{
 			throw new NotFoundException();
 		}
-
-		ObjectDefinition objectdef = new ObjectLoader().load(objectId, file.getContents());
 		return objectdef;
 	}
 
+	@GetMapping("objects")
+	public List<ObjectDefinition> getObjects(@RequestParam int[] ids) throws IOException
+	{
+		return getDefinitions().getObjects(limit(ids));
+	}
+
 	@GetMapping("npc/{npcId}")
 	public NpcDefinition getNpc(
 		@PathVariable int npcId
 	) throws IOException
 	{
-		ArchiveEntry archiveEntry = findConfig(ConfigType.NPC);
-
-		ArchiveFiles archiveFiles = cacheService.getArchiveFiles(archiveEntry);
-		if (archiveFiles == null)
+		NpcDefinition npcdef = getDefinitions().getNpc(npcId);
+		if (npcdef == null)
 		{
 			throw new NotFoundException();
 		}
-
-		FSFile file = archiveFiles.findFile(npcId);
-		if (file == null)
-		{
-			throw new NotFoundException();
-		}
-
-		NpcDefinition npcdef = new NpcLoader().load(npcId, file.getContents());
 		return npcdef;
 	}
+
+	@GetMapping("npcs")
+	public List<NpcDefinition> getNpcs(@RequestParam int[] ids) throws IOException
+	{
+		return getDefinitions().getNpcs(limit(ids));
+	}
 }
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.cache;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import net.runelite.cache.ConfigType;
+import net.runelite.cache.IndexType;
+import net.runelite.cache.definitions.ItemDefinition;
+import net.runelite.cache.definitions.NpcDefinition;
+import net.runelite.cache.definitions.ObjectDefinition;
+import net.runelite.cache.definitions.loaders.ItemLoader;
+import net.runelite.cache.definitions.loaders.NpcLoader;
+import net.runelite.cache.definitions.loaders.ObjectLoader;
+import net.runelite.cache.fs.ArchiveFiles;
+import net.runelite.http.service.cache.beans.ArchiveEntry;
+import net.runelite.http.service.cache.beans.CacheEntry;
+import net.runelite.http.service.cache.beans.IndexEntry;
+
+/**
+ * Decoded config definitions of a single cache. Each config archive is
+ * fetched and split once, on first use.
+ */
+public class CacheDefinitions
+{
+	private final CacheService cacheService;
+	private final CacheEntry cache;
+	private final Map<ConfigType, ConfigDefinitions<?>> configs = new ConcurrentHashMap<>();
+
+	CacheDefinitions(CacheService cacheService, CacheEntry cache)
+	{
+		this.cacheService = cacheService;
+		this.cache = cache;
+	}
+
+	public CacheEntry getCache()
+	{
+		return cache;
+	}
+
+	public ItemDefinition getItem(int itemId) throws IOException
+	{
+		return items().get(itemId);
+	}
+
+	public List<ItemDefinition> getItems(int[] itemIds) throws IOException
+	{
+		return items().get(itemIds);
+	}
+
+	public List<ItemDefinition> getItems() throws IOException
+	{
+		return items().getAll();
+	}
+
+	public NpcDefinition getNpc(int npcId) throws IOException
+	{
+		return npcs().get(npcId);
+	}
+
+	public List<NpcDefinition> getNpcs(int[] npcIds) throws IOException
+	{
+		return npcs().get(npcIds);
+	}
+
+	public ObjectDefinition getObject(int objectId) throws IOException
+	{
+		return objects().get(objectId);
+	}
+
+	public List<ObjectDefinition> getObjects(int[] objectIds) throws IOException
+	{
+		return objects().get(objectIds);
+	}
+
+	private ConfigDefinitions<ItemDefinition> items() throws IOException
+	{
+		return getConfig(ConfigType.ITEM, (id, b) -> new ItemLoader().load(id, b));
+	}
+
+	private ConfigDefinitions<NpcDefinition> npcs() throws IOException
+	{
+		return getConfig(ConfigType.NPC, (id, b) -> new NpcLoader().load(id, b));
+	}
+
+	private ConfigDefinitions<ObjectDefinition> objects() throws IOException
+	{
+		return getConfig(ConfigType.OBJECT, (id, b) -> new ObjectLoader().load(id, b));
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> ConfigDefinitions<T> getConfig(ConfigType type, BiFunction<Integer, byte[], T> loader) throws IOException
+	{
+		ConfigDefinitions<T> config = (ConfigDefinitions<T>) configs.get(type);
+		return config != null ? config : loadConfig(type, loader);
+	}
+
+	@SuppressWarnings("unchecked")
+	private synchronized <T> ConfigDefinitions<T> loadConfig(ConfigType type, BiFunction<Integer, byte[], T> loader) throws IOException
+	{
+		ConfigDefinitions<T> config = (ConfigDefinitions<T>) configs.get(type);
+		if (config != null)
+		{
+			return config;
+		}
+
+		IndexEntry indexEntry = cacheService.findIndexForCache(cache, IndexType.CONFIGS.getNumber());
+		ArchiveEntry archiveEntry = indexEntry == null ? null : cacheService.findArchiveForIndex(indexEntry, type.getId());
+		ArchiveFiles archiveFiles = archiveEntry == null ? null : cacheService.getArchiveFiles(archiveEntry);
+		if (archiveFiles == null)
+		{
+			throw new IOException("unable to load config " + type + " of cache " + cache.getId());
+		}
+
+		config = new ConfigDefinitions<>(archiveFiles, loader);
+		configs.put(type, config);
+		return config;
+	}
+}
@@ -41,13 +41,12 @@ import java.io.InputStream;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import lombok.extern.slf4j.Slf4j;
-import net.runelite.cache.ConfigType;
 import net.runelite.cache.IndexType;
 import net.runelite.cache.definitions.ItemDefinition;
-import net.runelite.cache.definitions.loaders.ItemLoader;
 import net.runelite.cache.fs.ArchiveFiles;
 import net.runelite.cache.fs.Container;
 import net.runelite.cache.fs.FSFile;
@@ -59,6 +58,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.sql2o.Connection;
 import org.sql2o.ResultSetIterable;
@@ -78,6 +78,8 @@ public class CacheService
 
 	private final MinioClient minioClient;
 
+	private volatile CacheDefinitions definitions;
+
 	@Autowired
 	public CacheService(
 		@Value("${minio.endpoint}") String minioEndpoint,
@@ -111,7 +113,16 @@ public class CacheService
 
 		try (InputStream in = minioClient.getObject(minioBucket, path))
 		{
-			return ByteStreams.toByteArray(in);
+			byte[] data = ByteStreams.toByteArray(in);
+			if (data.length == Container.payloadLength(data))
+			{
+				// blobs are stored without the revision trailer so they
+				// can be shared between revisions of an archive
+				data = Arrays.copyOf(data, data.length + 2);
+				data[data.length - 2] = (byte) (archiveEntry.getRevision() >> 8);
+				data[data.length - 1] = (byte) archiveEntry.getRevision();
+			}
+			return data;
 		}
 		catch (InvalidBucketNameException | NoSuchAlgorithmException | InsufficientDataException
 			| IOException | InvalidKeyException | NoResponseException | XmlPullParserException
@@ -231,24 +242,47 @@ public class CacheService
 		}
 	}
 
-	public List<ItemDefinition> getItems() throws IOException
+	/**
+	 * Get the decoded definitions of the most recent cache
+	 *
+	 * @return the definitions, or null if there are no caches
+	 */
+	public CacheDefinitions getDefinitions()
+	{
+		CacheDefinitions definitions = this.definitions;
+		if (definitions == null)
+		{
+			refreshDefinitions();
+			definitions = this.definitions;
+		}
+		return definitions;
+	}
+
+	@Scheduled(fixedDelay = 60_000)
+	public synchronized void refreshDefinitions()
 	{
 		CacheEntry cache = findMostRecent();
 		if (cache == null)
 		{
-			return Collections.emptyList();
+			return;
+		}
+
+		CacheDefinitions current = definitions;
+		if (current == null || current.getCache().getId() != cache.getId())
+		{
+			log.debug("Using definitions of cache {} revision {}", cache.getId(), cache.getRevision());
+			definitions = new CacheDefinitions(this, cache);
 		}
+	}
 
-		IndexEntry indexEntry = findIndexForCache(cache, IndexType.CONFIGS.getNumber());
-		ArchiveEntry archiveEntry = findArchiveForIndex(indexEntry, ConfigType.ITEM.getId());
-		ArchiveFiles archiveFiles = getArchiveFiles(archiveEntry);
-		final ItemLoader itemLoader = new ItemLoader();
-		final List<ItemDefinition> result = new ArrayList<>(archiveFiles.getFiles().size());
-		for (FSFile file : archiveFiles.getFiles())
+	public List<ItemDefinition> getItems() throws IOException
+	{
+		CacheDefinitions definitions = getDefinitions();
+		if (definitions == null)
 		{
-			ItemDefinition itemDef = itemLoader.load(file.getFileId(), file.getContents());
-			result.add(itemDef);
+			return Collections.emptyList();
 		}
-		return result;
+
+		return definitions.getItems();
 	}
 }
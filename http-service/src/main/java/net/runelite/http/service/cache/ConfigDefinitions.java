@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiFunction;
+import net.runelite.cache.fs.ArchiveFiles;
+import net.runelite.cache.fs.FSFile;
+
+/**
+ * The definitions of one config archive, indexed by id and decoded on
+ * first use
+ *
+ * @param <T> definition type
+ */
+class ConfigDefinitions<T>
+{
+	private final ArchiveFiles files;
+	private final BiFunction<Integer, byte[], T> loader;
+	private final AtomicReferenceArray<T> definitions;
+
+	ConfigDefinitions(ArchiveFiles files, BiFunction<Integer, byte[], T> loader)
+	{
+		this.files = files;
+		this.loader = loader;
+
+		int maxId = -1;
+		for (FSFile file : files.getFiles())
+		{
+			maxId = Math.max(maxId, file.getFileId());
+		}
+		definitions = new AtomicReferenceArray<>(maxId + 1);
+	}
+
+	T get(int id)
+	{
+		if (id < 0 || id >= definitions.length())
+		{
+			return null;
+		}
+
+		T definition = definitions.get(id);
+		if (definition != null)
+		{
+			return definition;
+		}
+
+		FSFile file = files.findFile(id);
+		if (file == null)
+		{
+			return null;
+		}
+
+		// two threads may decode the same definition, but only one is kept
+		definitions.compareAndSet(id, null, loader.apply(id, file.getContents()));
+		return definitions.get(id);
+	}
+
+	List<T> get(int[] ids)
+	{
+		List<T> result = new ArrayList<>(ids.length);
+		for (int id : ids)
+		{
+			T definition = get(id);
+			if (definition != null)
+			{
+				result.add(definition);
+			}
+		}
+		return result;
+	}
+
+	List<T> getAll()
+	{
+		List<T> result = new ArrayList<>(files.getFiles().size());
+		for (FSFile file : files.getFiles())
+		{
+			result.add(get(file.getFileId()));
+		}
+		return result;
+	}
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.cache;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import javax.imageio.ImageIO;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.cache.ConfigType;
+import net.runelite.cache.IndexType;
+import net.runelite.cache.definitions.ItemDefinition;
+import net.runelite.cache.definitions.ModelDefinition;
+import net.runelite.cache.definitions.SpriteDefinition;
+import net.runelite.cache.definitions.TextureDefinition;
+import net.runelite.cache.definitions.loaders.ItemLoader;
+import net.runelite.cache.definitions.loaders.ModelLoader;
+import net.runelite.cache.definitions.loaders.SpriteLoader;
+import net.runelite.cache.definitions.loaders.TextureLoader;
+import net.runelite.cache.definitions.providers.ItemProvider;
+import net.runelite.cache.definitions.providers.ModelProvider;
+import net.runelite.cache.definitions.providers.SpriteProvider;
+import net.runelite.cache.definitions.providers.TextureProvider;
+import net.runelite.cache.fs.ArchiveFiles;
+import net.runelite.cache.fs.Container;
+import net.runelite.cache.fs.FSFile;
+import net.runelite.cache.item.ItemSpriteFactory;
+import net.runelite.http.service.cache.beans.ArchiveEntry;
+import net.runelite.http.service.cache.beans.CacheEntry;
+import net.runelite.http.service.cache.beans.IndexEntry;
+
+/**
+ * Renders item icons for a single cache. The item config archive is
+ * loaded once, and the sprite factory is shared between all renders.
+ */
+@Slf4j
+class ItemIconRenderer
+{
+	private final CacheService cacheService;
+	private final CacheEntry cache;
+	private final ArchiveFiles items;
+	private final ItemSpriteFactory spriteFactory;
+
+	ItemIconRenderer(CacheService cacheService, CacheEntry cache) throws IOException
+	{
+		this.cacheService = cacheService;
+		this.cache = cache;
+
+		IndexEntry indexEntry = cacheService.findIndexForCache(cache, IndexType.CONFIGS.getNumber());
+		ArchiveEntry archiveEntry = indexEntry == null ? null : cacheService.findArchiveForIndex(indexEntry, ConfigType.ITEM.getId());
+		items = archiveEntry == null ? null : cacheService.getArchiveFiles(archiveEntry);
+		if (items == null)
+		{
+			throw new IOException("unable to load items for cache " + cache.getId());
+		}
+
+		spriteFactory = new ItemSpriteFactory(this::getItem, this::getModel, this::getSprite, this::getTextures);
+	}
+
+	CacheEntry getCache()
+	{
+		return cache;
+	}
+
+	List<Integer> getItemIds()
+	{
+		List<Integer> ids = new ArrayList<>(items.getFiles().size());
+		for (FSFile file : items.getFiles())
+		{
+			ids.add(file.getFileId());
+		}
+		return ids;
+	}
+
+	/**
+	 * Get the key for an icon of this cache
+	 *
+	 * @return the key, or null if the item does not exist
+	 */
+	ItemIconKey key(int itemId, int quantity, int border, int shadowColor)
+	{
+		ItemDefinition item = getItem(itemId);
+		if (item == null)
+		{
+			return null;
+		}
+
+		return new ItemIconKey(cache.getId(), cache.getRevision(), itemId, quantityBucket(item, quantity), border, shadowColor);
+	}
+
+	/**
+	 * Icons only depend on the quantity through the stack model chosen by
+	 * the countCo thresholds, so map the quantity to the lowest quantity
+	 * which selects the same model. Bought and placeholder items pass the
+	 * quantity on to the item they wrap, whose thresholds are not known
+	 * here, so they keep the raw quantity.
+	 */
+	static int quantityBucket(ItemDefinition item, int quantity)
+	{
+		if (quantity <= 1)
+		{
+			return 1;
+		}
+
+		if (item.boughtTemplateId != -1 || item.placeholderTemplateId != -1)
+		{
+			// the wrapped item is rendered with the same quantity
+			return quantity;
+		}
+
+		if (item.countObj == null)
+		{
+			return 1;
+		}
+
+		int bucket = 1;
+		for (int i = 0; i < 10; ++i)
+		{
+			int count = item.countCo[i];
+			if (count == 0)
+			{
+				continue;
+			}
+
+			if (count < bucket)
+			{
+				// the last matching threshold wins, which is only the
+				// largest if they are ascending
+				return quantity;
+			}
+
+			if (quantity >= count)
+			{
+				bucket = count;
+			}
+		}
+		return bucket;
+	}
+
+	/**
+	 * Render an icon
+	 *
+	 * @param key
+	 * @return the png, or an empty array if the item has no icon
+	 * @throws IOException
+	 */
+	byte[] render(ItemIconKey key) throws IOException
+	{
+		assert key.getCacheId() == cache.getId();
+
+		BufferedImage image = spriteFactory.createSprite(key.getItemId(), key.getQuantity(),
+			key.getBorder(), key.getShadowColor(), false);
+		return image == null ? new byte[0] : toPng(image);
+	}
+
+	/**
+	 * Render the icons for many items with the same variant
+	 *
+	 * @return the icons by item id, excluding items without an icon
+	 */
+	Map<Integer, BufferedImage> render(List<Integer> itemIds, int border, int shadowColor, Executor executor) throws IOException
+	{
+		return spriteFactory.createSprites(itemIds, 1, border, shadowColor, false, executor);
+	}
+
+	static byte[] toPng(BufferedImage image) throws IOException
+	{
+		ByteArrayOutputStream bao = new ByteArrayOutputStream();
+		ImageIO.write(image, "png", bao);
+		return bao.toByteArray();
+	}
+
+	private ItemDefinition getItem(int itemId)
+	{
+		FSFile file = items.findFile(itemId);
+		if (file == null)
+		{
+			return null;
+		}
+
+		// decoded fresh each time, as rendering noted items modifies the definition
+		return new ItemLoader().load(itemId, file.getContents());
+	}
+
+	private ModelDefinition getModel(int modelId) throws IOException
+	{
+		IndexEntry indexEntry = cacheService.findIndexForCache(cache, IndexType.MODELS.getNumber());
+		ArchiveEntry archiveEntry = cacheService.findArchiveForIndex(indexEntry, modelId);
+		byte[] archiveData = Container.decompress(cacheService.getArchive(archiveEntry), null).data;
+		return new ModelLoader().load(modelId, archiveData);
+	}
+
+	private SpriteDefinition getSprite(int spriteId, int frameId)
+	{
+		try
+		{
+			IndexEntry indexEntry = cacheService.findIndexForCache(cache, IndexType.SPRITES.getNumber());
+			ArchiveEntry archiveEntry = cacheService.findArchiveForIndex(indexEntry, spriteId);
+			byte[] archiveData = Container.decompress(cacheService.getArchive(archiveEntry), null).data;
+			SpriteDefinition[] defs = new SpriteLoader().load(spriteId, archiveData);
+			return defs[frameId];
+		}
+		catch (Exception ex)
+		{
+			log.warn(null, ex);
+			return null;
+		}
+	}
+
+	private TextureDefinition[] getTextures()
+	{
+		try
+		{
+			IndexEntry indexEntry = cacheService.findIndexForCache(cache, IndexType.TEXTURES.getNumber());
+			ArchiveEntry archiveEntry = cacheService.findArchiveForIndex(indexEntry, 0);
+			ArchiveFiles archiveFiles = cacheService.getArchiveFiles(archiveEntry);
+			TextureLoader loader = new TextureLoader();
+			TextureDefinition[] defs = new TextureDefinition[archiveFiles.getFiles().size()];
+			int i = 0;
+			for (FSFile file : archiveFiles.getFiles())
+			{
+				TextureDefinition def = loader.load(file.getFileId(), file.getContents());
+				defs[i++] = def;
+			}
+			return defs;
+		}
+		catch (Exception ex)
+		{
+			log.warn(null, ex);
+			return null;
+		}
+	}
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.http.service.cache.beans.CacheEntry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Store of rendered item icons, with an in memory tier in front of an on
+ * disk tier. Icons are keyed by the cache and all of the render inputs, so
+ * stored icons never need to be invalidated, and the common variants are
+ * rendered ahead of time whenever a new cache is seen.
+ */
+@Service
+@Slf4j
+public class ItemIconService
+{
+	// border and shadow color of the variants which are rendered ahead of time
+	private static final int[][] WARM_VARIANTS = {
+		{1, 3153952},
+		{0, 0}
+	};
+	private static final int WARM_BATCH_SIZE = 256;
+
+	private final CacheService cacheService;
+	private final File directory;
+	private final Cache<ItemIconKey, byte[]> icons;
+	private final ExecutorService renderExecutor;
+	private final ExecutorService warmExecutor;
+
+	private volatile ItemIconRenderer renderer;
+
+	@Autowired
+	public ItemIconService(
+		CacheService cacheService,
+		@Value("${cache.icons.directory:${java.io.tmpdir}/runelite-item-icons}") String directory,
+		@Value("${cache.icons.memory:67108864}") long memory
+	)
+	{
+		this.cacheService = cacheService;
+		this.directory = new File(directory);
+		this.icons = CacheBuilder.newBuilder()
+			.maximumWeight(memory)
+			.weigher((ItemIconKey key, byte[] png) -> png.length)
+			.build();
+		this.renderExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+			new ThreadFactoryBuilder().setNameFormat("item-icon-render-%d").setDaemon(true).build());
+		this.warmExecutor = Executors.newSingleThreadExecutor(
+			new ThreadFactoryBuilder().setNameFormat("item-icon-warm").setDaemon(true).build());
+	}
+
+	@PreDestroy
+	public void shutdown()
+	{
+		warmExecutor.shutdownNow();
+		renderExecutor.shutdownNow();
+	}
+
+	/**
+	 * Find the key of an icon in the most recent cache
+	 *
+	 * @return the key, or null if there is no cache or the item does not exist
+	 * @throws IOException
+	 */
+	public ItemIconKey findIcon(int itemId, int quantity, int border, int shadowColor) throws IOException
+	{
+		ItemIconRenderer renderer = this.renderer;
+		if (renderer == null)
+		{
+			checkCache();
+			renderer = this.renderer;
+			if (renderer == null)
+			{
+				return null;
+			}
+		}
+
+		return renderer.key(itemId, quantity, border, shadowColor);
+	}
+
+	/**
+	 * Get an icon, rendering it if it isn't stored yet
+	 *
+	 * @param key
+	 * @return the png, or an empty array if the item has no icon or the key
+	 * is not of the current cache
+	 * @throws IOException
+	 */
+	public byte[] getIcon(ItemIconKey key) throws IOException
+	{
+		ItemIconRenderer renderer = this.renderer;
+		if (renderer == null || renderer.getCache().getId() != key.getCacheId())
+		{
+			// the cache has changed since the key was made, and the icons
+			// of the old cache are being deleted
+			return new byte[0];
+		}
+
+		try
+		{
+			return icons.get(key, () -> load(renderer, key));
+		}
+		catch (ExecutionException ex)
+		{
+			if (ex.getCause() instanceof IOException)
+			{
+				throw (IOException) ex.getCause();
+			}
+			throw new RuntimeException(ex.getCause());
+		}
+	}
+
+	private byte[] load(ItemIconRenderer renderer, ItemIconKey key) throws IOException
+	{
+		File file = getFile(key);
+		if (file.exists())
+		{
+			return Files.readAllBytes(file.toPath());
+		}
+
+		byte[] png = renderer.render(key);
+		write(file, png);
+		return png;
+	}
+
+	@Scheduled(initialDelay = 10_000, fixedDelay = 60_000)
+	public synchronized void checkCache() throws IOException
+	{
+		CacheEntry cache = cacheService.findMostRecent();
+		if (cache == null)
+		{
+			return;
+		}
+
+		ItemIconRenderer current = renderer;
+		if (current != null && current.getCache().getId() == cache.getId())
+		{
+			return;
+		}
+
+		log.info("New cache {} revision {}, warming item icons", cache.getId(), cache.getRevision());
+
+		ItemIconRenderer newRenderer = new ItemIconRenderer(cacheService, cache);
+		renderer = newRenderer;
+
+		// icons of other caches will not be requested again
+		icons.asMap().keySet().removeIf(key -> key.getCacheId() != cache.getId());
+
+		warmExecutor.execute(() ->
+		{
+			try
+			{
+				deleteOtherCaches(cache.getId());
+				warm(newRenderer);
+			}
+			catch (IOException | RuntimeException ex)
+			{
+				log.warn("error warming item icons", ex);
+			}
+		});
+	}
+
+	private void warm(ItemIconRenderer renderer) throws IOException
+	{
+		long start = System.currentTimeMillis();
+		int rendered = 0;
+
+		List<Integer> itemIds = renderer.getItemIds();
+		for (int[] variant : WARM_VARIANTS)
+		{
+			int border = variant[0], shadowColor = variant[1];
+
+			for (int i = 0; i < itemIds.size(); i += WARM_BATCH_SIZE)
+			{
+				if (this.renderer != renderer)
+				{
+					log.info("Cache changed, stopping warm up of cache {}", renderer.getCache().getId());
+					return;
+				}
+
+				// icons stored by a previous run are kept
+				List<Integer> batch = new ArrayList<>(WARM_BATCH_SIZE);
+				for (int itemId : itemIds.subList(i, Math.min(i + WARM_BATCH_SIZE, itemIds.size())))
+				{
+					if (!getFile(renderer.key(itemId, 1, border, shadowColor)).exists())
+					{
+						batch.add(itemId);
+					}
+				}
+
+				Map<Integer, BufferedImage> images = renderer.render(batch, border, shadowColor, renderExecutor);
+				for (int itemId : batch)
+				{
+					BufferedImage image = images.get(itemId);
+					byte[] png = image == null ? new byte[0] : ItemIconRenderer.toPng(image);
+
+					ItemIconKey key = renderer.key(itemId, 1, border, shadowColor);
+					write(getFile(key), png);
+					icons.put(key, png);
+				}
+				rendered += batch.size();
+			}
+		}
+
+		log.info("Rendered {} item icons for cache {} in {}ms", rendered, renderer.getCache().getId(),
+			System.currentTimeMillis() - start);
+	}
+
+	private File getFile(ItemIconKey key)
+	{
+		return new File(new File(directory, Integer.toString(key.getCacheId())), key.getName() + ".png");
+	}
+
+	private void write(File file, byte[] png)
+	{
+		try
+		{
+			File dir = file.getParentFile();
+			dir.mkdirs();
+
+			File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+			Files.write(tmp.toPath(), png);
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (IOException ex)
+		{
+			log.warn("unable to store item icon {}", file, ex);
+		}
+	}
+
+	private void deleteOtherCaches(int cacheId)
+	{
+		File[] dirs = directory.listFiles(File::isDirectory);
+		if (dirs == null)
+		{
+			return;
+		}
+
+		for (File dir : dirs)
+		{
+			if (dir.getName().equals(Integer.toString(cacheId)))
+			{
+				continue;
+			}
+
+			File[] files = dir.listFiles();
+			if (files != null)
+			{
+				for (File file : files)
+				{
+					file.delete();
+				}
+			}
+			dir.delete();
+		}
+	}
+}
@@ -31,6 +31,7 @@ import com.google.common.cache.CacheBuilder;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import javax.servlet.http.HttpServletResponse;
@@ -217,6 +218,16 @@ public class ItemController
 			.toArray(ItemPrice[]::new);
 	}
 
+	/**
+	 * Time since the price of each tradeable item was last crawled, in
+	 * milliseconds, or -1 if it never has been
+	 */
+	@GetMapping("/crawler/staleness")
+	public Map<Integer, Long> priceStaleness()
+	{
+		return itemService.getPriceStaleness();
+	}
+
 	@GetMapping("/prices")
 	public ResponseEntity<ItemPrice[]> prices()
 	{
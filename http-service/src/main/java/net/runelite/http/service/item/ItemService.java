@@ -24,18 +24,21 @@
  */
 package net.runelite.http.service.item;
 
+import com.google.common.base.Ticker;
 import com.google.gson.JsonParseException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.time.Clock;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
-import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.cache.definitions.ItemDefinition;
 import net.runelite.http.api.RuneLiteAPI;
@@ -46,6 +49,7 @@ import okhttp3.Request;
 import okhttp3.Response;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.sql2o.Connection;
@@ -83,20 +87,29 @@ public class ItemService
 		+ ") ENGINE=InnoDB";
 
 	private static final int MAX_PENDING = 512;
+	private static final int MAX_LOOKUPS_PER_CHECK = 16;
 
 	private final Sql2o sql2o;
 	private final CacheService cacheService;
 
 	private final ConcurrentLinkedQueue<PendingLookup> pendingLookups = new ConcurrentLinkedQueue<PendingLookup>();
 	private int[] tradeableItems;
-	private final Random random = new Random();
+	private volatile PriceSnapshot priceSnapshot = PriceSnapshot.EMPTY;
+
+	// shared by the price crawler and pending lookups, which all hit the rs api
+	private final TokenBucket rateLimiter;
+	private final PriceCrawler priceCrawler;
 
 	@Autowired
 	public ItemService(@Qualifier("Runelite SQL2O") Sql2o sql2o,
-		CacheService cacheService)
+		CacheService cacheService,
+		@Value("${item.crawler.rate:2}") double crawlerRate,
+		@Value("${item.crawler.concurrency:4}") int crawlerConcurrency)
 	{
 		this.sql2o = sql2o;
 		this.cacheService = cacheService;
+		this.rateLimiter = new TokenBucket(crawlerRate, crawlerConcurrency, Ticker.systemTicker());
+		this.priceCrawler = new PriceCrawler(RuneLiteAPI.CLIENT, RS_PRICE_URL, rateLimiter, crawlerConcurrency, Clock.systemUTC());
 
 		try (Connection con = sql2o.open())
 		{
@@ -139,38 +152,48 @@ public class ItemService
 
 	public PriceEntry getPrice(int itemId, Instant time)
 	{
+		priceCrawler.recordRequest(itemId);
+
 		try (Connection con = sql2o.open())
 		{
 			return getPrice(con, itemId, time);
 		}
 	}
 
+	/**
+	 * Get the latest price of each of the given items. Served from the
+	 * price snapshot once it has been loaded.
+	 */
 	public List<PriceEntry> getPrices(int... itemIds)
 	{
-		try (Connection con = sql2o.open())
+		for (int itemId : itemIds)
 		{
-			Set<Integer> seen = new HashSet<>();
-			List<PriceEntry> priceEntries = new ArrayList<>(itemIds.length);
-
-			for (int itemId : itemIds)
-			{
-				if (seen.contains(itemId))
-				{
-					continue;
-				}
-				seen.add(itemId);
+			priceCrawler.recordRequest(itemId);
+		}
 
-				PriceEntry priceEntry = getPrice(con, itemId, null);
+		PriceSnapshot snapshot = priceSnapshot;
+		if (!snapshot.isEmpty())
+		{
+			return snapshot.get(itemIds);
+		}
 
-				if (priceEntry == null)
-				{
-					continue;
-				}
+		int[] distinct = Arrays.stream(itemIds).distinct().toArray();
+		if (distinct.length == 0)
+		{
+			return Collections.emptyList();
+		}
 
-				priceEntries.add(priceEntry);
-			}
+		// item ids are ints, so they are safe to inline into the query
+		String ids = Arrays.stream(distinct)
+			.mapToObj(Integer::toString)
+			.collect(Collectors.joining(","));
 
-			return priceEntries;
+		try (Connection con = sql2o.open())
+		{
+			return con.createQuery("select t2.item, t3.name, t2.time, prices.price, prices.fetched_time from (select t1.item as item, max(t1.time) as time from prices t1 where t1.item in (" + ids + ") group by item) t2 " +
+					" join prices on t2.item=prices.item and t2.time=prices.time" +
+					" join items t3 on t2.item=t3.id")
+				.executeAndFetch(PriceEntry.class);
 		}
 	}
 
@@ -254,40 +277,81 @@ public class ItemService
 			return null;
 		}
 
-		try (Connection con = sql2o.beginTransaction())
+		List<PriceEntry> entries = new ArrayList<>();
+		Instant now = Instant.now();
+
+		for (Map.Entry<Long, Integer> entry : rsprice.getDaily().entrySet())
 		{
-			List<PriceEntry> entries = new ArrayList<>();
-			Instant now = Instant.now();
+			long ts = entry.getKey(); // ms since epoch
+			int price = entry.getValue(); // gp
+
+			PriceEntry priceEntry = new PriceEntry();
+			priceEntry.setItem(itemId);
+			priceEntry.setPrice(price);
+			priceEntry.setTime(Instant.ofEpochMilli(ts));
+			priceEntry.setFetched_time(now);
+			entries.add(priceEntry);
+		}
+
+		savePrices(entries);
+		priceCrawler.setFetched(itemId, now);
+		return entries;
+	}
 
+	/**
+	 * Upsert prices in a single batch, and update the price snapshot with
+	 * the latest price of each item
+	 */
+	private void savePrices(List<PriceEntry> entries)
+	{
+		if (entries.isEmpty())
+		{
+			return;
+		}
+
+		try (Connection con = sql2o.beginTransaction())
+		{
 			Query query = con.createQuery("insert into prices (item, price, time, fetched_time) values (:item, :price, :time, :fetched_time) "
 				+ "ON DUPLICATE KEY UPDATE price = VALUES(price), fetched_time = VALUES(fetched_time)");
 
-			for (Map.Entry<Long, Integer> entry : rsprice.getDaily().entrySet())
+			for (PriceEntry entry : entries)
 			{
-				long ts = entry.getKey(); // ms since epoch
-				int price = entry.getValue(); // gp
-
-				Instant time = Instant.ofEpochMilli(ts);
-
-				PriceEntry priceEntry = new PriceEntry();
-				priceEntry.setItem(itemId);
-				priceEntry.setPrice(price);
-				priceEntry.setTime(time);
-				priceEntry.setFetched_time(now);
-				entries.add(priceEntry);
-
 				query
-					.addParameter("item", itemId)
-					.addParameter("price", price)
-					.addParameter("time", time)
-					.addParameter("fetched_time", now)
+					.addParameter("item", entry.getItem())
+					.addParameter("price", entry.getPrice())
+					.addParameter("time", entry.getTime())
+					.addParameter("fetched_time", entry.getFetched_time())
 					.addToBatch();
 			}
 
 			query.executeBatch();
 			con.commit(false);
+		}
 
-			return entries;
+		Map<Integer, PriceEntry> latest = new HashMap<>();
+		for (PriceEntry entry : entries)
+		{
+			latest.merge(entry.getItem(), entry, (a, b) -> a.getTime().isAfter(b.getTime()) ? a : b);
+		}
+
+		PriceSnapshot snapshot = priceSnapshot;
+		for (PriceEntry entry : latest.values())
+		{
+			if (!snapshot.isEmpty() && snapshot.get(entry.getItem()) == null)
+			{
+				// the snapshot only holds named prices
+				ItemEntry item = getItem(entry.getItem());
+				if (item == null)
+				{
+					// This is a new item..
+					log.debug("Fetching new item {}", entry.getItem());
+					queueItem(entry.getItem());
+					continue;
+				}
+				entry.setName(item.getName());
+			}
+
+			updatePriceSnapshot(entry);
 		}
 	}
 
@@ -298,10 +362,45 @@ public class ItemService
 			Query query = con.createQuery("select t2.item, t3.name, t2.time, prices.price, prices.fetched_time from (select t1.item as item, max(t1.time) as time from prices t1 group by item) t2 " +
 					" join prices on t2.item=prices.item and t2.time=prices.time" +
 					" join items t3 on t2.item=t3.id");
-			return query.executeAndFetch(PriceEntry.class);
+			List<PriceEntry> entries = query.executeAndFetch(PriceEntry.class);
+
+			synchronized (this)
+			{
+				// prices stored by the crawler while the query ran may be newer
+				priceSnapshot = PriceSnapshot.of(entries).merge(priceSnapshot);
+			}
+
+			for (PriceEntry entry : entries)
+			{
+				priceCrawler.setFetched(entry.getItem(), entry.getFetched_time());
+			}
+
+			return entries;
 		}
 	}
 
+	private synchronized void updatePriceSnapshot(PriceEntry entry)
+	{
+		priceSnapshot = priceSnapshot.with(entry);
+	}
+
+	/**
+	 * Get the time since the price of each tradeable item was last fetched
+	 *
+	 * @return item id to staleness in milliseconds, or -1 if never fetched
+	 */
+	public Map<Integer, Long> getPriceStaleness()
+	{
+		return priceCrawler.getStaleness();
+	}
+
+	@Scheduled(initialDelay = 10_000, fixedDelay = 1_800_000) // 30 minutes
+	public void refreshPrices()
+	{
+		List<PriceEntry> prices = fetchPrices();
+		log.debug("Loaded {} prices", prices.size());
+	}
+
 	private RSItem fetchRSItem(int itemId) throws IOException
 	{
 		HttpUrl itemUrl = RS_ITEM_URL
@@ -435,12 +534,20 @@ public class ItemService
 	@Scheduled(fixedDelay = 5000)
 	public void check()
 	{
-		PendingLookup pendingLookup = pendingLookups.poll();
-		if (pendingLookup == null)
+		for (int i = 0; i < MAX_LOOKUPS_PER_CHECK && !pendingLookups.isEmpty() && rateLimiter.tryAcquire(); ++i)
 		{
-			return;
+			PendingLookup pendingLookup = pendingLookups.poll();
+			if (pendingLookup == null)
+			{
+				break;
+			}
+
+			lookup(pendingLookup);
 		}
+	}
 
+	private void lookup(PendingLookup pendingLookup)
+	{
 		switch (pendingLookup.getType())
 		{
 			case SEARCH:
@@ -461,28 +568,18 @@ public class ItemService
 		}
 	}
 
-	@Scheduled(fixedDelay = 20_000)
+	@Scheduled(fixedDelay = 1000)
 	public void crawlPrices()
 	{
-		if (tradeableItems == null || tradeableItems.length == 0)
-		{
-			return;
-		}
+		priceCrawler.dispatch();
 
-		int idx = random.nextInt(tradeableItems.length);
-		int id = tradeableItems[idx];
-
-		if (getItem(id) == null)
+		List<PriceEntry> prices = priceCrawler.drain();
+		if (!prices.isEmpty())
 		{
-			// This is a new item..
-			log.debug("Fetching new item {}", id);
-			queueItem(id);
-			return;
+			savePrices(prices);
+			log.debug("Saved {} prices, {} fetches in flight, {} fetched, {} failed", prices.size(),
+				priceCrawler.getInFlight(), priceCrawler.getFetched(), priceCrawler.getFailed());
 		}
-
-		log.debug("Fetching price for {}", id);
-
-		fetchPrice(id);
 	}
 
 	@Scheduled(fixedDelay = 1_8000_000) // 30 minutes
@@ -499,6 +596,18 @@ public class ItemService
 			.mapToInt(item -> item.id)
 			.toArray();
 
+		priceCrawler.setItems(tradeableItems);
+
+		PriceSnapshot snapshot = priceSnapshot;
+		for (int itemId : tradeableItems)
+		{
+			PriceEntry entry = snapshot.get(itemId);
+			if (entry != null)
+			{
+				priceCrawler.setFetched(itemId, entry.getFetched_time());
+			}
+		}
+
 		log.debug("Loaded {} tradeable items", tradeableItems.length);
 	}
 
@@ -0,0 +1,347 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.item;
+
+import com.google.gson.JsonParseException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.http.api.RuneLiteAPI;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Crawls the price history of tradeable items. Each call to
+ * {@link #dispatch()} starts asynchronous fetches for the items with the
+ * highest priority, limited by a rate limiter and a maximum number of
+ * requests in flight. An item's priority grows with the time since its
+ * price was last fetched and with the number of times it was requested
+ * since then. Fetched prices are collected until {@link #drain()} is
+ * called, so they can be saved in one batch.
+ */
+@Slf4j
+class PriceCrawler
+{
+	/**
+	 * Minimum time between two fetches of the same item
+	 */
+	private static final long MIN_INTERVAL = 60_000L;
+
+	private final OkHttpClient client;
+	private final HttpUrl priceUrl;
+	private final TokenBucket rateLimiter;
+	private final int maxInFlight;
+	private final Clock clock;
+
+	private int[] items = new int[0];
+	// indexed by item id
+	private long[] lastFetched = new long[0];
+	private long[] lastAttempt = new long[0];
+	private boolean[] inFlight = new boolean[0];
+	private volatile AtomicIntegerArray requests = new AtomicIntegerArray(0);
+
+	private int inFlightCount;
+	private List<PriceEntry> results = new ArrayList<>();
+	private long fetched;
+	private long failed;
+
+	PriceCrawler(OkHttpClient client, HttpUrl priceUrl, TokenBucket rateLimiter, int maxInFlight, Clock clock)
+	{
+		this.client = client;
+		this.priceUrl = priceUrl;
+		this.rateLimiter = rateLimiter;
+		this.maxInFlight = maxInFlight;
+		this.clock = clock;
+	}
+
+	/**
+	 * Set the items to crawl. The state of items which are already being
+	 * crawled is kept.
+	 */
+	synchronized void setItems(int[] itemIds)
+	{
+		int size = Arrays.stream(itemIds).max().orElse(-1) + 1;
+		if (size > lastFetched.length)
+		{
+			lastFetched = Arrays.copyOf(lastFetched, size);
+			lastAttempt = Arrays.copyOf(lastAttempt, size);
+			inFlight = Arrays.copyOf(inFlight, size);
+
+			AtomicIntegerArray oldRequests = requests;
+			AtomicIntegerArray newRequests = new AtomicIntegerArray(size);
+			for (int i = 0; i < oldRequests.length(); ++i)
+			{
+				newRequests.set(i, oldRequests.get(i));
+			}
+			requests = newRequests;
+		}
+
+		items = itemIds.clone();
+	}
+
+	/**
+	 * Record that the price of an item was last fetched at the given time,
+	 * for example by a previous run. A null time, for a price which was never
+	 * fetched, is ignored
+	 */
+	synchronized void setFetched(int itemId, Instant time)
+	{
+		if (time != null && itemId >= 0 && itemId < lastFetched.length)
+		{
+			lastFetched[itemId] = Math.max(lastFetched[itemId], time.toEpochMilli());
+		}
+	}
+
+	/**
+	 * Record a request for the price of an item, which raises its priority
+	 */
+	void recordRequest(int itemId)
+	{
+		AtomicIntegerArray requests = this.requests;
+		if (itemId >= 0 && itemId < requests.length())
+		{
+			requests.incrementAndGet(itemId);
+		}
+	}
+
+	private double priority(int itemId, long now)
+	{
+		long staleness = now - lastFetched[itemId];
+		return staleness * (1 + Math.log1p(requests.get(itemId)));
+	}
+
+	/**
+	 * Start fetching the prices of the items with the highest priority
+	 *
+	 * @return the number of fetches started
+	 */
+	synchronized int dispatch()
+	{
+		int slots = maxInFlight - inFlightCount;
+		if (slots <= 0)
+		{
+			return 0;
+		}
+
+		long now = clock.millis();
+
+		// keep the items with the highest priority
+		PriorityQueue<Candidate> queue = new PriorityQueue<>(slots + 1, Comparator.comparingDouble(c -> c.priority));
+		for (int itemId : items)
+		{
+			if (inFlight[itemId] || now - lastAttempt[itemId] < MIN_INTERVAL)
+			{
+				continue;
+			}
+
+			queue.add(new Candidate(itemId, priority(itemId, now)));
+			if (queue.size() > slots)
+			{
+				queue.poll();
+			}
+		}
+
+		Candidate[] candidates = queue.toArray(new Candidate[0]);
+		Arrays.sort(candidates, Comparator.comparingDouble((Candidate c) -> c.priority).reversed());
+
+		int started = 0;
+		for (Candidate candidate : candidates)
+		{
+			if (!rateLimiter.tryAcquire())
+			{
+				break;
+			}
+
+			fetch(candidate.itemId, now);
+			++started;
+		}
+		return started;
+	}
+
+	private void fetch(int itemId, long now)
+	{
+		inFlight[itemId] = true;
+		lastAttempt[itemId] = now;
+		++inFlightCount;
+
+		HttpUrl url = priceUrl.newBuilder()
+			.addPathSegment(itemId + ".json")
+			.build();
+
+		Request request = new Request.Builder()
+			.url(url)
+			.build();
+
+		client.newCall(request).enqueue(new Callback()
+		{
+			@Override
+			public void onFailure(Call call, IOException e)
+			{
+				log.debug("unable to fetch price for item {}", itemId, e);
+				complete(itemId, null);
+			}
+
+			@Override
+			public void onResponse(Call call, Response response)
+			{
+				List<PriceEntry> entries = null;
+				try (Response r = response)
+				{
+					if (!r.isSuccessful())
+					{
+						log.debug("unsuccessful response fetching price for item {}: {}", itemId, r);
+					}
+					else
+					{
+						RSPrices prices = RuneLiteAPI.GSON.fromJson(new InputStreamReader(r.body().byteStream()), RSPrices.class);
+						entries = toEntries(itemId, prices, Instant.ofEpochMilli(clock.millis()));
+					}
+				}
+				catch (JsonParseException ex)
+				{
+					log.debug("unable to parse price for item {}", itemId, ex);
+				}
+				complete(itemId, entries);
+			}
+		});
+	}
+
+	private static List<PriceEntry> toEntries(int itemId, RSPrices prices, Instant now)
+	{
+		if (prices == null || prices.getDaily() == null)
+		{
+			return null;
+		}
+
+		List<PriceEntry> entries = new ArrayList<>(prices.getDaily().size());
+		for (Map.Entry<Long, Integer> entry : prices.getDaily().entrySet())
+		{
+			PriceEntry priceEntry = new PriceEntry();
+			priceEntry.setItem(itemId);
+			priceEntry.setPrice(entry.getValue());
+			priceEntry.setTime(Instant.ofEpochMilli(entry.getKey()));
+			priceEntry.setFetched_time(now);
+			entries.add(priceEntry);
+		}
+		return entries;
+	}
+
+	private synchronized void complete(int itemId, List<PriceEntry> entries)
+	{
+		inFlight[itemId] = false;
+		--inFlightCount;
+
+		if (entries == null)
+		{
+			++failed;
+			return;
+		}
+
+		lastFetched[itemId] = clock.millis();
+		requests.set(itemId, 0);
+		results.addAll(entries);
+		++fetched;
+	}
+
+	/**
+	 * Take the prices fetched since the last call
+	 */
+	synchronized List<PriceEntry> drain()
+	{
+		List<PriceEntry> drained = results;
+		results = new ArrayList<>();
+		return drained;
+	}
+
+	/**
+	 * Get the time since the price of an item was last fetched
+	 *
+	 * @return staleness in milliseconds, or -1 if the price has never been fetched
+	 */
+	synchronized long getStaleness(int itemId)
+	{
+		if (itemId < 0 || itemId >= lastFetched.length || lastFetched[itemId] == 0)
+		{
+			return -1;
+		}
+		return clock.millis() - lastFetched[itemId];
+	}
+
+	/**
+	 * Get the staleness of every crawled item
+	 *
+	 * @return item id to staleness in milliseconds, or -1 if never fetched
+	 */
+	synchronized Map<Integer, Long> getStaleness()
+	{
+		Map<Integer, Long> staleness = new TreeMap<>();
+		for (int itemId : items)
+		{
+			staleness.put(itemId, getStaleness(itemId));
+		}
+		return staleness;
+	}
+
+	synchronized int getInFlight()
+	{
+		return inFlightCount;
+	}
+
+	synchronized long getFetched()
+	{
+		return fetched;
+	}
+
+	synchronized long getFailed()
+	{
+		return failed;
+	}
+
+	private static class Candidate
+	{
+		private final int itemId;
+		private final double priority;
+
+		private Candidate(int itemId, double priority)
+		{
+			this.itemId = itemId;
+			this.priority = priority;
+		}
+	}
+}
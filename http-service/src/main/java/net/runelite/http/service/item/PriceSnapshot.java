@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.item;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * An immutable snapshot of the latest price of every item, indexed by
+ * item id. Updates return a new snapshot, so readers never lock.
+ */
+class PriceSnapshot
+{
+	private static final long NOT_FETCHED = Long.MIN_VALUE;
+
+	static final PriceSnapshot EMPTY = new PriceSnapshot(new String[0], new int[0], new long[0], new long[0]);
+
+	// an item has a price if it has a name
+	private final String[] names;
+	private final int[] prices;
+	private final long[] times; // ms since epoch
+	private final long[] fetchedTimes; // ms since epoch, or NOT_FETCHED
+
+	private PriceSnapshot(String[] names, int[] prices, long[] times, long[] fetchedTimes)
+	{
+		this.names = names;
+		this.prices = prices;
+		this.times = times;
+		this.fetchedTimes = fetchedTimes;
+	}
+
+	static PriceSnapshot of(List<PriceEntry> entries)
+	{
+		int size = 0;
+		for (PriceEntry entry : entries)
+		{
+			size = Math.max(size, entry.getItem() + 1);
+		}
+
+		PriceSnapshot snapshot = new PriceSnapshot(new String[size], new int[size], new long[size], new long[size]);
+		for (PriceEntry entry : entries)
+		{
+			snapshot.set(entry);
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Copy this snapshot, replacing the price of the entry's item if it is
+	 * newer. The name of the item is kept if the entry has none.
+	 */
+	PriceSnapshot with(PriceEntry entry)
+	{
+		int id = entry.getItem();
+		String name = entry.getName() != null ? entry.getName() : (id < names.length ? names[id] : null);
+		if (name == null)
+		{
+			// an unnamed price can't be returned, it is picked up on the next full refresh
+			return this;
+		}
+
+		if (id < names.length && names[id] != null && times[id] > entry.getTime().toEpochMilli())
+		{
+			return this;
+		}
+
+		int size = Math.max(names.length, id + 1);
+		PriceSnapshot snapshot = new PriceSnapshot(Arrays.copyOf(names, size), Arrays.copyOf(prices, size),
+			Arrays.copyOf(times, size), Arrays.copyOf(fetchedTimes, size));
+		snapshot.set(entry);
+		snapshot.names[id] = name;
+		return snapshot;
+	}
+
+	/**
+	 * Merge this snapshot with another, keeping the newer price of each item.
+	 * Prices which are only in one of the snapshots are kept.
+	 */
+	PriceSnapshot merge(PriceSnapshot other)
+	{
+		int size = Math.max(names.length, other.names.length);
+		PriceSnapshot snapshot = new PriceSnapshot(Arrays.copyOf(names, size), Arrays.copyOf(prices, size),
+			Arrays.copyOf(times, size), Arrays.copyOf(fetchedTimes, size));
+		for (int id = 0; id < other.names.length; ++id)
+		{
+			if (other.names[id] != null && (snapshot.names[id] == null || other.times[id] > snapshot.times[id]))
+			{
+				snapshot.names[id] = other.names[id];
+				snapshot.prices[id] = other.prices[id];
+				snapshot.times[id] = other.times[id];
+				snapshot.fetchedTimes[id] = other.fetchedTimes[id];
+			}
+		}
+		return snapshot;
+	}
+
+	private void set(PriceEntry entry)
+	{
+		int id = entry.getItem();
+		names[id] = entry.getName();
+		prices[id] = entry.getPrice();
+		times[id] = entry.getTime().toEpochMilli();
+		fetchedTimes[id] = entry.getFetched_time() != null ? entry.getFetched_time().toEpochMilli() : NOT_FETCHED;
+	}
+
+	boolean isEmpty()
+	{
+		return names.length == 0;
+	}
+
+	PriceEntry get(int itemId)
+	{
+		if (itemId < 0 || itemId >= names.length || names[itemId] == null)
+		{
+			return null;
+		}
+
+		PriceEntry entry = new PriceEntry();
+		entry.setItem(itemId);
+		entry.setName(names[itemId]);
+		entry.setPrice(prices[itemId]);
+		entry.setTime(Instant.ofEpochMilli(times[itemId]));
+		entry.setFetched_time(fetchedTimes[itemId] != NOT_FETCHED ? Instant.ofEpochMilli(fetchedTimes[itemId]) : null);
+		return entry;
+	}
+
+	/**
+	 * Get the prices of the given items, skipping duplicate and unknown ids
+	 */
+	List<PriceEntry> get(int... itemIds)
+	{
+		BitSet seen = new BitSet(names.length);
+		List<PriceEntry> entries = new ArrayList<>(itemIds.length);
+		for (int itemId : itemIds)
+		{
+			PriceEntry entry = get(itemId);
+			if (entry == null || seen.get(itemId))
+			{
+				continue;
+			}
+
+			seen.set(itemId);
+			entries.add(entry);
+		}
+		return entries;
+	}
+}
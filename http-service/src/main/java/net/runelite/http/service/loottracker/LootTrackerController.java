@@ -30,7 +30,9 @@ import java.io.IOException;
 import java.util.Collection;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import net.runelite.http.api.loottracker.LootAggregate;
 import net.runelite.http.api.loottracker.LootRecord;
+import net.runelite.http.api.loottracker.LootRecordPage;
 import net.runelite.http.service.account.AuthFilter;
 import net.runelite.http.service.account.beans.SessionEntry;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -46,6 +48,8 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/loottracker")
 public class LootTrackerController
 {
+	private static final int MAX_HISTORY_COUNT = 1024;
+
 	@Autowired
 	private LootTrackerService service;
 
@@ -79,6 +83,38 @@ public class LootTrackerController
 		return service.get(e.getUser(), count, start);
 	}
 
+	@GetMapping("/history")
+	public LootRecordPage getLootHistory(HttpServletRequest request, HttpServletResponse response, @RequestParam(value = "count", defaultValue = "512") int count, @RequestParam(value = "before", required = false) Integer before) throws IOException
+	{
+		SessionEntry e = auth.handle(request, response);
+		if (e == null)
+		{
+			response.setStatus(HttpStatusCodes.STATUS_CODE_UNAUTHORIZED);
+			return null;
+		}
+
+		if (count < 1)
+		{
+			response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+			return null;
+		}
+
+		return service.getPage(e.getUser(), Math.min(count, MAX_HISTORY_COUNT), before);
+	}
+
+	@GetMapping("/aggregate")
+	public Collection<LootAggregate> getLootAggregate(HttpServletRequest request, HttpServletResponse response) throws IOException
+	{
+		SessionEntry e = auth.handle(request, response);
+		if (e == null)
+		{
+			response.setStatus(HttpStatusCodes.STATUS_CODE_UNAUTHORIZED);
+			return null;
+		}
+
+		return service.getAggregate(e.getUser());
+	}
+
 	@DeleteMapping
 	public void deleteLoot(HttpServletRequest request, HttpServletResponse response,
 		@RequestParam(required = false) String eventId) throws IOException
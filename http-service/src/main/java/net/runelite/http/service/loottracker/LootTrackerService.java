@@ -25,11 +25,16 @@
  */
 package net.runelite.http.service.loottracker;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import net.runelite.http.api.loottracker.GameItem;
+import net.runelite.http.api.loottracker.LootAggregate;
 import net.runelite.http.api.loottracker.LootRecord;
+import net.runelite.http.api.loottracker.LootRecordPage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -62,14 +67,78 @@ public class LootTrackerService
 		+ "  FOREIGN KEY (killId) REFERENCES kills(id) ON DELETE CASCADE\n"
 		+ ") ENGINE=InnoDB";
 
+	// Running totals of kills and drops per event, maintained by store, delete and expire
+	private static final String CREATE_AGGREGATE_KILLS = "CREATE TABLE IF NOT EXISTS `loot_aggregate_kills` (\n"
+		+ "  `accountId` INT NOT NULL,\n"
+		+ "  `type` enum('NPC', 'PLAYER', 'EVENT', 'UNKNOWN') NOT NULL,\n"
+		+ "  `eventId` VARCHAR(255) NOT NULL,\n"
+		+ "  `kills` INT NOT NULL,\n"
+		+ "  PRIMARY KEY (accountId, type, eventId),\n"
+		+ "  FOREIGN KEY (accountId) REFERENCES users(id) ON DELETE CASCADE ON UPDATE CASCADE\n"
+		+ ") ENGINE=InnoDB";
+
+	private static final String CREATE_AGGREGATE_DROPS = "CREATE TABLE IF NOT EXISTS `loot_aggregate_drops` (\n"
+		+ "  `accountId` INT NOT NULL,\n"
+		+ "  `type` enum('NPC', 'PLAYER', 'EVENT', 'UNKNOWN') NOT NULL,\n"
+		+ "  `eventId` VARCHAR(255) NOT NULL,\n"
+		+ "  `itemId` INT NOT NULL,\n"
+		+ "  `itemQuantity` BIGINT NOT NULL,\n"
+		+ "  PRIMARY KEY (accountId, type, eventId, itemId),\n"
+		+ "  FOREIGN KEY (accountId) REFERENCES users(id) ON DELETE CASCADE ON UPDATE CASCADE\n"
+		+ ") ENGINE=InnoDB";
+
 	// Queries for inserting kills
 	private static final String INSERT_KILL_QUERY = "INSERT INTO kills (accountId, type, eventId) VALUES (:accountId, :type, :eventId)";
 	private static final String INSERT_DROP_QUERY = "INSERT INTO drops (killId, itemId, itemQuantity) VALUES (LAST_INSERT_ID(), :itemId, :itemQuantity)";
 
+	private static final String INSERT_AGGREGATE_KILL_QUERY = "INSERT INTO loot_aggregate_kills (accountId, type, eventId, kills) VALUES (:accountId, :type, :eventId, 1) "
+		+ "ON DUPLICATE KEY UPDATE kills = kills + 1";
+	private static final String INSERT_AGGREGATE_DROP_QUERY = "INSERT INTO loot_aggregate_drops (accountId, type, eventId, itemId, itemQuantity) VALUES (:accountId, :type, :eventId, :itemId, :itemQuantity) "
+		+ "ON DUPLICATE KEY UPDATE itemQuantity = itemQuantity + VALUES(itemQuantity)";
+
+	// Build the totals from existing loot the first time the tables are created
+	private static final String BACKFILL_AGGREGATE_KILLS = "INSERT INTO loot_aggregate_kills (accountId, type, eventId, kills) "
+		+ "SELECT accountId, type, eventId, COUNT(*) FROM kills GROUP BY accountId, type, eventId";
+	private static final String BACKFILL_AGGREGATE_DROPS = "INSERT INTO loot_aggregate_drops (accountId, type, eventId, itemId, itemQuantity) "
+		+ "SELECT accountId, type, eventId, itemId, SUM(itemQuantity) FROM kills JOIN drops ON drops.killId = kills.id GROUP BY accountId, type, eventId, itemId";
+
+	private static final String SELECT_AGGREGATE_QUERY = "SELECT k.type, k.eventId, k.kills, d.itemId, d.itemQuantity FROM loot_aggregate_kills k "
+		+ "LEFT JOIN loot_aggregate_drops d ON d.accountId = k.accountId AND d.type = k.type AND d.eventId = k.eventId "
+		+ "WHERE k.accountId = :accountId ORDER BY k.type, k.eventId";
+
 	private static final String SELECT_LOOT_QUERY = "SELECT killId,time,type,eventId,itemId,itemQuantity FROM kills JOIN drops ON drops.killId = kills.id WHERE accountId = :accountId ORDER BY TIME DESC LIMIT :limit OFFSET :offset";
 
+	// Keyset pagination over kills with drops, so deep pages don't scan the skipped rows
+	private static final String SELECT_LOOT_PAGE_QUERY = "SELECT k.id AS killId,k.time,k.type,k.eventId,itemId,itemQuantity FROM "
+		+ "(SELECT id,time,type,eventId FROM kills WHERE accountId = :accountId "
+		+ "AND EXISTS (SELECT 1 FROM drops WHERE drops.killId = kills.id) ORDER BY time DESC, id DESC LIMIT :limit) k "
+		+ "JOIN drops ON drops.killId = k.id ORDER BY k.time DESC, k.id DESC";
+	private static final String SELECT_LOOT_PAGE_BEFORE_QUERY = "SELECT k.id AS killId,k.time,k.type,k.eventId,itemId,itemQuantity FROM "
+		+ "(SELECT id,time,type,eventId FROM kills WHERE accountId = :accountId AND (time < :time OR (time = :time AND id < :id)) "
+		+ "AND EXISTS (SELECT 1 FROM drops WHERE drops.killId = kills.id) ORDER BY time DESC, id DESC LIMIT :limit) k "
+		+ "JOIN drops ON drops.killId = k.id ORDER BY k.time DESC, k.id DESC";
+	private static final String SELECT_KILL_TIME_QUERY = "SELECT time FROM kills WHERE id = :id AND accountId = :accountId";
+
 	private static final String DELETE_LOOT_ACCOUNT = "DELETE FROM kills WHERE accountId = :accountId";
 	private static final String DELETE_LOOT_ACCOUNT_EVENTID = "DELETE FROM kills WHERE accountId = :accountId AND eventId = :eventId";
+	private static final String DELETE_AGGREGATE_KILLS_ACCOUNT = "DELETE FROM loot_aggregate_kills WHERE accountId = :accountId";
+	private static final String DELETE_AGGREGATE_KILLS_ACCOUNT_EVENTID = "DELETE FROM loot_aggregate_kills WHERE accountId = :accountId AND eventId = :eventId";
+	private static final String DELETE_AGGREGATE_DROPS_ACCOUNT = "DELETE FROM loot_aggregate_drops WHERE accountId = :accountId";
+	private static final String DELETE_AGGREGATE_DROPS_ACCOUNT_EVENTID = "DELETE FROM loot_aggregate_drops WHERE accountId = :accountId AND eventId = :eventId";
+
+	// Remove expired loot from the totals before deleting it
+	private static final String EXPIRE_AGGREGATE_KILLS = "UPDATE loot_aggregate_kills a JOIN "
+		+ "(SELECT accountId, type, eventId, COUNT(*) AS expired FROM kills WHERE time < :time GROUP BY accountId, type, eventId) e "
+		+ "ON a.accountId = e.accountId AND a.type = e.type AND a.eventId = e.eventId "
+		+ "SET a.kills = a.kills - e.expired";
+	private static final String EXPIRE_AGGREGATE_DROPS = "UPDATE loot_aggregate_drops a JOIN "
+		+ "(SELECT accountId, type, eventId, itemId, SUM(itemQuantity) AS expired FROM kills JOIN drops ON drops.killId = kills.id WHERE time < :time GROUP BY accountId, type, eventId, itemId) e "
+		+ "ON a.accountId = e.accountId AND a.type = e.type AND a.eventId = e.eventId AND a.itemId = e.itemId "
+		+ "SET a.itemQuantity = a.itemQuantity - e.expired";
+	private static final String DELETE_EMPTY_AGGREGATE_KILLS = "DELETE FROM loot_aggregate_kills WHERE kills <= 0";
+	private static final String DELETE_EMPTY_AGGREGATE_DROPS = "DELETE FROM loot_aggregate_drops WHERE itemQuantity <= 0";
+
+	private static final Duration EXPIRE_AFTER = Duration.ofDays(30);
 
 	private final Sql2o sql2o;
 
@@ -83,6 +152,27 @@ public class LootTrackerService
 		{
 			con.createQuery(CREATE_KILLS).executeUpdate();
 			con.createQuery(CREATE_DROPS).executeUpdate();
+			con.createQuery(CREATE_AGGREGATE_KILLS).executeUpdate();
+			con.createQuery(CREATE_AGGREGATE_DROPS).executeUpdate();
+		}
+
+		backfillAggregates();
+	}
+
+	private void backfillAggregates()
+	{
+		try (Connection con = sql2o.beginTransaction())
+		{
+			Integer aggregated = con.createQuery("SELECT 1 FROM loot_aggregate_kills LIMIT 1")
+				.executeScalar(Integer.class);
+			if (aggregated != null)
+			{
+				return;
+			}
+
+			con.createQuery(BACKFILL_AGGREGATE_KILLS).executeUpdate();
+			con.createQuery(BACKFILL_AGGREGATE_DROPS).executeUpdate();
+			con.commit(false);
 		}
 	}
 
@@ -115,6 +205,27 @@ public class LootTrackerService
 			}
 
 			insertDrop.executeBatch();
+
+			con.createQuery(INSERT_AGGREGATE_KILL_QUERY)
+				.addParameter("accountId", accountId)
+				.addParameter("type", record.getType())
+				.addParameter("eventId", record.getEventId())
+				.executeUpdate();
+
+			Query insertAggregateDrop = con.createQuery(INSERT_AGGREGATE_DROP_QUERY);
+
+			for (GameItem drop : record.getDrops())
+			{
+				insertAggregateDrop
+					.addParameter("accountId", accountId)
+					.addParameter("type", record.getType())
+					.addParameter("eventId", record.getEventId())
+					.addParameter("itemId", drop.getId())
+					.addParameter("itemQuantity", drop.getQty())
+					.addToBatch();
+			}
+
+			insertAggregateDrop.executeBatch();
 			con.commit(false);
 		}
 	}
@@ -132,6 +243,62 @@ public class LootTrackerService
 				.executeAndFetch(LootResult.class);
 		}
 
+		return toLootRecords(lootResults);
+	}
+
+	/**
+	 * Get a page of loot history, newest first
+	 *
+	 * @param accountId runelite account id
+	 * @param limit     maximum number of kills to return
+	 * @param before    id of the last kill of the previous page, or null for the first page
+	 * @return the page, with the cursor for the next page if there may be more
+	 */
+	public LootRecordPage getPage(int accountId, int limit, Integer before)
+	{
+		List<LootResult> lootResults;
+
+		try (Connection con = sql2o.open())
+		{
+			if (before == null)
+			{
+				lootResults = con.createQuery(SELECT_LOOT_PAGE_QUERY)
+					.addParameter("accountId", accountId)
+					.addParameter("limit", limit)
+					.executeAndFetch(LootResult.class);
+			}
+			else
+			{
+				Instant time = con.createQuery(SELECT_KILL_TIME_QUERY)
+					.addParameter("id", before)
+					.addParameter("accountId", accountId)
+					.executeScalar(Instant.class);
+				if (time == null)
+				{
+					// the cursor kill has been deleted or expired
+					return new LootRecordPage(new ArrayList<>(), null);
+				}
+
+				lootResults = con.createQuery(SELECT_LOOT_PAGE_BEFORE_QUERY)
+					.addParameter("accountId", accountId)
+					.addParameter("time", time)
+					.addParameter("id", before)
+					.addParameter("limit", limit)
+					.executeAndFetch(LootResult.class);
+			}
+		}
+
+		Collection<LootRecord> lootRecords = toLootRecords(lootResults);
+		Integer next = null;
+		if (!lootResults.isEmpty() && lootRecords.size() >= limit)
+		{
+			next = lootResults.get(lootResults.size() - 1).getKillId();
+		}
+		return new LootRecordPage(lootRecords, next);
+	}
+
+	private static Collection<LootRecord> toLootRecords(List<LootResult> lootResults)
+	{
 		LootResult current = null;
 		List<LootRecord> lootRecords = new ArrayList<>();
 		List<GameItem> gameItems = new ArrayList<>();
@@ -164,15 +331,58 @@ public class LootTrackerService
 		return lootRecords;
 	}
 
-	public void delete(int accountId, String eventId)
+	/**
+	 * Get the total kills and drops of each event
+	 *
+	 * @param accountId runelite account id
+	 * @return one aggregate per event the account has loot for
+	 */
+	public Collection<LootAggregate> getAggregate(int accountId)
 	{
+		List<LootAggregateResult> results;
+
 		try (Connection con = sql2o.open())
+		{
+			results = con.createQuery(SELECT_AGGREGATE_QUERY)
+				.addParameter("accountId", accountId)
+				.executeAndFetch(LootAggregateResult.class);
+		}
+
+		LootAggregate current = null;
+		List<LootAggregate> aggregates = new ArrayList<>();
+
+		for (LootAggregateResult result : results)
+		{
+			if (current == null || current.getType() != result.getType() || !current.getEventId().equals(result.getEventId()))
+			{
+				current = new LootAggregate(result.getEventId(), result.getType(), result.getKills(), new HashMap<>());
+				aggregates.add(current);
+			}
+
+			if (result.getItemId() != null)
+			{
+				current.getDrops().put(result.getItemId(), result.getItemQuantity());
+			}
+		}
+
+		return aggregates;
+	}
+
+	public void delete(int accountId, String eventId)
+	{
+		try (Connection con = sql2o.beginTransaction())
 		{
 			if (eventId == null)
 			{
 				con.createQuery(DELETE_LOOT_ACCOUNT)
 					.addParameter("accountId", accountId)
 					.executeUpdate();
+				con.createQuery(DELETE_AGGREGATE_KILLS_ACCOUNT)
+					.addParameter("accountId", accountId)
+					.executeUpdate();
+				con.createQuery(DELETE_AGGREGATE_DROPS_ACCOUNT)
+					.addParameter("accountId", accountId)
+					.executeUpdate();
 			}
 			else
 			{
@@ -180,17 +390,43 @@ public class LootTrackerService
 					.addParameter("accountId", accountId)
 					.addParameter("eventId", eventId)
 					.executeUpdate();
+				con.createQuery(DELETE_AGGREGATE_KILLS_ACCOUNT_EVENTID)
+					.addParameter("accountId", accountId)
+					.addParameter("eventId", eventId)
+					.executeUpdate();
+				con.createQuery(DELETE_AGGREGATE_DROPS_ACCOUNT_EVENTID)
+					.addParameter("accountId", accountId)
+					.addParameter("eventId", eventId)
+					.executeUpdate();
 			}
+
+			con.commit(false);
 		}
 	}
 
 	@Scheduled(fixedDelay = 15 * 60 * 1000)
 	public void expire()
 	{
-		try (Connection con = sql2o.open())
+		Instant time = Instant.now().minus(EXPIRE_AFTER);
+
+		try (Connection con = sql2o.beginTransaction())
 		{
-			con.createQuery("delete from kills where time < current_timestamp() - interval 30 day")
+			con.createQuery(EXPIRE_AGGREGATE_KILLS)
+				.addParameter("time", time)
 				.executeUpdate();
+			con.createQuery(EXPIRE_AGGREGATE_DROPS)
+				.addParameter("time", time)
+				.executeUpdate();
+			con.createQuery(DELETE_EMPTY_AGGREGATE_KILLS)
+				.executeUpdate();
+			con.createQuery(DELETE_EMPTY_AGGREGATE_DROPS)
+				.executeUpdate();
+
+			con.createQuery("delete from kills where time < :time")
+				.addParameter("time", time)
+				.executeUpdate();
+
+			con.commit(false);
 		}
 	}
 }
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.xp;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnel;
+
+/**
+ * A bloom filter made of two generations. Elements are added to the current
+ * generation and looked up in both, and {@link #rotate()} discards the
+ * older generation, so an element is remembered for between one and two
+ * rotation periods rather than being forgotten all at once.
+ *
+ * @param <T> element type
+ */
+class RotatingBloomFilter<T>
+{
+	private final Funnel<? super T> funnel;
+	private final long expectedInsertions;
+	private final double fpp;
+
+	private volatile BloomFilter<T> current;
+	private volatile BloomFilter<T> previous;
+
+	/**
+	 * @param funnel funnel for the elements
+	 * @param expectedInsertions expected number of insertions per generation
+	 * @param fpp desired false positive probability across both generations
+	 */
+	RotatingBloomFilter(Funnel<? super T> funnel, long expectedInsertions, double fpp)
+	{
+		this.funnel = funnel;
+		this.expectedInsertions = expectedInsertions;
+		this.fpp = fpp;
+		this.current = create();
+		this.previous = create();
+	}
+
+	private BloomFilter<T> create()
+	{
+		// a lookup checks both generations, so each gets half of the error budget
+		return BloomFilter.create(funnel, expectedInsertions, fpp / 2);
+	}
+
+	boolean mightContain(T element)
+	{
+		return current.mightContain(element) || previous.mightContain(element);
+	}
+
+	void put(T element)
+	{
+		current.put(element);
+	}
+
+	synchronized void rotate()
+	{
+		previous = current;
+		current = create();
+	}
+
+	/**
+	 * Approximate number of distinct elements in the current generation
+	 */
+	long getApproximateElementCount()
+	{
+		return current.approximateElementCount();
+	}
+
+	/**
+	 * Fill ratio of the current generation, relative to the number of
+	 * insertions it was sized for
+	 */
+	double getFillRatio()
+	{
+		return (double) current.approximateElementCount() / expectedInsertions;
+	}
+
+	/**
+	 * Estimated probability that a lookup of an element which was never
+	 * added returns true, given how full both generations currently are
+	 */
+	double getExpectedFpp()
+	{
+		return 1 - (1 - current.expectedFpp()) * (1 - previous.expectedFpp());
+	}
+}
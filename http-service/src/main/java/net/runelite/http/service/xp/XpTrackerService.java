@@ -24,14 +24,21 @@
  */
 package net.runelite.http.service.xp;
 
-import com.google.common.hash.BloomFilter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.hash.Funnels;
 import java.nio.charset.Charset;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.http.api.hiscore.HiscoreEndpoint;
 import net.runelite.http.api.hiscore.HiscoreResult;
@@ -41,27 +48,66 @@ import net.runelite.http.service.xp.beans.PlayerEntity;
 import net.runelite.http.service.xp.beans.XpEntity;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.sql2o.Connection;
 import org.sql2o.Sql2o;
+import org.sql2o.Sql2oException;
 
 @Service
 @Slf4j
 public class XpTrackerService
 {
 	private static final int QUEUE_LIMIT = 32768;
-	private static final int BLOOMFILTER_EXPECTED_INSERTIONS = 100_000;
+	private static final int PLAYER_CACHE_SIZE = 100_000;
+	private static final int WRITE_QUEUE_LIMIT = 65536;
+	private static final int BATCH_SIZE = 500;
+	// attempts at writing a batch as a whole, before its snapshots are written one at a time
+	private static final int MAX_BATCH_ATTEMPTS = 10;
 
-	@Autowired
-	@Qualifier("Runelite XP Tracker SQL2O")
-	private Sql2o sql2o;
+	private static final String XP_COLUMNS = "player,attack_xp,defence_xp,strength_xp,hitpoints_xp,ranged_xp,prayer_xp,magic_xp,cooking_xp,woodcutting_xp,"
+		+ "fletching_xp,fishing_xp,firemaking_xp,crafting_xp,smithing_xp,mining_xp,herblore_xp,agility_xp,thieving_xp,slayer_xp,farming_xp,"
+		+ "runecraft_xp,hunter_xp,construction_xp,attack_rank,defence_rank,strength_rank,hitpoints_rank,ranged_rank,prayer_rank,magic_rank,"
+		+ "cooking_rank,woodcutting_rank,fletching_rank,fishing_rank,firemaking_rank,crafting_rank,smithing_rank,mining_rank,herblore_rank,"
+		+ "agility_rank,thieving_rank,slayer_rank,farming_rank,runecraft_rank,hunter_rank,construction_rank,overall_rank";
 
-	@Autowired
-	private HiscoreService hiscoreService;
+	private final Sql2o sql2o;
+	private final HiscoreService hiscoreService;
 
 	private final Queue<String> usernameUpdateQueue = new ArrayDeque<>();
-	private BloomFilter<String> usernameFilter = createFilter();
+	private final RotatingBloomFilter<String> usernameFilter;
+
+	private final XpWriteQueue writeQueue = new XpWriteQueue(WRITE_QUEUE_LIMIT);
+	private final ReentrantLock flushLock = new ReentrantLock();
+	// consecutive failures of the batch at the head of the write queue, guarded by flushLock
+	private int batchFailures;
+
+	private final Cache<String, PlayerEntity> players = CacheBuilder.newBuilder()
+		.expireAfterAccess(1, TimeUnit.HOURS)
+		.maximumSize(PLAYER_CACHE_SIZE)
+		.build();
+
+	// last snapshot written for each player, to skip writing unchanged hiscores
+	private final Cache<String, XpData> lastXp = CacheBuilder.newBuilder()
+		.expireAfterAccess(1, TimeUnit.HOURS)
+		.maximumSize(PLAYER_CACHE_SIZE)
+		.build();
+
+	@Autowired
+	public XpTrackerService(@Qualifier("Runelite XP Tracker SQL2O") Sql2o sql2o,
+		HiscoreService hiscoreService,
+		@Value("${xp.filter.expected-insertions:100000}") long filterExpectedInsertions,
+		@Value("${xp.filter.fpp:0.03}") double filterFpp)
+	{
+		this.sql2o = sql2o;
+		this.hiscoreService = hiscoreService;
+		this.usernameFilter = new RotatingBloomFilter<>(
+			Funnels.stringFunnel(Charset.defaultCharset()),
+			filterExpectedInsertions,
+			filterFpp
+		);
+	}
 
 	public void update(String username) throws ExecutionException
 	{
@@ -104,119 +150,313 @@ public class XpTrackerService
 		usernameFilter.put(username);
 	}
 
+	/**
+	 * Queue a hiscore result to be written to the xp tracker. Results are
+	 * written in batches by {@link #flush()}.
+	 *
+	 * @param username player name
+	 * @param hiscoreResult hiscore result
+	 */
 	public void update(String username, HiscoreResult hiscoreResult)
 	{
-		try (Connection con = sql2o.open())
+		XpData hiscoreData = XpMapper.INSTANCE.hiscoreResultToXpData(hiscoreResult);
+		if (hiscoreData.equals(lastXp.getIfPresent(username)))
 		{
-			PlayerEntity playerEntity = findOrCreatePlayer(con, username);
+			log.debug("Hiscore for {} already up to date", username);
+			return;
+		}
 
-			Instant now = Instant.now();
-			XpEntity currentXp = findXpAtTime(con, username, now);
-			if (currentXp != null)
+		if (!writeQueue.offer(username, hiscoreData))
+		{
+			log.warn("Xp write queue is full ({})", WRITE_QUEUE_LIMIT);
+			return;
+		}
+
+		if (writeQueue.size() >= BATCH_SIZE && flushLock.tryLock())
+		{
+			try
+			{
+				flushBatch();
+			}
+			finally
+			{
+				flushLock.unlock();
+			}
+		}
+	}
+
+	@Scheduled(fixedDelay = 1000)
+	public void flush()
+	{
+		flushLock.lock();
+		try
+		{
+			while (writeQueue.size() > 0 && flushBatch())
+			{
+				// keep going until the queue is empty or a write fails
+			}
+		}
+		finally
+		{
+			flushLock.unlock();
+		}
+	}
+
+	@PreDestroy
+	public void shutdown()
+	{
+		flush();
+	}
+
+	/**
+	 * Write the next batch of queued snapshots. A batch which fails is
+	 * requeued, up to {@link #MAX_BATCH_ATTEMPTS} times. After that its
+	 * snapshots are written one at a time, and the ones which still fail are
+	 * dropped, so a bad snapshot can't hold up the rest of the queue.
+	 *
+	 * @return false if the batch could not be written, and was requeued
+	 */
+	private boolean flushBatch()
+	{
+		Map<String, XpData> batch = writeQueue.drain(BATCH_SIZE);
+		if (batch.isEmpty())
+		{
+			return true;
+		}
+
+		try
+		{
+			writeBatch(batch);
+			batchFailures = 0;
+			return true;
+		}
+		catch (Sql2oException ex)
+		{
+			if (++batchFailures < MAX_BATCH_ATTEMPTS)
+			{
+				log.warn("Unable to write {} xp snapshots, requeueing", batch.size(), ex);
+				writeQueue.requeue(batch);
+				return false;
+			}
+
+			log.warn("Unable to write {} xp snapshots after {} attempts, writing them individually",
+				batch.size(), batchFailures, ex);
+			batchFailures = 0;
+		}
+
+		for (Map.Entry<String, XpData> entry : batch.entrySet())
+		{
+			try
+			{
+				writeBatch(Collections.singletonMap(entry.getKey(), entry.getValue()));
+			}
+			catch (Sql2oException ex)
+			{
+				log.warn("Dropping xp snapshot for {}", entry.getKey(), ex);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Write snapshots in a single transaction
+	 *
+	 * @throws Sql2oException if the transaction failed, and was rolled back
+	 */
+	private void writeBatch(Map<String, XpData> batch)
+	{
+		// keyed by player id, which also collapses differently cased names
+		Map<Integer, XpData> rows = new LinkedHashMap<>();
+		Map<Integer, String> usernames = new LinkedHashMap<>();
+
+		try (Connection con = sql2o.beginTransaction())
+		{
+			for (Map.Entry<String, XpData> entry : batch.entrySet())
 			{
-				XpData hiscoreData = XpMapper.INSTANCE.hiscoreResultToXpData(hiscoreResult);
-				XpData existingData = XpMapper.INSTANCE.xpEntityToXpData(currentXp);
+				String username = entry.getKey();
+				XpData hiscoreData = entry.getValue();
+
+				XpData existingData = lastXp.getIfPresent(username);
+				if (existingData == null)
+				{
+					XpEntity currentXp = findXpAtTime(con, username, Instant.now());
+					if (currentXp != null)
+					{
+						existingData = XpMapper.INSTANCE.xpEntityToXpData(currentXp);
+						lastXp.put(username, existingData);
+					}
+				}
 
 				if (hiscoreData.equals(existingData))
 				{
 					log.debug("Hiscore for {} already up to date", username);
-					return;
+					continue;
 				}
+
+				PlayerEntity playerEntity = findOrCreatePlayer(con, username);
+				rows.put(playerEntity.getId(), hiscoreData);
+				usernames.put(playerEntity.getId(), username);
+			}
+
+			if (rows.isEmpty())
+			{
+				return;
 			}
 
-			con.createQuery("insert into xp (player,attack_xp,defence_xp,strength_xp,hitpoints_xp,ranged_xp,prayer_xp,magic_xp,cooking_xp,woodcutting_xp,"
-				+ "fletching_xp,fishing_xp,firemaking_xp,crafting_xp,smithing_xp,mining_xp,herblore_xp,agility_xp,thieving_xp,slayer_xp,farming_xp,"
-				+ "runecraft_xp,hunter_xp,construction_xp,attack_rank,defence_rank,strength_rank,hitpoints_rank,ranged_rank,prayer_rank,magic_rank,"
-				+ "cooking_rank,woodcutting_rank,fletching_rank,fishing_rank,firemaking_rank,crafting_rank,smithing_rank,mining_rank,herblore_rank,"
-				+ "agility_rank,thieving_rank,slayer_rank,farming_rank,runecraft_rank,hunter_rank,construction_rank,overall_rank) values (:player,:attack_xp,:defence_xp,"
-				+ ":strength_xp,:hitpoints_xp,:ranged_xp,:prayer_xp,:magic_xp,:cooking_xp,:woodcutting_xp,:fletching_xp,:fishing_xp,:firemaking_xp,"
-				+ ":crafting_xp,:smithing_xp,:mining_xp,:herblore_xp,:agility_xp,:thieving_xp,:slayer_xp,:farming_xp,:runecraft_xp,:hunter_xp,"
-				+ ":construction_xp,:attack_rank,:defence_rank,:strength_rank,:hitpoints_rank,:ranged_rank,:prayer_rank,:magic_rank,:cooking_rank,"
-				+ ":woodcutting_rank,:fletching_rank,:fishing_rank,:firemaking_rank,:crafting_rank,:smithing_rank,:mining_rank,:herblore_rank,"
-				+ ":agility_rank,:thieving_rank,:slayer_rank,:farming_rank,:runecraft_rank,:hunter_rank,:construction_rank,:overall_rank)")
-				.addParameter("player", playerEntity.getId())
-				.addParameter("attack_xp", hiscoreResult.getAttack().getExperience())
-				.addParameter("defence_xp", hiscoreResult.getDefence().getExperience())
-				.addParameter("strength_xp", hiscoreResult.getStrength().getExperience())
-				.addParameter("hitpoints_xp", hiscoreResult.getHitpoints().getExperience())
-				.addParameter("ranged_xp", hiscoreResult.getRanged().getExperience())
-				.addParameter("prayer_xp", hiscoreResult.getPrayer().getExperience())
-				.addParameter("magic_xp", hiscoreResult.getMagic().getExperience())
-				.addParameter("cooking_xp", hiscoreResult.getCooking().getExperience())
-				.addParameter("woodcutting_xp", hiscoreResult.getWoodcutting().getExperience())
-				.addParameter("fletching_xp", hiscoreResult.getFletching().getExperience())
-				.addParameter("fishing_xp", hiscoreResult.getFishing().getExperience())
-				.addParameter("firemaking_xp", hiscoreResult.getFiremaking().getExperience())
-				.addParameter("crafting_xp", hiscoreResult.getCrafting().getExperience())
-				.addParameter("smithing_xp", hiscoreResult.getSmithing().getExperience())
-				.addParameter("mining_xp", hiscoreResult.getMining().getExperience())
-				.addParameter("herblore_xp", hiscoreResult.getHerblore().getExperience())
-				.addParameter("agility_xp", hiscoreResult.getAgility().getExperience())
-				.addParameter("thieving_xp", hiscoreResult.getThieving().getExperience())
-				.addParameter("slayer_xp", hiscoreResult.getSlayer().getExperience())
-				.addParameter("farming_xp", hiscoreResult.getFarming().getExperience())
-				.addParameter("runecraft_xp", hiscoreResult.getRunecraft().getExperience())
-				.addParameter("hunter_xp", hiscoreResult.getHunter().getExperience())
-				.addParameter("construction_xp", hiscoreResult.getConstruction().getExperience())
-				.addParameter("attack_rank", hiscoreResult.getAttack().getRank())
-				.addParameter("defence_rank", hiscoreResult.getDefence().getRank())
-				.addParameter("strength_rank", hiscoreResult.getStrength().getRank())
-				.addParameter("hitpoints_rank", hiscoreResult.getHitpoints().getRank())
-				.addParameter("ranged_rank", hiscoreResult.getRanged().getRank())
-				.addParameter("prayer_rank", hiscoreResult.getPrayer().getRank())
-				.addParameter("magic_rank", hiscoreResult.getMagic().getRank())
-				.addParameter("cooking_rank", hiscoreResult.getCooking().getRank())
-				.addParameter("woodcutting_rank", hiscoreResult.getWoodcutting().getRank())
-				.addParameter("fletching_rank", hiscoreResult.getFletching().getRank())
-				.addParameter("fishing_rank", hiscoreResult.getFishing().getRank())
-				.addParameter("firemaking_rank", hiscoreResult.getFiremaking().getRank())
-				.addParameter("crafting_rank", hiscoreResult.getCrafting().getRank())
-				.addParameter("smithing_rank", hiscoreResult.getSmithing().getRank())
-				.addParameter("mining_rank", hiscoreResult.getMining().getRank())
-				.addParameter("herblore_rank", hiscoreResult.getHerblore().getRank())
-				.addParameter("agility_rank", hiscoreResult.getAgility().getRank())
-				.addParameter("thieving_rank", hiscoreResult.getThieving().getRank())
-				.addParameter("slayer_rank", hiscoreResult.getSlayer().getRank())
-				.addParameter("farming_rank", hiscoreResult.getFarming().getRank())
-				.addParameter("runecraft_rank", hiscoreResult.getRunecraft().getRank())
-				.addParameter("hunter_rank", hiscoreResult.getHunter().getRank())
-				.addParameter("construction_rank", hiscoreResult.getConstruction().getRank())
-				.addParameter("overall_rank", hiscoreResult.getOverall().getRank())
+			// xp rows are keyed on (player, time) with second resolution, so a second
+			// update for a player within the same second is dropped
+			con.createQuery(insertXpQuery(rows))
 				.executeUpdate();
 
-			con.createQuery("update player set rank = :rank, last_updated = CURRENT_TIMESTAMP where id = :id")
-				.addParameter("id", playerEntity.getId())
-				.addParameter("rank", hiscoreResult.getOverall().getRank())
+			con.createQuery(updatePlayersQuery(rows))
 				.executeUpdate();
+
+			con.commit();
+		}
+		catch (Sql2oException ex)
+		{
+			// players created in the rolled back transaction no longer exist
+			players.invalidateAll(batch.keySet());
+			throw ex;
 		}
+
+		Instant now = Instant.now();
+		for (Map.Entry<Integer, String> entry : usernames.entrySet())
+		{
+			String username = entry.getValue();
+			XpData xpData = rows.get(entry.getKey());
+			lastXp.put(username, xpData);
+
+			PlayerEntity playerEntity = players.getIfPresent(username);
+			if (playerEntity != null)
+			{
+				playerEntity.setRank(xpData.getOverall_rank());
+				playerEntity.setLast_updated(now);
+			}
+		}
+
+		log.debug("Wrote {} xp snapshots", rows.size());
 	}
 
-	private synchronized PlayerEntity findOrCreatePlayer(Connection con, String username)
+	private static String insertXpQuery(Map<Integer, XpData> rows)
 	{
-		PlayerEntity playerEntity = con.createQuery("select * from player where name = :name")
-			.addParameter("name", username)
-			.executeAndFetchFirst(PlayerEntity.class);
+		StringBuilder sb = new StringBuilder("insert ignore into xp (" + XP_COLUMNS + ") values ");
+		boolean first = true;
+		for (Map.Entry<Integer, XpData> entry : rows.entrySet())
+		{
+			if (!first)
+			{
+				sb.append(',');
+			}
+			first = false;
+
+			sb.append('(');
+			appendXpRow(sb, entry.getKey(), entry.getValue());
+			sb.append(')');
+		}
+		return sb.toString();
+	}
+
+	private static void appendXpRow(StringBuilder sb, int player, XpData data)
+	{
+		sb
+			.append(player)
+			.append(',').append(data.getAttack_xp())
+			.append(',').append(data.getDefence_xp())
+			.append(',').append(data.getStrength_xp())
+			.append(',').append(data.getHitpoints_xp())
+			.append(',').append(data.getRanged_xp())
+			.append(',').append(data.getPrayer_xp())
+			.append(',').append(data.getMagic_xp())
+			.append(',').append(data.getCooking_xp())
+			.append(',').append(data.getWoodcutting_xp())
+			.append(',').append(data.getFletching_xp())
+			.append(',').append(data.getFishing_xp())
+			.append(',').append(data.getFiremaking_xp())
+			.append(',').append(data.getCrafting_xp())
+			.append(',').append(data.getSmithing_xp())
+			.append(',').append(data.getMining_xp())
+			.append(',').append(data.getHerblore_xp())
+			.append(',').append(data.getAgility_xp())
+			.append(',').append(data.getThieving_xp())
+			.append(',').append(data.getSlayer_xp())
+			.append(',').append(data.getFarming_xp())
+			.append(',').append(data.getRunecraft_xp())
+			.append(',').append(data.getHunter_xp())
+			.append(',').append(data.getConstruction_xp())
+			.append(',').append(data.getAttack_rank())
+			.append(',').append(data.getDefence_rank())
+			.append(',').append(data.getStrength_rank())
+			.append(',').append(data.getHitpoints_rank())
+			.append(',').append(data.getRanged_rank())
+			.append(',').append(data.getPrayer_rank())
+			.append(',').append(data.getMagic_rank())
+			.append(',').append(data.getCooking_rank())
+			.append(',').append(data.getWoodcutting_rank())
+			.append(',').append(data.getFletching_rank())
+			.append(',').append(data.getFishing_rank())
+			.append(',').append(data.getFiremaking_rank())
+			.append(',').append(data.getCrafting_rank())
+			.append(',').append(data.getSmithing_rank())
+			.append(',').append(data.getMining_rank())
+			.append(',').append(data.getHerblore_rank())
+			.append(',').append(data.getAgility_rank())
+			.append(',').append(data.getThieving_rank())
+			.append(',').append(data.getSlayer_rank())
+			.append(',').append(data.getFarming_rank())
+			.append(',').append(data.getRunecraft_rank())
+			.append(',').append(data.getHunter_rank())
+			.append(',').append(data.getConstruction_rank())
+			.append(',').append(data.getOverall_rank());
+	}
+
+	private static String updatePlayersQuery(Map<Integer, XpData> rows)
+	{
+		StringBuilder ranks = new StringBuilder();
+		StringBuilder ids = new StringBuilder();
+		for (Map.Entry<Integer, XpData> entry : rows.entrySet())
+		{
+			ranks.append(" when ").append(entry.getKey()).append(" then ").append(entry.getValue().getOverall_rank());
+			if (ids.length() > 0)
+			{
+				ids.append(',');
+			}
+			ids.append(entry.getKey());
+		}
+		return "update player set rank = case id" + ranks + " end, last_updated = CURRENT_TIMESTAMP where id in (" + ids + ")";
+	}
+
+	private PlayerEntity findOrCreatePlayer(Connection con, String username)
+	{
+		PlayerEntity playerEntity = players.getIfPresent(username);
 		if (playerEntity != null)
 		{
 			return playerEntity;
 		}
 
-		Instant now = Instant.now();
+		playerEntity = findPlayer(con, username);
+		if (playerEntity == null)
+		{
+			// ignore the unique key on name in case another thread created the player first
+			con.createQuery("insert ignore into player (name, tracked_since) values (:name, :tracked_since)")
+				.addParameter("name", username)
+				.addParameter("tracked_since", Instant.now())
+				.executeUpdate();
 
-		int id = con.createQuery("insert into player (name, tracked_since) values (:name, :tracked_since)")
-			.addParameter("name", username)
-			.addParameter("tracked_since", now)
-			.executeUpdate()
-			.getKey(int.class);
-
-		playerEntity = new PlayerEntity();
-		playerEntity.setId(id);
-		playerEntity.setName(username);
-		playerEntity.setTracked_since(now);
-		playerEntity.setLast_updated(now);
+			playerEntity = findPlayer(con, username);
+		}
+
+		players.put(username, playerEntity);
 		return playerEntity;
 	}
 
+	private static PlayerEntity findPlayer(Connection con, String username)
+	{
+		return con.createQuery("select * from player where name = :name")
+			.addParameter("name", username)
+			.executeAndFetchFirst(PlayerEntity.class);
+	}
+
 	private XpEntity findXpAtTime(Connection con, String username, Instant time)
 	{
 		return con.createQuery("select * from xp join player on player.id=xp.player where player.name = :username and time <= :time order by time desc limit 1")
@@ -251,28 +491,34 @@ public class XpTrackerService
 		update(next);
 	}
 
-	@Scheduled(fixedDelay = 6 * 60 * 60 * 1000) // 6 hours
-	public void clearFilter()
+	/**
+	 * Retire the oldest generation of the username filter, so usernames are
+	 * checked again between one and two rotation periods after being seen
+	 */
+	@Scheduled(fixedDelayString = "${xp.filter.rotate-interval:10800000}") // 3 hours
+	public void rotateFilter()
 	{
-		usernameFilter = createFilter();
-	}
+		log.debug("Rotating username filter, {} usernames, expected fpp {}",
+			usernameFilter.getApproximateElementCount(), usernameFilter.getExpectedFpp());
 
-	private BloomFilter<String> createFilter()
-	{
-		final BloomFilter<String> filter = BloomFilter.create(
-			Funnels.stringFunnel(Charset.defaultCharset()),
-			BLOOMFILTER_EXPECTED_INSERTIONS
-		);
+		usernameFilter.rotate();
 
 		synchronized (usernameUpdateQueue)
 		{
 			for (String toUpdate : usernameUpdateQueue)
 			{
-				filter.put(toUpdate);
+				usernameFilter.put(toUpdate);
 			}
 		}
+	}
 
-		return filter;
+	public UsernameFilterStats getUsernameFilterStats()
+	{
+		return new UsernameFilterStats(
+			usernameFilter.getApproximateElementCount(),
+			usernameFilter.getFillRatio(),
+			usernameFilter.getExpectedFpp()
+		);
 	}
 
 	/**
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.xp;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.Value;
+import net.runelite.http.api.xp.XpData;
+
+/**
+ * Bounded multi-producer, single-consumer queue of xp snapshots waiting to be written.
+ */
+class XpWriteQueue
+{
+	@Value
+	private static class PendingXp
+	{
+		private final String username;
+		private final XpData data;
+	}
+
+	private final Deque<PendingXp> queue = new ConcurrentLinkedDeque<>();
+	private final AtomicInteger size = new AtomicInteger();
+	private final int limit;
+
+	XpWriteQueue(int limit)
+	{
+		this.limit = limit;
+	}
+
+	/**
+	 * Queue a snapshot for writing
+	 *
+	 * @param username player name
+	 * @param data snapshot
+	 * @return false if the queue is full
+	 */
+	boolean offer(String username, XpData data)
+	{
+		if (size.incrementAndGet() > limit)
+		{
+			size.decrementAndGet();
+			return false;
+		}
+
+		queue.add(new PendingXp(username, data));
+		return true;
+	}
+
+	/**
+	 * Put a drained batch back at the head of the queue, ahead of any
+	 * newer snapshots queued since. The queue limit is not applied.
+	 *
+	 * @param batch batch returned by {@link #drain(int)}
+	 */
+	void requeue(Map<String, XpData> batch)
+	{
+		List<Map.Entry<String, XpData>> entries = new ArrayList<>(batch.entrySet());
+		for (int i = entries.size() - 1; i >= 0; --i)
+		{
+			Map.Entry<String, XpData> entry = entries.get(i);
+			queue.addFirst(new PendingXp(entry.getKey(), entry.getValue()));
+			size.incrementAndGet();
+		}
+	}
+
+	int size()
+	{
+		return size.get();
+	}
+
+	/**
+	 * Remove up to {@code max} snapshots from the queue. Snapshots for the same
+	 * player are collapsed, keeping the most recently queued one.
+	 *
+	 * @param max maximum number of snapshots to remove
+	 * @return map of player name to snapshot, in queue order
+	 */
+	Map<String, XpData> drain(int max)
+	{
+		Map<String, XpData> batch = new LinkedHashMap<>();
+		PendingXp pending;
+		for (int i = 0; i < max && (pending = queue.poll()) != null; ++i)
+		{
+			size.decrementAndGet();
+			batch.put(pending.getUsername(), pending.getData());
+		}
+		return batch;
+	}
+}
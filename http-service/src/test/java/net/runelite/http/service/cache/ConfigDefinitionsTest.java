@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.cache;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.runelite.cache.fs.ArchiveFiles;
+import net.runelite.cache.fs.FSFile;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import org.junit.Test;
+
+public class ConfigDefinitionsTest
+{
+	@Test
+	public void testGet()
+	{
+		ArchiveFiles files = new ArchiveFiles();
+		for (int id : new int[]{0, 1, 5})
+		{
+			FSFile file = new FSFile(id);
+			file.setContents(new byte[]{(byte) id});
+			files.addFile(file);
+		}
+
+		AtomicInteger decoded = new AtomicInteger();
+		ConfigDefinitions<String> definitions = new ConfigDefinitions<>(files, (id, b) ->
+		{
+			decoded.incrementAndGet();
+			return id + ":" + b[0];
+		});
+
+		assertEquals(0, decoded.get());
+		assertEquals("5:5", definitions.get(5));
+		assertSame(definitions.get(5), definitions.get(5));
+		assertEquals(1, decoded.get());
+
+		assertNull(definitions.get(3));
+		assertNull(definitions.get(6));
+		assertNull(definitions.get(-1));
+
+		List<String> bulk = definitions.get(new int[]{1, 3, 0, 42});
+		assertEquals(Arrays.asList("1:1", "0:0"), bulk);
+		assertEquals(3, decoded.get());
+
+		assertEquals(Arrays.asList("0:0", "1:1", "5:5"), definitions.getAll());
+		assertEquals(3, decoded.get());
+	}
+}
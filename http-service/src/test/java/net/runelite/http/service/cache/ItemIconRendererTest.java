@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.cache;
+
+import net.runelite.cache.definitions.ItemDefinition;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class ItemIconRendererTest
+{
+	@Test
+	public void testQuantityBucket()
+	{
+		ItemDefinition coins = new ItemDefinition(995);
+		coins.countCo = new int[]{2, 3, 4, 5, 25, 100, 250, 1000, 10000, 0};
+		coins.countObj = new int[]{996, 997, 998, 999, 1000, 1001, 1002, 1003, 1004, 0};
+
+		assertEquals(1, ItemIconRenderer.quantityBucket(coins, 0));
+		assertEquals(1, ItemIconRenderer.quantityBucket(coins, 1));
+		assertEquals(2, ItemIconRenderer.quantityBucket(coins, 2));
+		assertEquals(25, ItemIconRenderer.quantityBucket(coins, 99));
+		assertEquals(1000, ItemIconRenderer.quantityBucket(coins, 9999));
+		assertEquals(10000, ItemIconRenderer.quantityBucket(coins, Integer.MAX_VALUE));
+
+		ItemDefinition item = new ItemDefinition(4151);
+		assertEquals(1, ItemIconRenderer.quantityBucket(item, 500));
+	}
+
+	@Test
+	public void testQuantityBucketUnordered()
+	{
+		ItemDefinition item = new ItemDefinition(1);
+		item.countCo = new int[]{10, 5, 0, 0, 0, 0, 0, 0, 0, 0};
+		item.countObj = new int[]{2, 3, 0, 0, 0, 0, 0, 0, 0, 0};
+
+		assertEquals(12, ItemIconRenderer.quantityBucket(item, 12));
+	}
+
+	@Test
+	public void testQuantityBucketTemplates()
+	{
+		ItemDefinition bought = new ItemDefinition(1);
+		bought.boughtId = 995;
+		bought.boughtTemplateId = 1;
+		assertEquals(99, ItemIconRenderer.quantityBucket(bought, 99));
+
+		ItemDefinition placeholder = new ItemDefinition(2);
+		placeholder.placeholderId = 995;
+		placeholder.placeholderTemplateId = 2;
+		assertEquals(99, ItemIconRenderer.quantityBucket(placeholder, 99));
+		assertEquals(1, ItemIconRenderer.quantityBucket(placeholder, 1));
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.item;
+
+import com.google.common.base.Ticker;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PriceCrawlerTest
+{
+	private static final long NOW = 1_000_000_000L;
+
+	private final MockWebServer server = new MockWebServer();
+	private final OkHttpClient client = new OkHttpClient();
+	private final Clock clock = Clock.fixed(Instant.ofEpochMilli(NOW), ZoneOffset.UTC);
+
+	@Before
+	public void before() throws IOException
+	{
+		server.setDispatcher(new Dispatcher()
+		{
+			@Override
+			public MockResponse dispatch(RecordedRequest request)
+			{
+				if (request.getPath().equals("/api/graph/1.json"))
+				{
+					return new MockResponse().setResponseCode(404);
+				}
+				return new MockResponse().setBody("{\"daily\":{\"1000\":5,\"2000\":6}}");
+			}
+		});
+		server.start();
+	}
+
+	@After
+	public void after() throws IOException
+	{
+		server.shutdown();
+	}
+
+	private PriceCrawler crawler(int concurrency)
+	{
+		TokenBucket rateLimiter = new TokenBucket(1, concurrency, Ticker.systemTicker());
+		return new PriceCrawler(client, server.url("/api/graph"), rateLimiter, concurrency, clock);
+	}
+
+	private static void await(PriceCrawler crawler) throws InterruptedException
+	{
+		for (int i = 0; i < 500 && crawler.getInFlight() > 0; ++i)
+		{
+			Thread.sleep(10);
+		}
+		assertEquals(0, crawler.getInFlight());
+	}
+
+	@Test
+	public void testCrawl() throws InterruptedException
+	{
+		PriceCrawler crawler = crawler(4);
+		crawler.setItems(new int[]{4151, 1});
+
+		assertEquals(2, crawler.dispatch());
+		await(crawler);
+
+		List<PriceEntry> prices = crawler.drain();
+		assertEquals(2, prices.size());
+		for (PriceEntry price : prices)
+		{
+			assertEquals(4151, price.getItem());
+			assertEquals(NOW, price.getFetched_time().toEpochMilli());
+		}
+		assertEquals(0, crawler.drain().size());
+
+		assertEquals(1, crawler.getFetched());
+		assertEquals(1, crawler.getFailed());
+		assertEquals(0L, crawler.getStaleness(4151));
+		assertEquals(-1L, crawler.getStaleness(1));
+
+		// both items were just attempted
+		assertEquals(0, crawler.dispatch());
+	}
+
+	@Test
+	public void testPriority() throws InterruptedException
+	{
+		PriceCrawler crawler = crawler(1);
+		crawler.setItems(new int[]{10, 20, 30});
+		crawler.setFetched(10, Instant.ofEpochMilli(NOW - 500_000));
+		crawler.setFetched(20, Instant.ofEpochMilli(NOW - 500_000));
+		crawler.setFetched(30, Instant.ofEpochMilli(NOW - 600_000));
+
+		// requests outweigh a little more staleness
+		for (int i = 0; i < 5; ++i)
+		{
+			crawler.recordRequest(20);
+		}
+
+		assertEquals(1, crawler.dispatch());
+		await(crawler);
+
+		assertEquals(1, server.getRequestCount());
+		assertEquals(0L, crawler.getStaleness(20));
+		assertEquals(500_000L, crawler.getStaleness(10));
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.item;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class PriceSnapshotTest
+{
+	private static PriceEntry entry(int item, String name, int price, long time)
+	{
+		PriceEntry entry = new PriceEntry();
+		entry.setItem(item);
+		entry.setName(name);
+		entry.setPrice(price);
+		entry.setTime(Instant.ofEpochMilli(time));
+		entry.setFetched_time(Instant.ofEpochMilli(time));
+		return entry;
+	}
+
+	@Test
+	public void testGet()
+	{
+		PriceSnapshot snapshot = PriceSnapshot.of(Arrays.asList(
+			entry(4151, "Abyssal whip", 2_000_000, 1000L),
+			entry(995, "Coins", 1, 1000L)
+		));
+
+		assertEquals(2_000_000, snapshot.get(4151).getPrice());
+		assertEquals("Coins", snapshot.get(995).getName());
+		assertNull(snapshot.get(1));
+		assertNull(snapshot.get(-1));
+		assertNull(snapshot.get(100_000));
+
+		List<PriceEntry> prices = snapshot.get(995, 1, 4151, 995);
+		assertEquals(2, prices.size());
+		assertEquals(995, prices.get(0).getItem());
+		assertEquals(4151, prices.get(1).getItem());
+	}
+
+	@Test
+	public void testWith()
+	{
+		PriceSnapshot snapshot = PriceSnapshot.of(Arrays.asList(entry(4151, "Abyssal whip", 2_000_000, 1000L)));
+
+		// newer price without a name keeps the known name
+		PriceSnapshot updated = snapshot.with(entry(4151, null, 1_900_000, 2000L));
+		assertEquals(1_900_000, updated.get(4151).getPrice());
+		assertEquals("Abyssal whip", updated.get(4151).getName());
+		assertEquals(2_000_000, snapshot.get(4151).getPrice());
+
+		// older prices and unknown unnamed items are ignored
+		assertSame(updated, updated.with(entry(4151, null, 1, 1500L)));
+		assertSame(updated, updated.with(entry(20_000, null, 1, 3000L)));
+
+		PriceSnapshot grown = updated.with(entry(20_000, "New item", 5, 3000L));
+		assertEquals(5, grown.get(20_000).getPrice());
+	}
+
+	@Test
+	public void testMerge()
+	{
+		PriceSnapshot stored = PriceSnapshot.of(Arrays.asList(
+			entry(4151, "Abyssal whip", 2_000_000, 1000L),
+			entry(995, "Coins", 1, 3000L)
+		));
+		PriceSnapshot current = PriceSnapshot.of(Arrays.asList(
+			entry(4151, "Abyssal whip", 1_900_000, 2000L),
+			entry(995, "Coins", 2, 1000L),
+			entry(20_000, "New item", 5, 2000L)
+		));
+
+		PriceSnapshot merged = stored.merge(current);
+		assertEquals(1_900_000, merged.get(4151).getPrice());
+		assertEquals(1, merged.get(995).getPrice());
+		assertEquals(5, merged.get(20_000).getPrice());
+	}
+
+	@Test
+	public void testNotFetched()
+	{
+		PriceEntry entry = entry(4151, "Abyssal whip", 2_000_000, 1000L);
+		entry.setFetched_time(null);
+
+		PriceSnapshot snapshot = PriceSnapshot.of(Arrays.asList(entry));
+		assertNull(snapshot.get(4151).getFetched_time());
+	}
+
+	@Test
+	public void testEmpty()
+	{
+		assertTrue(PriceSnapshot.EMPTY.isEmpty());
+		assertTrue(PriceSnapshot.EMPTY.get(1, 2, 3).isEmpty());
+	}
+}
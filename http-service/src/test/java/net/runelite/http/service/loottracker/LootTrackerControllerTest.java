@@ -27,10 +27,13 @@ package net.runelite.http.service.loottracker;
 import java.io.IOException;
 import java.time.Instant;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import net.runelite.http.api.RuneLiteAPI;
 import net.runelite.http.api.loottracker.GameItem;
+import net.runelite.http.api.loottracker.LootAggregate;
 import net.runelite.http.api.loottracker.LootRecord;
 import net.runelite.http.api.loottracker.LootRecordType;
 import net.runelite.http.service.account.AuthFilter;
@@ -42,6 +45,7 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -51,7 +55,9 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
@@ -89,4 +95,30 @@ public class LootTrackerControllerTest
 
 		verify(lootTrackerService).store(eq(lootRecord), anyInt());
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void getLootAggregate() throws Exception
+	{
+		Map<Integer, Long> drops = new HashMap<>();
+		drops.put(4151, 2L);
+		LootAggregate lootAggregate = new LootAggregate("Abyssal demon", LootRecordType.NPC, 100, drops);
+		when(lootTrackerService.getAggregate(anyInt())).thenReturn(Collections.singletonList(lootAggregate));
+
+		String data = RuneLiteAPI.GSON.toJson(Collections.singletonList(lootAggregate));
+		mockMvc.perform(get("/loottracker/aggregate"))
+			.andExpect(status().isOk())
+			.andExpect(content().json(data));
+	}
+
+	@Test
+	public void getLootHistoryCount() throws Exception
+	{
+		mockMvc.perform(get("/loottracker/history").param("count", "0"))
+			.andExpect(status().isBadRequest());
+		verify(lootTrackerService, never()).getPage(anyInt(), anyInt(), any());
+
+		mockMvc.perform(get("/loottracker/history").param("count", "100000"))
+			.andExpect(status().isOk());
+		verify(lootTrackerService).getPage(anyInt(), eq(1024), any());
+	}
+}
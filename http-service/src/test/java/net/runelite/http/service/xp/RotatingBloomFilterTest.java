@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.xp;
+
+import com.google.common.hash.Funnels;
+import java.nio.charset.StandardCharsets;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class RotatingBloomFilterTest
+{
+	private static RotatingBloomFilter<String> createFilter()
+	{
+		return new RotatingBloomFilter<>(Funnels.stringFunnel(StandardCharsets.UTF_8), 1000, 0.01);
+	}
+
+	@Test
+	public void testRotate()
+	{
+		RotatingBloomFilter<String> filter = createFilter();
+		filter.put("zezima");
+		assertTrue(filter.mightContain("zezima"));
+
+		// still remembered for one more generation
+		filter.rotate();
+		assertTrue(filter.mightContain("zezima"));
+		filter.put("lynx titan");
+
+		filter.rotate();
+		assertFalse(filter.mightContain("zezima"));
+		assertTrue(filter.mightContain("lynx titan"));
+	}
+
+	@Test
+	public void testStats()
+	{
+		RotatingBloomFilter<String> filter = createFilter();
+		assertEquals(0, filter.getApproximateElementCount());
+		assertEquals(0d, filter.getExpectedFpp(), 0d);
+
+		for (int i = 0; i < 500; ++i)
+		{
+			filter.put("player" + i);
+		}
+
+		assertEquals(0.5, filter.getFillRatio(), 0.05);
+		assertTrue(filter.getExpectedFpp() > 0 && filter.getExpectedFpp() < 0.01);
+
+		filter.rotate();
+		assertEquals(0, filter.getApproximateElementCount());
+		assertTrue(filter.getExpectedFpp() > 0);
+	}
+}
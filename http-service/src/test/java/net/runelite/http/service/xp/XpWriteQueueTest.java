@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2019, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.xp;
+
+import java.util.Map;
+import net.runelite.http.api.xp.XpData;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class XpWriteQueueTest
+{
+	@Test
+	public void testLimit()
+	{
+		XpWriteQueue queue = new XpWriteQueue(2);
+		assertTrue(queue.offer("a", new XpData()));
+		assertTrue(queue.offer("b", new XpData()));
+		assertFalse(queue.offer("c", new XpData()));
+		assertEquals(2, queue.size());
+
+		assertEquals(1, queue.drain(1).size());
+		assertTrue(queue.offer("c", new XpData()));
+		assertEquals(2, queue.size());
+	}
+
+	@Test
+	public void testDrainCollapses()
+	{
+		XpData first = new XpData();
+		XpData second = new XpData();
+		XpData other = new XpData();
+
+		XpWriteQueue queue = new XpWriteQueue(16);
+		queue.offer("zezima", first);
+		queue.offer("lynx titan", other);
+		queue.offer("zezima", second);
+
+		Map<String, XpData> batch = queue.drain(16);
+		assertEquals(2, batch.size());
+		assertSame(second, batch.get("zezima"));
+		assertSame(other, batch.get("lynx titan"));
+		assertEquals(0, queue.size());
+	}
+
+	@Test
+	public void testRequeue()
+	{
+		XpData old = new XpData();
+		XpData newer = new XpData();
+
+		XpWriteQueue queue = new XpWriteQueue(1);
+		queue.offer("zezima", old);
+		Map<String, XpData> batch = queue.drain(16);
+
+		// a newer snapshot is queued while the batch is being written
+		queue.offer("zezima", newer);
+		queue.requeue(batch);
+		assertEquals(2, queue.size());
+
+		assertSame(newer, queue.drain(16).get("zezima"));
+	}
+}
@@ -24,14 +24,24 @@
  */
 package net.runelite.script;
 
+import com.google.common.hash.HashCode;
 import com.google.common.io.Files;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import net.runelite.cache.IndexType;
 import net.runelite.cache.definitions.ScriptDefinition;
 import net.runelite.cache.definitions.savers.ScriptSaver;
-import net.runelite.cache.script.assembler.Assembler;
+import net.runelite.cache.script.assembler.AssembledScript;
+import net.runelite.cache.script.assembler.BatchAssembler;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
@@ -52,6 +62,27 @@ public class AssembleMojo extends AbstractMojo
 	@Parameter(required = true)
 	private File outputDirectory;
 
+	/**
+	 * Number of threads to assemble with, or 0 to use one per processor
+	 */
+	@Parameter(defaultValue = "0")
+	private int threads;
+
+	/**
+	 * Skip scripts whose source is unchanged since the last build
+	 */
+	@Parameter(defaultValue = "true")
+	private boolean incremental;
+
+	/**
+	 * Source hashes and script ids of the last build, kept out of the output directory
+	 */
+	@Parameter(defaultValue = "${project.build.directory}/script-assembler-manifest.txt")
+	private File manifestFile;
+
+	@Parameter(defaultValue = "${plugin.version}", readonly = true)
+	private String pluginVersion;
+
 	private final Log log = getLog();
 
 	@Override
@@ -60,45 +91,104 @@ public class AssembleMojo extends AbstractMojo
 		RuneLiteInstructions instructions = new RuneLiteInstructions();
 		instructions.init();
 
-		Assembler assembler = new Assembler(instructions);
+		BatchAssembler assembler = new BatchAssembler(instructions);
+		HashCode manifestKey = assembler.getManifestKey(pluginVersion);
 		ScriptSaver saver = new ScriptSaver();
 
-		int count = 0;
 		File scriptOut = new File(outputDirectory, Integer.toString(IndexType.CLIENTSCRIPT.getNumber()));
 		scriptOut.mkdirs();
 
-		for (File scriptFile : scriptDirectory.listFiles((dir, name) -> name.endsWith(".rs2asm")))
+		File[] scriptFiles = scriptDirectory.listFiles((dir, name) -> name.endsWith(".rs2asm"));
+		if (scriptFiles == null)
+		{
+			throw new MojoExecutionException("Unable to list scripts in " + scriptDirectory);
+		}
+		Arrays.sort(scriptFiles);
+
+		int nThreads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+
+		long start = System.nanoTime();
+		List<AssembledScript> scripts;
+		try
 		{
-			log.debug("Assembling " + scriptFile);
+			Map<String, AssembledScript> previous = incremental ? loadManifest(scriptOut, manifestKey) : new HashMap<>();
+			scripts = assembler.assemble(Arrays.asList(scriptFiles), previous, executor);
+		}
+		catch (IOException ex)
+		{
+			throw new MojoFailureException("unable to assemble scripts", ex);
+		}
+		catch (RuntimeException ex)
+		{
+			throw new MojoFailureException(ex.getMessage(), ex);
+		}
+		finally
+		{
+			executor.shutdown();
+		}
 
-			try (FileInputStream fin = new FileInputStream(scriptFile))
+		int assembled = 0;
+		try
+		{
+			for (int i = 0; i < scriptFiles.length; ++i)
 			{
-				ScriptDefinition script = assembler.assemble(fin);
-				byte[] packedScript = saver.save(script);
+				File scriptFile = scriptFiles[i];
+				AssembledScript result = scripts.get(i);
+				int id = result.getId();
 
-				File targetFile = new File(scriptOut, Integer.toString(script.getId()));
-				Files.write(packedScript, targetFile);
+				log.debug(String.format("%s %s in %.2fms", result.isChanged() ? "Assembled" : "Skipped",
+					scriptFile, result.getTime() / 1_000_000d));
+
+				ScriptDefinition script = result.getScript();
+				if (script != null)
+				{
+					byte[] packedScript = saver.save(script);
+					Files.write(packedScript, new File(scriptOut, Integer.toString(id)));
+					++assembled;
+				}
 
 				// Copy hash file
 
 				File hashFile = new File(scriptDirectory, Files.getNameWithoutExtension(scriptFile.getName()) + ".hash");
 				if (hashFile.exists())
 				{
-					Files.copy(hashFile, new File(scriptOut, Integer.toString(script.getId()) + ".hash"));
+					Files.copy(hashFile, new File(scriptOut, Integer.toString(id) + ".hash"));
 				}
-				else if (script.getId() < 10000) // Scripts >=10000 are RuneLite scripts, so they shouldn't have a .hash
+				else if (id < 10000) // Scripts >=10000 are RuneLite scripts, so they shouldn't have a .hash
 				{
 					throw new MojoExecutionException("Unable to find hash file for " + scriptFile);
 				}
-
-				++count;
-			}
-			catch (IOException ex)
-			{
-				throw new MojoFailureException("unable to open file", ex);
 			}
+
+			BatchAssembler.writeManifest(manifestFile, manifestKey, scripts);
 		}
+		catch (IOException ex)
+		{
+			throw new MojoFailureException("unable to write scripts", ex);
+		}
+
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		log.info("Assembled " + assembled + " scripts (" + (scripts.size() - assembled) + " unchanged) in "
+			+ elapsed + "ms on " + nThreads + " threads");
 
-		log.info("Assembled " + count + " scripts");
+		List<AssembledScript> slowest = new ArrayList<>(scripts);
+		slowest.removeIf(s -> !s.isChanged());
+		slowest.sort(Comparator.comparingLong(AssembledScript::getTime).reversed());
+		for (AssembledScript script : slowest.subList(0, Math.min(5, slowest.size())))
+		{
+			log.info(String.format("  %s: %.2fms", script.getName(), script.getTime() / 1_000_000d));
+		}
+	}
+
+	/**
+	 * Load the manifest of the last build, dropping scripts whose output is missing.
+	 * The manifest is discarded if the instruction set or plugin version changed.
+	 */
+	private Map<String, AssembledScript> loadManifest(File scriptOut, HashCode manifestKey) throws IOException
+	{
+		Map<String, AssembledScript> manifest = new HashMap<>(BatchAssembler.readManifest(manifestFile, manifestKey));
+		manifest.values().removeIf(s -> !new File(scriptOut, Integer.toString(s.getId())).exists());
+		return manifest;
 	}
 }